@@ -1,16 +1,25 @@
 package com.example.citasmedicas;
 
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.config.ArchivoPropiedades;
+import com.example.citasmedicas.config.IdempotenciaPropiedades;
+import com.example.citasmedicas.config.ImportacionPropiedades;
+import com.example.citasmedicas.config.NotificacionPropiedades;
+import com.example.citasmedicas.config.ReintentoPropiedades;
+import com.example.citasmedicas.config.ReservaPropiedades;
 import com.example.citasmedicas.seguridad.config.JwtPropiedades;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableJpaAuditing // Habilita la auditoría automática para entidades
 @EnableAsync // Habilita el soporte para métodos asíncronos
-@EnableConfigurationProperties(JwtPropiedades.class) // Habilita la clase de propiedades JWT
+@EnableScheduling // Habilita las tareas programadas (purgas, barridos, relés)
+@EnableConfigurationProperties({JwtPropiedades.class, ReservaPropiedades.class, ReintentoPropiedades.class, IdempotenciaPropiedades.class, NotificacionPropiedades.class, AgendaPropiedades.class, ArchivoPropiedades.class, ImportacionPropiedades.class}) // Habilita las clases de propiedades
 public class CitasmedicasApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,64 @@
+package com.example.citasmedicas.config;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Propiedades de las plantillas de horario y de su expansión en bloques de disponibilidad.
+ */
+@ConfigurationProperties(prefix = "citas.agenda")
+@Data
+@Validated
+public class AgendaPropiedades {
+    @Min(1)
+    private int horizonteSemanas = 8; // Semanas de agenda abierta a reservas
+    @Min(1)
+    private int maxDiasExpansion = 366; // Días máximos que puede cubrir una expansión
+    @Min(1)
+    private int maxBloquesExpansion = 20_000; // Bloques máximos generados por una expansión
+    @Min(1)
+    private int tamanoLoteInsercion = 500; // Filas por lote JDBC al insertar bloques
+    @Min(1)
+    private int doctoresPorLote = 50; // Doctores por transacción en la extensión nocturna del horizonte
+    @Min(1)
+    private int hilosExtension = 4; // Lotes de doctores procesados en paralelo por la extensión nocturna
+    @Min(5)
+    @Max(60)
+    private int minutosPorRanura = 15; // Granularidad del calendario compacto; debe dividir exactamente un día
+    @Min(1)
+    private int maxDiasCalendario = 62; // Días máximos de un calendario compacto o de un resumen por día
+    @Min(1)
+    private int maxDoctoresResumen = 200; // Doctores máximos por consulta del resumen por día
+    @Min(1)
+    private int maxDoctoresConsultaLote = 50; // Doctores máximos por consulta de disponibilidad de varios doctores
+    @Min(1)
+    private int maxDiasConsultaLote = 14; // Días máximos de una consulta de disponibilidad de varios doctores
+    @Min(1)
+    private int maxDiasSincronizacion = 31; // Días máximos que puede cubrir una sincronización de agenda
+    @Min(1)
+    private int maxBloquesSincronizacion = 2_000; // Bloques deseados máximos por sincronización
+    @Min(1)
+    private int diasVentanaBusqueda = 7; // Días leídos por consulta en la búsqueda del próximo horario libre
+    @Min(1)
+    private int maxDiasBusqueda = 90; // Días máximos que recorre la búsqueda del próximo horario libre
+    @Min(0)
+    private int diasHistorialFeed = 30; // Días pasados incluidos en el feed iCalendar de la agenda
+    @Min(1)
+    private long capacidadCacheBloques = 50_000; // Bloques máximos en la caché de disponibilidad por día
+    @Min(1)
+    private int maxDiasConsultaCache = 31; // Las consultas de disponibilidad más largas no usan la caché
+    private Duration vigenciaCache = Duration.ofSeconds(30); // Tiempo máximo que se sirve un día cacheado; acota el desfase con las escrituras de otras instancias
+    @Min(1)
+    private int maxConexionesFlujo = 500; // Conexiones SSE simultáneas máximas al flujo de disponibilidad
+    @Min(1)
+    private int capacidadBufferFlujo = 64; // Eventos pendientes por conexión antes de pedir al cliente que resincronice
+    @Min(1)
+    private int hilosFlujo = 2; // Hilos que envían los eventos pendientes a las conexiones
+    private Duration duracionMaximaFlujo = Duration.ofMinutes(30); // Tras este tiempo la conexión se cierra y el cliente reconecta
+    private boolean indiceHabilitado = true; // Comprueba los solapamientos con el índice de intervalos en memoria
+}
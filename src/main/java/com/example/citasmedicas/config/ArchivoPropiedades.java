@@ -0,0 +1,21 @@
+package com.example.citasmedicas.config;
+
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Propiedades del archivado de citas y bloques de disponibilidad pasados.
+ */
+@ConfigurationProperties(prefix = "citas.archivo")
+@Data
+@Validated
+public class ArchivoPropiedades {
+    @Min(1)
+    private int diasGracia = 30; // Antigüedad mínima (por hora de fin) de las filas que se archivan
+    @Min(1)
+    private int tamanoLote = 1_000; // Filas movidas por transacción
+    @Min(1)
+    private int diasRetencionDisponibilidades = 365; // Los bloques archivados más antiguos se purgan; las citas archivadas se conservan
+}
@@ -0,0 +1,26 @@
+package com.example.citasmedicas.config;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Propiedades del soporte de la cabecera Idempotency-Key.
+ */
+@ConfigurationProperties(prefix = "citas.idempotencia")
+@Data
+@Validated
+public class IdempotenciaPropiedades {
+    @NotNull
+    private Duration vigencia = Duration.ofHours(24); // Tiempo durante el que una clave devuelve la respuesta almacenada
+    @Min(1)
+    private int capacidadCache = 10_000; // Respuestas recientes mantenidas en memoria
+    @NotNull
+    private Duration esperaMaxima = Duration.ofSeconds(30); // Espera máxima de un duplicado por la ejecución en curso
+    @NotNull
+    private Duration intervaloSondeo = Duration.ofMillis(200); // Intervalo de consulta de una clave en curso en otra instancia
+}
@@ -0,0 +1,28 @@
+package com.example.citasmedicas.config;
+
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Propiedades de la importación de agendas desde archivos iCalendar.
+ */
+@ConfigurationProperties(prefix = "citas.importacion")
+@Data
+@Validated
+public class ImportacionPropiedades {
+    @Min(1)
+    private int tamanoLote = 500; // Bloques insertados por transacción
+    @Min(1)
+    private int hilos = 2; // Importaciones procesadas en paralelo
+    @Min(1)
+    private int maxTrabajosPendientes = 20; // Importaciones en cola o en curso antes de rechazar nuevas
+    @Min(1)
+    private long maxBytes = 100L * 1024 * 1024; // Tamaño máximo del archivo recibido
+    @Min(1)
+    private int maxEventos = 200_000; // Eventos máximos leídos de un archivo
+    private Duration retencionTrabajos = Duration.ofHours(24); // Tiempo que se conserva el estado de una importación terminada
+}
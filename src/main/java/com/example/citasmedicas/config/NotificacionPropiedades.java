@@ -0,0 +1,59 @@
+package com.example.citasmedicas.config;
+
+import com.example.citasmedicas.servicio.notificacion.PoliticaDesborde;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Propiedades de la bandeja de salida de notificaciones, de su relé y del despachador asíncrono.
+ */
+@ConfigurationProperties(prefix = "citas.notificaciones")
+@Data
+@Validated
+public class NotificacionPropiedades {
+    @Min(1)
+    private int tamanoLote = 100; // Notificaciones tomadas por cada pasada del relé
+    @Min(1)
+    private int maxIntentos = 8; // Intentos antes de marcar una notificación como FALLIDA
+    @NotNull
+    private Duration esperaReintentoInicial = Duration.ofSeconds(30); // Base del retroceso exponencial entre intentos
+    @NotNull
+    private Duration esperaReintentoMaxima = Duration.ofHours(1); // Tope de la espera entre intentos
+    @NotNull
+    private Duration plazoEntrega = Duration.ofMinutes(2); // Concesión de un lote reclamado por el relé; debe superar despachador.espera-confirmacion
+    @Valid
+    @NotNull
+    private Despachador despachador = new Despachador();
+
+    /**
+     * Propiedades del despachador asíncrono que agrupa los envíos hacia el proveedor.
+     */
+    @Data
+    public static class Despachador {
+        @NotBlank
+        private String proveedor = "email"; // Proveedor de envío: email, sms o memoria (para pruebas de rendimiento)
+        @Min(1)
+        private int capacidadCola = 10_000; // Mensajes en espera antes de aplicar la política de desborde
+        @Min(1)
+        private int hilos = 2; // Hilos que drenan la cola
+        @Min(1)
+        private int tamanoLote = 50; // Mensajes por llamada al proveedor (una sesión SMTP, una llamada masiva)
+        @NotNull
+        private Duration esperaLote = Duration.ofMillis(20); // Tiempo máximo esperando a completar un lote
+        @NotNull
+        private PoliticaDesborde politicaDesborde = PoliticaDesborde.BLOQUEAR; // Qué hacer con la cola llena
+        @NotNull
+        private Duration esperaEncolar = Duration.ofSeconds(1); // Espera máxima de la política BLOQUEAR
+        @NotNull
+        private Duration esperaCierre = Duration.ofSeconds(30); // Tiempo para drenar la cola al apagar la aplicación
+        @NotNull
+        private Duration esperaConfirmacion = Duration.ofSeconds(30); // Espera del relé por la entrega de su lote
+    }
+}
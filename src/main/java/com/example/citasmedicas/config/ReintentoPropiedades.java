@@ -0,0 +1,26 @@
+package com.example.citasmedicas.config;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Propiedades del reintento automático de transacciones abortadas por contención.
+ */
+@ConfigurationProperties(prefix = "citas.transacciones.reintentos")
+@Data
+@Validated
+public class ReintentoPropiedades {
+    @Min(1)
+    private int maxIntentos = 5; // Intentos totales, incluido el primero
+    @NotNull
+    private Duration esperaInicial = Duration.ofMillis(20); // Base del retroceso exponencial
+    @NotNull
+    private Duration esperaMaxima = Duration.ofMillis(500); // Tope de cada espera individual
+    @NotNull
+    private Duration presupuesto = Duration.ofSeconds(3); // Tiempo total máximo dedicado a una operación
+}
@@ -0,0 +1,30 @@
+package com.example.citasmedicas.config;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Propiedades del coordinador de reservas por carriles y de las retenciones temporales de bloques.
+ */
+@ConfigurationProperties(prefix = "citas.reservas")
+@Data
+@Validated
+public class ReservaPropiedades {
+    @Min(1)
+    private int carriles = 16; // Número fijo de carriles de escritura única
+    @Min(1)
+    private int maxReclamadosPorCarril = 10_000; // Bloques recordados por carril para el rechazo temprano
+    @NotNull
+    private Duration vigenciaReclamo = Duration.ofSeconds(30); // Tiempo durante el que un bloque reclamado se rechaza en memoria
+    @NotNull
+    private Duration duracionRetencion = Duration.ofMinutes(5); // Tiempo que un bloque queda retenido para un paciente
+    @NotNull
+    private Duration resolucionRetenciones = Duration.ofSeconds(1); // Duración de cada tick de la rueda de expiración
+    @Min(1)
+    private int ranurasRetenciones = 512; // Ranuras de la rueda de expiración (potencia de dos)
+}
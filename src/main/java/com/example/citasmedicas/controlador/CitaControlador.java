@@ -3,15 +3,20 @@ package com.example.citasmedicas.controlador;
 import com.example.citasmedicas.dto.ActualizarEstadoCitaDTO;
 import com.example.citasmedicas.dto.CitaDTO;
 import com.example.citasmedicas.dto.CrearCitaDTO;
+import com.example.citasmedicas.dto.CrearSerieCitasDTO;
 import com.example.citasmedicas.servicio.CitaServicio;
 import com.example.citasmedicas.modelo.entidad.EstadoCita;
 import com.example.citasmedicas.servicio.DisponibilidadServicio;
+import com.example.citasmedicas.servicio.idempotencia.IdempotenciaServicio;
+import com.fasterxml.jackson.core.type.TypeReference;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -24,22 +29,49 @@ public class CitaControlador {
 
     private final CitaServicio citaServicio;
     private final DisponibilidadServicio disponibilidadServicio; // Inyectar disponibilidad para eliminación
+    private final IdempotenciaServicio idempotenciaServicio; // Soporte de la cabecera Idempotency-Key
 
-    public CitaControlador(CitaServicio citaServicio, DisponibilidadServicio disponibilidadServicio) {
+    public CitaControlador(CitaServicio citaServicio, DisponibilidadServicio disponibilidadServicio, IdempotenciaServicio idempotenciaServicio) {
         this.citaServicio = citaServicio;
         this.disponibilidadServicio = disponibilidadServicio;
+        this.idempotenciaServicio = idempotenciaServicio;
     }
 
     /**
      * Agenda una nueva cita.
      * POST /api/v1/citas
+     * Con la cabecera Idempotency-Key, los reenvíos devuelven la respuesta original sin volver a agendar.
      * @param crearCitaDTO DTO con los detalles de la cita a crear.
+     * @param claveIdempotencia Cabecera Idempotency-Key opcional para reenvíos seguros.
      * @return ResponseEntity con el DTO de la cita creada y estado 201 Created.
      */
     @PostMapping //
-    public ResponseEntity<CitaDTO> agendarCita(@Valid @RequestBody CrearCitaDTO crearCitaDTO) {
-        CitaDTO nuevaCita = citaServicio.agendarCita(crearCitaDTO);
-        return new ResponseEntity<>(nuevaCita, HttpStatus.CREATED); // 201 Created
+    public ResponseEntity<CitaDTO> agendarCita(
+            @Valid @RequestBody CrearCitaDTO crearCitaDTO,
+            @RequestHeader(value = IdempotenciaServicio.CABECERA_CLAVE, required = false) String claveIdempotencia
+    ) {
+        return idempotenciaServicio.ejecutar(claveIdempotencia, "citas.agendar", crearCitaDTO, CitaDTO.class, () -> {
+            CitaDTO nuevaCita = citaServicio.agendarCita(crearCitaDTO);
+            return new ResponseEntity<>(nuevaCita, HttpStatus.CREATED); // 201 Created
+        });
+    }
+
+    /**
+     * Agenda una serie de citas recurrentes con un mismo doctor en una única operación.
+     * POST /api/v1/citas/serie
+     * @param crearSerieCitasDTO DTO con los bloques de disponibilidad de la serie.
+     * @param claveIdempotencia Cabecera Idempotency-Key opcional para reenvíos seguros.
+     * @return ResponseEntity con la lista de citas creadas y estado 201 Created.
+     */
+    @PostMapping("/serie")
+    public ResponseEntity<List<CitaDTO>> agendarSerieCitas(
+            @Valid @RequestBody CrearSerieCitasDTO crearSerieCitasDTO,
+            @RequestHeader(value = IdempotenciaServicio.CABECERA_CLAVE, required = false) String claveIdempotencia
+    ) {
+        return idempotenciaServicio.ejecutar(claveIdempotencia, "citas.agendar_serie", crearSerieCitasDTO, new TypeReference<List<CitaDTO>>() {}, () -> {
+            List<CitaDTO> nuevasCitas = citaServicio.agendarSerieCitas(crearSerieCitasDTO);
+            return new ResponseEntity<>(nuevasCitas, HttpStatus.CREATED); // 201 Created
+        });
     }
 
     /**
@@ -47,20 +79,24 @@ public class CitaControlador {
      * PATCH /api/v1/citas/{citaId}
      * @param citaId El UUID de la cita a cancelar.
      * @param actualizarEstadoCitaDTO DTO que contiene el nuevo estado (se espera CANCELADA).
+     * @param claveIdempotencia Cabecera Idempotency-Key opcional para reenvíos seguros.
      * @return ResponseEntity con el DTO de la cita actualizada.
      */
     @PatchMapping("/{citaId}") //
     @PreAuthorize("hasAuthority('PATIENT') and @autorizacionServicio.esPropietarioDeCita(authentication, #citaId)")
     public ResponseEntity<CitaDTO> cancelarCita(
             @PathVariable UUID citaId,
-            @Valid @RequestBody ActualizarEstadoCitaDTO actualizarEstadoCitaDTO
+            @Valid @RequestBody ActualizarEstadoCitaDTO actualizarEstadoCitaDTO,
+            @RequestHeader(value = IdempotenciaServicio.CABECERA_CLAVE, required = false) String claveIdempotencia
     ) {
         // Solo permitir la cancelación, no otros cambios de estado via PATCH en este endpoint específico.
         if (actualizarEstadoCitaDTO.getNuevoEstado() != EstadoCita.CANCELADA) {
             throw new IllegalArgumentException("Solo se permite cancelar citas a través de este endpoint. El estado enviado no es CANCELADA.");
         }
-        CitaDTO citaActualizada = citaServicio.cancelarCita(citaId);
-        return ResponseEntity.ok(citaActualizada);
+        return idempotenciaServicio.ejecutar(claveIdempotencia, "citas.cancelar", Map.of("citaId", citaId), CitaDTO.class, () -> {
+            CitaDTO citaActualizada = citaServicio.cancelarCita(citaId);
+            return ResponseEntity.ok(citaActualizada);
+        });
     }
 
     /**
@@ -1,21 +1,38 @@
 package com.example.citasmedicas.controlador;
 
+import com.example.citasmedicas.dto.CalendarioDisponibilidadDTO;
 import com.example.citasmedicas.dto.CrearDisponibilidadDTO;
+import com.example.citasmedicas.dto.CrearPlantillaHorarioDTO;
 import com.example.citasmedicas.dto.DisponibilidadDTO;
+import com.example.citasmedicas.dto.DisponibilidadesDoctorDTO;
 import com.example.citasmedicas.dto.DoctorDTO;
 import com.example.citasmedicas.dto.DoctorListViewDTO;
 import com.example.citasmedicas.dto.PaginacionMetadata;
 import com.example.citasmedicas.dto.RespuestaPaginada;
+import com.example.citasmedicas.dto.ResumenDiaDisponibilidadDTO;
+import com.example.citasmedicas.dto.ResultadoCompactacionDTO;
+import com.example.citasmedicas.dto.ResultadoExpansionDTO;
+import com.example.citasmedicas.dto.ResultadoSincronizacionDTO;
+import com.example.citasmedicas.dto.SincronizarDisponibilidadDTO;
 import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
 import com.example.citasmedicas.servicio.DoctorServicio;
 import com.example.citasmedicas.servicio.DisponibilidadServicio;
+import com.example.citasmedicas.servicio.agenda.CalendarioDisponibilidadServicio;
+import com.example.citasmedicas.servicio.agenda.CompactacionAgendaServicio;
+import com.example.citasmedicas.servicio.agenda.FlujoDisponibilidad;
+import com.example.citasmedicas.servicio.agenda.PlantillaHorarioServicio;
+import com.example.citasmedicas.servicio.agenda.SincronizacionAgendaServicio;
+import com.example.citasmedicas.servicio.idempotencia.IdempotenciaServicio;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
@@ -30,10 +47,22 @@ public class DoctorControlador {
 
     private final DoctorServicio doctorServicio;
     private final DisponibilidadServicio disponibilidadServicio;
+    private final IdempotenciaServicio idempotenciaServicio;
+    private final PlantillaHorarioServicio plantillaHorarioServicio;
+    private final CalendarioDisponibilidadServicio calendarioDisponibilidadServicio;
+    private final FlujoDisponibilidad flujoDisponibilidad;
+    private final CompactacionAgendaServicio compactacionAgendaServicio;
+    private final SincronizacionAgendaServicio sincronizacionAgendaServicio;
 
-    public DoctorControlador(DoctorServicio doctorServicio, DisponibilidadServicio disponibilidadServicio) {
+    public DoctorControlador(DoctorServicio doctorServicio, DisponibilidadServicio disponibilidadServicio, IdempotenciaServicio idempotenciaServicio, PlantillaHorarioServicio plantillaHorarioServicio, CalendarioDisponibilidadServicio calendarioDisponibilidadServicio, FlujoDisponibilidad flujoDisponibilidad, CompactacionAgendaServicio compactacionAgendaServicio, SincronizacionAgendaServicio sincronizacionAgendaServicio) {
         this.doctorServicio = doctorServicio;
         this.disponibilidadServicio = disponibilidadServicio;
+        this.idempotenciaServicio = idempotenciaServicio;
+        this.plantillaHorarioServicio = plantillaHorarioServicio;
+        this.calendarioDisponibilidadServicio = calendarioDisponibilidadServicio;
+        this.flujoDisponibilidad = flujoDisponibilidad;
+        this.compactacionAgendaServicio = compactacionAgendaServicio;
+        this.sincronizacionAgendaServicio = sincronizacionAgendaServicio;
     }
 
     /**
@@ -152,25 +181,142 @@ public class DoctorControlador {
         return ResponseEntity.ok(disponibilidades);
     }
 
+    /**
+     * Obtiene el calendario compacto de ranuras libres de un doctor: un bit por ranura, codificado en Base64.
+     * GET /api/v1/doctores/{doctorId}/disponibilidades/calendario?desde={fecha}&dias={n}
+     * @param doctorId El ID del doctor.
+     * @param desde Primer día del calendario (formato YYYY-MM-DD).
+     * @param dias Número de días a cubrir (7 por defecto).
+     * @return DTO con el mapa de bits de ranuras libres.
+     */
+    @GetMapping("/{doctorId}/disponibilidades/calendario")
+    public ResponseEntity<CalendarioDisponibilidadDTO> obtenerCalendarioDisponibilidad(
+            @PathVariable UUID doctorId,
+            @RequestParam @org.springframework.format.annotation.DateTimeFormat(iso = org.springframework.format.annotation.DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(defaultValue = "7") int dias
+    ) {
+        return ResponseEntity.ok(calendarioDisponibilidadServicio.obtenerCalendario(doctorId, desde, dias));
+    }
+
+    /**
+     * Obtiene el número de bloques libres y totales por día de varios doctores en una sola consulta (vista mensual).
+     * GET /api/v1/doctores/disponibilidades/resumen?doctorIds={id,id}&desde={fecha}&dias={n}
+     * @param doctorIds Los IDs de los doctores.
+     * @param desde Primer día del resumen (formato YYYY-MM-DD).
+     * @param dias Número de días a cubrir (31 por defecto).
+     * @return Recuentos por doctor y día; los días sin bloques se omiten.
+     */
+    @GetMapping("/disponibilidades/resumen")
+    public ResponseEntity<List<ResumenDiaDisponibilidadDTO>> obtenerResumenDisponibilidad(
+            @RequestParam List<UUID> doctorIds,
+            @RequestParam @org.springframework.format.annotation.DateTimeFormat(iso = org.springframework.format.annotation.DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(defaultValue = "31") int dias
+    ) {
+        return ResponseEntity.ok(calendarioDisponibilidadServicio.obtenerResumenPorDia(doctorIds, desde, dias));
+    }
+
+    /**
+     * Obtiene los bloques de disponibilidad de varios doctores con una sola consulta (páginas de especialidad).
+     * GET /api/v1/doctores/disponibilidades?doctorIds={id,id}&desde={fecha}&dias={n}
+     * @param doctorIds Los IDs de los doctores.
+     * @param desde Primer día del rango (formato YYYY-MM-DD).
+     * @param dias Número de días a cubrir (7 por defecto).
+     * @return Los bloques de cada doctor en el orden solicitado; los doctores sin bloques aparecen con una lista vacía.
+     */
+    @GetMapping("/disponibilidades")
+    public ResponseEntity<List<DisponibilidadesDoctorDTO>> obtenerDisponibilidadesDoctores(
+            @RequestParam List<UUID> doctorIds,
+            @RequestParam @org.springframework.format.annotation.DateTimeFormat(iso = org.springframework.format.annotation.DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(defaultValue = "7") int dias
+    ) {
+        return ResponseEntity.ok(calendarioDisponibilidadServicio.obtenerDisponibilidadesDoctores(doctorIds, desde, dias));
+    }
+
+    /**
+     * Abre un flujo Server-Sent Events con los cambios de disponibilidad de un doctor:
+     * eventos creado, eliminado, reservado y liberado, enviados tras confirmarse cada cambio.
+     * GET /api/v1/doctores/{doctorId}/disponibilidades/stream
+     * @param doctorId El ID del doctor.
+     * @return El emisor SSE de la conexión.
+     */
+    @GetMapping(value = "/{doctorId}/disponibilidades/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter suscribirCambiosDisponibilidad(@PathVariable UUID doctorId) {
+        return flujoDisponibilidad.suscribir(doctorId);
+    }
+
     /**
      * Un doctor añade un nuevo bloque de tiempo de disponibilidad.
      * POST /api/v1/doctores/{doctorId}/disponibilidades
      * @param doctorId El ID del doctor.
      * @param crearDisponibilidadDTO DTO con la información del bloque de disponibilidad.
+     * @param claveIdempotencia Cabecera Idempotency-Key opcional para reenvíos seguros.
      * @return DTO del bloque de disponibilidad creado.
      */
     @PostMapping("/{doctorId}/disponibilidades") //
     @PreAuthorize("hasAuthority('DOCTOR') and @autorizacionServicio.esPropietarioDeDoctor(authentication, #doctorId)")
     public ResponseEntity<DisponibilidadDTO> crearBloqueDisponibilidad(
             @PathVariable UUID doctorId,
-            @Valid @RequestBody CrearDisponibilidadDTO crearDisponibilidadDTO
+            @Valid @RequestBody CrearDisponibilidadDTO crearDisponibilidadDTO,
+            @RequestHeader(value = IdempotenciaServicio.CABECERA_CLAVE, required = false) String claveIdempotencia
     ) {
         // Asegurar que el doctorId del path coincida con el del payload
         if (!doctorId.equals(crearDisponibilidadDTO.getDoctorId())) {
             throw new SolicitudInvalidaExcepcion("El doctorId en la URL no coincide con el del cuerpo de la solicitud.");
         }
-        DisponibilidadDTO nuevaDisponibilidad = disponibilidadServicio.crearDisponibilidad(crearDisponibilidadDTO);
-        return new ResponseEntity<>(nuevaDisponibilidad, HttpStatus.CREATED);
+        return idempotenciaServicio.ejecutar(claveIdempotencia, "disponibilidades.crear", crearDisponibilidadDTO, DisponibilidadDTO.class, () -> {
+            DisponibilidadDTO nuevaDisponibilidad = disponibilidadServicio.crearDisponibilidad(crearDisponibilidadDTO);
+            return new ResponseEntity<>(nuevaDisponibilidad, HttpStatus.CREATED);
+        });
+    }
+
+    /**
+     * Un doctor crea plantillas de horario semanales y las expande en bloques de disponibilidad.
+     * POST /api/v1/doctores/{doctorId}/plantillas
+     * @param doctorId El ID del doctor.
+     * @param crearPlantillaHorarioDTO DTO con las franjas semanales y su vigencia.
+     * @param claveIdempotencia Cabecera Idempotency-Key opcional para reenvíos seguros.
+     * @return DTO con las plantillas creadas y los bloques creados y omitidos.
+     */
+    @PostMapping("/{doctorId}/plantillas")
+    @PreAuthorize("hasAuthority('ADMIN') or (hasAuthority('DOCTOR') and @autorizacionServicio.esPropietarioDeDoctor(authentication, #doctorId))")
+    public ResponseEntity<ResultadoExpansionDTO> crearPlantillasHorario(
+            @PathVariable UUID doctorId,
+            @Valid @RequestBody CrearPlantillaHorarioDTO crearPlantillaHorarioDTO,
+            @RequestHeader(value = IdempotenciaServicio.CABECERA_CLAVE, required = false) String claveIdempotencia
+    ) {
+        return idempotenciaServicio.ejecutar(claveIdempotencia, "plantillas.crear", crearPlantillaHorarioDTO, ResultadoExpansionDTO.class, () -> {
+            ResultadoExpansionDTO resultado = plantillaHorarioServicio.crearYExpandir(doctorId, crearPlantillaHorarioDTO);
+            return new ResponseEntity<>(resultado, HttpStatus.CREATED);
+        });
+    }
+
+    /**
+     * Un doctor sincroniza su agenda de un rango con el conjunto completo de bloques deseados.
+     * PUT /api/v1/doctores/{doctorId}/disponibilidades
+     * @param doctorId El ID del doctor.
+     * @param sincronizarDisponibilidadDTO DTO con el rango y los bloques deseados.
+     * @return DTO con los bloques creados, eliminados y sin cambios, y los conflictos no aplicados.
+     */
+    @PutMapping("/{doctorId}/disponibilidades")
+    @PreAuthorize("hasAuthority('DOCTOR') and @autorizacionServicio.esPropietarioDeDoctor(authentication, #doctorId)")
+    public ResponseEntity<ResultadoSincronizacionDTO> sincronizarDisponibilidades(
+            @PathVariable UUID doctorId,
+            @Valid @RequestBody SincronizarDisponibilidadDTO sincronizarDisponibilidadDTO
+    ) {
+        return ResponseEntity.ok(sincronizacionAgendaServicio.sincronizar(doctorId, sincronizarDisponibilidadDTO));
+    }
+
+    /**
+     * Fusiona los bloques libres contiguos de la misma duración de la agenda futura de un doctor en sesiones.
+     * Los IDs de los bloques fusionados dejan de ser válidos, y sus franjas pasan a ser ranuras de sesión.
+     * POST /api/v1/doctores/{doctorId}/disponibilidades/compactar
+     * @param doctorId El ID del doctor.
+     * @return DTO con el número de bloques fusionados y eliminados.
+     */
+    @PostMapping("/{doctorId}/disponibilidades/compactar")
+    @PreAuthorize("hasAuthority('ADMIN') or (hasAuthority('DOCTOR') and @autorizacionServicio.esPropietarioDeDoctor(authentication, #doctorId))")
+    public ResponseEntity<ResultadoCompactacionDTO> compactarDisponibilidades(@PathVariable UUID doctorId) {
+        return ResponseEntity.ok(compactacionAgendaServicio.compactar(doctorId));
     }
 
     /**
@@ -1,13 +1,19 @@
 package com.example.citasmedicas.controlador;
 
 import com.example.citasmedicas.dto.EspecialidadDTO;
+import com.example.citasmedicas.dto.HorarioLibreDTO;
 import com.example.citasmedicas.servicio.EspecialidadServicio;
+import com.example.citasmedicas.servicio.agenda.BusquedaHorariosServicio;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.DayOfWeek;
+import java.time.LocalTime;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -19,9 +25,11 @@ import java.util.UUID;
 public class EspecialidadControlador {
 
     private final EspecialidadServicio especialidadServicio;
+    private final BusquedaHorariosServicio busquedaHorariosServicio;
 
-    public EspecialidadControlador(EspecialidadServicio especialidadServicio) {
+    public EspecialidadControlador(EspecialidadServicio especialidadServicio, BusquedaHorariosServicio busquedaHorariosServicio) {
         this.especialidadServicio = especialidadServicio;
+        this.busquedaHorariosServicio = busquedaHorariosServicio;
     }
 
     /**
@@ -36,6 +44,27 @@ public class EspecialidadControlador {
         return ResponseEntity.ok(especialidad);
     }
 
+    /**
+     * Busca los próximos horarios libres entre todos los doctores de una especialidad.
+     * GET /api/v1/especialidades/{id}/proximos-horarios?limite={n}&diasSemana={dias}&horaDesde={HH:mm}&horaHasta={HH:mm}
+     * @param id El UUID de la especialidad.
+     * @param limite Número máximo de horarios a devolver (10 por defecto).
+     * @param diasSemana Días de la semana aceptados (opcional, p. ej. MONDAY,WEDNESDAY).
+     * @param horaDesde Hora mínima de inicio (opcional).
+     * @param horaHasta Hora máxima de fin (opcional).
+     * @return ResponseEntity con los horarios libres más próximos, ordenados por hora de inicio.
+     */
+    @GetMapping("/{id}/proximos-horarios")
+    public ResponseEntity<List<HorarioLibreDTO>> buscarProximosHorarios(
+            @PathVariable UUID id,
+            @RequestParam(defaultValue = "10") int limite,
+            @RequestParam(required = false) Set<DayOfWeek> diasSemana,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "HH:mm") LocalTime horaDesde,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "HH:mm") LocalTime horaHasta
+    ) {
+        return ResponseEntity.ok(busquedaHorariosServicio.buscarProximos(id, limite, diasSemana, horaDesde, horaHasta));
+    }
+
     /**
      * Obtiene todas las especialidades.
      * GET /api/v1/especialidades
@@ -0,0 +1,88 @@
+package com.example.citasmedicas.controlador;
+
+import com.example.citasmedicas.dto.TokenFeedAgendaDTO;
+import com.example.citasmedicas.servicio.agenda.FeedAgendaServicio;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Controlador REST del feed iCalendar de la agenda de un doctor.
+ * Las aplicaciones de calendario lo consultan periódicamente; con If-None-Match se responde 304 mientras la agenda no cambie.
+ * Como no pueden enviar un JWT, el feed también acepta el token del doctor como parámetro de la URL.
+ */
+@RestController
+@RequestMapping("/api/v1/doctores")
+public class FeedAgendaControlador {
+
+    private final FeedAgendaServicio feedAgendaServicio;
+
+    public FeedAgendaControlador(FeedAgendaServicio feedAgendaServicio) {
+        this.feedAgendaServicio = feedAgendaServicio;
+    }
+
+    /**
+     * Devuelve la agenda de un doctor (citas y bloques libres) en formato iCalendar.
+     * GET /api/v1/doctores/{doctorId}/agenda.ics?token={token}
+     * El feed se escribe directamente en la respuesta a medida que se lee, en el mismo hilo de la petición.
+     * @param doctorId El ID del doctor.
+     * @param token El token del feed del doctor; opcional si la petición lleva un JWT con acceso.
+     * @return Nada: el feed o el estado 304 Not Modified se escriben directamente en la respuesta.
+     */
+    @GetMapping("/{doctorId}/agenda.ics")
+    @PreAuthorize("@autorizacionServicio.esTokenFeedAgenda(#doctorId, #token) or hasAuthority('ADMIN') or (hasAuthority('DOCTOR') and @autorizacionServicio.esPropietarioDeDoctor(authentication, #doctorId))")
+    public void obtenerFeedAgenda(@PathVariable UUID doctorId, @RequestParam(required = false) String token, ServletWebRequest solicitud, HttpServletResponse respuesta) throws IOException {
+        // Fija la cabecera ETag y, si coincide con If-None-Match, el estado 304 sin leer la agenda
+        if (solicitud.checkNotModified(feedAgendaServicio.calcularEtag(doctorId))) {
+            return;
+        }
+        respuesta.setContentType("text/calendar;charset=UTF-8");
+        respuesta.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        feedAgendaServicio.escribirFeed(doctorId, respuesta.getWriter());
+    }
+
+    /**
+     * Genera un nuevo token para el feed de agenda de un doctor; el anterior deja de funcionar.
+     * POST /api/v1/doctores/{doctorId}/agenda.ics/token
+     * @param doctorId El ID del doctor.
+     * @return DTO con el token y la URL del feed, con estado 201 Created.
+     */
+    @PostMapping("/{doctorId}/agenda.ics/token")
+    @PreAuthorize("hasAuthority('ADMIN') or (hasAuthority('DOCTOR') and @autorizacionServicio.esPropietarioDeDoctor(authentication, #doctorId))")
+    public ResponseEntity<TokenFeedAgendaDTO> generarTokenFeed(@PathVariable UUID doctorId) {
+        String token = feedAgendaServicio.generarToken(doctorId);
+        String urlFeed = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/v1/doctores/{doctorId}/agenda.ics")
+                .queryParam("token", token)
+                .buildAndExpand(doctorId)
+                .toUriString();
+        return new ResponseEntity<>(new TokenFeedAgendaDTO(doctorId, token, urlFeed), HttpStatus.CREATED);
+    }
+
+    /**
+     * Revoca el token del feed de agenda de un doctor.
+     * DELETE /api/v1/doctores/{doctorId}/agenda.ics/token
+     * @param doctorId El ID del doctor.
+     * @return ResponseEntity sin contenido y estado 204 No Content.
+     */
+    @DeleteMapping("/{doctorId}/agenda.ics/token")
+    @PreAuthorize("hasAuthority('ADMIN') or (hasAuthority('DOCTOR') and @autorizacionServicio.esPropietarioDeDoctor(authentication, #doctorId))")
+    public ResponseEntity<Void> revocarTokenFeed(@PathVariable UUID doctorId) {
+        feedAgendaServicio.revocarToken(doctorId);
+        return ResponseEntity.noContent().build();
+    }
+}
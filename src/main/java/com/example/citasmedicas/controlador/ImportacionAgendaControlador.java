@@ -0,0 +1,70 @@
+package com.example.citasmedicas.controlador;
+
+import com.example.citasmedicas.dto.TrabajoImportacionDTO;
+import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
+import com.example.citasmedicas.servicio.importacion.ImportacionIcsServicio;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.UUID;
+
+/**
+ * Controlador REST para importar la agenda de un doctor desde un archivo iCalendar.
+ * La importación es asíncrona: el archivo se recibe y se responde 202 Accepted con la URL para consultar su progreso.
+ */
+@RestController
+@RequestMapping("/api/v1/doctores/{doctorId}/disponibilidades/importaciones")
+public class ImportacionAgendaControlador {
+
+    private final ImportacionIcsServicio importacionIcsServicio;
+
+    public ImportacionAgendaControlador(ImportacionIcsServicio importacionIcsServicio) {
+        this.importacionIcsServicio = importacionIcsServicio;
+    }
+
+    /**
+     * Recibe un archivo iCalendar (cuerpo de la petición) y encola su importación como bloques de disponibilidad.
+     * POST /api/v1/doctores/{doctorId}/disponibilidades/importaciones?zona=Europe/Madrid
+     * @param doctorId El ID del doctor.
+     * @param zona La zona horaria de las horas sin zona del archivo (UTC por defecto).
+     * @param contenido El contenido del archivo, leído como flujo.
+     * @return ResponseEntity con el DTO del trabajo, estado 202 Accepted y la URL de consulta en la cabecera Location.
+     */
+    @PostMapping(consumes = {"text/calendar", "application/octet-stream"})
+    @PreAuthorize("hasAuthority('ADMIN') or (hasAuthority('DOCTOR') and @autorizacionServicio.esPropietarioDeDoctor(authentication, #doctorId))")
+    public ResponseEntity<TrabajoImportacionDTO> importarAgenda(
+            @PathVariable UUID doctorId,
+            @RequestParam(defaultValue = "UTC") String zona,
+            InputStream contenido) throws IOException {
+        TrabajoImportacionDTO trabajo = importacionIcsServicio.iniciar(doctorId, contenido, zonaHoraria(zona));
+        return ResponseEntity.accepted() // 202 Accepted
+                .header("Location", "/api/v1/doctores/" + doctorId + "/disponibilidades/importaciones/" + trabajo.id())
+                .body(trabajo);
+    }
+
+    /**
+     * Consulta el estado y el progreso de una importación.
+     * GET /api/v1/doctores/{doctorId}/disponibilidades/importaciones/{trabajoId}
+     * @param doctorId El ID del doctor.
+     * @param trabajoId El ID del trabajo devuelto al iniciar la importación.
+     * @return ResponseEntity con el DTO del trabajo y estado 200 OK.
+     */
+    @GetMapping("/{trabajoId}")
+    @PreAuthorize("hasAuthority('ADMIN') or (hasAuthority('DOCTOR') and @autorizacionServicio.esPropietarioDeDoctor(authentication, #doctorId))")
+    public ResponseEntity<TrabajoImportacionDTO> obtenerImportacion(@PathVariable UUID doctorId, @PathVariable UUID trabajoId) {
+        return ResponseEntity.ok(importacionIcsServicio.obtener(doctorId, trabajoId)); // 200 OK
+    }
+
+    private static ZoneId zonaHoraria(String zona) {
+        try {
+            return ZoneId.of(zona);
+        } catch (DateTimeException e) {
+            throw new SolicitudInvalidaExcepcion("Zona horaria no válida: " + zona);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.citasmedicas.controlador;
+
+import com.example.citasmedicas.dto.CrearEntradaListaEsperaDTO;
+import com.example.citasmedicas.dto.EntradaListaEsperaDTO;
+import com.example.citasmedicas.servicio.listaespera.ListaEsperaServicio;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+/**
+ * Controlador REST para las listas de espera de los doctores.
+ * Un paciente inscrito recibe una notificación y una retención temporal cuando se libera un bloque compatible.
+ */
+@RestController
+@RequestMapping("/api/v1/citas/lista-espera")
+public class ListaEsperaControlador {
+
+    private final ListaEsperaServicio listaEsperaServicio;
+
+    public ListaEsperaControlador(ListaEsperaServicio listaEsperaServicio) {
+        this.listaEsperaServicio = listaEsperaServicio;
+    }
+
+    /**
+     * Inscribe al paciente en la lista de espera de un doctor.
+     * POST /api/v1/citas/lista-espera
+     * @param crearEntradaListaEsperaDTO DTO con el paciente, el doctor y la franja opcional.
+     * @return ResponseEntity con el DTO de la inscripción y estado 201 Created.
+     */
+    @PostMapping
+    @PreAuthorize("hasAuthority('PATIENT') and @autorizacionServicio.esPropietarioDePaciente(authentication, #crearEntradaListaEsperaDTO.pacienteId)")
+    public ResponseEntity<EntradaListaEsperaDTO> inscribir(@Valid @RequestBody CrearEntradaListaEsperaDTO crearEntradaListaEsperaDTO) {
+        EntradaListaEsperaDTO entrada = listaEsperaServicio.inscribir(
+                crearEntradaListaEsperaDTO.getPacienteId(),
+                crearEntradaListaEsperaDTO.getDoctorId(),
+                crearEntradaListaEsperaDTO.getDesde(),
+                crearEntradaListaEsperaDTO.getHasta());
+        return new ResponseEntity<>(entrada, HttpStatus.CREATED); // 201 Created
+    }
+
+    /**
+     * Retira al paciente de la lista de espera.
+     * DELETE /api/v1/citas/lista-espera/{entradaId}?pacienteId=...
+     * @param entradaId El UUID de la inscripción.
+     * @param pacienteId El UUID del paciente propietario de la inscripción.
+     * @return ResponseEntity con estado 204 No Content.
+     */
+    @DeleteMapping("/{entradaId}")
+    @PreAuthorize("hasAuthority('PATIENT') and @autorizacionServicio.esPropietarioDePaciente(authentication, #pacienteId)")
+    public ResponseEntity<Void> cancelar(@PathVariable UUID entradaId, @RequestParam UUID pacienteId) {
+        listaEsperaServicio.cancelar(entradaId, pacienteId);
+        return ResponseEntity.noContent().build(); // 204 No Content
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.citasmedicas.controlador;
+
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Controlador REST para consultar las métricas internas de la aplicación.
+ */
+@RestController
+@RequestMapping("/api/v1/metricas") // Versión de la API
+public class MetricasControlador {
+
+    private final RegistroMetricas registroMetricas;
+
+    public MetricasControlador(RegistroMetricas registroMetricas) {
+        this.registroMetricas = registroMetricas;
+    }
+
+    /**
+     * Obtiene una instantánea de todas las métricas registradas.
+     * GET /api/v1/metricas
+     * @return ResponseEntity con el mapa de métricas.
+     */
+    @GetMapping
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<Map<String, Object>> obtenerMetricas() {
+        return ResponseEntity.ok(registroMetricas.instantanea());
+    }
+}
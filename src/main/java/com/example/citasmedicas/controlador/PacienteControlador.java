@@ -5,10 +5,12 @@ import com.example.citasmedicas.dto.PacienteDTO;
 import com.example.citasmedicas.dto.PaginacionMetadata;
 import com.example.citasmedicas.servicio.CitaServicio;
 import com.example.citasmedicas.servicio.PacienteServicio;
+import com.example.citasmedicas.servicio.archivo.HistorialCitasServicio;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -24,10 +26,12 @@ public class PacienteControlador {
 
     private final PacienteServicio pacienteServicio;
     private final CitaServicio citaServicio;
+    private final HistorialCitasServicio historialCitasServicio;
 
-    public PacienteControlador(PacienteServicio pacienteServicio, CitaServicio citaServicio) {
+    public PacienteControlador(PacienteServicio pacienteServicio, CitaServicio citaServicio, HistorialCitasServicio historialCitasServicio) {
         this.pacienteServicio = pacienteServicio;
         this.citaServicio = citaServicio;
+        this.historialCitasServicio = historialCitasServicio;
     }
 
     /**
@@ -156,5 +160,35 @@ public class PacienteControlador {
                 .header("X-Current-Page", String.valueOf(metadata.getPaginaActual()))
                 .body(paginaCitas.getContent());
     }
-}
 
+    /**
+     * Obtiene el historial completo de citas de un paciente, incluidas las archivadas, de la más reciente a la más antigua.
+     * GET /api/v1/pacientes/{patientId}/citas/historial
+     * @param patientId El UUID del paciente.
+     * @param limit El número máximo de resultados por página.
+     * @param offset El desplazamiento de los resultados.
+     * @return ResponseEntity con la lista de DTOs de citas y metadatos de paginación.
+     */
+    @GetMapping("/{patientId}/citas/historial")
+    @PreAuthorize("hasAuthority('ADMIN') or @autorizacionServicio.esPropietarioDePaciente(authentication, #patientId)")
+    public ResponseEntity<?> obtenerHistorialCitasPaciente(
+            @PathVariable UUID patientId,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "25") int limit
+    ) {
+        if (limit <= 0 || limit > 100) {
+            return ResponseEntity.badRequest().body("El parámetro 'limit' debe ser entre 1 y 100.");
+        }
+        if (offset < 0) {
+            return ResponseEntity.badRequest().body("El parámetro 'offset' no puede ser negativo.");
+        }
+
+        Page<CitaDTO> paginaCitas = historialCitasServicio.obtenerHistorialPaciente(patientId, offset / limit, limit);
+
+        return ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(paginaCitas.getTotalElements()))
+                .header("X-Total-Pages", String.valueOf(paginaCitas.getTotalPages()))
+                .header("X-Current-Page", String.valueOf(paginaCitas.getNumber()))
+                .body(paginaCitas.getContent());
+    }
+}
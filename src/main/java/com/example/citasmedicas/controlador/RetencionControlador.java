@@ -0,0 +1,54 @@
+package com.example.citasmedicas.controlador;
+
+import com.example.citasmedicas.dto.CrearRetencionDTO;
+import com.example.citasmedicas.dto.RetencionDTO;
+import com.example.citasmedicas.servicio.reserva.RetencionServicio;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+/**
+ * Controlador REST para las retenciones temporales de bloques de disponibilidad.
+ * Permite a un paciente apartar un bloque mientras completa el agendamiento de la cita.
+ */
+@RestController
+@RequestMapping("/api/v1/citas/retenciones")
+public class RetencionControlador {
+
+    private final RetencionServicio retencionServicio;
+
+    public RetencionControlador(RetencionServicio retencionServicio) {
+        this.retencionServicio = retencionServicio;
+    }
+
+    /**
+     * Retiene un bloque de disponibilidad para el paciente durante un tiempo limitado.
+     * POST /api/v1/citas/retenciones
+     * @param crearRetencionDTO DTO con el bloque y el paciente.
+     * @return ResponseEntity con el DTO de la retención y estado 201 Created.
+     */
+    @PostMapping
+    @PreAuthorize("hasAuthority('PATIENT') and @autorizacionServicio.esPropietarioDePaciente(authentication, #crearRetencionDTO.pacienteId)")
+    public ResponseEntity<RetencionDTO> retenerDisponibilidad(@Valid @RequestBody CrearRetencionDTO crearRetencionDTO) {
+        RetencionDTO retencion = retencionServicio.retener(crearRetencionDTO.getDisponibilidadId(), crearRetencionDTO.getPacienteId());
+        return new ResponseEntity<>(retencion, HttpStatus.CREATED); // 201 Created
+    }
+
+    /**
+     * Libera de forma anticipada la retención de un bloque.
+     * DELETE /api/v1/citas/retenciones/{disponibilidadId}?pacienteId=...
+     * @param disponibilidadId El UUID del bloque retenido.
+     * @param pacienteId El UUID del paciente propietario de la retención.
+     * @return ResponseEntity con estado 204 No Content.
+     */
+    @DeleteMapping("/{disponibilidadId}")
+    @PreAuthorize("hasAuthority('PATIENT') and @autorizacionServicio.esPropietarioDePaciente(authentication, #pacienteId)")
+    public ResponseEntity<Void> liberarRetencion(@PathVariable UUID disponibilidadId, @RequestParam UUID pacienteId) {
+        retencionServicio.liberar(disponibilidadId, pacienteId);
+        return ResponseEntity.noContent().build(); // 204 No Content
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.citasmedicas.dto;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Proyección de un bloque libre para el feed iCalendar de la agenda de un doctor.
+ * @param id El ID del bloque.
+ * @param horaInicio La hora de inicio del bloque.
+ * @param horaFin La hora de fin del bloque.
+ * @param minutosRanura Duración de las ranuras si el bloque es una sesión; null en otro caso.
+ * @param fechaActualizacion La última modificación del bloque.
+ */
+public record BloqueAgendaDTO(
+        UUID id,
+        LocalDateTime horaInicio,
+        LocalDateTime horaFin,
+        Integer minutosRanura,
+        Instant fechaActualizacion
+) {}
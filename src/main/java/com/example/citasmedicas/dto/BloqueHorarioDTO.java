@@ -0,0 +1,34 @@
+package com.example.citasmedicas.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Proyección ligera de un bloque de disponibilidad: solo su intervalo y su estado de reserva.
+ * Evita cargar entidades gestionadas cuando se recorren muchos bloques en memoria.
+ * @param id El ID del bloque.
+ * @param horaInicio La hora de inicio del bloque.
+ * @param horaFin La hora de fin del bloque.
+ * @param estaReservado Si el bloque está reservado por una cita.
+ * @param minutosRanura Duración de las ranuras virtuales si el bloque es una sesión; null en otro caso.
+ * @param bloquePadreId La sesión de la que se materializó el bloque; null en otro caso.
+ */
+public record BloqueHorarioDTO(
+        UUID id,
+        LocalDateTime horaInicio,
+        LocalDateTime horaFin,
+        boolean estaReservado,
+        Integer minutosRanura,
+        UUID bloquePadreId
+) {
+    public BloqueHorarioDTO(UUID id, LocalDateTime horaInicio, LocalDateTime horaFin, boolean estaReservado) {
+        this(id, horaInicio, horaFin, estaReservado, null, null);
+    }
+
+    /**
+     * Indica si el bloque es una sesión con ranuras virtuales.
+     */
+    public boolean esSesion() {
+        return minutosRanura != null;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.citasmedicas.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Proyección de un bloque de disponibilidad junto con su doctor, para leer los bloques de varios doctores en una consulta.
+ * @param doctorId El ID del doctor del bloque.
+ * @param id El ID del bloque.
+ * @param horaInicio La hora de inicio del bloque.
+ * @param horaFin La hora de fin del bloque.
+ * @param estaReservado Si el bloque está reservado por una cita.
+ * @param minutosRanura Duración de las ranuras virtuales si el bloque es una sesión; null en otro caso.
+ * @param bloquePadreId La sesión de la que se materializó el bloque; null en otro caso.
+ */
+public record BloqueHorarioDoctorDTO(
+        UUID doctorId,
+        UUID id,
+        LocalDateTime horaInicio,
+        LocalDateTime horaFin,
+        boolean estaReservado,
+        Integer minutosRanura,
+        UUID bloquePadreId
+) {
+    /**
+     * El bloque sin su doctor.
+     */
+    public BloqueHorarioDTO aBloque() {
+        return new BloqueHorarioDTO(id, horaInicio, horaFin, estaReservado, minutosRanura, bloquePadreId);
+    }
+}
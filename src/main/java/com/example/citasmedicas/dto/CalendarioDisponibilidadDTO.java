@@ -0,0 +1,24 @@
+package com.example.citasmedicas.dto;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Calendario compacto de las ranuras libres de un doctor.
+ * El campo mapa contiene, en Base64, un bit por ranura: la ranura i del día d es el bit d * ranurasPorDia + i,
+ * empaquetado en bytes con el bit menos significativo primero. Un bit a 1 indica que la ranura está libre.
+ * @param doctorId El ID del doctor.
+ * @param desde El primer día del calendario.
+ * @param dias El número de días cubiertos.
+ * @param minutosPorRanura La duración de cada ranura.
+ * @param ranurasPorDia El número de ranuras de cada día.
+ * @param mapa El mapa de bits codificado en Base64.
+ */
+public record CalendarioDisponibilidadDTO(
+        UUID doctorId,
+        LocalDate desde,
+        int dias,
+        int minutosPorRanura,
+        int ranurasPorDia,
+        String mapa
+) {}
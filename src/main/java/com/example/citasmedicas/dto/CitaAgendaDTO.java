@@ -0,0 +1,27 @@
+package com.example.citasmedicas.dto;
+
+import com.example.citasmedicas.modelo.entidad.EstadoCita;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Proyección de una cita para el feed iCalendar de la agenda de un doctor.
+ * @param id El ID de la cita.
+ * @param horaInicio La hora de inicio del bloque de la cita.
+ * @param horaFin La hora de fin del bloque de la cita.
+ * @param estado El estado de la cita.
+ * @param nombrePaciente El nombre completo del paciente.
+ * @param razonVisita La razón de la visita.
+ * @param fechaActualizacion La última modificación de la cita.
+ */
+public record CitaAgendaDTO(
+        UUID id,
+        LocalDateTime horaInicio,
+        LocalDateTime horaFin,
+        EstadoCita estado,
+        String nombrePaciente,
+        String razonVisita,
+        Instant fechaActualizacion
+) {}
@@ -3,6 +3,8 @@ package com.example.citasmedicas.dto;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import jakarta.validation.constraints.Future;
 import jakarta.validation.constraints.FutureOrPresent;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -30,5 +32,9 @@ public class CrearDisponibilidadDTO {
     @Future(message = "La hora de fin debe ser en el futuro.")
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'")
     private LocalDateTime horaFin; // Hora de fin del bloque
+
+    @Min(value = 5, message = "La duración de la ranura debe ser de al menos 5 minutos.")
+    @Max(value = 240, message = "La duración de la ranura no puede superar 240 minutos.")
+    private Integer minutosRanura; // Opcional: convierte el bloque en una sesión con ranuras de esta duración
 }
 
@@ -0,0 +1,27 @@
+package com.example.citasmedicas.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * DTO de entrada (payload) para inscribir a un paciente en la lista de espera de un doctor.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CrearEntradaListaEsperaDTO {
+    @NotNull(message = "El ID del paciente no puede ser nulo.")
+    private UUID pacienteId; // Paciente que se inscribe
+
+    @NotNull(message = "El ID del doctor no puede ser nulo.")
+    private UUID doctorId; // Doctor cuya agenda se espera
+
+    private LocalDateTime desde; // Inicio opcional de la franja aceptada
+
+    private LocalDateTime hasta; // Fin opcional de la franja aceptada
+}
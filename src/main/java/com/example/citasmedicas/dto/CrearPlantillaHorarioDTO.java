@@ -0,0 +1,29 @@
+package com.example.citasmedicas.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * DTO de entrada (payload) para crear las plantillas de horario de un doctor y expandirlas en bloques de disponibilidad.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CrearPlantillaHorarioDTO {
+    @NotEmpty(message = "Debe indicar al menos una franja semanal.")
+    @Size(max = 50, message = "No se pueden crear más de 50 franjas por solicitud.")
+    private List<@Valid @NotNull FranjaSemanalDTO> franjas; // Franjas semanales recurrentes
+
+    @NotNull(message = "La fecha de inicio de vigencia no puede ser nula.")
+    private LocalDate desde; // Primer día de vigencia
+
+    private LocalDate hasta; // Último día de vigencia (opcional: sin fin, se expande el horizonte configurado)
+}
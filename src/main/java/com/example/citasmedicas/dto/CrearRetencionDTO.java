@@ -0,0 +1,23 @@
+package com.example.citasmedicas.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * DTO de entrada (payload) para retener temporalmente un bloque de disponibilidad
+ * mientras el paciente completa el agendamiento.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CrearRetencionDTO {
+    @NotNull(message = "El ID de la disponibilidad no puede ser nulo.")
+    private UUID disponibilidadId; // Bloque a retener
+
+    @NotNull(message = "El ID del paciente no puede ser nulo.")
+    private UUID pacienteId; // Paciente para el que se retiene el bloque
+}
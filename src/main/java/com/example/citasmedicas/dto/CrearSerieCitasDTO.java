@@ -0,0 +1,33 @@
+package com.example.citasmedicas.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DTO de entrada (payload) para agendar una serie de citas recurrentes con un mismo doctor
+ * (por ejemplo, un plan de terapia semanal).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CrearSerieCitasDTO {
+    @NotNull(message = "El ID del doctor no puede ser nulo.")
+    private UUID doctorId; // ID del doctor de todas las citas de la serie
+
+    @NotNull(message = "El ID del paciente no puede ser nulo.")
+    private UUID pacienteId; // ID del paciente que agenda la serie
+
+    @NotEmpty(message = "La serie debe incluir al menos un bloque de disponibilidad.")
+    @Size(max = 52, message = "La serie no puede incluir más de 52 bloques de disponibilidad.")
+    private List<@NotNull(message = "Los IDs de disponibilidad no pueden ser nulos.") UUID> disponibilidadIds; // Bloques seleccionados
+
+    @Size(max = 500, message = "La razón de la visita no puede exceder los 500 caracteres.")
+    private String razonVisita; // Razón de la visita, común a toda la serie
+}
@@ -22,5 +22,6 @@ public class DisponibilidadDTO {
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'")
     private LocalDateTime horaFin; // Hora de fin del bloque
     private Boolean estaReservado; // Si el bloque ya está reservado
+    private Boolean estaRetenido; // Si el bloque está retenido temporalmente por un paciente
 }
 
@@ -0,0 +1,14 @@
+package com.example.citasmedicas.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DTO de salida con los bloques de disponibilidad de un doctor, para las consultas de varios doctores a la vez.
+ * @param doctorId El ID del doctor.
+ * @param disponibilidades Sus bloques en el rango consultado, ordenados por hora de inicio.
+ */
+public record DisponibilidadesDoctorDTO(
+        UUID doctorId,
+        List<DisponibilidadDTO> disponibilidades
+) {}
@@ -0,0 +1,25 @@
+package com.example.citasmedicas.dto;
+
+import com.example.citasmedicas.modelo.entidad.EstadoListaEspera;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * DTO de salida para una inscripción en la lista de espera.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EntradaListaEsperaDTO {
+    private UUID id;
+    private UUID pacienteId;
+    private UUID doctorId;
+    private LocalDateTime desde;
+    private LocalDateTime hasta;
+    private EstadoListaEspera estado;
+    private Integer posicion; // Posición en la cola del doctor (1 = siguiente), null si ya no espera
+}
@@ -0,0 +1,33 @@
+package com.example.citasmedicas.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+
+/**
+ * DTO de una franja semanal recurrente de una plantilla de horario.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FranjaSemanalDTO {
+    @NotNull(message = "El día de la semana no puede ser nulo.")
+    private DayOfWeek diaSemana; // Día de la semana (MONDAY..SUNDAY)
+
+    @NotNull(message = "La hora de inicio no puede ser nula.")
+    private LocalTime horaInicio; // Inicio de la franja (HH:mm)
+
+    @NotNull(message = "La hora de fin no puede ser nula.")
+    private LocalTime horaFin; // Fin de la franja (HH:mm)
+
+    @NotNull(message = "La duración del bloque no puede ser nula.")
+    @Min(value = 5, message = "La duración del bloque debe ser de al menos 5 minutos.")
+    @Max(value = 480, message = "La duración del bloque no puede superar 480 minutos.")
+    private Integer duracionBloqueMinutos; // Duración de cada bloque generado
+}
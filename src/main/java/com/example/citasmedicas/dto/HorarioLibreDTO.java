@@ -0,0 +1,22 @@
+package com.example.citasmedicas.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Bloque libre de un doctor devuelto por la búsqueda del próximo horario disponible.
+ * @param disponibilidadId El ID del bloque.
+ * @param doctorId El ID del doctor.
+ * @param nombreDoctor El nombre completo del doctor.
+ * @param horaInicio La hora de inicio del bloque.
+ * @param horaFin La hora de fin del bloque.
+ */
+public record HorarioLibreDTO(
+        UUID disponibilidadId,
+        UUID doctorId,
+        String nombreDoctor,
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'") LocalDateTime horaInicio,
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'") LocalDateTime horaFin
+) {}
@@ -0,0 +1,25 @@
+package com.example.citasmedicas.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO de un intervalo horario deseado en una sincronización de agenda.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IntervaloHorarioDTO {
+    @NotNull(message = "La hora de inicio no puede ser nula.")
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'")
+    private LocalDateTime horaInicio; // Hora de inicio del bloque
+
+    @NotNull(message = "La hora de fin no puede ser nula.")
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'")
+    private LocalDateTime horaFin; // Hora de fin del bloque
+}
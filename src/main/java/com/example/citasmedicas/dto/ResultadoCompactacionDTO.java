@@ -0,0 +1,15 @@
+package com.example.citasmedicas.dto;
+
+import java.util.UUID;
+
+/**
+ * DTO de salida con el resultado de compactar la agenda de un doctor.
+ * @param doctorId El ID del doctor.
+ * @param bloquesFusionados Las sesiones que resultaron de fusionar tramos contiguos.
+ * @param bloquesEliminados Los bloques absorbidos y eliminados.
+ */
+public record ResultadoCompactacionDTO(
+        UUID doctorId,
+        int bloquesFusionados,
+        int bloquesEliminados
+) {}
@@ -0,0 +1,23 @@
+package com.example.citasmedicas.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DTO de salida con el resultado de crear y expandir plantillas de horario.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoExpansionDTO {
+    private List<UUID> plantillaIds; // Plantillas creadas
+    private LocalDate desde; // Primer día expandido
+    private LocalDate hasta; // Último día expandido
+    private int bloquesCreados; // Bloques de disponibilidad insertados
+    private int bloquesOmitidos; // Bloques no creados por solaparse con bloques existentes
+}
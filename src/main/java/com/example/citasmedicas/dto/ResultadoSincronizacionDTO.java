@@ -0,0 +1,48 @@
+package com.example.citasmedicas.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DTO de salida con el resultado de sincronizar la agenda de un doctor con un conjunto de bloques deseados.
+ * @param doctorId El ID del doctor.
+ * @param creados Los bloques insertados.
+ * @param eliminados Los bloques eliminados.
+ * @param sinCambios Los bloques deseados que ya existían.
+ * @param conflictos Los cambios que no se aplicaron y su motivo.
+ */
+public record ResultadoSincronizacionDTO(
+        UUID doctorId,
+        int creados,
+        int eliminados,
+        int sinCambios,
+        List<Conflicto> conflictos
+) {
+    /**
+     * Motivo por el que un cambio no se aplicó.
+     */
+    public enum Motivo {
+        RESERVADO, // El bloque a eliminar está reservado
+        RETENIDO, // El bloque a eliminar está retenido temporalmente por un paciente
+        CON_CITAS, // Alguna cita, aunque esté cancelada, hace referencia al bloque a eliminar
+        SESION_CON_RANURAS, // La sesión a eliminar tiene ranuras ya reservadas
+        SOLAPAMIENTO // El bloque a crear se solapa con un bloque que se conserva
+    }
+
+    /**
+     * Cambio no aplicado.
+     * @param disponibilidadId El ID del bloque existente que se conserva; null si el conflicto es un bloque a crear.
+     * @param horaInicio La hora de inicio del bloque afectado.
+     * @param horaFin La hora de fin del bloque afectado.
+     * @param motivo El motivo del conflicto.
+     */
+    public record Conflicto(
+            UUID disponibilidadId,
+            @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'") LocalDateTime horaInicio,
+            @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'") LocalDateTime horaFin,
+            Motivo motivo
+    ) {}
+}
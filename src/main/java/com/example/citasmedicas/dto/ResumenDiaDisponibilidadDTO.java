@@ -0,0 +1,18 @@
+package com.example.citasmedicas.dto;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Proyección con el recuento de bloques de disponibilidad de un doctor en un día.
+ * @param doctorId El ID del doctor.
+ * @param fecha El día al que corresponden los recuentos.
+ * @param libres Número de bloques no reservados que comienzan ese día.
+ * @param total Número total de bloques que comienzan ese día.
+ */
+public record ResumenDiaDisponibilidadDTO(
+        UUID doctorId,
+        LocalDate fecha,
+        long libres,
+        long total
+) {}
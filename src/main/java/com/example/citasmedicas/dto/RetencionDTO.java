@@ -0,0 +1,21 @@
+package com.example.citasmedicas.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * DTO de salida para una retención temporal de un bloque de disponibilidad.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetencionDTO {
+    private UUID disponibilidadId; // Bloque retenido
+    private UUID doctorId; // Doctor propietario del bloque
+    private UUID pacienteId; // Paciente que tiene la retención
+    private Instant expiraEn; // Momento a partir del cual el bloque vuelve a estar libre
+}
@@ -0,0 +1,22 @@
+package com.example.citasmedicas.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Proyección de una sesión de disponibilidad (bloque dividido en ranuras virtuales) con su doctor.
+ * @param id El ID de la sesión.
+ * @param doctorId El ID del doctor.
+ * @param nombreDoctor El nombre completo del doctor.
+ * @param horaInicio La hora de inicio de la sesión.
+ * @param horaFin La hora de fin de la sesión.
+ * @param minutosRanura La duración de cada ranura.
+ */
+public record SesionDisponibilidadDTO(
+        UUID id,
+        UUID doctorId,
+        String nombreDoctor,
+        LocalDateTime horaInicio,
+        LocalDateTime horaFin,
+        int minutosRanura
+) {}
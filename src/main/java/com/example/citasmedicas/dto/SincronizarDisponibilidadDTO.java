@@ -0,0 +1,31 @@
+package com.example.citasmedicas.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO de entrada (payload) con el conjunto completo de bloques deseados de un doctor en un rango.
+ * Los bloques del rango que no figuran en la lista se eliminan y los que faltan se crean.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SincronizarDisponibilidadDTO {
+    @NotNull(message = "El inicio del rango no puede ser nulo.")
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'")
+    private LocalDateTime desde; // Inicio del rango sincronizado (inclusive)
+
+    @NotNull(message = "El fin del rango no puede ser nulo.")
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'")
+    private LocalDateTime hasta; // Fin del rango sincronizado (exclusivo)
+
+    @NotNull(message = "La lista de bloques no puede ser nula.")
+    private List<@Valid @NotNull IntervaloHorarioDTO> bloques; // Bloques que deben existir en el rango (puede estar vacía)
+}
@@ -0,0 +1,15 @@
+package com.example.citasmedicas.dto;
+
+import java.util.UUID;
+
+/**
+ * DTO de salida con un token recién generado para el feed de agenda de un doctor.
+ * @param doctorId El ID del doctor.
+ * @param token El token en claro; solo se muestra al generarlo.
+ * @param urlFeed La URL del feed con el token incluido, lista para suscribirse desde una aplicación de calendario.
+ */
+public record TokenFeedAgendaDTO(
+        UUID doctorId,
+        String token,
+        String urlFeed
+) {}
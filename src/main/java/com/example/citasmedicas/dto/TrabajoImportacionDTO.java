@@ -0,0 +1,34 @@
+package com.example.citasmedicas.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * DTO de salida con el estado y el progreso de una importación de agenda.
+ * @param id El ID del trabajo.
+ * @param doctorId El ID del doctor cuya agenda se importa.
+ * @param estado EN_COLA, EN_CURSO, COMPLETADO o FALLIDO.
+ * @param bytesLeidos Bytes del archivo procesados hasta el momento.
+ * @param bytesTotales Tamaño del archivo.
+ * @param eventosLeidos Eventos VEVENT leídos.
+ * @param bloquesCreados Bloques de disponibilidad insertados y confirmados.
+ * @param eventosDescartados Eventos no importables: sin horas válidas, de día completo, recurrentes, cancelados o pasados.
+ * @param eventosSolapados Eventos que se solapaban con un bloque existente o con otro evento del archivo.
+ * @param error El motivo del fallo, si el trabajo falló.
+ * @param creadoEn Cuándo se recibió el archivo.
+ * @param terminadoEn Cuándo terminó el trabajo; null mientras no termina.
+ */
+public record TrabajoImportacionDTO(
+        UUID id,
+        UUID doctorId,
+        String estado,
+        long bytesLeidos,
+        long bytesTotales,
+        int eventosLeidos,
+        int bloquesCreados,
+        int eventosDescartados,
+        int eventosSolapados,
+        String error,
+        Instant creadoEn,
+        Instant terminadoEn
+) {}
@@ -0,0 +1,14 @@
+package com.example.citasmedicas.dto;
+
+import java.time.Instant;
+
+/**
+ * Proyección con la última modificación y el número de filas de la agenda de un doctor.
+ * Permite detectar si la agenda cambió sin leerla completa; el número de filas delata las eliminaciones.
+ * @param ultimaActualizacion La fecha de actualización más reciente; null si no hay filas.
+ * @param filas El número de filas.
+ */
+public record VersionAgendaDTO(
+        Instant ultimaActualizacion,
+        long filas
+) {}
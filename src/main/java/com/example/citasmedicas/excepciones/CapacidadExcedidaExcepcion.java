@@ -0,0 +1,11 @@
+package com.example.citasmedicas.excepciones;
+
+/**
+ * Excepción personalizada para solicitudes rechazadas porque se alcanzó un límite
+ * de capacidad del servidor, como el máximo de conexiones abiertas (HTTP 503 Service Unavailable).
+ */
+public class CapacidadExcedidaExcepcion extends RuntimeException {
+    public CapacidadExcedidaExcepcion(String mensaje) {
+        super(mensaje);
+    }
+}
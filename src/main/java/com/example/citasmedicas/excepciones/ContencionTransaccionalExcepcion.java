@@ -0,0 +1,15 @@
+package com.example.citasmedicas.excepciones;
+
+/**
+ * Excepción personalizada para transacciones que siguen abortándose por contención
+ * tras agotar el presupuesto de reintentos (HTTP 503 Service Unavailable).
+ */
+public class ContencionTransaccionalExcepcion extends RuntimeException {
+    public ContencionTransaccionalExcepcion(String mensaje) {
+        super(mensaje);
+    }
+
+    public ContencionTransaccionalExcepcion(String mensaje, Throwable causa) {
+        super(mensaje, causa);
+    }
+}
@@ -2,13 +2,17 @@ package com.example.citasmedicas.handler;
 
 import com.example.citasmedicas.dto.RespuestaError;
 import com.example.citasmedicas.excepciones.AccesoDenegadoExcepcion;
+import com.example.citasmedicas.excepciones.CapacidadExcedidaExcepcion;
 import com.example.citasmedicas.excepciones.ConflictoHorarioExcepcion;
+import com.example.citasmedicas.excepciones.ContencionTransaccionalExcepcion;
 import com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion;
 import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -67,6 +71,40 @@ public class GlobalExceptionHandler {
         return buildErrorResponse(ex, "CONFLICTO_DE_NEGOCIO", ex.getMessage(), null, HttpStatus.CONFLICT);
     }
 
+    /**
+     * Maneja ContencionTransaccionalExcepcion (HTTP 503 Service Unavailable).
+     * Indica al cliente que puede repetir la solicitud mediante la cabecera Retry-After.
+     * @param ex La excepción ContencionTransaccionalExcepcion.
+     * @param request La solicitud web.
+     * @return ResponseEntity con la RespuestaError.
+     */
+    @ExceptionHandler(ContencionTransaccionalExcepcion.class)
+    public ResponseEntity<RespuestaError> manejarContencionTransaccional(
+            ContencionTransaccionalExcepcion ex, WebRequest request) {
+        log.warn("Reintentos agotados por contención: {}", ex.getCause() != null ? ex.getCause().getMessage() : ex.getMessage());
+        ResponseEntity<RespuestaError> respuesta = buildErrorResponse(ex, "CONTENCION_TRANSACCIONAL", ex.getMessage(), null, HttpStatus.SERVICE_UNAVAILABLE);
+        return ResponseEntity.status(respuesta.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(respuesta.getBody());
+    }
+
+    /**
+     * Maneja CapacidadExcedidaExcepcion (HTTP 503 Service Unavailable).
+     * Indica al cliente cuándo volver a intentarlo mediante la cabecera Retry-After.
+     * @param ex La excepción CapacidadExcedidaExcepcion.
+     * @param request La solicitud web.
+     * @return ResponseEntity con la RespuestaError.
+     */
+    @ExceptionHandler(CapacidadExcedidaExcepcion.class)
+    public ResponseEntity<RespuestaError> manejarCapacidadExcedida(
+            CapacidadExcedidaExcepcion ex, WebRequest request) {
+        log.warn("Solicitud rechazada por capacidad: {}", ex.getMessage());
+        ResponseEntity<RespuestaError> respuesta = buildErrorResponse(ex, "CAPACIDAD_EXCEDIDA", ex.getMessage(), null, HttpStatus.SERVICE_UNAVAILABLE);
+        return ResponseEntity.status(respuesta.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(respuesta.getBody());
+    }
+
     /**
      * Maneja AccesoDenegadoExcepcion (HTTP 403 Forbidden).
      * @param ex La excepción AccesoDenegadoExcepcion.
@@ -81,6 +119,21 @@ public class GlobalExceptionHandler {
         return buildErrorResponse(ex, ex.getCodigoError(), ex.getMessage(), detalles, HttpStatus.FORBIDDEN);
     }
 
+    /**
+     * Maneja AccessDeniedException de @PreAuthorize (HTTP 403 Forbidden).
+     * Sin este manejador la denegación llegaría al manejador genérico como un error 500; importa sobre todo
+     * en los endpoints abiertos a peticiones sin JWT, como el feed de agenda con un token inválido o revocado.
+     * @param ex La excepción AccessDeniedException.
+     * @param request La solicitud web.
+     * @return ResponseEntity con la RespuestaError.
+     */
+    @ExceptionHandler(AccessDeniedException.class)
+    public ResponseEntity<RespuestaError> manejarAccessDenied(
+            AccessDeniedException ex, WebRequest request) {
+        log.warn("Acceso denegado: {}", ex.getMessage());
+        return buildErrorResponse(ex, "ACCESO_DENEGADO", "No tiene permiso para acceder a este recurso.", null, HttpStatus.FORBIDDEN);
+    }
+
 
     /**
      * Maneja MethodArgumentNotValidException para errores de validación de @Valid (HTTP 400 Bad Request).
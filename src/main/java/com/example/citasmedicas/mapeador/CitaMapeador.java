@@ -3,6 +3,7 @@ package com.example.citasmedicas.mapeador;
 import com.example.citasmedicas.dto.CitaDTO;
 import com.example.citasmedicas.dto.CrearCitaDTO;
 import com.example.citasmedicas.modelo.entidad.Cita;
+import com.example.citasmedicas.modelo.entidad.CitaArchivada;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 
@@ -27,6 +28,13 @@ public interface CitaMapeador {
     @Mapping(source = "disponibilidad.horaFin", target = "horaFin")
     CitaDTO aDTO(Cita entidad);
 
+    /**
+     * Convierte una entidad CitaArchivada a un CitaDTO.
+     * @param entidad La entidad CitaArchivada.
+     * @return El DTO de Cita.
+     */
+    CitaDTO aDTO(CitaArchivada entidad);
+
     /**
      * Convierte un CrearCitaDTO a una entidad Cita.
      * Se ignoran campos que serán resueltos en el servicio (doctor, paciente, disponibilidad).
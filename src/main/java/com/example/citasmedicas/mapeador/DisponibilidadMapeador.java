@@ -21,6 +21,7 @@ public interface DisponibilidadMapeador {
      * @return El DTO de Disponibilidad.
      */
     @Mapping(source = "doctor.id", target = "doctorId") // Mapea el ID del doctor
+    @Mapping(target = "estaRetenido", ignore = true) // Estado en memoria, lo completa el servicio
     DisponibilidadDTO aDTO(Disponibilidad entidad);
 
     /**
@@ -34,6 +35,7 @@ public interface DisponibilidadMapeador {
     @Mapping(target = "fechaCreacion", ignore = true)
     @Mapping(target = "fechaActualizacion", ignore = true)
     @Mapping(target = "estaReservado", ignore = true) // Se inicializa por defecto en la entidad
+    @Mapping(target = "bloquePadreId", ignore = true) // Solo lo asignan las ranuras materializadas
     Disponibilidad aEntidad(CrearDisponibilidadDTO dto);
 
     /**
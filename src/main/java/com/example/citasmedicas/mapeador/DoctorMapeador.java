@@ -34,6 +34,7 @@ public interface DoctorMapeador {
     @Mapping(target = "citas", ignore = true) // Las colecciones se gestionan por separado
     @Mapping(target = "fechaCreacion", ignore = true)
     @Mapping(target = "fechaActualizacion", ignore = true)
+    @Mapping(target = "hashTokenFeed", ignore = true) // El token del feed solo se gestiona desde su propio endpoint
     Doctor aEntidad(DoctorDTO dto);
 
     /**
@@ -46,6 +47,7 @@ public interface DoctorMapeador {
     @Mapping(target = "citas", ignore = true)
     @Mapping(target = "fechaCreacion", ignore = true)
     @Mapping(target = "fechaActualizacion", ignore = true)
+    @Mapping(target = "hashTokenFeed", ignore = true)
     void actualizarEntidad(DoctorDTO dto, @MappingTarget Doctor entidad);
 
     /**
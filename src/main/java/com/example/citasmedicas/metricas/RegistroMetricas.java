@@ -0,0 +1,108 @@
+package com.example.citasmedicas.metricas;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Registro de métricas en memoria de la aplicación.
+ * Mantiene contadores, indicadores (gauges) y temporizadores identificados por nombre,
+ * y expone una instantánea consultable desde el endpoint de métricas.
+ */
+@Component
+public class RegistroMetricas {
+
+    private final Map<String, LongAdder> contadores = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<? extends Number>> indicadores = new ConcurrentHashMap<>();
+    private final Map<String, Temporizador> temporizadores = new ConcurrentHashMap<>();
+
+    /**
+     * Incrementa en uno el contador indicado.
+     * @param nombre El nombre del contador.
+     */
+    public void incrementar(String nombre) {
+        incrementar(nombre, 1);
+    }
+
+    /**
+     * Incrementa el contador indicado en la cantidad dada.
+     * @param nombre El nombre del contador.
+     * @param cantidad La cantidad a sumar.
+     */
+    public void incrementar(String nombre, long cantidad) {
+        contadores.computeIfAbsent(nombre, n -> new LongAdder()).add(cantidad);
+    }
+
+    /**
+     * Registra un indicador cuyo valor se calcula en el momento de la consulta.
+     * @param nombre El nombre del indicador.
+     * @param valor Proveedor del valor actual.
+     */
+    public void registrarIndicador(String nombre, Supplier<? extends Number> valor) {
+        indicadores.put(nombre, valor);
+    }
+
+    /**
+     * Registra una duración en el temporizador indicado.
+     * @param nombre El nombre del temporizador.
+     * @param nanos La duración en nanosegundos.
+     */
+    public void registrarDuracion(String nombre, long nanos) {
+        temporizadores.computeIfAbsent(nombre, n -> new Temporizador()).registrar(nanos);
+    }
+
+    /**
+     * Obtiene el valor actual de un contador.
+     * @param nombre El nombre del contador.
+     * @return El valor acumulado, o 0 si el contador no existe.
+     */
+    public long valorContador(String nombre) {
+        LongAdder contador = contadores.get(nombre);
+        return contador != null ? contador.sum() : 0;
+    }
+
+    /**
+     * Construye una instantánea ordenada por nombre de todas las métricas registradas.
+     * @return Un mapa con el valor de cada métrica.
+     */
+    public Map<String, Object> instantanea() {
+        Map<String, Object> resultado = new TreeMap<>();
+        contadores.forEach((nombre, contador) -> resultado.put(nombre, contador.sum()));
+        indicadores.forEach((nombre, valor) -> resultado.put(nombre, valor.get()));
+        temporizadores.forEach((nombre, temporizador) -> resultado.put(nombre, temporizador.resumen()));
+        return resultado;
+    }
+
+    /**
+     * Acumulador de duraciones: cuenta, total y máximo.
+     */
+    private static final class Temporizador {
+        private final LongAdder cuenta = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maximoNanos = new AtomicLong();
+
+        void registrar(long nanos) {
+            cuenta.increment();
+            totalNanos.add(nanos);
+            maximoNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        Map<String, Object> resumen() {
+            long n = cuenta.sum();
+            long total = totalNanos.sum();
+            Map<String, Object> resumen = new LinkedHashMap<>();
+            resumen.put("cuenta", n);
+            resumen.put("totalMs", TimeUnit.NANOSECONDS.toMillis(total));
+            resumen.put("promedioMs", n == 0 ? 0.0 : total / (double) n / 1_000_000);
+            resumen.put("maximoMs", maximoNanos.get() / 1_000_000.0);
+            return resumen;
+        }
+    }
+}
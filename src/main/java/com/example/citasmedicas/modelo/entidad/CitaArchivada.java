@@ -0,0 +1,55 @@
+package com.example.citasmedicas.modelo.entidad;
+
+import jakarta.persistence.*;
+import lombok.experimental.SuperBuilder;
+import lombok.*;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Entidad que representa una cita finalizada o cancelada movida fuera de la tabla citas.
+ * Copia el horario de su bloque de disponibilidad y guarda las referencias como UUID sin clave foránea,
+ * de modo que el bloque puede archivarse o purgarse por separado.
+ * Extiende BaseEntidad para heredar campos de auditoría; se conservan los de la cita original.
+ */
+@Entity
+@Table(name = "citas_archivadas",
+        indexes = {
+                @Index(name = "idx_cita_archivada_paciente_hora_inicio", columnList = "paciente_id, hora_inicio"),
+                @Index(name = "idx_cita_archivada_doctor_hora_inicio", columnList = "doctor_id, hora_inicio")
+        })
+@Getter
+@Setter
+@NoArgsConstructor
+@SuperBuilder
+@EqualsAndHashCode(callSuper = true, of = {})
+@ToString(callSuper = true)
+public class CitaArchivada extends BaseEntidad {
+
+    @Column(name = "doctor_id", nullable = false)
+    private UUID doctorId; // Doctor de la cita
+
+    @Column(name = "paciente_id", nullable = false)
+    private UUID pacienteId; // Paciente de la cita
+
+    @Column(name = "disponibilidad_id", nullable = false)
+    private UUID disponibilidadId; // Bloque que ocupaba la cita
+
+    @Column(name = "hora_inicio", nullable = false)
+    private LocalDateTime horaInicio; // Hora de inicio del bloque
+
+    @Column(name = "hora_fin", nullable = false)
+    private LocalDateTime horaFin; // Hora de fin del bloque
+
+    @Column(name = "razon_visita", length = 500)
+    private String razonVisita; // Razón de la visita
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", nullable = false, length = 50)
+    private EstadoCita estado; // Estado final de la cita (FINALIZADA o CANCELADA)
+
+    @Column(name = "archivada_en", nullable = false)
+    private Instant archivadaEn; // Momento en que se archivó
+}
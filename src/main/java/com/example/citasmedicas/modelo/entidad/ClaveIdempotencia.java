@@ -0,0 +1,47 @@
+package com.example.citasmedicas.modelo.entidad;
+
+import jakarta.persistence.*;
+import lombok.experimental.SuperBuilder;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Entidad que guarda la respuesta de una operación de escritura identificada por una cabecera Idempotency-Key,
+ * para que los reenvíos del cliente reciban la misma respuesta sin volver a ejecutar la operación.
+ * La fila se inserta antes de ejecutar la operación, sin respuesta (en curso), y se completa al terminar.
+ * Extiende BaseEntidad para heredar campos de auditoría.
+ */
+@Entity
+@Table(name = "claves_idempotencia",
+        uniqueConstraints = @UniqueConstraint(name = "uk_clave_idempotencia", columnNames = {"usuario", "operacion", "clave"}),
+        indexes = @Index(name = "idx_clave_idempotencia_expira_en", columnList = "expira_en"))
+@Getter
+@Setter
+@NoArgsConstructor
+@SuperBuilder
+@EqualsAndHashCode(callSuper = true, of = {})
+@ToString(callSuper = true, exclude = "cuerpoRespuesta")
+public class ClaveIdempotencia extends BaseEntidad {
+
+    @Column(name = "usuario", nullable = false, length = 150)
+    private String usuario; // Usuario autenticado que envió la solicitud
+
+    @Column(name = "operacion", nullable = false, length = 100)
+    private String operacion; // Operación protegida (ej. "citas.agendar")
+
+    @Column(name = "clave", nullable = false, length = 255)
+    private String clave; // Valor de la cabecera Idempotency-Key
+
+    @Column(name = "huella_solicitud", nullable = false, length = 64)
+    private String huellaSolicitud; // SHA-256 de la solicitud original, para detectar reutilizaciones de la clave
+
+    @Column(name = "estado_http")
+    private Integer estadoHttp; // Código HTTP de la respuesta original; null mientras la operación está en curso
+
+    @Column(name = "cuerpo_respuesta", columnDefinition = "TEXT")
+    private String cuerpoRespuesta; // Cuerpo JSON de la respuesta original
+
+    @Column(name = "expira_en", nullable = false)
+    private Instant expiraEn; // A partir de este momento la clave puede purgarse
+}
@@ -5,13 +5,21 @@ import lombok.experimental.SuperBuilder;
 import lombok.*;
 
 import java.time.LocalDateTime; // Usar LocalDateTime para fecha y hora
+import java.util.UUID;
 
 /**
  * Entidad que representa un bloque de tiempo de disponibilidad de un doctor.
+ * Un bloque con duración de ranura es una sesión: no se reserva entera, sino que ofrece ranuras virtuales
+ * de esa duración que solo se escriben como bloque propio (con bloquePadreId) cuando alguien las reserva.
  * Extiende BaseEntidad para heredar campos de auditoría.
  */
 @Entity
-@Table(name = "disponibilidades")
+@Table(name = "disponibilidades",
+        indexes = {
+                @Index(name = "idx_disponibilidad_doctor_hora_inicio", columnList = "doctor_id, hora_inicio"),
+                @Index(name = "idx_disponibilidad_hora_fin", columnList = "hora_fin"),
+                @Index(name = "idx_disponibilidad_bloque_padre", columnList = "bloque_padre_id")
+        })
 @Getter
 @Setter
 @NoArgsConstructor
@@ -30,7 +38,14 @@ public class Disponibilidad extends BaseEntidad {
     @Column(name = "hora_fin", nullable = false)
     private LocalDateTime horaFin; // Hora de fin del bloque de disponibilidad
 
+    @Builder.Default // Sin esto el builder (y MapStruct, que lo usa) deja el valor inicial en null
     @Column(name = "esta_reservado", nullable = false)
     private Boolean estaReservado = false; // Indica si el bloque ya está reservado por una cita
 
+    @Column(name = "minutos_ranura")
+    private Integer minutosRanura; // Si no es nulo, el bloque es una sesión dividida en ranuras virtuales de esta duración
+
+    @Column(name = "bloque_padre_id")
+    private UUID bloquePadreId; // Sesión de la que se materializó esta ranura al reservarse
+
 }
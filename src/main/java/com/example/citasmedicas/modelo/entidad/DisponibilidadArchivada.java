@@ -0,0 +1,45 @@
+package com.example.citasmedicas.modelo.entidad;
+
+import jakarta.persistence.*;
+import lombok.experimental.SuperBuilder;
+import lombok.*;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Entidad que representa un bloque de disponibilidad pasado movido fuera de la tabla disponibilidades.
+ * Guarda el doctor como UUID sin clave foránea. Los bloques archivados se purgan tras
+ * citas.archivo.dias-retencion-disponibilidades.
+ * Extiende BaseEntidad para heredar campos de auditoría; se conservan los del bloque original.
+ */
+@Entity
+@Table(name = "disponibilidades_archivadas",
+        indexes = {
+                @Index(name = "idx_disponibilidad_archivada_doctor_hora_inicio", columnList = "doctor_id, hora_inicio"),
+                @Index(name = "idx_disponibilidad_archivada_archivada_en", columnList = "archivada_en")
+        })
+@Getter
+@Setter
+@NoArgsConstructor
+@SuperBuilder
+@EqualsAndHashCode(callSuper = true, of = {})
+@ToString(callSuper = true)
+public class DisponibilidadArchivada extends BaseEntidad {
+
+    @Column(name = "doctor_id", nullable = false)
+    private UUID doctorId; // Doctor al que pertenecía el bloque
+
+    @Column(name = "hora_inicio", nullable = false)
+    private LocalDateTime horaInicio; // Hora de inicio del bloque
+
+    @Column(name = "hora_fin", nullable = false)
+    private LocalDateTime horaFin; // Hora de fin del bloque
+
+    @Column(name = "esta_reservado", nullable = false)
+    private Boolean estaReservado; // Si el bloque llegó a reservarse
+
+    @Column(name = "archivada_en", nullable = false)
+    private Instant archivadaEn; // Momento en que se archivó
+}
@@ -55,6 +55,10 @@ public class Doctor extends BaseEntidad {
     @Column(name = "biografia", columnDefinition = "TEXT")
     private String biografia; // Biografía del doctor
 
+    @ToString.Exclude // Nunca incluir el hash del token en logs
+    @Column(name = "hash_token_feed", length = 64, unique = true)
+    private String hashTokenFeed; // Hash SHA-256 del token del feed de agenda; null si no hay ninguno activo
+
     @ToString.Exclude
     @OneToMany(mappedBy = "doctor", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Disponibilidad> disponibilidades = new ArrayList<>();
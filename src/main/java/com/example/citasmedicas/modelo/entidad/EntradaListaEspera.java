@@ -0,0 +1,52 @@
+package com.example.citasmedicas.modelo.entidad;
+
+import jakarta.persistence.*;
+import lombok.experimental.SuperBuilder;
+import lombok.*;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Entidad que representa la inscripción de un paciente en la lista de espera de un doctor.
+ * La prioridad es el orden de llegada (fecha de creación). Opcionalmente restringe
+ * la franja de fechas en la que el paciente acepta un bloque.
+ * Extiende BaseEntidad para heredar campos de auditoría.
+ */
+@Entity
+@Table(name = "lista_espera",
+        indexes = @Index(name = "idx_lista_espera_doctor_estado", columnList = "doctor_id, estado"))
+@Getter
+@Setter
+@NoArgsConstructor
+@SuperBuilder
+@EqualsAndHashCode(callSuper = true, of = {})
+@ToString(callSuper = true)
+public class EntradaListaEspera extends BaseEntidad {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "paciente_id", nullable = false)
+    private Paciente paciente; // Paciente en espera
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "doctor_id", nullable = false)
+    private Doctor doctor; // Doctor cuya agenda se espera
+
+    @Column(name = "desde")
+    private LocalDateTime desde; // Inicio de la franja aceptada (null = sin límite)
+
+    @Column(name = "hasta")
+    private LocalDateTime hasta; // Fin de la franja aceptada (null = sin límite)
+
+    @Builder.Default
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", nullable = false, length = 20)
+    private EstadoListaEspera estado = EstadoListaEspera.ESPERANDO; // Estado de la inscripción
+
+    @Column(name = "disponibilidad_ofrecida_id")
+    private UUID disponibilidadOfrecidaId; // Bloque retenido para el paciente al ofrecérselo
+
+    @Column(name = "ofrecida_en")
+    private Instant ofrecidaEn; // Momento de la oferta
+}
@@ -0,0 +1,10 @@
+package com.example.citasmedicas.modelo.entidad;
+
+/**
+ * Estados de una inscripción en la lista de espera de un doctor.
+ */
+public enum EstadoListaEspera {
+    ESPERANDO, // En la cola, a la espera de que se libere un bloque compatible
+    OFRECIDA, // Se le retuvo un bloque liberado y se le notificó
+    CANCELADA // El paciente abandonó la lista de espera
+}
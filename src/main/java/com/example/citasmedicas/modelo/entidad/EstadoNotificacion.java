@@ -0,0 +1,10 @@
+package com.example.citasmedicas.modelo.entidad;
+
+/**
+ * Enumeración para los estados de entrega de una notificación de la bandeja de salida.
+ */
+public enum EstadoNotificacion {
+    PENDIENTE,
+    ENVIADA,
+    FALLIDA
+}
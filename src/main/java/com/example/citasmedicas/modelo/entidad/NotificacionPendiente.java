@@ -0,0 +1,52 @@
+package com.example.citasmedicas.modelo.entidad;
+
+import jakarta.persistence.*;
+import lombok.experimental.SuperBuilder;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Entidad de la bandeja de salida (outbox) de notificaciones.
+ * Se inserta en la misma transacción que la operación de negocio que la origina
+ * y un relé la entrega después de la confirmación, con reintentos.
+ * Extiende BaseEntidad para heredar campos de auditoría.
+ */
+@Entity
+@Table(name = "notificaciones_pendientes",
+        indexes = @Index(name = "idx_notificacion_estado_proximo_intento", columnList = "estado, proximo_intento"))
+@Getter
+@Setter
+@NoArgsConstructor
+@SuperBuilder
+@EqualsAndHashCode(callSuper = true, of = {})
+@ToString(callSuper = true, exclude = "mensaje")
+public class NotificacionPendiente extends BaseEntidad {
+
+    @Column(name = "destinatario", nullable = false, length = 150)
+    private String destinatario; // Email o teléfono del destinatario
+
+    @Column(name = "asunto", nullable = false, length = 200)
+    private String asunto; // Asunto de la notificación
+
+    @Column(name = "mensaje", nullable = false, columnDefinition = "TEXT")
+    private String mensaje; // Cuerpo de la notificación
+
+    @Builder.Default
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", nullable = false, length = 20)
+    private EstadoNotificacion estado = EstadoNotificacion.PENDIENTE; // Estado de entrega
+
+    @Builder.Default
+    @Column(name = "intentos", nullable = false)
+    private Integer intentos = 0; // Intentos de entrega fallidos
+
+    @Column(name = "proximo_intento", nullable = false)
+    private Instant proximoIntento; // Momento a partir del cual el relé puede (re)intentar la entrega
+
+    @Column(name = "ultimo_error", length = 500)
+    private String ultimoError; // Mensaje del último fallo de entrega
+
+    @Column(name = "enviada_en")
+    private Instant enviadaEn; // Momento de la entrega confirmada
+}
@@ -0,0 +1,84 @@
+package com.example.citasmedicas.modelo.entidad;
+
+import jakarta.persistence.*;
+import lombok.experimental.SuperBuilder;
+import lombok.*;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Entidad que representa una franja semanal recurrente de la agenda de un doctor
+ * (ej. lunes de 09:00 a 13:00 en bloques de 30 minutos), vigente entre dos fechas.
+ * Las plantillas se expanden en bloques de Disponibilidad.
+ * Extiende BaseEntidad para heredar campos de auditoría.
+ */
+@Entity
+@Table(name = "plantillas_horario",
+        indexes = @Index(name = "idx_plantilla_horario_doctor", columnList = "doctor_id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@SuperBuilder
+@EqualsAndHashCode(callSuper = true, of = {})
+@ToString(callSuper = true)
+public class PlantillaHorario extends BaseEntidad {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "doctor_id", nullable = false)
+    private Doctor doctor; // Doctor al que pertenece la plantilla
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "dia_semana", nullable = false, length = 10)
+    private DayOfWeek diaSemana; // Día de la semana de la franja
+
+    @Column(name = "hora_inicio", nullable = false)
+    private LocalTime horaInicio; // Inicio de la franja
+
+    @Column(name = "hora_fin", nullable = false)
+    private LocalTime horaFin; // Fin de la franja
+
+    @Column(name = "duracion_bloque_minutos", nullable = false)
+    private Integer duracionBloqueMinutos; // Duración de cada bloque generado
+
+    @Column(name = "vigente_desde", nullable = false)
+    private LocalDate vigenteDesde; // Primer día en que aplica la plantilla
+
+    @Column(name = "vigente_hasta")
+    private LocalDate vigenteHasta; // Último día en que aplica (null = indefinida)
+
+    @Column(name = "expandida_hasta")
+    private LocalDate expandidaHasta; // Último día ya expandido en bloques (null = nunca expandida)
+
+    /**
+     * Indica si la plantilla aplica a una fecha.
+     * @param fecha La fecha a comprobar.
+     * @return true si la fecha cae en el día de la semana y dentro de la vigencia de la plantilla.
+     */
+    public boolean aplicaA(LocalDate fecha) {
+        return fecha.getDayOfWeek() == diaSemana
+                && !fecha.isBefore(vigenteDesde)
+                && (vigenteHasta == null || !fecha.isAfter(vigenteHasta));
+    }
+
+    /**
+     * Indica si una fecha ya se expandió en bloques.
+     * Los días expandidos no se vuelven a generar, así que los bloques que el doctor eliminó no reaparecen.
+     * @param fecha La fecha a comprobar.
+     * @return true si la fecha no es posterior al último día expandido.
+     */
+    public boolean estaExpandidaEn(LocalDate fecha) {
+        return expandidaHasta != null && !fecha.isAfter(expandidaHasta);
+    }
+
+    /**
+     * Registra que la plantilla se expandió hasta una fecha; nunca retrocede.
+     * @param fecha El último día expandido.
+     */
+    public void marcarExpandidaHasta(LocalDate fecha) {
+        if (expandidaHasta == null || fecha.isAfter(expandidaHasta)) {
+            expandidaHasta = fecha;
+        }
+    }
+}
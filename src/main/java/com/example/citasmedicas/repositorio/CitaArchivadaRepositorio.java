@@ -0,0 +1,37 @@
+package com.example.citasmedicas.repositorio;
+
+import com.example.citasmedicas.modelo.entidad.CitaArchivada;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Repositorio para la entidad CitaArchivada.
+ * Proporciona operaciones CRUD y de búsqueda de Spring Data JPA.
+ */
+@Repository
+public interface CitaArchivadaRepositorio extends JpaRepository<CitaArchivada, UUID> {
+    // Citas archivadas de un paciente, de la más reciente a la más antigua (sin consulta de recuento)
+    Slice<CitaArchivada> findByPacienteIdOrderByHoraInicioDesc(UUID pacienteId, Pageable pageable);
+
+    long countByPacienteId(UUID pacienteId);
+
+    // Copia las citas indicadas con el horario de su bloque en una única sentencia INSERT ... SELECT
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            INSERT INTO CitaArchivada (id, fechaCreacion, fechaActualizacion, doctorId, pacienteId, disponibilidadId,
+                                       horaInicio, horaFin, razonVisita, estado, archivadaEn)
+            SELECT c.id, c.fechaCreacion, c.fechaActualizacion, c.doctor.id, c.paciente.id, d.id,
+                   d.horaInicio, d.horaFin, c.razonVisita, c.estado, :ahora
+            FROM Cita c JOIN c.disponibilidad d
+            WHERE c.id IN :ids
+            """)
+    int copiarDesdeCitas(Collection<UUID> ids, Instant ahora);
+}
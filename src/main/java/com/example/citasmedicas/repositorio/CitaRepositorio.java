@@ -1,19 +1,30 @@
 package com.example.citasmedicas.repositorio;
 
 
+import com.example.citasmedicas.dto.CitaAgendaDTO;
+import com.example.citasmedicas.dto.VersionAgendaDTO;
 import com.example.citasmedicas.modelo.entidad.Cita;
 import com.example.citasmedicas.modelo.entidad.Doctor;
 import com.example.citasmedicas.modelo.entidad.Paciente;
 import com.example.citasmedicas.modelo.entidad.EstadoCita;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * Repositorio para la entidad Cita.
@@ -35,4 +46,68 @@ public interface CitaRepositorio extends JpaRepository<Cita, UUID> {
 
     // Encuentra citas confirmadas de un doctor en un rango de tiempo
     List<Cita> findByDoctorAndEstadoAndDisponibilidadHoraInicioBetween(Doctor doctor, EstadoCita estado, LocalDateTime inicio, LocalDateTime fin);
+
+    // Plan de carga de la cancelación: la cita con su bloque, paciente y doctor en una sola consulta
+    @EntityGraph(attributePaths = {"disponibilidad", "paciente", "doctor"})
+    @Query("SELECT c FROM Cita c WHERE c.id = :citaId")
+    Optional<Cita> buscarParaCancelacion(UUID citaId);
+
+    // Comprueba la propiedad de una cita sin cargar la entidad ni sus relaciones
+    @Query("""
+            SELECT COUNT(c) > 0 FROM Cita c
+            WHERE c.id = :citaId
+              AND (c.paciente.email = :email OR c.doctor.email = :email)
+            """)
+    boolean esPropietario(UUID citaId, String email);
+
+    // Citas de un paciente de la más reciente a la más antigua, con su bloque en la misma consulta
+    @EntityGraph(attributePaths = "disponibilidad")
+    @Query("""
+            SELECT c FROM Cita c
+            WHERE c.paciente.id = :pacienteId
+            ORDER BY c.disponibilidad.horaInicio DESC
+            """)
+    Page<Cita> buscarHistorialPaciente(UUID pacienteId, Pageable pageable);
+
+    // Citas en uno de los estados indicados cuyo bloque terminó antes del corte, para archivarlas por lotes
+    @Query("""
+            SELECT c.id FROM Cita c
+            WHERE c.estado IN :estados
+              AND c.disponibilidad.horaFin < :corte
+            """)
+    List<UUID> buscarIdsArchivables(Collection<EstadoCita> estados, LocalDateTime corte, Limit limite);
+
+    @Modifying
+    @Query("DELETE FROM Cita c WHERE c.id IN :ids")
+    int eliminarPorIds(Collection<UUID> ids);
+
+    // Bloques de entre los indicados a los que hace referencia alguna cita, en cualquier estado
+    @Query("SELECT DISTINCT c.disponibilidad.id FROM Cita c WHERE c.disponibilidad.id IN :disponibilidadIds")
+    List<UUID> buscarDisponibilidadesConCitas(Collection<UUID> disponibilidadIds);
+
+    // Última modificación y número de citas de un doctor cuyo bloque termina después de una fecha, para el ETag del feed de agenda
+    @Query("""
+            SELECT new com.example.citasmedicas.dto.VersionAgendaDTO(MAX(c.fechaActualizacion), COUNT(c))
+            FROM Cita c
+            WHERE c.doctor.id = :doctorId
+              AND c.disponibilidad.horaFin > :desde
+            """)
+    VersionAgendaDTO obtenerVersionAgenda(UUID doctorId, LocalDateTime desde);
+
+    // Citas no canceladas de un doctor cuyo bloque termina después de una fecha, leídas como flujo para el feed de agenda.
+    // Debe consumirse dentro de una transacción.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("""
+            SELECT new com.example.citasmedicas.dto.CitaAgendaDTO(
+                c.id, d.horaInicio, d.horaFin, c.estado, CONCAT(p.primerNombre, ' ', p.apellido), c.razonVisita, c.fechaActualizacion
+            )
+            FROM Cita c
+            JOIN c.disponibilidad d
+            JOIN c.paciente p
+            WHERE c.doctor.id = :doctorId
+              AND d.horaFin > :desde
+              AND c.estado <> :excluido
+            ORDER BY d.horaInicio ASC
+            """)
+    Stream<CitaAgendaDTO> recorrerParaAgenda(UUID doctorId, LocalDateTime desde, EstadoCita excluido);
 }
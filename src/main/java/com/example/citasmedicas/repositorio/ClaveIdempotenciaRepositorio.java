@@ -0,0 +1,39 @@
+package com.example.citasmedicas.repositorio;
+
+import com.example.citasmedicas.modelo.entidad.ClaveIdempotencia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Repositorio para la entidad ClaveIdempotencia.
+ */
+@Repository
+public interface ClaveIdempotenciaRepositorio extends JpaRepository<ClaveIdempotencia, UUID> {
+    // Busca la respuesta almacenada para una clave de un usuario en una operación
+    Optional<ClaveIdempotencia> findByUsuarioAndOperacionAndClave(String usuario, String operacion, String clave);
+
+    // Completa una clave en curso con la respuesta de la operación, en su propia transacción
+    @Transactional
+    @Modifying
+    @Query("UPDATE ClaveIdempotencia c SET c.estadoHttp = :estadoHttp, c.cuerpoRespuesta = :cuerpoRespuesta, c.expiraEn = :expiraEn, c.fechaActualizacion = :ahora " +
+            "WHERE c.usuario = :usuario AND c.operacion = :operacion AND c.clave = :clave AND c.estadoHttp IS NULL")
+    int completar(String usuario, String operacion, String clave, Integer estadoHttp, String cuerpoRespuesta, Instant expiraEn, Instant ahora);
+
+    // Elimina una clave en curso cuya operación falló, para que el cliente pueda reintentar con ella
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ClaveIdempotencia c WHERE c.usuario = :usuario AND c.operacion = :operacion AND c.clave = :clave AND c.estadoHttp IS NULL")
+    int eliminarEnCurso(String usuario, String operacion, String clave);
+
+    // Purga en bloque las claves vencidas
+    @Modifying
+    @Query("DELETE FROM ClaveIdempotencia c WHERE c.expiraEn < :ahora")
+    int eliminarVencidas(Instant ahora);
+}
@@ -0,0 +1,38 @@
+package com.example.citasmedicas.repositorio;
+
+import com.example.citasmedicas.modelo.entidad.DisponibilidadArchivada;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repositorio para la entidad DisponibilidadArchivada.
+ * Proporciona operaciones CRUD y de búsqueda de Spring Data JPA.
+ */
+@Repository
+public interface DisponibilidadArchivadaRepositorio extends JpaRepository<DisponibilidadArchivada, UUID> {
+    // Copia los bloques indicados en una única sentencia INSERT ... SELECT
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            INSERT INTO DisponibilidadArchivada (id, fechaCreacion, fechaActualizacion, doctorId, horaInicio, horaFin, estaReservado, archivadaEn)
+            SELECT d.id, d.fechaCreacion, d.fechaActualizacion, d.doctor.id, d.horaInicio, d.horaFin, d.estaReservado, :ahora
+            FROM Disponibilidad d
+            WHERE d.id IN :ids
+            """)
+    int copiarDesdeDisponibilidades(Collection<UUID> ids, Instant ahora);
+
+    // IDs de bloques archivados antes de un instante, para purgarlos por lotes
+    @Query("SELECT d.id FROM DisponibilidadArchivada d WHERE d.archivadaEn < :antesDe")
+    List<UUID> buscarIdsArchivadasAntesDe(Instant antesDe, Limit limite);
+
+    @Modifying
+    @Query("DELETE FROM DisponibilidadArchivada d WHERE d.id IN :ids")
+    int eliminarPorIds(Collection<UUID> ids);
+}
@@ -0,0 +1,56 @@
+package com.example.citasmedicas.repositorio;
+
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Inserción masiva de bloques de disponibilidad mediante lotes JDBC.
+ * Evita el ciclo de vida de JPA (contexto de persistencia, eventos, comprobación de cambios)
+ * cuando se generan miles de bloques de una vez; los bloques insertados no quedan gestionados.
+ */
+@Repository
+public class DisponibilidadLoteRepositorio {
+
+    private static final String INSERCION = """
+            INSERT INTO disponibilidades (id, doctor_id, hora_inicio, hora_fin, esta_reservado, fecha_creacion, fecha_actualizacion)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DisponibilidadLoteRepositorio(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserta bloques libres de un doctor en lotes JDBC, asignando el ID y las fechas de auditoría.
+     * Debe invocarse dentro de una transacción para que todos los lotes se confirmen o reviertan juntos.
+     * @param doctorId El UUID del doctor propietario de los bloques.
+     * @param bloques Los bloques a insertar (solo se usan sus horas de inicio y fin); se les asigna el ID generado.
+     * @param tamanoLote El número de filas por lote JDBC.
+     * @return El número de filas insertadas.
+     */
+    public int insertarLibres(UUID doctorId, List<Disponibilidad> bloques, int tamanoLote) {
+        OffsetDateTime ahora = OffsetDateTime.ofInstant(Instant.now(), ZoneOffset.UTC);
+        jdbcTemplate.batchUpdate(INSERCION, bloques, tamanoLote, (sentencia, bloque) -> {
+            if (bloque.getId() == null) {
+                bloque.setId(UUID.randomUUID());
+            }
+            sentencia.setObject(1, bloque.getId());
+            sentencia.setObject(2, doctorId);
+            sentencia.setObject(3, bloque.getHoraInicio());
+            sentencia.setObject(4, bloque.getHoraFin());
+            sentencia.setBoolean(5, false);
+            sentencia.setObject(6, ahora);
+            sentencia.setObject(7, ahora);
+        });
+        return bloques.size(); // Un fallo en cualquier lote lanza una excepción y revierte la transacción
+    }
+}
@@ -2,35 +2,283 @@ package com.example.citasmedicas.repositorio;
 
 
 import com.example.citasmedicas.modelo.entidad.Doctor;
+import com.example.citasmedicas.dto.BloqueAgendaDTO;
+import com.example.citasmedicas.dto.BloqueHorarioDoctorDTO;
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
+import com.example.citasmedicas.dto.HorarioLibreDTO;
+import com.example.citasmedicas.dto.ResumenDiaDisponibilidadDTO;
+import com.example.citasmedicas.dto.SesionDisponibilidadDTO;
+import com.example.citasmedicas.dto.VersionAgendaDTO;
 import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * Repositorio para la entidad Disponibilidad.
  * Proporciona operaciones CRUD y de búsqueda de Spring Data JPA.
  */
 @Repository
-public interface DisponibilidadRepositorio extends JpaRepository<Disponibilidad, UUID> {
+public interface DisponibilidadRepositorio extends JpaRepository<Disponibilidad, UUID>, DisponibilidadRepositorioPersonalizado {
     // Encuentra bloques de disponibilidad para un doctor en un rango de fechas
     List<Disponibilidad> findByDoctorAndHoraInicioBetweenOrderByHoraInicioAsc(Doctor doctor, LocalDateTime horaInicio, LocalDateTime horaFin);
 
     // Encuentra un bloque de disponibilidad específico para un doctor y una hora, no reservado
     Optional<Disponibilidad> findByDoctorAndHoraInicioAndEstaReservadoFalse(Doctor doctor, LocalDateTime horaInicio);
 
-    // Encuentra bloques de disponibilidad que se superponen para un doctor
-    List<Disponibilidad> findByDoctorAndHoraFinAfterAndHoraInicioBefore(Doctor doctor, LocalDateTime horaInicio, LocalDateTime horaFin);
+    // Indica si algún bloque del doctor se superpone con el intervalo, sin cargar las entidades
+    boolean existsByDoctorIdAndHoraFinAfterAndHoraInicioBefore(UUID doctorId, LocalDateTime horaInicio, LocalDateTime horaFin);
 
     // Encuentra un bloque de disponibilidad por su ID y si no está reservado
     Optional<Disponibilidad> findByIdAndEstaReservadoFalse(UUID id);
 
-    // Cuenta los bloques de disponibilidad no reservados para un doctor en un rango de fechas
-    @Query("SELECT COUNT(d) FROM Disponibilidad d WHERE d.doctor = :doctor AND d.estaReservado = false AND d.horaInicio BETWEEN :inicio AND :fin")
-    long countDisponibilidadNoReservada(Doctor doctor, LocalDateTime inicio, LocalDateTime fin);
+    // Cuenta los bloques libres y totales por doctor y día en un rango [desde, hasta) con una sola consulta agrupada.
+    // Los días sin bloques no aparecen.
+    @Query("""
+            SELECT new com.example.citasmedicas.dto.ResumenDiaDisponibilidadDTO(
+                d.doctor.id,
+                CAST(d.horaInicio AS LocalDate),
+                SUM(CASE WHEN d.estaReservado = false THEN 1L ELSE 0L END),
+                COUNT(d)
+            )
+            FROM Disponibilidad d
+            WHERE d.doctor.id IN :doctorIds
+              AND d.horaInicio >= :desde
+              AND d.horaInicio < :hasta
+            GROUP BY d.doctor.id, CAST(d.horaInicio AS LocalDate)
+            ORDER BY d.doctor.id ASC, CAST(d.horaInicio AS LocalDate) ASC
+            """)
+    List<ResumenDiaDisponibilidadDTO> resumirPorDoctorYDia(Collection<UUID> doctorIds, LocalDateTime desde, LocalDateTime hasta);
+
+    // Reclama un bloque de forma atómica: solo actualiza si sigue libre, pertenece al doctor y no es una sesión.
+    // El número de filas afectadas (0 o 1) indica si la reserva fue ganada por esta transacción.
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            UPDATE Disponibilidad d
+            SET d.estaReservado = true, d.fechaActualizacion = :ahora
+            WHERE d.id = :disponibilidadId
+              AND d.doctor.id = :doctorId
+              AND d.estaReservado = false
+              AND d.minutosRanura IS NULL
+            """)
+    int reclamarSiDisponible(UUID disponibilidadId, UUID doctorId, Instant ahora);
+
+    // Bloquea un conjunto de bloques siempre en el mismo orden (por ID) para que dos reservas
+    // de series solapadas no puedan interbloquearse esperando cada una los bloques de la otra.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM Disponibilidad d WHERE d.id IN :ids ORDER BY d.id")
+    List<Disponibilidad> bloquearPorIdsOrdenados(Collection<UUID> ids);
+
+    // Marca como reservados todos los bloques indicados en una única sentencia.
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            UPDATE Disponibilidad d
+            SET d.estaReservado = true, d.fechaActualizacion = :ahora
+            WHERE d.id IN :ids
+              AND d.estaReservado = false
+            """)
+    int reservarTodos(Collection<UUID> ids, Instant ahora);
+
+    // Libera un bloque reservado con una actualización directa, sin cargar la entidad
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            UPDATE Disponibilidad d
+            SET d.estaReservado = false, d.fechaActualizacion = :ahora
+            WHERE d.id = :disponibilidadId
+              AND d.estaReservado = true
+            """)
+    int liberarSiReservado(UUID disponibilidadId, Instant ahora);
+
+    // Intervalos de los bloques de un doctor que se solapan con un rango, ordenados por hora de inicio (sin cargar entidades)
+    @Query("""
+            SELECT new com.example.citasmedicas.dto.BloqueHorarioDTO(d.id, d.horaInicio, d.horaFin, d.estaReservado, d.minutosRanura, d.bloquePadreId)
+            FROM Disponibilidad d
+            WHERE d.doctor.id = :doctorId
+              AND d.horaFin > :desde
+              AND d.horaInicio < :hasta
+            ORDER BY d.horaInicio ASC
+            """)
+    List<BloqueHorarioDTO> buscarBloquesEnRango(UUID doctorId, LocalDateTime desde, LocalDateTime hasta);
+
+    // Bloques de un doctor que comienzan en un rango [desde, hasta), para la caché de disponibilidad por día
+    @Query("""
+            SELECT new com.example.citasmedicas.dto.BloqueHorarioDTO(d.id, d.horaInicio, d.horaFin, d.estaReservado, d.minutosRanura, d.bloquePadreId)
+            FROM Disponibilidad d
+            WHERE d.doctor.id = :doctorId
+              AND d.horaInicio >= :desde
+              AND d.horaInicio < :hasta
+            ORDER BY d.horaInicio ASC
+            """)
+    List<BloqueHorarioDTO> buscarBloquesPorInicio(UUID doctorId, LocalDateTime desde, LocalDateTime hasta);
+
+    // Bloques de varios doctores que comienzan en un rango [desde, hasta), ordenados por doctor y hora de inicio
+    @Query("""
+            SELECT new com.example.citasmedicas.dto.BloqueHorarioDoctorDTO(
+                d.doctor.id, d.id, d.horaInicio, d.horaFin, d.estaReservado, d.minutosRanura, d.bloquePadreId
+            )
+            FROM Disponibilidad d
+            WHERE d.doctor.id IN :doctorIds
+              AND d.horaInicio >= :desde
+              AND d.horaInicio < :hasta
+            ORDER BY d.doctor.id ASC, d.horaInicio ASC
+            """)
+    List<BloqueHorarioDoctorDTO> buscarBloquesDeDoctores(Collection<UUID> doctorIds, LocalDateTime desde, LocalDateTime hasta);
+
+    // Bloques de un doctor que terminan después de una fecha, para cargar el índice de intervalos.
+    // Las ranuras materializadas quedan dentro de su sesión, así que no se indexan.
+    @Query("""
+            SELECT new com.example.citasmedicas.dto.BloqueHorarioDTO(d.id, d.horaInicio, d.horaFin, d.estaReservado)
+            FROM Disponibilidad d
+            WHERE d.doctor.id = :doctorId
+              AND d.horaFin > :desde
+              AND d.bloquePadreId IS NULL
+            ORDER BY d.horaInicio ASC
+            """)
+    List<BloqueHorarioDTO> buscarBloquesDesde(UUID doctorId, LocalDateTime desde);
+
+    // Bloques libres (sin contar sesiones) de los doctores de una especialidad en una ventana, agrupados por doctor y ordenados por hora de inicio
+    @Query("""
+            SELECT new com.example.citasmedicas.dto.HorarioLibreDTO(
+                d.id, doc.id, CONCAT(doc.primerNombre, ' ', doc.apellido), d.horaInicio, d.horaFin
+            )
+            FROM Disponibilidad d JOIN d.doctor doc
+            WHERE doc.especialidad.id = :especialidadId
+              AND d.estaReservado = false
+              AND d.minutosRanura IS NULL
+              AND d.horaInicio >= :desde
+              AND d.horaInicio < :hasta
+            ORDER BY doc.id ASC, d.horaInicio ASC
+            """)
+    List<HorarioLibreDTO> buscarLibresPorEspecialidad(UUID especialidadId, LocalDateTime desde, LocalDateTime hasta);
+
+    // Sesiones de los doctores de una especialidad que se solapan con una ventana
+    @Query("""
+            SELECT new com.example.citasmedicas.dto.SesionDisponibilidadDTO(
+                d.id, doc.id, CONCAT(doc.primerNombre, ' ', doc.apellido), d.horaInicio, d.horaFin, d.minutosRanura
+            )
+            FROM Disponibilidad d JOIN d.doctor doc
+            WHERE doc.especialidad.id = :especialidadId
+              AND d.minutosRanura IS NOT NULL
+              AND d.horaFin > :desde
+              AND d.horaInicio < :hasta
+            """)
+    List<SesionDisponibilidadDTO> buscarSesionesPorEspecialidad(UUID especialidadId, LocalDateTime desde, LocalDateTime hasta);
+
+    // Sesiones de varios doctores que comienzan en un rango [desde, hasta)
+    @Query("""
+            SELECT new com.example.citasmedicas.dto.SesionDisponibilidadDTO(
+                d.id, doc.id, CONCAT(doc.primerNombre, ' ', doc.apellido), d.horaInicio, d.horaFin, d.minutosRanura
+            )
+            FROM Disponibilidad d JOIN d.doctor doc
+            WHERE doc.id IN :doctorIds
+              AND d.minutosRanura IS NOT NULL
+              AND d.horaInicio >= :desde
+              AND d.horaInicio < :hasta
+            """)
+    List<SesionDisponibilidadDTO> buscarSesionesDeDoctores(Collection<UUID> doctorIds, LocalDateTime desde, LocalDateTime hasta);
+
+    // Sesión de un doctor que termina después de una fecha dentro de un rango de IDs, para localizar una ranura virtual
+    // al reservarla: el ID de la ranura solo difiere del de su sesión en los bits bajos (ver RanurasVirtuales)
+    @Query("""
+            SELECT new com.example.citasmedicas.dto.BloqueHorarioDTO(d.id, d.horaInicio, d.horaFin, d.estaReservado, d.minutosRanura, d.bloquePadreId)
+            FROM Disponibilidad d
+            WHERE d.id BETWEEN :idDesde AND :idHasta
+              AND d.doctor.id = :doctorId
+              AND d.minutosRanura IS NOT NULL
+              AND d.horaFin > :desde
+            """)
+    List<BloqueHorarioDTO> buscarSesionesEnRango(UUID doctorId, UUID idDesde, UUID idHasta, LocalDateTime desde);
+
+    // Ranuras ya materializadas (reservadas o liberadas) a partir de las sesiones indicadas
+    @Query("""
+            SELECT new com.example.citasmedicas.dto.BloqueHorarioDTO(d.id, d.horaInicio, d.horaFin, d.estaReservado, d.minutosRanura, d.bloquePadreId)
+            FROM Disponibilidad d
+            WHERE d.bloquePadreId IN :sesionIds
+            """)
+    List<BloqueHorarioDTO> buscarMaterializadas(Collection<UUID> sesionIds);
+
+    // Bloques terminados antes del corte a los que ya no hace referencia ninguna cita, para archivarlos por lotes
+    @Query("""
+            SELECT d.id FROM Disponibilidad d
+            WHERE d.horaFin < :corte
+              AND NOT EXISTS (SELECT c.id FROM Cita c WHERE c.disponibilidad = d)
+            """)
+    List<UUID> buscarIdsArchivables(LocalDateTime corte, Limit limite);
+
+    @Modifying
+    @Query("DELETE FROM Disponibilidad d WHERE d.id IN :ids")
+    int eliminarPorIds(Collection<UUID> ids);
+
+    // Bloques libres de un doctor que pueden fusionarse: sin cita que los referencie, sin ser sesión ni ranura materializada
+    @Query("""
+            SELECT new com.example.citasmedicas.dto.BloqueHorarioDTO(d.id, d.horaInicio, d.horaFin, d.estaReservado)
+            FROM Disponibilidad d
+            WHERE d.doctor.id = :doctorId
+              AND d.estaReservado = false
+              AND d.minutosRanura IS NULL
+              AND d.bloquePadreId IS NULL
+              AND d.horaInicio >= :desde
+              AND NOT EXISTS (SELECT c.id FROM Cita c WHERE c.disponibilidad = d)
+            ORDER BY d.horaInicio ASC
+            """)
+    List<BloqueHorarioDTO> buscarLibresCompactables(UUID doctorId, LocalDateTime desde);
+
+    // Elimina los bloques absorbidos por una compactación; omite los que entre tanto se reservaron o pasaron a tener cita
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            DELETE FROM Disponibilidad d
+            WHERE d.id IN :ids
+              AND d.estaReservado = false
+              AND NOT EXISTS (SELECT c.id FROM Cita c WHERE c.disponibilidad = d)
+            """)
+    int eliminarLibresPorIds(Collection<UUID> ids);
+
+    // Alarga un bloque hasta el fin de los bloques que absorbe y lo convierte en sesión, solo si sigue libre
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            UPDATE Disponibilidad d
+            SET d.horaFin = :horaFin, d.minutosRanura = :minutosRanura, d.fechaActualizacion = :ahora
+            WHERE d.id = :disponibilidadId
+              AND d.estaReservado = false
+              AND d.minutosRanura IS NULL
+            """)
+    int convertirEnSesionSiLibre(UUID disponibilidadId, LocalDateTime horaFin, Integer minutosRanura, Instant ahora);
+
+    // Última modificación y número de bloques de un doctor que terminan después de una fecha, para el ETag del feed de agenda
+    @Query("""
+            SELECT new com.example.citasmedicas.dto.VersionAgendaDTO(MAX(d.fechaActualizacion), COUNT(d))
+            FROM Disponibilidad d
+            WHERE d.doctor.id = :doctorId
+              AND d.horaFin > :desde
+            """)
+    VersionAgendaDTO obtenerVersionAgenda(UUID doctorId, LocalDateTime desde);
+
+    // Bloques libres y sesiones de un doctor que terminan después de una fecha, leídos como flujo para el feed de agenda.
+    // Debe consumirse dentro de una transacción; el tamaño de lectura evita cargar todas las filas del cursor de una vez.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("""
+            SELECT new com.example.citasmedicas.dto.BloqueAgendaDTO(d.id, d.horaInicio, d.horaFin, d.minutosRanura, d.fechaActualizacion)
+            FROM Disponibilidad d
+            WHERE d.doctor.id = :doctorId
+              AND d.horaFin > :desde
+              AND d.estaReservado = false
+              AND d.bloquePadreId IS NULL
+            ORDER BY d.horaInicio ASC
+            """)
+    Stream<BloqueAgendaDTO> recorrerLibresParaAgenda(UUID doctorId, LocalDateTime desde);
 }
@@ -0,0 +1,18 @@
+package com.example.citasmedicas.repositorio;
+
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+
+/**
+ * Operaciones de DisponibilidadRepositorio que no pueden expresarse con los métodos derivados de Spring Data.
+ */
+public interface DisponibilidadRepositorioPersonalizado {
+    /**
+     * Inserta un bloque con un ID asignado por la aplicación y lo escribe de inmediato.
+     * A diferencia de save, que con un ID asignado hace merge (lee la fila y la actualiza si existe),
+     * siempre emite un INSERT, así que un ID ya existente falla por la clave primaria.
+     * @param disponibilidad El bloque a insertar.
+     * @return El mismo bloque, ya gestionado.
+     * @throws org.springframework.dao.DataIntegrityViolationException Si ya existe un bloque con ese ID.
+     */
+    Disponibilidad insertar(Disponibilidad disponibilidad);
+}
@@ -0,0 +1,24 @@
+package com.example.citasmedicas.repositorio;
+
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Implementación de DisponibilidadRepositorioPersonalizado. Spring Data la combina con DisponibilidadRepositorio
+ * y traduce sus excepciones de persistencia como las del resto del repositorio.
+ */
+class DisponibilidadRepositorioPersonalizadoImpl implements DisponibilidadRepositorioPersonalizado {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public Disponibilidad insertar(Disponibilidad disponibilidad) {
+        entityManager.persist(disponibilidad);
+        entityManager.flush();
+        return disponibilidad;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.citasmedicas.repositorio;
+
+import com.example.citasmedicas.modelo.entidad.EntradaListaEspera;
+import com.example.citasmedicas.modelo.entidad.EstadoListaEspera;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repositorio para la entidad EntradaListaEspera.
+ * Proporciona operaciones CRUD y de búsqueda de Spring Data JPA.
+ */
+@Repository
+public interface EntradaListaEsperaRepositorio extends JpaRepository<EntradaListaEspera, UUID> {
+    // Inscripciones en un estado dado, para reconstruir las colas en memoria al arrancar
+    List<EntradaListaEspera> findByEstado(EstadoListaEspera estado);
+
+    // Comprueba si un paciente ya está en la lista de espera de un doctor
+    boolean existsByPacienteIdAndDoctorIdAndEstado(UUID pacienteId, UUID doctorId, EstadoListaEspera estado);
+
+    // Marca una inscripción como ofrecida solo si sigue esperando.
+    // El número de filas afectadas (0 o 1) indica si esta transacción ganó la inscripción.
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            UPDATE EntradaListaEspera e
+            SET e.estado = com.example.citasmedicas.modelo.entidad.EstadoListaEspera.OFRECIDA,
+                e.disponibilidadOfrecidaId = :disponibilidadId, e.ofrecidaEn = :ahora, e.fechaActualizacion = :ahora
+            WHERE e.id = :entradaId
+              AND e.estado = com.example.citasmedicas.modelo.entidad.EstadoListaEspera.ESPERANDO
+            """)
+    int ofrecerSiEspera(UUID entradaId, UUID disponibilidadId, Instant ahora);
+}
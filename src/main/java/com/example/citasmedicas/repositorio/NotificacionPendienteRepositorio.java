@@ -0,0 +1,30 @@
+package com.example.citasmedicas.repositorio;
+
+import com.example.citasmedicas.modelo.entidad.EstadoNotificacion;
+import com.example.citasmedicas.modelo.entidad.NotificacionPendiente;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repositorio para la entidad NotificacionPendiente (bandeja de salida de notificaciones).
+ */
+@Repository
+public interface NotificacionPendienteRepositorio extends JpaRepository<NotificacionPendiente, UUID> {
+    // Toma un lote de notificaciones vencidas bloqueándolas; con SKIP LOCKED (-2) varias instancias
+    // del relé pueden drenar la bandeja en paralelo sin esperar ni entregar dos veces la misma fila.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<NotificacionPendiente> findByEstadoAndProximoIntentoLessThanEqualOrderByProximoIntentoAsc(EstadoNotificacion estado, Instant ahora, Pageable pagina);
+
+    // Cuenta las notificaciones en un estado (para el indicador de la bandeja)
+    long countByEstado(EstadoNotificacion estado);
+}
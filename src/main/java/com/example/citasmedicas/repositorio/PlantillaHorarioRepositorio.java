@@ -0,0 +1,28 @@
+package com.example.citasmedicas.repositorio;
+
+import com.example.citasmedicas.modelo.entidad.PlantillaHorario;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repositorio para la entidad PlantillaHorario.
+ * Proporciona operaciones CRUD y de búsqueda de Spring Data JPA.
+ */
+@Repository
+public interface PlantillaHorarioRepositorio extends JpaRepository<PlantillaHorario, UUID> {
+    // Plantillas de un doctor
+    List<PlantillaHorario> findByDoctorId(UUID doctorId);
+
+    // Plantillas de varios doctores, para expandirlas en una sola consulta
+    List<PlantillaHorario> findByDoctorIdIn(Collection<UUID> doctorIds);
+
+    // Doctores con alguna plantilla vigente a partir de una fecha
+    @Query("SELECT DISTINCT p.doctor.id FROM PlantillaHorario p WHERE p.vigenteHasta IS NULL OR p.vigenteHasta >= :desde")
+    List<UUID> buscarDoctoresConPlantillasVigentes(LocalDate desde);
+}
@@ -62,9 +62,15 @@ public class SeguridadConfiguracion {
 
                         // Acceso para DOCTOR a gestión de su disponibilidad y ver sus citas
                         .requestMatchers(HttpMethod.GET, "/api/v1/doctores/{doctorId}/disponibilidades").permitAll() // Cualquiera puede ver la disponibilidad de un doctor
+                        .requestMatchers(HttpMethod.GET, "/api/v1/doctores/{doctorId}/disponibilidades/calendario").permitAll() // Calendario compacto de ranuras libres
+                        .requestMatchers(HttpMethod.GET, "/api/v1/doctores/disponibilidades/resumen").permitAll() // Bloques libres y totales por doctor y día
+                        .requestMatchers(HttpMethod.GET, "/api/v1/doctores/disponibilidades").permitAll() // Bloques de varios doctores en una consulta
+                        .requestMatchers(HttpMethod.GET, "/api/v1/doctores/{doctorId}/disponibilidades/stream").permitAll() // Flujo SSE de cambios de disponibilidad
+                        .requestMatchers(HttpMethod.GET, "/api/v1/doctores/{doctorId}/agenda.ics").permitAll() // Feed de agenda: @PreAuthorize exige el token del feed o un JWT con acceso
 
                         // Acceso para PATIENT a agendar y gestionar sus propias citas y ver perfiles de doctor
                         .requestMatchers(HttpMethod.POST, "/api/v1/citas").hasAuthority(RolUsuario.PATIENT.name()) // Agendar cita
+                        .requestMatchers(HttpMethod.POST, "/api/v1/citas/serie").hasAuthority(RolUsuario.PATIENT.name()) // Agendar serie de citas
 
                         .anyRequest().authenticated() // Cualquier otra petición requiere autenticación
                 )
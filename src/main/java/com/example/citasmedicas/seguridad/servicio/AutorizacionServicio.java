@@ -3,9 +3,13 @@ package com.example.citasmedicas.seguridad.servicio;
 import com.example.citasmedicas.repositorio.CitaRepositorio;
 import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
 import com.example.citasmedicas.repositorio.DoctorRepositorio;
+import com.example.citasmedicas.repositorio.PacienteRepositorio;
+import com.example.citasmedicas.servicio.agenda.FeedAgendaServicio;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.UUID;
 
 /**
@@ -18,24 +22,21 @@ public class AutorizacionServicio {
     private final CitaRepositorio citaRepositorio;
     private final DisponibilidadRepositorio disponibilidadRepositorio;
     private final DoctorRepositorio doctorRepositorio;
+    private final PacienteRepositorio pacienteRepositorio;
 
-    public AutorizacionServicio(CitaRepositorio citaRepositorio, DisponibilidadRepositorio disponibilidadRepositorio, DoctorRepositorio doctorRepositorio) {
+    public AutorizacionServicio(CitaRepositorio citaRepositorio, DisponibilidadRepositorio disponibilidadRepositorio, DoctorRepositorio doctorRepositorio, PacienteRepositorio pacienteRepositorio) {
         this.citaRepositorio = citaRepositorio;
         this.disponibilidadRepositorio = disponibilidadRepositorio;
         this.doctorRepositorio = doctorRepositorio;
+        this.pacienteRepositorio = pacienteRepositorio;
     }
 
     /**
      * Comprueba si el usuario autenticado es el propietario de una cita (ya sea paciente o doctor).
+     * Se resuelve con una única consulta, sin cargar la cita ni sus relaciones; si la cita no existe, deniega el acceso.
      */
     public boolean esPropietarioDeCita(Authentication authentication, UUID citaId) {
-        return citaRepositorio.findById(citaId)
-                .map(cita -> {
-                    String username = authentication.getName();
-                    return cita.getPaciente().getEmail().equals(username) ||
-                           cita.getDoctor().getEmail().equals(username); // Asumiendo que el doctor tiene un email
-                })
-                .orElse(false); // Si la cita no existe, denegar acceso
+        return citaRepositorio.esPropietario(citaId, authentication.getName());
     }
 
     /**
@@ -59,6 +60,36 @@ public class AutorizacionServicio {
                 .orElse(false); // Si el doctor no existe, denegar acceso
     }
 
+    /**
+     * Comprueba si un token coincide con el token activo del feed de agenda de un doctor.
+     * Los hashes se comparan en tiempo constante.
+     * @param doctorId El UUID del doctor.
+     * @param token El token recibido en la URL del feed, o null.
+     * @return true si el doctor tiene un token activo y coincide con el recibido.
+     */
+    public boolean esTokenFeedAgenda(UUID doctorId, String token) {
+        if (token == null || token.isBlank()) {
+            return false;
+        }
+        byte[] recibido = FeedAgendaServicio.hashToken(token).getBytes(StandardCharsets.US_ASCII);
+        return doctorRepositorio.findById(doctorId)
+                .map(doctor -> doctor.getHashTokenFeed() != null
+                        && MessageDigest.isEqual(doctor.getHashTokenFeed().getBytes(StandardCharsets.US_ASCII), recibido))
+                .orElse(false);
+    }
+
+    /**
+     * Comprueba si el usuario autenticado es el paciente correspondiente a un ID.
+     * @param authentication El objeto de autenticación actual.
+     * @param pacienteId El UUID del paciente a comprobar.
+     * @return true si el email del usuario autenticado coincide con el email del paciente.
+     */
+    public boolean esPropietarioDePaciente(Authentication authentication, UUID pacienteId) {
+        return pacienteRepositorio.findById(pacienteId)
+                .map(paciente -> paciente.getEmail().equals(authentication.getName()))
+                .orElse(false); // Si el paciente no existe, denegar acceso
+    }
+
     // Este método es demasiado genérico y propenso a errores, se podría eliminar
     // public boolean esPropietario(Authentication authentication, String username) { ... }
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion;
 import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
 import com.example.citasmedicas.dto.CitaDTO;
 import com.example.citasmedicas.dto.CrearCitaDTO;
+import com.example.citasmedicas.dto.CrearSerieCitasDTO;
 import com.example.citasmedicas.modelo.entidad.Cita;
 import com.example.citasmedicas.modelo.entidad.Doctor;
 import com.example.citasmedicas.modelo.entidad.Disponibilidad;
@@ -14,7 +15,10 @@ import com.example.citasmedicas.modelo.entidad.Paciente;
 
 import com.example.citasmedicas.mapeador.CitaMapeador;
 import com.example.citasmedicas.repositorio.CitaRepositorio;
-import com.example.citasmedicas.servicio.notificacion.EstrategiaNotificacion;
+import com.example.citasmedicas.servicio.notificacion.BandejaSalidaNotificaciones;
+import com.example.citasmedicas.servicio.reserva.CoordinadorReservas;
+import com.example.citasmedicas.servicio.reserva.RetencionServicio;
+import com.example.citasmedicas.servicio.transaccion.ReintentarTransaccion;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -25,8 +29,11 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 /**
  * Servicio para la gestión de Citas.
@@ -40,43 +47,44 @@ public class CitaServicio {
     private final PacienteServicio pacienteServicio;
     private final DisponibilidadServicio disponibilidadServicio;
     private final CitaMapeador citaMapeador;
-    private final EstrategiaNotificacion estrategiaNotificacion; // Inyección de la estrategia de notificación
+    private final BandejaSalidaNotificaciones bandejaSalidaNotificaciones; // Bandeja de salida transaccional de notificaciones
+    private final CoordinadorReservas coordinadorReservas; // Serializa las reservas por doctor en carriles
+    private final RetencionServicio retencionServicio; // Retenciones temporales de bloques
 
-    public CitaServicio(CitaRepositorio citaRepositorio, DoctorServicio doctorServicio, PacienteServicio pacienteServicio, DisponibilidadServicio disponibilidadServicio, CitaMapeador citaMapeador, EstrategiaNotificacion estrategiaNotificacion) {
+    public CitaServicio(CitaRepositorio citaRepositorio, DoctorServicio doctorServicio, PacienteServicio pacienteServicio, DisponibilidadServicio disponibilidadServicio, CitaMapeador citaMapeador, BandejaSalidaNotificaciones bandejaSalidaNotificaciones, CoordinadorReservas coordinadorReservas, RetencionServicio retencionServicio) {
         this.citaRepositorio = citaRepositorio;
         this.doctorServicio = doctorServicio;
         this.pacienteServicio = pacienteServicio;
         this.disponibilidadServicio = disponibilidadServicio;
         this.citaMapeador = citaMapeador;
-        this.estrategiaNotificacion = estrategiaNotificacion;
+        this.bandejaSalidaNotificaciones = bandejaSalidaNotificaciones;
+        this.coordinadorReservas = coordinadorReservas;
+        this.retencionServicio = retencionServicio;
     }
 
     /**
      * Agenda una nueva cita para un paciente con un doctor en un horario específico.
      * Implementa las validaciones de negocio críticas.
+     * El bloque se reclama con una actualización condicional atómica, por lo que basta READ COMMITTED:
+     * las reservas de doctores distintos no se interfieren y la carrera por un mismo bloque la decide la base de datos.
      * @param dto El DTO con los detalles de la cita.
      * @return El DTO de la cita creada.
      * @throws RecursoNoEncontradoExcepcion Si el doctor, paciente o disponibilidad no existen.
-     * @throws ConflictoHorarioExcepcion Si el bloque de disponibilidad ya está reservado o no pertenece al doctor.
+     * @throws ConflictoHorarioExcepcion Si el bloque de disponibilidad ya está reservado, retenido por otro paciente o no pertenece al doctor.
      */
-    @Transactional(isolation = Isolation.SERIALIZABLE) // Asegura atomicitad para la reserva de horario
+    @ReintentarTransaccion
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public CitaDTO agendarCita(CrearCitaDTO dto) {
         // 1. Validar que doctor y paciente existan
         Doctor doctor = doctorServicio.obtenerEntidadDoctorPorId(dto.getDoctorId());
         Paciente paciente = pacienteServicio.obtenerEntidadPacientePorId(dto.getPacienteId());
 
-        // 2. Validar que el bloque de disponibilidad exista y esté disponible (no reservado)
-        Disponibilidad disponibilidad = disponibilidadServicio.obtenerEntidadDisponibilidadDisponiblePorId(dto.getDisponibilidadId());
+        // 2. Respetar la retención temporal de otro paciente sobre el bloque
+        retencionServicio.verificarDisponibleParaPaciente(dto.getDisponibilidadId(), paciente.getId());
 
-
-        // Validar que el bloque no haya sido reservado por otra cita en el instante de la transacción.
-        // y que pertenezca al doctorId especificado.
-        if (disponibilidad.getEstaReservado() || !disponibilidad.getDoctor().getId().equals(doctor.getId())) {
-            throw new ConflictoHorarioExcepcion("El horario seleccionado ya no se encuentra disponible para el doctor especificado."); //
-        }
-
-        // 3. Marcar el bloque de disponibilidad como reservado
-        disponibilidadServicio.reservarDisponibilidad(disponibilidad);
+        // 3. Reclamar el bloque en el carril del doctor: solo tiene éxito si sigue libre y le pertenece
+        Disponibilidad disponibilidad = coordinadorReservas.reservarDisponibilidad(dto.getDisponibilidadId(), doctor.getId());
+        retencionServicio.consumir(disponibilidad.getId(), paciente.getId());
 
         // 4. Crear la cita
         Cita cita = citaMapeador.aEntidad(dto);
@@ -86,8 +94,8 @@ public class CitaServicio {
 
         Cita citaGuardada = citaRepositorio.save(cita);
 
-        // 5. Notificar confirmación de cita (ejemplo de patrón Strategy)
-        estrategiaNotificacion.enviarNotificacion(
+        // 5. Registrar la notificación de confirmación en la bandeja de salida (se envía tras el commit)
+        bandejaSalidaNotificaciones.encolar(
                 paciente.getEmail(),
                 "Cita Confirmada",
                 "Su cita con el Dr./Dra. " + doctor.getPrimerNombre() + " " + doctor.getApellido() +
@@ -98,18 +106,66 @@ public class CitaServicio {
         return citaMapeador.aDTO(citaGuardada);
     }
 
+    /**
+     * Agenda una serie de citas recurrentes de un paciente con un mismo doctor en una única transacción.
+     * Doctor y paciente se cargan una sola vez, los bloques se reclaman todos o ninguno en un orden
+     * determinista, las citas se insertan por lotes y se envía una única notificación de resumen.
+     * @param dto El DTO con los bloques de la serie.
+     * @return La lista de DTOs de las citas creadas, ordenada por hora de inicio.
+     * @throws RecursoNoEncontradoExcepcion Si el doctor, el paciente o alguno de los bloques no existen.
+     * @throws ConflictoHorarioExcepcion Si alguno de los bloques ya está reservado, retenido por otro paciente o no pertenece al doctor.
+     * @throws SolicitudInvalidaExcepcion Si la serie contiene bloques repetidos.
+     */
+    @ReintentarTransaccion
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public List<CitaDTO> agendarSerieCitas(CrearSerieCitasDTO dto) {
+        Doctor doctor = doctorServicio.obtenerEntidadDoctorPorId(dto.getDoctorId());
+        Paciente paciente = pacienteServicio.obtenerEntidadPacientePorId(dto.getPacienteId());
+
+        dto.getDisponibilidadIds().forEach(id -> retencionServicio.verificarDisponibleParaPaciente(id, paciente.getId()));
+        List<Disponibilidad> disponibilidades = coordinadorReservas.reservarSerie(dto.getDisponibilidadIds(), doctor.getId());
+        disponibilidades.forEach(d -> retencionServicio.consumir(d.getId(), paciente.getId()));
+
+        List<Cita> citas = new ArrayList<>(disponibilidades.size());
+        for (Disponibilidad disponibilidad : disponibilidades) {
+            Cita cita = new Cita();
+            cita.setDoctor(doctor);
+            cita.setPaciente(paciente);
+            cita.setDisponibilidad(disponibilidad);
+            cita.setRazonVisita(dto.getRazonVisita());
+            citas.add(cita);
+        }
+        // Con hibernate.jdbc.batch_size las inserciones se agrupan en lotes JDBC
+        List<Cita> citasGuardadas = citaRepositorio.saveAll(citas);
+
+        String fechas = disponibilidades.stream()
+                .map(d -> "- " + d.getHoraInicio())
+                .collect(Collectors.joining("\n"));
+        bandejaSalidaNotificaciones.encolar(
+                paciente.getEmail(),
+                "Serie de Citas Confirmada",
+                "Sus " + citasGuardadas.size() + " citas con el Dr./Dra. " + doctor.getPrimerNombre() + " " + doctor.getApellido() +
+                        " han sido confirmadas para las siguientes fechas:\n" + fechas
+        );
+
+        return citaMapeador.aListaDTO(citasGuardadas);
+    }
+
     /**
      * Cancela una cita existente.
      * Aplica la política de cancelación de 24 horas.
+     * La cita se carga con su bloque, paciente y doctor en una sola consulta y el bloque se libera
+     * con una actualización directa, por lo que la cancelación ejecuta un número fijo de sentencias.
      * @param idCita El UUID de la cita a cancelar.
      * @return El DTO de la cita actualizada.
      * @throws RecursoNoEncontradoExcepcion Si la cita no existe.
      * @throws SolicitudInvalidaExcepcion Si la cita ya está cancelada o finalizada.
      * @throws AccesoDenegadoExcepcion Si se intenta cancelar con menos de 24 horas de antelación.
      */
+    @ReintentarTransaccion
     @Transactional
     public CitaDTO cancelarCita(UUID idCita) {
-        Cita cita = citaRepositorio.findById(idCita)
+        Cita cita = citaRepositorio.buscarParaCancelacion(idCita)
                 .orElseThrow(() -> new RecursoNoEncontradoExcepcion("Cita no encontrada con ID: " + idCita));
 
         // Validar estado actual de la cita
@@ -130,12 +186,12 @@ public class CitaServicio {
 
         cita.setEstado(EstadoCita.CANCELADA); // Cambia el estado a CANCELADA
         // Liberar el bloque de disponibilidad
-        disponibilidadServicio.liberarDisponibilidad(cita.getDisponibilidad());
+        disponibilidadServicio.liberarDisponibilidad(cita.getDisponibilidad().getId()); // Al confirmarse, también sale de la vista del coordinador
 
         Cita citaActualizada = citaRepositorio.save(cita);
 
         // Notificar cancelación
-        estrategiaNotificacion.enviarNotificacion(
+        bandejaSalidaNotificaciones.encolar(
                 cita.getPaciente().getEmail(),
                 "Cita Cancelada",
                 "Su cita con el Dr./Dra. " + cita.getDoctor().getPrimerNombre() + " " + cita.getDoctor().getApellido() +
@@ -3,21 +3,45 @@ package com.example.citasmedicas.servicio;
 import com.example.citasmedicas.excepciones.ConflictoHorarioExcepcion;
 import com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion;
 import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
 import com.example.citasmedicas.dto.CrearDisponibilidadDTO;
 import com.example.citasmedicas.dto.DisponibilidadDTO;
 import com.example.citasmedicas.modelo.entidad.Doctor;
 import com.example.citasmedicas.modelo.entidad.Disponibilidad;
 import com.example.citasmedicas.mapeador.DisponibilidadMapeador;
 import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.agenda.CacheDisponibilidad;
+import com.example.citasmedicas.servicio.agenda.IndiceIntervalosDisponibilidad;
+import com.example.citasmedicas.servicio.agenda.RanurasVirtuales;
+import com.example.citasmedicas.servicio.evento.CambioDisponibilidadEvento;
+import com.example.citasmedicas.servicio.evento.DisponibilidadLiberadaEvento;
+import com.example.citasmedicas.servicio.evento.TipoCambioDisponibilidad;
+import com.example.citasmedicas.servicio.reserva.RetencionServicio;
+import com.example.citasmedicas.servicio.transaccion.ReintentarTransaccion;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
 
 /**
  * Servicio para la gestión de Disponibilidades de los doctores.
+ * Las sesiones (bloques con duración de ranura) se ofrecen como ranuras virtuales calculadas al leer;
+ * una ranura solo se escribe como bloque propio cuando se reserva.
  */
 @Service
 public class DisponibilidadServicio {
@@ -25,11 +49,19 @@ public class DisponibilidadServicio {
     private final DisponibilidadRepositorio disponibilidadRepositorio;
     private final DisponibilidadMapeador disponibilidadMapeador;
     private final DoctorServicio doctorServicio;
+    private final RetencionServicio retencionServicio; // Retenciones temporales en memoria
+    private final ApplicationEventPublisher publicadorEventos; // Publica los cambios de bloques (lista de espera y flujo SSE)
+    private final IndiceIntervalosDisponibilidad indiceIntervalos; // Detección de solapamientos en memoria
+    private final CacheDisponibilidad cacheDisponibilidad; // Caché de lectura por doctor y día
 
-    public DisponibilidadServicio(DisponibilidadRepositorio disponibilidadRepositorio, DisponibilidadMapeador disponibilidadMapeador, DoctorServicio doctorServicio) {
+    public DisponibilidadServicio(DisponibilidadRepositorio disponibilidadRepositorio, DisponibilidadMapeador disponibilidadMapeador, DoctorServicio doctorServicio, RetencionServicio retencionServicio, ApplicationEventPublisher publicadorEventos, IndiceIntervalosDisponibilidad indiceIntervalos, CacheDisponibilidad cacheDisponibilidad) {
         this.disponibilidadRepositorio = disponibilidadRepositorio;
         this.disponibilidadMapeador = disponibilidadMapeador;
         this.doctorServicio = doctorServicio;
+        this.retencionServicio = retencionServicio;
+        this.publicadorEventos = publicadorEventos;
+        this.indiceIntervalos = indiceIntervalos;
+        this.cacheDisponibilidad = cacheDisponibilidad;
     }
 
     /**
@@ -37,21 +69,27 @@ public class DisponibilidadServicio {
      * @param dto El DTO con la información del nuevo bloque.
      * @return El DTO del bloque de disponibilidad creado.
      * @throws RecursoNoEncontradoExcepcion Si el doctor no es encontrado.
-     * @throws SolicitudInvalidaExcepcion Si la hora de inicio es posterior a la hora de fin o hay solapamiento.
+     * @throws SolicitudInvalidaExcepcion Si la hora de inicio es posterior a la hora de fin, la sesión no es válida o hay solapamiento.
      */
+    @ReintentarTransaccion
     @Transactional
     public DisponibilidadDTO crearDisponibilidad(CrearDisponibilidadDTO dto) {
         // 1. Verificar que la hora de inicio sea anterior a la hora de fin
         if (dto.getHoraInicio().isAfter(dto.getHoraFin())) {
             throw new SolicitudInvalidaExcepcion("La hora de inicio no puede ser posterior a la hora de fin.");
         }
+        if (dto.getMinutosRanura() != null) {
+            validarSesion(dto);
+        }
 
         Doctor doctor = doctorServicio.obtenerEntidadDoctorPorId(dto.getDoctorId()); // Obtener la entidad Doctor
 
-        // 2. Verificar que no haya solapamiento con disponibilidades existentes del mismo doctor
-        List<Disponibilidad> disponibilidadesSolapadas = disponibilidadRepositorio
-                .findByDoctorAndHoraFinAfterAndHoraInicioBefore(doctor, dto.getHoraInicio(), dto.getHoraFin());
-        if (!disponibilidadesSolapadas.isEmpty()) {
+        // 2. Verificar que no haya solapamiento con disponibilidades existentes del mismo doctor. El índice en memoria solo
+        //    descarta rápido los solapamientos: puede no ver aún los bloques creados por otras instancias, así que su
+        //    respuesta negativa se confirma en la base de datos
+        boolean haySolapamiento = indiceIntervalos.haySolapamiento(doctor.getId(), dto.getHoraInicio(), dto.getHoraFin()).orElse(false)
+                || disponibilidadRepositorio.existsByDoctorIdAndHoraFinAfterAndHoraInicioBefore(doctor.getId(), dto.getHoraInicio(), dto.getHoraFin());
+        if (haySolapamiento) {
             throw new SolicitudInvalidaExcepcion("El horario de disponibilidad se solapa con una disponibilidad existente.");
         }
 
@@ -59,23 +97,65 @@ public class DisponibilidadServicio {
         disponibilidad.setDoctor(doctor); // Asignar el doctor a la disponibilidad
 
         Disponibilidad disponibilidadGuardada = disponibilidadRepositorio.save(disponibilidad);
+        indiceIntervalos.registrarCreado(doctor.getId(), new BloqueHorarioDTO(disponibilidadGuardada.getId(),
+                disponibilidadGuardada.getHoraInicio(), disponibilidadGuardada.getHoraFin(), false));
+        cacheDisponibilidad.invalidar(doctor.getId(), disponibilidadGuardada.getHoraInicio());
+        publicarCambio(disponibilidadGuardada, TipoCambioDisponibilidad.CREADO);
         return disponibilidadMapeador.aDTO(disponibilidadGuardada);
     }
 
     /**
      * Obtiene los bloques de disponibilidad de un doctor en un rango de fechas.
+     * Los bloques con una retención temporal vigente se marcan como retenidos.
+     * Los días del rango se leen de la caché por doctor y día; los que faltan se cargan con una sola consulta.
+     * No abre una transacción propia: con la caché completa no se accede a la base de datos.
      * @param doctorId El UUID del doctor.
      * @param fechaInicio La fecha de inicio del rango.
      * @param fechaFin La fecha de fin del rango.
      * @return Una lista de DTOs de disponibilidad.
      * @throws RecursoNoEncontradoExcepcion Si el doctor no es encontrado.
      */
-    @Transactional(readOnly = true)
     public List<DisponibilidadDTO> obtenerDisponibilidadesDoctor(UUID doctorId, LocalDateTime fechaInicio, LocalDateTime fechaFin) {
-        Doctor doctor = doctorServicio.obtenerEntidadDoctorPorId(doctorId);
-        List<Disponibilidad> disponibilidades = disponibilidadRepositorio
-                .findByDoctorAndHoraInicioBetweenOrderByHoraInicioAsc(doctor, fechaInicio, fechaFin); //
-        return disponibilidadMapeador.aListaDTO(disponibilidades);
+        LocalDate primerDia = fechaInicio.toLocalDate();
+        LocalDate ultimoDia = fechaFin.toLocalDate();
+        if (fechaFin.isBefore(fechaInicio) || !cacheDisponibilidad.admite(ChronoUnit.DAYS.between(primerDia, ultimoDia) + 1)) {
+            Doctor doctor = doctorServicio.obtenerEntidadDoctorPorId(doctorId);
+            List<Disponibilidad> disponibilidades = disponibilidadRepositorio
+                    .findByDoctorAndHoraInicioBetweenOrderByHoraInicioAsc(doctor, fechaInicio, fechaFin);
+            if (disponibilidades.stream().anyMatch(d -> d.getMinutosRanura() != null)) {
+                return expandirSesiones(doctorId, disponibilidades, fechaFin);
+            }
+            List<DisponibilidadDTO> dtos = disponibilidadMapeador.aListaDTO(disponibilidades);
+            dtos.forEach(dto -> dto.setEstaRetenido(!dto.getEstaReservado() && retencionServicio.estaRetenido(dto.getId())));
+            return dtos;
+        }
+
+        Map<LocalDate, List<BloqueHorarioDTO>> porDia = new HashMap<>();
+        LocalDate primerFaltante = null;
+        LocalDate ultimoFaltante = null;
+        for (LocalDate dia = primerDia; !dia.isAfter(ultimoDia); dia = dia.plusDays(1)) {
+            List<BloqueHorarioDTO> bloques = cacheDisponibilidad.obtener(doctorId, dia);
+            if (bloques != null) {
+                porDia.put(dia, bloques);
+            } else {
+                primerFaltante = primerFaltante == null ? dia : primerFaltante;
+                ultimoFaltante = dia;
+            }
+        }
+        if (primerFaltante != null) {
+            cargarDias(doctorId, primerFaltante, ultimoFaltante, porDia);
+        }
+
+        List<DisponibilidadDTO> dtos = new ArrayList<>();
+        for (LocalDate dia = primerDia; !dia.isAfter(ultimoDia); dia = dia.plusDays(1)) {
+            for (BloqueHorarioDTO bloque : porDia.get(dia)) {
+                if (!bloque.horaInicio().isBefore(fechaInicio) && !bloque.horaInicio().isAfter(fechaFin)) {
+                    boolean retenido = !bloque.estaReservado() && retencionServicio.estaRetenido(bloque.id());
+                    dtos.add(new DisponibilidadDTO(bloque.id(), doctorId, bloque.horaInicio(), bloque.horaFin(), bloque.estaReservado(), retenido));
+                }
+            }
+        }
+        return dtos;
     }
 
     /**
@@ -93,11 +173,12 @@ public class DisponibilidadServicio {
 
     /**
      * Elimina un bloque de disponibilidad por su ID.
-     * Solo se puede eliminar si no está reservado.
+     * Solo se puede eliminar si no está reservado; una sesión, solo si ninguna de sus ranuras se ha materializado.
      * @param id El UUID de la disponibilidad a eliminar.
      * @throws RecursoNoEncontradoExcepcion Si la disponibilidad no existe.
      * @throws SolicitudInvalidaExcepcion Si la disponibilidad ya está reservada.
      */
+    @ReintentarTransaccion
     @Transactional
     public void eliminarDisponibilidad(UUID id) {
         Disponibilidad disponibilidad = disponibilidadRepositorio.findById(id)
@@ -106,7 +187,13 @@ public class DisponibilidadServicio {
         if (disponibilidad.getEstaReservado()) { // No eliminar si está reservada
             throw new SolicitudInvalidaExcepcion("No se puede eliminar un bloque de disponibilidad que ya ha sido reservado.");
         }
+        if (disponibilidad.getMinutosRanura() != null && !disponibilidadRepositorio.buscarMaterializadas(List.of(id)).isEmpty()) {
+            throw new SolicitudInvalidaExcepcion("No se puede eliminar una sesión con ranuras ya reservadas.");
+        }
         disponibilidadRepositorio.delete(disponibilidad);
+        indiceIntervalos.registrarEliminado(id);
+        cacheDisponibilidad.invalidar(disponibilidad.getDoctor().getId(), disponibilidad.getHoraInicio());
+        publicarCambio(disponibilidad, TipoCambioDisponibilidad.ELIMINADO);
     }
 
     /**
@@ -114,6 +201,7 @@ public class DisponibilidadServicio {
      * Este método es para uso transaccional por otros servicios.
      * @param disponibilidad La entidad Disponibilidad a reservar.
      */
+    @ReintentarTransaccion
     @Transactional
     public void reservarDisponibilidad(Disponibilidad disponibilidad) {
         if (disponibilidad.getEstaReservado()) {
@@ -121,16 +209,187 @@ public class DisponibilidadServicio {
         }
         disponibilidad.setEstaReservado(true);
         disponibilidadRepositorio.save(disponibilidad);
+        indiceIntervalos.registrarReserva(disponibilidad.getId(), true);
+        cacheDisponibilidad.invalidar(disponibilidad.getDoctor().getId(), disponibilidad.getHoraInicio());
+        publicarCambio(disponibilidad, TipoCambioDisponibilidad.RESERVADO);
+    }
+
+    /**
+     * Reclama un bloque de disponibilidad para un doctor mediante una única actualización condicional.
+     * La actualización solo tiene efecto si el bloque sigue libre y pertenece al doctor, por lo que
+     * el número de filas afectadas decide qué transacción gana la reserva sin necesidad de aislamiento SERIALIZABLE.
+     * Si el ID corresponde a una ranura virtual de una sesión del doctor, la ranura se materializa como bloque reservado;
+     * la clave primaria derivada de la ranura decide entonces entre reservas simultáneas.
+     * Este método es para uso transaccional por otros servicios.
+     * @param disponibilidadId El UUID del bloque a reclamar.
+     * @param doctorId El UUID del doctor al que debe pertenecer el bloque.
+     * @return La entidad Disponibilidad ya marcada como reservada.
+     * @throws RecursoNoEncontradoExcepcion Si el bloque de disponibilidad no existe.
+     * @throws ConflictoHorarioExcepcion Si el bloque ya está reservado o no pertenece al doctor.
+     */
+    @ReintentarTransaccion
+    @Transactional
+    public Disponibilidad reclamarDisponibilidad(UUID disponibilidadId, UUID doctorId) {
+        int filasActualizadas = disponibilidadRepositorio.reclamarSiDisponible(disponibilidadId, doctorId, Instant.now());
+        if (filasActualizadas == 0) {
+            // Solo en el camino de fallo se distingue entre bloque inexistente y bloque ocupado
+            if (!disponibilidadRepositorio.existsById(disponibilidadId)) {
+                return materializarRanura(disponibilidadId, doctorId);
+            }
+            throw new ConflictoHorarioExcepcion("El horario seleccionado ya no se encuentra disponible para el doctor especificado.");
+        }
+        Disponibilidad disponibilidad = disponibilidadRepositorio.findById(disponibilidadId)
+                .orElseThrow(() -> new RecursoNoEncontradoExcepcion("Bloque de disponibilidad no encontrado con ID: " + disponibilidadId));
+        // La actualización masiva no pasa por el contexto de persistencia; se sincroniza la instancia gestionada
+        disponibilidad.setEstaReservado(true);
+        indiceIntervalos.registrarReserva(disponibilidadId, true);
+        cacheDisponibilidad.invalidar(doctorId, disponibilidad.getHoraInicio());
+        publicarCambio(disponibilidad, TipoCambioDisponibilidad.RESERVADO);
+        return disponibilidad;
+    }
+
+    /**
+     * Reclama varios bloques de disponibilidad de un mismo doctor de forma atómica (todos o ninguno).
+     * Los bloques se bloquean en orden de ID para evitar interbloqueos entre series solapadas
+     * y se marcan como reservados con una única actualización.
+     * Este método es para uso transaccional por otros servicios.
+     * @param disponibilidadIds Los UUID de los bloques a reclamar (sin repetidos).
+     * @param doctorId El UUID del doctor al que deben pertenecer todos los bloques.
+     * @return Las entidades Disponibilidad reservadas, ordenadas por hora de inicio.
+     * @throws SolicitudInvalidaExcepcion Si la lista contiene IDs repetidos.
+     * @throws RecursoNoEncontradoExcepcion Si alguno de los bloques no existe.
+     * @throws ConflictoHorarioExcepcion Si alguno de los bloques ya está reservado o no pertenece al doctor.
+     */
+    @ReintentarTransaccion
+    @Transactional
+    public List<Disponibilidad> reclamarDisponibilidades(Collection<UUID> disponibilidadIds, UUID doctorId) {
+        Set<UUID> idsOrdenados = new TreeSet<>(disponibilidadIds);
+        if (idsOrdenados.size() != disponibilidadIds.size()) {
+            throw new SolicitudInvalidaExcepcion("La serie contiene bloques de disponibilidad repetidos.");
+        }
+
+        List<Disponibilidad> bloques = disponibilidadRepositorio.bloquearPorIdsOrdenados(idsOrdenados);
+        if (bloques.size() != idsOrdenados.size()) {
+            Set<UUID> faltantes = new TreeSet<>(idsOrdenados);
+            bloques.forEach(d -> faltantes.remove(d.getId()));
+            throw new RecursoNoEncontradoExcepcion("Bloques de disponibilidad no encontrados con ID: " + faltantes);
+        }
+        for (Disponibilidad disponibilidad : bloques) {
+            if (!disponibilidad.getDoctor().getId().equals(doctorId) || disponibilidad.getEstaReservado() || disponibilidad.getMinutosRanura() != null) {
+                throw new ConflictoHorarioExcepcion("El horario " + disponibilidad.getHoraInicio() + " ya no se encuentra disponible para el doctor especificado.");
+            }
+        }
+
+        // Las filas ya están bloqueadas por esta transacción, así que la actualización las afecta a todas
+        disponibilidadRepositorio.reservarTodos(idsOrdenados, Instant.now());
+        // La actualización masiva no pasa por el contexto de persistencia; se sincronizan las instancias gestionadas
+        bloques.forEach(d -> d.setEstaReservado(true));
+        idsOrdenados.forEach(id -> indiceIntervalos.registrarReserva(id, true));
+        bloques.forEach(d -> cacheDisponibilidad.invalidar(doctorId, d.getHoraInicio()));
+        bloques.forEach(d -> publicarCambio(d, TipoCambioDisponibilidad.RESERVADO));
+        List<Disponibilidad> reservados = new ArrayList<>(bloques);
+        reservados.sort(Comparator.comparing(Disponibilidad::getHoraInicio));
+        return reservados;
     }
 
     /**
      * Libera un bloque de disponibilidad que estaba reservado.
      * Este método es para uso transaccional por otros servicios.
-     * @param disponibilidad La entidad Disponibilidad a liberar.
+     * Se ejecuta como una actualización directa: una instancia gestionada del bloque no se modifica
+     * (así no genera un segundo UPDATE al confirmar), por lo que su indicador de reserva queda desactualizado.
+     * Si el bloque se libera se publica DisponibilidadLiberadaEvento, que se entrega tras la confirmación.
+     * @param disponibilidadId El UUID del bloque a liberar.
+     * @return true si el bloque estaba reservado y se liberó.
      */
+    @ReintentarTransaccion
     @Transactional
-    public void liberarDisponibilidad(Disponibilidad disponibilidad) {
-        disponibilidad.setEstaReservado(false);
-        disponibilidadRepositorio.save(disponibilidad);
+    public boolean liberarDisponibilidad(UUID disponibilidadId) {
+        boolean liberado = disponibilidadRepositorio.liberarSiReservado(disponibilidadId, Instant.now()) == 1;
+        if (liberado) {
+            indiceIntervalos.registrarReserva(disponibilidadId, false);
+            cacheDisponibilidad.invalidarBloque(disponibilidadId);
+            publicadorEventos.publishEvent(new DisponibilidadLiberadaEvento(disponibilidadId));
+        }
+        return liberado;
+    }
+
+    // Una sesión no cruza la medianoche (la caché agrupa por día de inicio) y debe contener al menos una ranura
+    private void validarSesion(CrearDisponibilidadDTO dto) {
+        if (dto.getHoraFin().isAfter(dto.getHoraInicio().toLocalDate().plusDays(1).atStartOfDay())) {
+            throw new SolicitudInvalidaExcepcion("Una sesión con ranuras debe comenzar y terminar el mismo día.");
+        }
+        if (RanurasVirtuales.contar(dto.getHoraInicio(), dto.getHoraFin(), dto.getMinutosRanura()) == 0) {
+            throw new SolicitudInvalidaExcepcion("La sesión es más corta que la duración de una ranura.");
+        }
+    }
+
+    // Escribe la ranura virtual como bloque reservado con un INSERT; si otra transacción la materializó antes, la clave primaria lo detecta
+    private Disponibilidad materializarRanura(UUID ranuraId, UUID doctorId) {
+        List<BloqueHorarioDTO> sesiones = disponibilidadRepositorio.buscarSesionesEnRango(doctorId,
+                RanurasVirtuales.idSesionDesde(ranuraId), RanurasVirtuales.idSesionHasta(ranuraId), LocalDateTime.now(ZoneOffset.UTC));
+        for (BloqueHorarioDTO sesion : sesiones) {
+            int orden = RanurasVirtuales.orden(sesion.id(), ranuraId);
+            if (orden < 0 || orden >= RanurasVirtuales.contar(sesion.horaInicio(), sesion.horaFin(), sesion.minutosRanura())) {
+                continue;
+            }
+            LocalDateTime inicio = sesion.horaInicio().plusMinutes((long) orden * sesion.minutosRanura());
+            Disponibilidad disponibilidad = Disponibilidad.builder()
+                    .id(ranuraId)
+                    .doctor(doctorServicio.obtenerEntidadDoctorPorId(doctorId))
+                    .horaInicio(inicio)
+                    .horaFin(inicio.plusMinutes(sesion.minutosRanura()))
+                    .estaReservado(true)
+                    .bloquePadreId(sesion.id())
+                    .build();
+            try {
+                disponibilidad = disponibilidadRepositorio.insertar(disponibilidad);
+            } catch (DataIntegrityViolationException e) {
+                throw new ConflictoHorarioExcepcion("El horario seleccionado ya no se encuentra disponible para el doctor especificado.");
+            }
+            cacheDisponibilidad.invalidar(doctorId, disponibilidad.getHoraInicio());
+            publicarCambio(disponibilidad, TipoCambioDisponibilidad.RESERVADO);
+            return disponibilidad;
+        }
+        throw new RecursoNoEncontradoExcepcion("Bloque de disponibilidad no encontrado con ID: " + ranuraId);
+    }
+
+    // Camino sin caché: los bloques de sesiones se sustituyen por sus ranuras libres
+    private List<DisponibilidadDTO> expandirSesiones(UUID doctorId, List<Disponibilidad> disponibilidades, LocalDateTime fechaFin) {
+        List<BloqueHorarioDTO> bloques = new ArrayList<>(disponibilidades.size());
+        disponibilidades.forEach(d -> bloques.add(new BloqueHorarioDTO(d.getId(), d.getHoraInicio(), d.getHoraFin(),
+                d.getEstaReservado(), d.getMinutosRanura(), d.getBloquePadreId())));
+        List<DisponibilidadDTO> dtos = new ArrayList<>();
+        for (BloqueHorarioDTO bloque : RanurasVirtuales.expandir(bloques)) {
+            if (bloque.horaInicio().isAfter(fechaFin)) {
+                break;
+            }
+            boolean retenido = !bloque.estaReservado() && retencionServicio.estaRetenido(bloque.id());
+            dtos.add(new DisponibilidadDTO(bloque.id(), doctorId, bloque.horaInicio(), bloque.horaFin(), bloque.estaReservado(), retenido));
+        }
+        return dtos;
+    }
+
+    // Los oyentes reciben el evento tras la confirmación de la transacción (el flujo SSE, por ejemplo)
+    private void publicarCambio(Disponibilidad disponibilidad, TipoCambioDisponibilidad tipo) {
+        publicadorEventos.publishEvent(new CambioDisponibilidadEvento(disponibilidad.getDoctor().getId(), disponibilidad.getId(),
+                tipo, disponibilidad.getHoraInicio(), disponibilidad.getHoraFin()));
+    }
+
+    // Carga los días [desde, hasta] con una consulta y guarda cada día en la caché, también los vacíos
+    private void cargarDias(UUID doctorId, LocalDate desde, LocalDate hasta, Map<LocalDate, List<BloqueHorarioDTO>> porDia) {
+        long version = cacheDisponibilidad.version(doctorId);
+        doctorServicio.obtenerEntidadDoctorPorId(doctorId);
+        List<BloqueHorarioDTO> bloques = RanurasVirtuales.expandir(
+                disponibilidadRepositorio.buscarBloquesPorInicio(doctorId, desde.atStartOfDay(), hasta.plusDays(1).atStartOfDay()));
+        int i = 0;
+        for (LocalDate dia = desde; !dia.isAfter(hasta); dia = dia.plusDays(1)) {
+            int inicioDia = i;
+            while (i < bloques.size() && bloques.get(i).horaInicio().toLocalDate().equals(dia)) {
+                i++;
+            }
+            List<BloqueHorarioDTO> delDia = bloques.subList(inicioDia, i);
+            cacheDisponibilidad.guardar(doctorId, dia, delDia, version);
+            porDia.put(dia, delDia);
+        }
     }
 }
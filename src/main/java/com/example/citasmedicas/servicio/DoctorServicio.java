@@ -7,6 +7,7 @@ import com.example.citasmedicas.modelo.entidad.Doctor;
 import com.example.citasmedicas.modelo.entidad.Especialidad;
 import com.example.citasmedicas.mapeador.DoctorMapeador;
 import com.example.citasmedicas.repositorio.DoctorRepositorio;
+import com.example.citasmedicas.servicio.agenda.CacheDisponibilidad;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -26,11 +27,13 @@ public class DoctorServicio {
     private final DoctorRepositorio doctorRepositorio;
     private final DoctorMapeador doctorMapeador;
     private final EspecialidadServicio especialidadServicio; // Necesario para buscar especialidades
+    private final CacheDisponibilidad cacheDisponibilidad; // Se invalida al eliminar un doctor
 
-    public DoctorServicio(DoctorRepositorio doctorRepositorio, DoctorMapeador doctorMapeador, EspecialidadServicio especialidadServicio) {
+    public DoctorServicio(DoctorRepositorio doctorRepositorio, DoctorMapeador doctorMapeador, EspecialidadServicio especialidadServicio, CacheDisponibilidad cacheDisponibilidad) {
         this.doctorRepositorio = doctorRepositorio;
         this.doctorMapeador = doctorMapeador;
         this.especialidadServicio = especialidadServicio;
+        this.cacheDisponibilidad = cacheDisponibilidad;
     }
 
     /**
@@ -134,5 +137,6 @@ public class DoctorServicio {
             throw new RecursoNoEncontradoExcepcion("Doctor no encontrado con ID: " + id);
         }
         doctorRepositorio.deleteById(id);
+        cacheDisponibilidad.invalidarDoctor(id);
     }
 }
@@ -0,0 +1,172 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.dto.HorarioLibreDTO;
+import com.example.citasmedicas.dto.SesionDisponibilidadDTO;
+import com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion;
+import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.EspecialidadServicio;
+import com.example.citasmedicas.servicio.reserva.RetencionServicio;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Servicio de búsqueda del próximo horario disponible entre todos los doctores de una especialidad.
+ * Lee los bloques libres por ventanas de días con una consulta por ventana, agrupados por doctor y ordenados
+ * por hora de inicio, y los mezcla con una fusión de k vías hasta reunir los primeros resultados que cumplen los filtros.
+ * Las ranuras virtuales libres de las sesiones de cada ventana se añaden a los bloques de su doctor.
+ */
+@Service
+public class BusquedaHorariosServicio {
+
+    public static final int MAX_RESULTADOS = 50;
+
+    private static final Comparator<Cursor> ORDEN_CURSORES = Comparator
+            .comparing((Cursor cursor) -> cursor.actual().horaInicio())
+            .thenComparing(cursor -> cursor.actual().doctorId());
+
+    private final DisponibilidadRepositorio disponibilidadRepositorio;
+    private final EspecialidadServicio especialidadServicio;
+    private final RetencionServicio retencionServicio;
+    private final AgendaPropiedades propiedades;
+
+    public BusquedaHorariosServicio(DisponibilidadRepositorio disponibilidadRepositorio, EspecialidadServicio especialidadServicio, RetencionServicio retencionServicio, AgendaPropiedades propiedades) {
+        this.disponibilidadRepositorio = disponibilidadRepositorio;
+        this.especialidadServicio = especialidadServicio;
+        this.retencionServicio = retencionServicio;
+        this.propiedades = propiedades;
+    }
+
+    /**
+     * Busca los próximos horarios libres de una especialidad.
+     * @param especialidadId El UUID de la especialidad.
+     * @param limite El número máximo de horarios a devolver.
+     * @param diasSemana Los días de la semana aceptados (vacío o null: todos).
+     * @param horaDesde La hora mínima de inicio del bloque (opcional).
+     * @param horaHasta La hora máxima de fin del bloque, en el mismo día (opcional).
+     * @return Los horarios libres más próximos, ordenados por hora de inicio.
+     * @throws RecursoNoEncontradoExcepcion Si la especialidad no existe.
+     * @throws SolicitudInvalidaExcepcion Si el límite o la franja horaria son inválidos.
+     */
+    @Transactional(readOnly = true)
+    public List<HorarioLibreDTO> buscarProximos(UUID especialidadId, int limite, Set<DayOfWeek> diasSemana, LocalTime horaDesde, LocalTime horaHasta) {
+        if (limite < 1 || limite > MAX_RESULTADOS) {
+            throw new SolicitudInvalidaExcepcion("El límite debe estar entre 1 y " + MAX_RESULTADOS + ".");
+        }
+        if (horaDesde != null && horaHasta != null && !horaDesde.isBefore(horaHasta)) {
+            throw new SolicitudInvalidaExcepcion("La hora desde debe ser anterior a la hora hasta.");
+        }
+        especialidadServicio.obtenerEntidadEspecialidadPorId(especialidadId);
+
+        LocalDateTime ahora = LocalDateTime.now(ZoneOffset.UTC);
+        LocalDateTime finBusqueda = ahora.plusDays(propiedades.getMaxDiasBusqueda());
+        List<HorarioLibreDTO> resultados = new ArrayList<>(limite);
+        for (LocalDateTime desde = ahora; resultados.size() < limite && desde.isBefore(finBusqueda); desde = desde.plusDays(propiedades.getDiasVentanaBusqueda())) {
+            LocalDateTime hasta = min(desde.plusDays(propiedades.getDiasVentanaBusqueda()), finBusqueda);
+            List<HorarioLibreDTO> ventana = conRanurasVirtuales(disponibilidadRepositorio.buscarLibresPorEspecialidad(especialidadId, desde, hasta),
+                    disponibilidadRepositorio.buscarSesionesPorEspecialidad(especialidadId, desde, hasta), desde, hasta);
+            fusionar(ventana, limite, resultados, horario -> cumpleFiltros(horario, diasSemana, horaDesde, horaHasta)
+                    && !retencionServicio.estaRetenido(horario.disponibilidadId()));
+        }
+        return resultados;
+    }
+
+    /**
+     * Fusiona en orden de hora de inicio las listas por doctor de una ventana y añade los horarios aceptados
+     * hasta completar el límite. La ventana llega agrupada por doctor y ordenada por hora de inicio dentro
+     * de cada grupo, así que cada grupo es una lista ordenada y basta con un montículo de k cursores.
+     */
+    static void fusionar(List<HorarioLibreDTO> ventana, int limite, List<HorarioLibreDTO> resultados, Predicate<HorarioLibreDTO> aceptar) {
+        PriorityQueue<Cursor> monticulo = new PriorityQueue<>(ORDEN_CURSORES);
+        int inicioGrupo = 0;
+        for (int i = 1; i <= ventana.size(); i++) {
+            if (i == ventana.size() || !ventana.get(i).doctorId().equals(ventana.get(inicioGrupo).doctorId())) {
+                monticulo.add(new Cursor(ventana, inicioGrupo, i));
+                inicioGrupo = i;
+            }
+        }
+        while (resultados.size() < limite && !monticulo.isEmpty()) {
+            Cursor cursor = monticulo.poll();
+            HorarioLibreDTO horario = cursor.actual();
+            if (aceptar.test(horario)) {
+                resultados.add(horario);
+            }
+            if (cursor.avanzar()) {
+                monticulo.add(cursor);
+            }
+        }
+    }
+
+    // Añade las ranuras no materializadas que comienzan en [desde, hasta) y reagrupa la ventana por doctor y hora de inicio
+    private List<HorarioLibreDTO> conRanurasVirtuales(List<HorarioLibreDTO> ventana, List<SesionDisponibilidadDTO> sesiones, LocalDateTime desde, LocalDateTime hasta) {
+        if (sesiones.isEmpty()) {
+            return ventana;
+        }
+        Set<UUID> materializadas = new HashSet<>();
+        disponibilidadRepositorio.buscarMaterializadas(sesiones.stream().map(SesionDisponibilidadDTO::id).toList())
+                .forEach(bloque -> materializadas.add(bloque.id()));
+        List<HorarioLibreDTO> combinada = new ArrayList<>(ventana);
+        for (SesionDisponibilidadDTO sesion : sesiones) {
+            RanurasVirtuales.recorrer(sesion.horaInicio(), sesion.horaFin(), sesion.minutosRanura(), (orden, inicio, fin) -> {
+                UUID id = RanurasVirtuales.idRanura(sesion.id(), orden);
+                if (!inicio.isBefore(desde) && inicio.isBefore(hasta) && !materializadas.contains(id)) {
+                    combinada.add(new HorarioLibreDTO(id, sesion.doctorId(), sesion.nombreDoctor(), inicio, fin));
+                }
+            });
+        }
+        combinada.sort(Comparator.comparing(HorarioLibreDTO::doctorId).thenComparing(HorarioLibreDTO::horaInicio));
+        return combinada;
+    }
+
+    private static boolean cumpleFiltros(HorarioLibreDTO horario, Set<DayOfWeek> diasSemana, LocalTime horaDesde, LocalTime horaHasta) {
+        if (diasSemana != null && !diasSemana.isEmpty() && !diasSemana.contains(horario.horaInicio().getDayOfWeek())) {
+            return false;
+        }
+        if (horaDesde != null && horario.horaInicio().toLocalTime().isBefore(horaDesde)) {
+            return false;
+        }
+        return horaHasta == null || (horario.horaFin().toLocalDate().equals(horario.horaInicio().toLocalDate())
+                && !horario.horaFin().toLocalTime().isAfter(horaHasta));
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    /**
+     * Posición dentro del grupo [inicio, fin) de un doctor en la lista de la ventana.
+     */
+    private static final class Cursor {
+        private final List<HorarioLibreDTO> lista;
+        private final int fin;
+        private int posicion;
+
+        Cursor(List<HorarioLibreDTO> lista, int inicio, int fin) {
+            this.lista = lista;
+            this.posicion = inicio;
+            this.fin = fin;
+        }
+
+        HorarioLibreDTO actual() {
+            return lista.get(posicion);
+        }
+
+        boolean avanzar() {
+            return ++posicion < fin;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.servicio.transaccion.TrasConfirmar;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Caché de lectura de la disponibilidad de los doctores, por doctor y día.
+ * Cada entrada guarda los bloques que comienzan en un día, sin el estado de retención (que vive en memoria y se
+ * consulta al leer). La capacidad se mide en bloques y no en entradas: al superarla se descartan los días menos usados.
+ * Las escrituras invalidan el día afectado tras la confirmación de su transacción. Una versión por doctor evita que
+ * una lectura iniciada antes de la invalidación guarde un estado anterior a ella; cuando solo se conoce el ID del bloque
+ * y su día no está en caché, se avanza una generación global con el mismo efecto sobre las lecturas en curso.
+ * Las invalidaciones solo alcanzan a esta instancia: para acotar el desfase con las escrituras hechas en otras,
+ * cada día se sirve como mucho durante citas.agenda.vigencia-cache desde que se leyó de la base de datos.
+ */
+@Component
+public class CacheDisponibilidad {
+
+    private final RegistroMetricas registroMetricas;
+    private final long capacidadBloques;
+    private final int maxDiasConsulta;
+    private final long vigenciaMillis;
+    private final Clock reloj;
+    private final LinkedHashMap<Clave, Rebanada> rebanadas = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<UUID, Long> versiones = new HashMap<>();
+    private final Map<UUID, Clave> diaPorBloque = new HashMap<>();
+    private long generacionGlobal;
+    private long pesoTotal;
+
+    @Autowired
+    public CacheDisponibilidad(RegistroMetricas registroMetricas, AgendaPropiedades propiedades) {
+        this(registroMetricas, propiedades, Clock.systemUTC());
+    }
+
+    CacheDisponibilidad(RegistroMetricas registroMetricas, AgendaPropiedades propiedades, Clock reloj) {
+        this.registroMetricas = registroMetricas;
+        this.capacidadBloques = propiedades.getCapacidadCacheBloques();
+        this.maxDiasConsulta = propiedades.getMaxDiasConsultaCache();
+        this.vigenciaMillis = propiedades.getVigenciaCache().toMillis();
+        this.reloj = reloj;
+        registroMetricas.registrarIndicador("agenda.cache.entradas", this::contarEntradas);
+        registroMetricas.registrarIndicador("agenda.cache.peso", this::pesoActual);
+    }
+
+    /**
+     * Indica si una consulta de tantos días debe pasar por la caché; los rangos más largos van directos a la base de datos.
+     * @param dias El número de días de la consulta.
+     * @return true si la consulta usa la caché.
+     */
+    public boolean admite(long dias) {
+        return dias <= maxDiasConsulta;
+    }
+
+    /**
+     * Versión actual de la disponibilidad de un doctor; se lee antes de consultar la base de datos.
+     * @param doctorId El UUID del doctor.
+     * @return La versión, que cambia con cada invalidación.
+     */
+    public synchronized long version(UUID doctorId) {
+        return versiones.getOrDefault(doctorId, 0L) + generacionGlobal; // Ambas solo crecen: la suma cambia si cambia cualquiera
+    }
+
+    /**
+     * Obtiene los bloques de un doctor que comienzan en un día.
+     * @param doctorId El UUID del doctor.
+     * @param dia El día.
+     * @return Los bloques ordenados por hora de inicio, o null si el día no está en caché o su entrada caducó.
+     */
+    public List<BloqueHorarioDTO> obtener(UUID doctorId, LocalDate dia) {
+        Clave clave = new Clave(doctorId, dia);
+        Rebanada rebanada;
+        boolean caducada = false;
+        synchronized (this) {
+            rebanada = rebanadas.get(clave);
+            if (rebanada != null && reloj.millis() >= rebanada.caducaEn()) {
+                quitar(clave);
+                rebanada = null;
+                caducada = true;
+            }
+        }
+        if (caducada) {
+            registroMetricas.incrementar("agenda.cache.caducadas");
+        }
+        registroMetricas.incrementar(rebanada != null ? "agenda.cache.aciertos" : "agenda.cache.fallos");
+        return rebanada != null ? rebanada.bloques() : null;
+    }
+
+    /**
+     * Guarda los bloques de un día si la disponibilidad del doctor no se invalidó desde que se leyó la versión.
+     * @param doctorId El UUID del doctor.
+     * @param dia El día.
+     * @param bloques Los bloques que comienzan ese día, ordenados por hora de inicio.
+     * @param versionLeida La versión obtenida antes de consultar la base de datos.
+     */
+    public synchronized void guardar(UUID doctorId, LocalDate dia, List<BloqueHorarioDTO> bloques, long versionLeida) {
+        if (version(doctorId) != versionLeida) {
+            return;
+        }
+        Clave clave = new Clave(doctorId, dia);
+        quitar(clave);
+        rebanadas.put(clave, new Rebanada(List.copyOf(bloques), reloj.millis() + vigenciaMillis));
+        bloques.forEach(bloque -> diaPorBloque.put(bloque.id(), clave));
+        pesoTotal += peso(bloques);
+        while (pesoTotal > capacidadBloques && !rebanadas.isEmpty()) {
+            quitar(rebanadas.keySet().iterator().next()); // La primera clave es la menos usada
+            registroMetricas.incrementar("agenda.cache.desalojos");
+        }
+    }
+
+    /**
+     * Invalida el día de un bloque. Si hay una transacción activa, se invalida tras su confirmación.
+     * @param doctorId El UUID del doctor.
+     * @param horaInicio La hora de inicio del bloque modificado.
+     */
+    public void invalidar(UUID doctorId, LocalDateTime horaInicio) {
+        TrasConfirmar.ejecutar(() -> {
+            synchronized (this) {
+                versiones.merge(doctorId, 1L, Long::sum);
+                quitar(new Clave(doctorId, horaInicio.toLocalDate()));
+            }
+            registroMetricas.incrementar("agenda.cache.invalidaciones");
+        });
+    }
+
+    /**
+     * Invalida el día de un bloque conocido solo por su ID. Si hay una transacción activa, se invalida tras su confirmación.
+     * @param disponibilidadId El UUID del bloque modificado.
+     */
+    public void invalidarBloque(UUID disponibilidadId) {
+        TrasConfirmar.ejecutar(() -> {
+            synchronized (this) {
+                Clave clave = diaPorBloque.get(disponibilidadId);
+                if (clave != null) {
+                    versiones.merge(clave.doctorId(), 1L, Long::sum);
+                    quitar(clave);
+                } else {
+                    generacionGlobal++; // Día no cacheado: basta con descartar las lecturas en curso
+                }
+            }
+            registroMetricas.incrementar("agenda.cache.invalidaciones");
+        });
+    }
+
+    /**
+     * Invalida todos los días de un doctor. Si hay una transacción activa, se invalida tras su confirmación.
+     * @param doctorId El UUID del doctor.
+     */
+    public void invalidarDoctor(UUID doctorId) {
+        TrasConfirmar.ejecutar(() -> {
+            synchronized (this) {
+                versiones.merge(doctorId, 1L, Long::sum);
+                List<Clave> delDoctor = rebanadas.keySet().stream().filter(clave -> clave.doctorId().equals(doctorId)).toList();
+                delDoctor.forEach(this::quitar);
+            }
+            registroMetricas.incrementar("agenda.cache.invalidaciones");
+        });
+    }
+
+    // Debe invocarse con el monitor de la instancia
+    private void quitar(Clave clave) {
+        Rebanada anterior = rebanadas.remove(clave);
+        if (anterior != null) {
+            pesoTotal -= peso(anterior.bloques());
+            anterior.bloques().forEach(bloque -> diaPorBloque.remove(bloque.id()));
+        }
+    }
+
+    private synchronized int contarEntradas() {
+        return rebanadas.size();
+    }
+
+    private synchronized long pesoActual() {
+        return pesoTotal;
+    }
+
+    // Un día vacío también ocupa una unidad para que la capacidad acote el número de entradas
+    private static long peso(List<BloqueHorarioDTO> bloques) {
+        return bloques.size() + 1L;
+    }
+
+    private record Clave(UUID doctorId, LocalDate dia) {
+    }
+
+    // Bloques de un día y el instante (en milisegundos del reloj) a partir del cual dejan de servirse
+    private record Rebanada(List<BloqueHorarioDTO> bloques, long caducaEn) {
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Mapa de bits de las ranuras libres de un doctor durante varios días consecutivos.
+ * Cada día se divide en ranuras de duración fija y la ranura i del día d ocupa el bit d * ranurasPorDia + i
+ * de un arreglo contiguo de long, sin huecos entre días. Con ranuras de 15 minutos un día ocupa 96 bits,
+ * así que un mes cabe en 45 long; las consultas de ranuras libres se resuelven con operaciones de bits.
+ */
+public final class CalendarioBits {
+
+    private static final int MINUTOS_DIA = 24 * 60;
+
+    private final LocalDate desde;
+    private final int dias;
+    private final int minutosPorRanura;
+    private final int ranurasPorDia;
+    private final long[] palabras;
+
+    /**
+     * Crea un calendario sin ranuras libres.
+     * @param desde El primer día del calendario.
+     * @param dias El número de días.
+     * @param minutosPorRanura La duración de una ranura; debe dividir exactamente un día.
+     */
+    public CalendarioBits(LocalDate desde, int dias, int minutosPorRanura) {
+        if (minutosPorRanura <= 0 || MINUTOS_DIA % minutosPorRanura != 0) {
+            throw new IllegalArgumentException("La duración de la ranura debe dividir exactamente un día: " + minutosPorRanura);
+        }
+        this.desde = desde;
+        this.dias = dias;
+        this.minutosPorRanura = minutosPorRanura;
+        this.ranurasPorDia = MINUTOS_DIA / minutosPorRanura;
+        this.palabras = new long[(int) ((long) dias * ranurasPorDia + 63) / 64];
+    }
+
+    /**
+     * Marca como libres las ranuras completamente cubiertas por un intervalo.
+     * Las partes del intervalo fuera del calendario se ignoran.
+     * @param inicio El inicio del intervalo libre.
+     * @param fin El fin del intervalo libre.
+     */
+    public void marcarLibre(LocalDateTime inicio, LocalDateTime fin) {
+        long minutoInicio = Duration.between(desde.atStartOfDay(), inicio).toMinutes();
+        long minutoFin = Duration.between(desde.atStartOfDay(), fin).toMinutes();
+        long primera = Math.max(0, Math.floorDiv(minutoInicio + minutosPorRanura - 1, minutosPorRanura)); // Redondeo hacia arriba
+        long ultima = Math.min(totalRanuras(), Math.floorDiv(minutoFin, minutosPorRanura)); // Exclusiva
+        if (primera < ultima) {
+            marcarRango((int) primera, (int) ultima);
+        }
+    }
+
+    /**
+     * Indica si una ranura está libre.
+     * @param dia El día relativo al inicio del calendario.
+     * @param ranura La ranura dentro del día.
+     * @return true si la ranura está libre.
+     */
+    public boolean estaLibre(int dia, int ranura) {
+        int bit = dia * ranurasPorDia + ranura;
+        return (palabras[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Devuelve el índice absoluto de la primera ranura libre a partir de uno dado.
+     * @param desdeRanura El índice absoluto (día * ranurasPorDia + ranura) desde el que buscar.
+     * @return El índice de la primera ranura libre, o -1 si no queda ninguna.
+     */
+    public int siguienteLibre(int desdeRanura) {
+        if (desdeRanura >= totalRanuras()) {
+            return -1;
+        }
+        int indice = desdeRanura >>> 6;
+        long palabra = palabras[indice] & (-1L << desdeRanura);
+        while (palabra == 0) {
+            if (++indice == palabras.length) {
+                return -1;
+            }
+            palabra = palabras[indice];
+        }
+        int bit = indice * 64 + Long.numberOfTrailingZeros(palabra);
+        return bit < totalRanuras() ? bit : -1;
+    }
+
+    /**
+     * Cuenta las ranuras libres de un día.
+     * @param dia El día relativo al inicio del calendario.
+     * @return El número de ranuras libres.
+     */
+    public int contarLibres(int dia) {
+        int libres = 0;
+        for (int bit = siguienteLibre(dia * ranurasPorDia); bit >= 0 && bit < (dia + 1) * ranurasPorDia; bit = siguienteLibre(bit + 1)) {
+            libres++;
+        }
+        return libres;
+    }
+
+    /**
+     * Hora de inicio de una ranura a partir de su índice absoluto.
+     * @param indice El índice absoluto de la ranura.
+     * @return La fecha y hora en que comienza.
+     */
+    public LocalDateTime inicioDe(int indice) {
+        return desde.atStartOfDay().plusMinutes((long) indice * minutosPorRanura);
+    }
+
+    /**
+     * Codificación densa del calendario: los bits de todas las ranuras, consecutivos y sin relleno entre días,
+     * empaquetados en bytes con el bit menos significativo primero.
+     * @return Los bytes del mapa, ceil(dias * ranurasPorDia / 8) en total.
+     */
+    public byte[] aBytes() {
+        byte[] bytes = new byte[(totalRanuras() + 7) / 8];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (palabras[i >>> 3] >>> ((i & 7) * 8));
+        }
+        return bytes;
+    }
+
+    public LocalDate getDesde() {
+        return desde;
+    }
+
+    public int getDias() {
+        return dias;
+    }
+
+    public int getMinutosPorRanura() {
+        return minutosPorRanura;
+    }
+
+    public int getRanurasPorDia() {
+        return ranurasPorDia;
+    }
+
+    private int totalRanuras() {
+        return dias * ranurasPorDia;
+    }
+
+    // Activa los bits [desde, hasta) palabra a palabra
+    private void marcarRango(int desdeBit, int hastaBit) {
+        int primeraPalabra = desdeBit >>> 6;
+        int ultimaPalabra = (hastaBit - 1) >>> 6;
+        long mascaraInicio = -1L << desdeBit;
+        long mascaraFin = -1L >>> -hastaBit;
+        if (primeraPalabra == ultimaPalabra) {
+            palabras[primeraPalabra] |= mascaraInicio & mascaraFin;
+            return;
+        }
+        palabras[primeraPalabra] |= mascaraInicio;
+        for (int i = primeraPalabra + 1; i < ultimaPalabra; i++) {
+            palabras[i] = -1L;
+        }
+        palabras[ultimaPalabra] |= mascaraFin;
+    }
+}
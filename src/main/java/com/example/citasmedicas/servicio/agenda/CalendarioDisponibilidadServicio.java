@@ -0,0 +1,197 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
+import com.example.citasmedicas.dto.BloqueHorarioDoctorDTO;
+import com.example.citasmedicas.dto.CalendarioDisponibilidadDTO;
+import com.example.citasmedicas.dto.DisponibilidadDTO;
+import com.example.citasmedicas.dto.DisponibilidadesDoctorDTO;
+import com.example.citasmedicas.dto.ResumenDiaDisponibilidadDTO;
+import com.example.citasmedicas.dto.SesionDisponibilidadDTO;
+import com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion;
+import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.DoctorServicio;
+import com.example.citasmedicas.servicio.reserva.RetencionServicio;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Servicio del calendario compacto de disponibilidad.
+ * Construye el mapa de bits de ranuras libres de un doctor a partir de una proyección de sus bloques,
+ * sin cargar entidades ni mapear DTOs por bloque, el resumen de bloques libres y totales por día de varios doctores
+ * y los bloques de varios doctores en un rango, leídos con una sola consulta.
+ * Las sesiones cuentan como sus ranuras virtuales, no como un único bloque.
+ */
+@Service
+public class CalendarioDisponibilidadServicio {
+
+    private final DisponibilidadRepositorio disponibilidadRepositorio;
+    private final DoctorServicio doctorServicio;
+    private final RetencionServicio retencionServicio;
+    private final AgendaPropiedades propiedades;
+
+    public CalendarioDisponibilidadServicio(DisponibilidadRepositorio disponibilidadRepositorio, DoctorServicio doctorServicio, RetencionServicio retencionServicio, AgendaPropiedades propiedades) {
+        this.disponibilidadRepositorio = disponibilidadRepositorio;
+        this.doctorServicio = doctorServicio;
+        this.retencionServicio = retencionServicio;
+        this.propiedades = propiedades;
+        if ((24 * 60) % propiedades.getMinutosPorRanura() != 0) {
+            throw new IllegalStateException("citas.agenda.minutos-por-ranura debe dividir exactamente un día: " + propiedades.getMinutosPorRanura());
+        }
+    }
+
+    /**
+     * Obtiene el calendario compacto de ranuras libres de un doctor.
+     * @param doctorId El UUID del doctor.
+     * @param desde El primer día del calendario.
+     * @param dias El número de días a cubrir.
+     * @return El DTO con el mapa de bits codificado.
+     * @throws RecursoNoEncontradoExcepcion Si el doctor no existe.
+     * @throws SolicitudInvalidaExcepcion Si el número de días está fuera del rango permitido.
+     */
+    @Transactional(readOnly = true)
+    public CalendarioDisponibilidadDTO obtenerCalendario(UUID doctorId, LocalDate desde, int dias) {
+        if (dias < 1 || dias > propiedades.getMaxDiasCalendario()) {
+            throw new SolicitudInvalidaExcepcion("El calendario debe cubrir entre 1 y " + propiedades.getMaxDiasCalendario() + " días.");
+        }
+        doctorServicio.obtenerEntidadDoctorPorId(doctorId);
+        CalendarioBits calendario = construir(doctorId, desde, dias);
+        return new CalendarioDisponibilidadDTO(doctorId, desde, dias, calendario.getMinutosPorRanura(),
+                calendario.getRanurasPorDia(), Base64.getEncoder().encodeToString(calendario.aBytes()));
+    }
+
+    /**
+     * Obtiene el número de bloques libres y totales por día de varios doctores con una única consulta agrupada.
+     * Los días sin bloques y los doctores inexistentes no aparecen en el resultado.
+     * @param doctorIds Los UUID de los doctores (los repetidos se ignoran).
+     * @param desde El primer día del resumen.
+     * @param dias El número de días a cubrir.
+     * @return Los recuentos ordenados por doctor y día.
+     * @throws SolicitudInvalidaExcepcion Si no se indican doctores, hay demasiados o el número de días está fuera del rango permitido.
+     */
+    @Transactional(readOnly = true)
+    public List<ResumenDiaDisponibilidadDTO> obtenerResumenPorDia(Collection<UUID> doctorIds, LocalDate desde, int dias) {
+        Set<UUID> doctores = new LinkedHashSet<>(doctorIds);
+        if (doctores.isEmpty() || doctores.size() > propiedades.getMaxDoctoresResumen()) {
+            throw new SolicitudInvalidaExcepcion("El resumen debe incluir entre 1 y " + propiedades.getMaxDoctoresResumen() + " doctores.");
+        }
+        if (dias < 1 || dias > propiedades.getMaxDiasCalendario()) {
+            throw new SolicitudInvalidaExcepcion("El resumen debe cubrir entre 1 y " + propiedades.getMaxDiasCalendario() + " días.");
+        }
+        List<ResumenDiaDisponibilidadDTO> resumen = disponibilidadRepositorio.resumirPorDoctorYDia(doctores, desde.atStartOfDay(), desde.plusDays(dias).atStartOfDay());
+        List<SesionDisponibilidadDTO> sesiones = disponibilidadRepositorio.buscarSesionesDeDoctores(doctores, desde.atStartOfDay(), desde.plusDays(dias).atStartOfDay());
+        return sesiones.isEmpty() ? resumen : ajustarPorSesiones(resumen, sesiones);
+    }
+
+    /**
+     * Obtiene los bloques de disponibilidad de varios doctores en un rango con una sola consulta, para las páginas
+     * que muestran la agenda de muchos doctores a la vez. Las filas llegan ordenadas por doctor y hora de inicio
+     * y se agrupan en una pasada; las sesiones se sustituyen por sus ranuras y los bloques retenidos se marcan.
+     * No se comprueba que cada doctor exista: los desconocidos aparecen sin bloques.
+     * @param doctorIds Los UUID de los doctores; el resultado respeta su orden y omite los repetidos.
+     * @param desde El primer día del rango.
+     * @param dias El número de días a cubrir.
+     * @return Los bloques de cada doctor, incluidos los doctores sin bloques en el rango.
+     * @throws SolicitudInvalidaExcepcion Si no se indican doctores, hay demasiados o el número de días está fuera del rango permitido.
+     */
+    @Transactional(readOnly = true)
+    public List<DisponibilidadesDoctorDTO> obtenerDisponibilidadesDoctores(Collection<UUID> doctorIds, LocalDate desde, int dias) {
+        Set<UUID> doctores = new LinkedHashSet<>(doctorIds);
+        if (doctores.isEmpty() || doctores.size() > propiedades.getMaxDoctoresConsultaLote()) {
+            throw new SolicitudInvalidaExcepcion("La consulta debe incluir entre 1 y " + propiedades.getMaxDoctoresConsultaLote() + " doctores.");
+        }
+        if (dias < 1 || dias > propiedades.getMaxDiasConsultaLote()) {
+            throw new SolicitudInvalidaExcepcion("La consulta debe cubrir entre 1 y " + propiedades.getMaxDiasConsultaLote() + " días.");
+        }
+        LocalDateTime hasta = desde.plusDays(dias).atStartOfDay();
+
+        Map<UUID, List<DisponibilidadDTO>> porDoctor = new LinkedHashMap<>();
+        doctores.forEach(doctorId -> porDoctor.put(doctorId, List.of()));
+        List<BloqueHorarioDoctorDTO> filas = disponibilidadRepositorio.buscarBloquesDeDoctores(doctores, desde.atStartOfDay(), hasta);
+        int inicioGrupo = 0;
+        for (int i = 1; i <= filas.size(); i++) {
+            if (i == filas.size() || !filas.get(i).doctorId().equals(filas.get(inicioGrupo).doctorId())) {
+                UUID doctorId = filas.get(inicioGrupo).doctorId();
+                porDoctor.put(doctorId, aDisponibilidades(doctorId, filas.subList(inicioGrupo, i), hasta));
+                inicioGrupo = i;
+            }
+        }
+
+        List<DisponibilidadesDoctorDTO> resultado = new ArrayList<>(porDoctor.size());
+        porDoctor.forEach((doctorId, disponibilidades) -> resultado.add(new DisponibilidadesDoctorDTO(doctorId, disponibilidades)));
+        return resultado;
+    }
+
+    /**
+     * Construye el mapa de bits de un doctor. Una ranura está libre si un bloque no reservado
+     * ni retenido la cubre por completo. Debe invocarse dentro de una transacción.
+     * @param doctorId El UUID del doctor.
+     * @param desde El primer día.
+     * @param dias El número de días.
+     * @return El calendario de ranuras libres.
+     */
+    @Transactional(readOnly = true)
+    public CalendarioBits construir(UUID doctorId, LocalDate desde, int dias) {
+        CalendarioBits calendario = new CalendarioBits(desde, dias, propiedades.getMinutosPorRanura());
+        for (BloqueHorarioDTO bloque : RanurasVirtuales.expandir(disponibilidadRepositorio.buscarBloquesEnRango(doctorId, desde.atStartOfDay(), desde.plusDays(dias).atStartOfDay()))) {
+            if (!bloque.estaReservado() && !retencionServicio.estaRetenido(bloque.id())) {
+                calendario.marcarLibre(bloque.horaInicio(), bloque.horaFin());
+            }
+        }
+        return calendario;
+    }
+
+    // La consulta agrupada cuenta cada sesión como un bloque libre y cada ranura materializada como bloque propio:
+    // la sesión se sustituye por sus ranuras aún no materializadas, en los libres y en el total de su día
+    private List<ResumenDiaDisponibilidadDTO> ajustarPorSesiones(List<ResumenDiaDisponibilidadDTO> resumen, List<SesionDisponibilidadDTO> sesiones) {
+        Set<UUID> materializadas = new HashSet<>();
+        disponibilidadRepositorio.buscarMaterializadas(sesiones.stream().map(SesionDisponibilidadDTO::id).toList())
+                .forEach(bloque -> materializadas.add(bloque.id()));
+        Map<String, Long> ajustes = new HashMap<>();
+        for (SesionDisponibilidadDTO sesion : sesiones) {
+            long[] virtuales = {-1};
+            RanurasVirtuales.recorrer(sesion.horaInicio(), sesion.horaFin(), sesion.minutosRanura(), (orden, inicio, fin) -> {
+                if (!materializadas.contains(RanurasVirtuales.idRanura(sesion.id(), orden))) {
+                    virtuales[0]++;
+                }
+            });
+            ajustes.merge(sesion.doctorId() + "|" + sesion.horaInicio().toLocalDate(), virtuales[0], Long::sum);
+        }
+        List<ResumenDiaDisponibilidadDTO> ajustado = new ArrayList<>(resumen.size());
+        for (ResumenDiaDisponibilidadDTO dia : resumen) {
+            long ajuste = ajustes.getOrDefault(dia.doctorId() + "|" + dia.fecha(), 0L);
+            ajustado.add(ajuste == 0 ? dia : new ResumenDiaDisponibilidadDTO(dia.doctorId(), dia.fecha(), dia.libres() + ajuste, dia.total() + ajuste));
+        }
+        return ajustado;
+    }
+
+    // Un grupo de filas de un mismo doctor, ya ordenado por hora de inicio; las ranuras de sesión que empiezan tras el rango (hasta excluido) se descartan
+    private List<DisponibilidadDTO> aDisponibilidades(UUID doctorId, List<BloqueHorarioDoctorDTO> filas, LocalDateTime hasta) {
+        List<BloqueHorarioDTO> bloques = new ArrayList<>(filas.size());
+        filas.forEach(fila -> bloques.add(fila.aBloque()));
+        List<DisponibilidadDTO> disponibilidades = new ArrayList<>(bloques.size());
+        for (BloqueHorarioDTO bloque : RanurasVirtuales.expandir(bloques)) {
+            if (!bloque.horaInicio().isBefore(hasta)) {
+                break;
+            }
+            boolean retenido = !bloque.estaReservado() && retencionServicio.estaRetenido(bloque.id());
+            disponibilidades.add(new DisponibilidadDTO(bloque.id(), doctorId, bloque.horaInicio(), bloque.horaFin(), bloque.estaReservado(), retenido));
+        }
+        return disponibilidades;
+    }
+}
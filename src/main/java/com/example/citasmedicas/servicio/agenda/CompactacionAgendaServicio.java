@@ -0,0 +1,144 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
+import com.example.citasmedicas.dto.ResultadoCompactacionDTO;
+import com.example.citasmedicas.excepciones.ConflictoHorarioExcepcion;
+import com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.DoctorServicio;
+import com.example.citasmedicas.servicio.evento.CambioDisponibilidadEvento;
+import com.example.citasmedicas.servicio.evento.TipoCambioDisponibilidad;
+import com.example.citasmedicas.servicio.reserva.RetencionServicio;
+import com.example.citasmedicas.servicio.transaccion.ReintentarTransaccion;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Servicio que fusiona los bloques libres contiguos de la agenda de un doctor.
+ * Cada tramo de bloques libres consecutivos de la misma duración (el fin de uno es el inicio del siguiente, dentro
+ * del mismo día) se convierte en una sesión: su primer bloque se alarga hasta el fin del tramo con ranuras de esa
+ * duración, y los demás se eliminan con una única sentencia. Así se reservan las mismas franjas que antes, ahora
+ * como ranuras virtuales; los bloques de duración distinta a la de sus vecinos quedan como estaban.
+ * Nunca se tocan bloques reservados, retenidos o referenciados por una cita, ni sesiones o ranuras materializadas.
+ * Las sentencias vuelven a comprobar que los bloques siguen libres: si una reserva se cuela entre la lectura
+ * y la escritura, la compactación entera se deshace.
+ * Solo se ejecuta a petición y nunca en un barrido programado: los IDs de los bloques fusionados dejan de valer,
+ * y las ranuras de una sesión no admiten retenciones ni reservas en serie, que exigen bloques existentes.
+ */
+@Service
+public class CompactacionAgendaServicio {
+
+    // Mismos límites de duración de ranura que al crear una sesión (CrearDisponibilidadDTO)
+    private static final int MIN_MINUTOS_RANURA = 5;
+    private static final int MAX_MINUTOS_RANURA = 240;
+
+    private final DisponibilidadRepositorio disponibilidadRepositorio;
+    private final DoctorServicio doctorServicio;
+    private final RetencionServicio retencionServicio;
+    private final IndiceIntervalosDisponibilidad indiceIntervalos;
+    private final CacheDisponibilidad cacheDisponibilidad;
+    private final ApplicationEventPublisher publicadorEventos;
+
+    public CompactacionAgendaServicio(DisponibilidadRepositorio disponibilidadRepositorio, DoctorServicio doctorServicio, RetencionServicio retencionServicio, IndiceIntervalosDisponibilidad indiceIntervalos, CacheDisponibilidad cacheDisponibilidad, ApplicationEventPublisher publicadorEventos) {
+        this.disponibilidadRepositorio = disponibilidadRepositorio;
+        this.doctorServicio = doctorServicio;
+        this.retencionServicio = retencionServicio;
+        this.indiceIntervalos = indiceIntervalos;
+        this.cacheDisponibilidad = cacheDisponibilidad;
+        this.publicadorEventos = publicadorEventos;
+    }
+
+    /**
+     * Compacta los bloques libres futuros de un doctor en una sola transacción.
+     * @param doctorId El UUID del doctor.
+     * @return El número de bloques fusionados y eliminados.
+     * @throws RecursoNoEncontradoExcepcion Si el doctor no existe.
+     * @throws ConflictoHorarioExcepcion Si alguno de los bloques se reservó durante la compactación.
+     */
+    @ReintentarTransaccion
+    @Transactional
+    public ResultadoCompactacionDTO compactar(UUID doctorId) {
+        doctorServicio.obtenerEntidadDoctorPorId(doctorId);
+        // Sin los bloques retenidos, los tramos quedan cortados en ellos: dejan de ser contiguos
+        List<BloqueHorarioDTO> libres = disponibilidadRepositorio.buscarLibresCompactables(doctorId, LocalDateTime.now(ZoneOffset.UTC)).stream()
+                .filter(bloque -> !retencionServicio.estaRetenido(bloque.id()))
+                .toList();
+
+        List<BloqueHorarioDTO> extendidos = new ArrayList<>();
+        List<BloqueHorarioDTO> absorbidos = new ArrayList<>();
+        int i = 0;
+        while (i < libres.size()) {
+            BloqueHorarioDTO primero = libres.get(i);
+            int fin = i + 1;
+            while (fin < libres.size() && esContinuacion(libres.get(fin - 1), libres.get(fin), primero)) {
+                fin++;
+            }
+            Integer minutosRanura = minutosRanura(primero);
+            if (fin - i > 1 && minutosRanura != null) {
+                extendidos.add(new BloqueHorarioDTO(primero.id(), primero.horaInicio(), libres.get(fin - 1).horaFin(), false, minutosRanura, null));
+                absorbidos.addAll(libres.subList(i + 1, fin));
+            }
+            i = fin;
+        }
+        if (absorbidos.isEmpty()) {
+            return new ResultadoCompactacionDTO(doctorId, 0, 0);
+        }
+
+        Instant ahora = Instant.now();
+        List<UUID> idsAbsorbidos = absorbidos.stream().map(BloqueHorarioDTO::id).toList();
+        if (disponibilidadRepositorio.eliminarLibresPorIds(idsAbsorbidos) != idsAbsorbidos.size()) {
+            throw new ConflictoHorarioExcepcion("La agenda del doctor cambió durante la compactación. Intente de nuevo.");
+        }
+        for (BloqueHorarioDTO extendido : extendidos) {
+            if (disponibilidadRepositorio.convertirEnSesionSiLibre(extendido.id(), extendido.horaFin(), extendido.minutosRanura(), ahora) != 1) {
+                throw new ConflictoHorarioExcepcion("La agenda del doctor cambió durante la compactación. Intente de nuevo.");
+            }
+        }
+
+        for (BloqueHorarioDTO absorbido : absorbidos) {
+            indiceIntervalos.registrarEliminado(absorbido.id());
+            publicar(doctorId, absorbido, TipoCambioDisponibilidad.ELIMINADO);
+        }
+        for (BloqueHorarioDTO extendido : extendidos) {
+            indiceIntervalos.registrarEliminado(extendido.id());
+            indiceIntervalos.registrarCreado(doctorId, extendido);
+            cacheDisponibilidad.invalidar(doctorId, extendido.horaInicio());
+            publicar(doctorId, extendido, TipoCambioDisponibilidad.MODIFICADO);
+        }
+        return new ResultadoCompactacionDTO(doctorId, extendidos.size(), absorbidos.size());
+    }
+
+    // No se fusiona a través de la medianoche (una sesión no puede cruzarla) ni entre bloques de distinta duración
+    private static boolean esContinuacion(BloqueHorarioDTO anterior, BloqueHorarioDTO siguiente, BloqueHorarioDTO primero) {
+        return siguiente.horaInicio().equals(anterior.horaFin())
+                && siguiente.horaInicio().toLocalDate().equals(primero.horaInicio().toLocalDate())
+                && duracion(siguiente).equals(duracion(primero));
+    }
+
+    // Duración del bloque como ranura de sesión, o null si no es un número exacto de minutos dentro de los límites
+    private static Integer minutosRanura(BloqueHorarioDTO bloque) {
+        Duration duracion = duracion(bloque);
+        long minutos = duracion.toMinutes();
+        if (duracion.toSeconds() % 60 != 0 || minutos < MIN_MINUTOS_RANURA || minutos > MAX_MINUTOS_RANURA) {
+            return null;
+        }
+        return (int) minutos;
+    }
+
+    private static Duration duracion(BloqueHorarioDTO bloque) {
+        return Duration.between(bloque.horaInicio(), bloque.horaFin());
+    }
+
+    private void publicar(UUID doctorId, BloqueHorarioDTO bloque, TipoCambioDisponibilidad tipo) {
+        publicadorEventos.publishEvent(new CambioDisponibilidadEvento(doctorId, bloque.id(), tipo, bloque.horaInicio(), bloque.horaFin()));
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Escritor secuencial de un archivo iCalendar (RFC 5545).
+ * Cada evento se escribe en cuanto se recibe, con fin de línea CRLF, los textos escapados
+ * y las líneas de más de 75 octetos plegadas. Las horas se escriben en UTC.
+ */
+class EscritorIcs {
+
+    private static final int MAX_OCTETOS_LINEA = 75;
+    private static final DateTimeFormatter FECHA_HORA_UTC = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    private final Writer salida;
+
+    EscritorIcs(Writer salida) {
+        this.salida = salida;
+    }
+
+    void iniciarCalendario(String nombre) throws IOException {
+        linea("BEGIN:VCALENDAR");
+        linea("VERSION:2.0");
+        linea("PRODID:-//citasmedicas//agenda//ES");
+        linea("CALSCALE:GREGORIAN");
+        linea("METHOD:PUBLISH");
+        linea("X-WR-CALNAME:" + escapar(nombre));
+    }
+
+    /**
+     * Escribe un evento.
+     * @param uid Identificador estable del evento.
+     * @param marca Última modificación del evento (DTSTAMP).
+     * @param inicio La hora de inicio en UTC.
+     * @param fin La hora de fin en UTC.
+     * @param resumen El título del evento.
+     * @param descripcion La descripción; se omite si es null.
+     * @param ocupado Si el evento ocupa tiempo en la agenda (TRANSP:OPAQUE) o solo es informativo.
+     */
+    void escribirEvento(String uid, Instant marca, LocalDateTime inicio, LocalDateTime fin, String resumen, String descripcion, boolean ocupado) throws IOException {
+        linea("BEGIN:VEVENT");
+        linea("UID:" + uid);
+        linea("DTSTAMP:" + FECHA_HORA_UTC.format(marca.atOffset(ZoneOffset.UTC)));
+        linea("DTSTART:" + FECHA_HORA_UTC.format(inicio));
+        linea("DTEND:" + FECHA_HORA_UTC.format(fin));
+        linea("SUMMARY:" + escapar(resumen));
+        if (descripcion != null && !descripcion.isBlank()) {
+            linea("DESCRIPTION:" + escapar(descripcion));
+        }
+        linea("STATUS:CONFIRMED");
+        linea("TRANSP:" + (ocupado ? "OPAQUE" : "TRANSPARENT"));
+        linea("END:VEVENT");
+    }
+
+    void terminarCalendario() throws IOException {
+        linea("END:VCALENDAR");
+        salida.flush();
+    }
+
+    static String escapar(String texto) {
+        return texto.replace("\\", "\\\\")
+                .replace(";", "\\;")
+                .replace(",", "\\,")
+                .replace("\r\n", "\\n")
+                .replace("\n", "\\n")
+                .replace("\r", "\\n");
+    }
+
+    // Pliega por octetos UTF-8 sin partir un carácter: las líneas de continuación empiezan por un espacio
+    private void linea(String contenido) throws IOException {
+        int octetos = 0;
+        int limite = MAX_OCTETOS_LINEA;
+        for (int i = 0; i < contenido.length(); ) {
+            int codigo = contenido.codePointAt(i);
+            int longitud = codigo < 0x80 ? 1 : codigo < 0x800 ? 2 : codigo < 0x10000 ? 3 : 4;
+            if (octetos + longitud > limite) {
+                salida.write("\r\n ");
+                octetos = 0;
+                limite = MAX_OCTETOS_LINEA - 1;
+            }
+            salida.write(Character.toChars(codigo));
+            octetos += longitud;
+            i += Character.charCount(codigo);
+        }
+        salida.write("\r\n");
+    }
+}
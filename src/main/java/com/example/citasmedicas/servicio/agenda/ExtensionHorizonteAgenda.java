@@ -0,0 +1,142 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.repositorio.PlantillaHorarioRepositorio;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extensión nocturna del horizonte de reservas.
+ * Mantiene abiertas las próximas citas.agenda.horizonte-semanas de cada doctor con plantillas vigentes:
+ * reparte a los doctores en lotes que se procesan en paralelo, cada uno en su propia transacción corta.
+ * Cada plantilla recuerda hasta qué día se expandió: solo se generan los días nuevos, así que los bloques que un doctor
+ * eliminó no reaparecen, y si la ejecución se interrumpe, la siguiente completa los lotes que no se confirmaron.
+ */
+@Component
+public class ExtensionHorizonteAgenda {
+
+    private static final Logger log = LoggerFactory.getLogger(ExtensionHorizonteAgenda.class);
+
+    private final PlantillaHorarioRepositorio plantillaHorarioRepositorio;
+    private final PlantillaHorarioServicio plantillaHorarioServicio;
+    private final RegistroMetricas registroMetricas;
+    private final AgendaPropiedades propiedades;
+    private final ExecutorService trabajadores;
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+
+    public ExtensionHorizonteAgenda(PlantillaHorarioRepositorio plantillaHorarioRepositorio, PlantillaHorarioServicio plantillaHorarioServicio, RegistroMetricas registroMetricas, AgendaPropiedades propiedades) {
+        this.plantillaHorarioRepositorio = plantillaHorarioRepositorio;
+        this.plantillaHorarioServicio = plantillaHorarioServicio;
+        this.registroMetricas = registroMetricas;
+        this.propiedades = propiedades;
+        AtomicInteger secuencia = new AtomicInteger();
+        this.trabajadores = Executors.newFixedThreadPool(propiedades.getHilosExtension(), tarea -> {
+            Thread hilo = new Thread(tarea, "agenda-extension-" + secuencia.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @Scheduled(cron = "${citas.agenda.extension-cron:0 30 2 * * *}")
+    public void extenderProgramado() {
+        extender();
+    }
+
+    /**
+     * Extiende la agenda de todos los doctores con plantillas vigentes hasta el horizonte configurado.
+     * Un lote fallido no detiene a los demás; sus doctores se completan en la siguiente ejecución.
+     * @return El resumen de la ejecución, o un resumen vacío si ya había otra en curso.
+     */
+    public ResumenExtension extender() {
+        if (!enCurso.compareAndSet(false, true)) {
+            log.warn("Extensión del horizonte de agenda omitida: ya hay una ejecución en curso");
+            return new ResumenExtension(0, 0, 0, 0);
+        }
+        long inicio = System.nanoTime();
+        try {
+            LocalDate hoy = LocalDate.now(ZoneOffset.UTC);
+            LocalDate hasta = hoy.plusWeeks(propiedades.getHorizonteSemanas()).minusDays(1);
+            List<UUID> doctorIds = plantillaHorarioRepositorio.buscarDoctoresConPlantillasVigentes(hoy);
+            List<List<UUID>> lotes = particionar(doctorIds, propiedades.getDoctoresPorLote());
+            log.info("Extensión del horizonte de agenda hasta {}: {} doctores en {} lotes", hasta, doctorIds.size(), lotes.size());
+
+            AtomicInteger completados = new AtomicInteger();
+            List<Future<PlantillaHorarioServicio.ResultadoExpansion>> futuros = new ArrayList<>(lotes.size());
+            for (List<UUID> lote : lotes) {
+                futuros.add(trabajadores.submit(() -> {
+                    PlantillaHorarioServicio.ResultadoExpansion resultado = plantillaHorarioServicio.extenderHorizonte(lote, hasta);
+                    registroMetricas.incrementar("agenda.extension.doctores", lote.size());
+                    log.info("Extensión del horizonte de agenda: lote {}/{} completado ({} bloques creados)",
+                            completados.incrementAndGet(), lotes.size(), resultado.creados());
+                    return resultado;
+                }));
+            }
+
+            int creados = 0;
+            int omitidos = 0;
+            int fallidos = 0;
+            for (Future<PlantillaHorarioServicio.ResultadoExpansion> futuro : futuros) {
+                try {
+                    PlantillaHorarioServicio.ResultadoExpansion resultado = futuro.get();
+                    creados += resultado.creados();
+                    omitidos += resultado.omitidos();
+                } catch (ExecutionException e) {
+                    fallidos++;
+                    registroMetricas.incrementar("agenda.extension.lotes.fallidos");
+                    log.error("Error al extender el horizonte de agenda de un lote de doctores", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    futuros.forEach(pendiente -> pendiente.cancel(true));
+                    break;
+                }
+            }
+
+            long duracion = System.nanoTime() - inicio;
+            registroMetricas.registrarDuracion("agenda.extension", duracion);
+            log.info("Extensión del horizonte de agenda terminada en {} ms: {} bloques creados, {} omitidos, {} lotes fallidos",
+                    duracion / 1_000_000, creados, omitidos, fallidos);
+            return new ResumenExtension(doctorIds.size(), creados, omitidos, fallidos);
+        } finally {
+            enCurso.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        trabajadores.shutdownNow();
+    }
+
+    private static List<List<UUID>> particionar(List<UUID> ids, int tamano) {
+        List<List<UUID>> lotes = new ArrayList<>((ids.size() + tamano - 1) / tamano);
+        for (int i = 0; i < ids.size(); i += tamano) {
+            lotes.add(List.copyOf(ids.subList(i, Math.min(i + tamano, ids.size()))));
+        }
+        return lotes;
+    }
+
+    /**
+     * Resumen de una ejecución de la extensión.
+     * @param doctores Doctores con plantillas vigentes considerados.
+     * @param creados Bloques insertados.
+     * @param omitidos Bloques de días nuevos no insertados por solaparse con bloques existentes.
+     * @param lotesFallidos Lotes cuya transacción falló y se reintentarán en la siguiente ejecución.
+     */
+    public record ResumenExtension(int doctores, int creados, int omitidos, int lotesFallidos) {
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.dto.BloqueAgendaDTO;
+import com.example.citasmedicas.dto.CitaAgendaDTO;
+import com.example.citasmedicas.dto.VersionAgendaDTO;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.Doctor;
+import com.example.citasmedicas.modelo.entidad.EstadoCita;
+import com.example.citasmedicas.repositorio.CitaRepositorio;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.DoctorServicio;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Feed iCalendar de la agenda de un doctor para suscribirse desde aplicaciones de calendario.
+ * Incluye las citas no canceladas y los bloques libres que terminan desde hace citas.agenda.dias-historial-feed días.
+ * Las filas se leen como flujo y cada evento se escribe en cuanto se lee, sin cargar la agenda completa en memoria.
+ * La versión de la agenda (última modificación y número de filas) se calcula con dos consultas agregadas,
+ * de modo que un sondeo sin cambios se responde sin leer la agenda.
+ * Como las aplicaciones de calendario no pueden enviar un JWT, cada doctor puede generar un token para incluir en la URL
+ * del feed. Solo se guarda su hash; generar uno nuevo invalida el anterior y también puede revocarse sin sustituirlo.
+ */
+@Service
+public class FeedAgendaServicio {
+
+    private static final SecureRandom ALEATORIO = new SecureRandom();
+    private static final int BYTES_TOKEN = 32;
+
+    private final DisponibilidadRepositorio disponibilidadRepositorio;
+    private final CitaRepositorio citaRepositorio;
+    private final DoctorServicio doctorServicio;
+    private final RegistroMetricas registroMetricas;
+    private final AgendaPropiedades propiedades;
+
+    public FeedAgendaServicio(DisponibilidadRepositorio disponibilidadRepositorio, CitaRepositorio citaRepositorio, DoctorServicio doctorServicio, RegistroMetricas registroMetricas, AgendaPropiedades propiedades) {
+        this.disponibilidadRepositorio = disponibilidadRepositorio;
+        this.citaRepositorio = citaRepositorio;
+        this.doctorServicio = doctorServicio;
+        this.registroMetricas = registroMetricas;
+        this.propiedades = propiedades;
+    }
+
+    /**
+     * Calcula la ETag del feed de un doctor. Cambia al crear, modificar o eliminar un bloque o una cita
+     * incluidos en el feed, y cada día, al desplazarse la ventana del historial.
+     * @param doctorId El UUID del doctor.
+     * @return La ETag, sin comillas.
+     * @throws com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion Si el doctor no es encontrado.
+     */
+    @Transactional(readOnly = true)
+    public String calcularEtag(UUID doctorId) {
+        doctorServicio.obtenerEntidadDoctorPorId(doctorId);
+        LocalDateTime desde = inicioVentana();
+        VersionAgendaDTO bloques = disponibilidadRepositorio.obtenerVersionAgenda(doctorId, desde);
+        VersionAgendaDTO citas = citaRepositorio.obtenerVersionAgenda(doctorId, desde);
+        String version = desde + "|" + bloques.ultimaActualizacion() + "|" + bloques.filas()
+                + "|" + citas.ultimaActualizacion() + "|" + citas.filas();
+        return UUID.nameUUIDFromBytes(version.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Escribe el feed iCalendar de un doctor: primero las citas y después los bloques libres, ambos por hora de inicio.
+     * @param doctorId El UUID del doctor.
+     * @param salida El destino del feed; no se cierra.
+     * @throws com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion Si el doctor no es encontrado.
+     * @throws IOException Si falla la escritura (por ejemplo, si el cliente se desconecta).
+     */
+    @Transactional(readOnly = true)
+    public void escribirFeed(UUID doctorId, Writer salida) throws IOException {
+        long inicio = System.nanoTime();
+        Doctor doctor = doctorServicio.obtenerEntidadDoctorPorId(doctorId);
+        LocalDateTime desde = inicioVentana();
+        EscritorIcs escritor = new EscritorIcs(salida);
+        escritor.iniciarCalendario("Agenda " + doctor.getPrimerNombre() + " " + doctor.getApellido());
+
+        try (Stream<CitaAgendaDTO> citas = citaRepositorio.recorrerParaAgenda(doctorId, desde, EstadoCita.CANCELADA)) {
+            Iterator<CitaAgendaDTO> iterador = citas.iterator();
+            while (iterador.hasNext()) {
+                CitaAgendaDTO cita = iterador.next();
+                String resumen = (cita.estado() == EstadoCita.FINALIZADA ? "Cita finalizada: " : "Cita: ") + cita.nombrePaciente();
+                escritor.escribirEvento("cita-" + cita.id() + "@citasmedicas", cita.fechaActualizacion(), cita.horaInicio(), cita.horaFin(),
+                        resumen, cita.razonVisita(), true);
+            }
+        }
+        try (Stream<BloqueAgendaDTO> bloques = disponibilidadRepositorio.recorrerLibresParaAgenda(doctorId, desde)) {
+            Iterator<BloqueAgendaDTO> iterador = bloques.iterator();
+            while (iterador.hasNext()) {
+                BloqueAgendaDTO bloque = iterador.next();
+                String resumen = bloque.minutosRanura() == null ? "Disponible" : "Sesión disponible (ranuras de " + bloque.minutosRanura() + " min)";
+                escritor.escribirEvento("disponibilidad-" + bloque.id() + "@citasmedicas", bloque.fechaActualizacion(), bloque.horaInicio(), bloque.horaFin(),
+                        resumen, null, false);
+            }
+        }
+        escritor.terminarCalendario();
+        registroMetricas.incrementar("agenda.feed.generados");
+        registroMetricas.registrarDuracion("agenda.feed", System.nanoTime() - inicio);
+    }
+
+    /**
+     * Genera un nuevo token de acceso al feed de un doctor, sustituyendo al anterior si lo había.
+     * @param doctorId El UUID del doctor.
+     * @return El token en claro; no se puede volver a obtener, solo generar otro.
+     * @throws com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion Si el doctor no es encontrado.
+     */
+    @Transactional
+    public String generarToken(UUID doctorId) {
+        Doctor doctor = doctorServicio.obtenerEntidadDoctorPorId(doctorId);
+        byte[] bytes = new byte[BYTES_TOKEN];
+        ALEATORIO.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        doctor.setHashTokenFeed(hashToken(token));
+        registroMetricas.incrementar("agenda.feed.tokens_generados");
+        return token;
+    }
+
+    /**
+     * Revoca el token de acceso al feed de un doctor; a partir de entonces el feed solo se sirve con un JWT.
+     * @param doctorId El UUID del doctor.
+     * @throws com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion Si el doctor no es encontrado.
+     */
+    @Transactional
+    public void revocarToken(UUID doctorId) {
+        doctorServicio.obtenerEntidadDoctorPorId(doctorId).setHashTokenFeed(null);
+    }
+
+    /**
+     * Calcula el hash con el que se guarda y se compara un token del feed.
+     * @param token El token en claro.
+     * @return El hash SHA-256 en hexadecimal.
+     */
+    public static String hashToken(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no está disponible", e); // Todas las JVM deben incluirlo
+        }
+    }
+
+    private LocalDateTime inicioVentana() {
+        return LocalDate.now(ZoneOffset.UTC).minusDays(propiedades.getDiasHistorialFeed()).atStartOfDay();
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.excepciones.CapacidadExcedidaExcepcion;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.DoctorServicio;
+import com.example.citasmedicas.servicio.evento.CambioDisponibilidadEvento;
+import com.example.citasmedicas.servicio.evento.DisponibilidadLiberadaEvento;
+import com.example.citasmedicas.servicio.evento.TipoCambioDisponibilidad;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Difusión de los cambios de disponibilidad de cada doctor mediante Server-Sent Events.
+ * Los eventos se reciben tras la confirmación de la transacción que los produjo y se encolan en un buffer acotado
+ * por conexión; un grupo pequeño de hilos los envía, de modo que un cliente lento no bloquea a quien publica.
+ * Si el buffer de una conexión se llena, sus eventos pendientes se descartan y se le envía un único evento
+ * "resincronizar" para que vuelva a consultar la disponibilidad.
+ * Un latido periódico mantiene abiertas las conexiones inactivas y detecta las ya cerradas por el cliente.
+ * Cada conexión construye su propio evento SSE al enviarlo: SseEventBuilder no es seguro entre hilos
+ * y build() modifica el constructor, así que no se comparte entre conexiones.
+ */
+@Component
+public class FlujoDisponibilidad {
+
+    private static final String EVENTO_RESINCRONIZAR = "resincronizar";
+
+    private final DisponibilidadRepositorio disponibilidadRepositorio;
+    private final DoctorServicio doctorServicio;
+    private final RegistroMetricas registroMetricas;
+    private final int maxConexiones;
+    private final int capacidadBuffer;
+    private final long duracionMaximaMs;
+    private final Executor emisores;
+    private final Map<UUID, Set<Suscripcion>> suscripciones = new ConcurrentHashMap<>();
+    private final AtomicInteger conexiones = new AtomicInteger();
+    private final AtomicLong secuencia = new AtomicLong();
+
+    @Autowired
+    public FlujoDisponibilidad(DisponibilidadRepositorio disponibilidadRepositorio, DoctorServicio doctorServicio, RegistroMetricas registroMetricas, AgendaPropiedades propiedades) {
+        this(disponibilidadRepositorio, doctorServicio, registroMetricas, propiedades, Executors.newFixedThreadPool(propiedades.getHilosFlujo(), tarea -> {
+            Thread hilo = new Thread(tarea, "agenda-flujo-envio");
+            hilo.setDaemon(true);
+            return hilo;
+        }));
+    }
+
+    FlujoDisponibilidad(DisponibilidadRepositorio disponibilidadRepositorio, DoctorServicio doctorServicio, RegistroMetricas registroMetricas, AgendaPropiedades propiedades, Executor emisores) {
+        this.disponibilidadRepositorio = disponibilidadRepositorio;
+        this.doctorServicio = doctorServicio;
+        this.registroMetricas = registroMetricas;
+        this.maxConexiones = propiedades.getMaxConexionesFlujo();
+        this.capacidadBuffer = propiedades.getCapacidadBufferFlujo();
+        this.duracionMaximaMs = propiedades.getDuracionMaximaFlujo().toMillis();
+        this.emisores = emisores;
+        registroMetricas.registrarIndicador("agenda.flujo.conexiones", conexiones::get);
+    }
+
+    /**
+     * Abre una conexión al flujo de cambios de disponibilidad de un doctor.
+     * @param doctorId El UUID del doctor.
+     * @return El emisor SSE de la conexión.
+     * @throws com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion Si el doctor no es encontrado.
+     * @throws CapacidadExcedidaExcepcion Si se alcanzó el máximo de conexiones simultáneas.
+     */
+    public SseEmitter suscribir(UUID doctorId) {
+        doctorServicio.obtenerEntidadDoctorPorId(doctorId);
+        if (conexiones.incrementAndGet() > maxConexiones) {
+            conexiones.decrementAndGet();
+            registroMetricas.incrementar("agenda.flujo.rechazadas");
+            throw new CapacidadExcedidaExcepcion("Se alcanzó el máximo de conexiones al flujo de disponibilidad. Intente más tarde.");
+        }
+        Suscripcion suscripcion = new Suscripcion(doctorId, crearEmisor(duracionMaximaMs), capacidadBuffer);
+        suscripciones.computeIfAbsent(doctorId, id -> ConcurrentHashMap.newKeySet()).add(suscripcion);
+        suscripcion.emisor.onCompletion(() -> cerrar(suscripcion));
+        suscripcion.emisor.onTimeout(() -> cerrar(suscripcion));
+        suscripcion.emisor.onError(error -> cerrar(suscripcion));
+        // Un primer evento envía las cabeceras de inmediato, sin esperar al primer cambio
+        encolar(suscripcion, () -> SseEmitter.event().name("conectado").data(doctorId));
+        return suscripcion.emisor;
+    }
+
+    /**
+     * Difunde la creación, eliminación o reserva de un bloque a las conexiones del doctor.
+     * Sin transacción de origen se difunde de inmediato.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void alCambiarDisponibilidad(CambioDisponibilidadEvento evento) {
+        Set<Suscripcion> delDoctor = suscripciones.get(evento.doctorId());
+        if (delDoctor == null || delDoctor.isEmpty()) {
+            return;
+        }
+        String id = Long.toString(secuencia.incrementAndGet());
+        String nombre = evento.tipo().name().toLowerCase();
+        Supplier<SseEmitter.SseEventBuilder> sse = () -> SseEmitter.event().id(id).name(nombre).data(evento);
+        registroMetricas.incrementar("agenda.flujo.eventos");
+        delDoctor.forEach(suscripcion -> encolar(suscripcion, sse));
+    }
+
+    /**
+     * Difunde la liberación de un bloque (cita cancelada, retención vencida o liberada).
+     * El evento de liberación solo lleva el bloque, así que el doctor se resuelve con una lectura,
+     * que se omite mientras no hay ninguna conexión abierta.
+     */
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void alLiberarseDisponibilidad(DisponibilidadLiberadaEvento evento) {
+        if (conexiones.get() == 0) {
+            return;
+        }
+        Disponibilidad disponibilidad = disponibilidadRepositorio.findById(evento.disponibilidadId()).orElse(null);
+        if (disponibilidad == null || disponibilidad.getEstaReservado()) {
+            return;
+        }
+        alCambiarDisponibilidad(new CambioDisponibilidadEvento(disponibilidad.getDoctor().getId(), disponibilidad.getId(),
+                TipoCambioDisponibilidad.LIBERADO, disponibilidad.getHoraInicio(), disponibilidad.getHoraFin()));
+    }
+
+    /**
+     * Envía un comentario de latido a todas las conexiones abiertas.
+     */
+    @Scheduled(fixedDelayString = "${citas.agenda.flujo.intervalo-latido:PT15S}")
+    public void latir() {
+        Supplier<SseEmitter.SseEventBuilder> latido = () -> SseEmitter.event().comment("latido");
+        suscripciones.values().forEach(delDoctor -> delDoctor.forEach(suscripcion -> encolar(suscripcion, latido)));
+    }
+
+    /**
+     * Número de conexiones abiertas.
+     */
+    public int conexionesAbiertas() {
+        return conexiones.get();
+    }
+
+    @PreDestroy
+    public void cerrarTodas() {
+        suscripciones.values().forEach(delDoctor -> delDoctor.forEach(suscripcion -> {
+            cerrar(suscripcion);
+            suscripcion.emisor.complete();
+        }));
+        if (emisores instanceof ExecutorService servicio) {
+            servicio.shutdownNow();
+        }
+    }
+
+    SseEmitter crearEmisor(long duracionMaximaMs) {
+        return new SseEmitter(duracionMaximaMs);
+    }
+
+    // Si el buffer está lleno, el cliente ya no puede reconstruir el estado a partir de los eventos: se le pide resincronizar
+    private void encolar(Suscripcion suscripcion, Supplier<SseEmitter.SseEventBuilder> evento) {
+        if (suscripcion.cerrada.get()) {
+            return;
+        }
+        if (!suscripcion.pendientes.offer(evento)) {
+            suscripcion.pendientes.clear();
+            suscripcion.pendientes.offer(() -> SseEmitter.event().name(EVENTO_RESINCRONIZAR).data(suscripcion.doctorId));
+            registroMetricas.incrementar("agenda.flujo.desbordes");
+        }
+        programarEnvio(suscripcion);
+    }
+
+    // Como mucho un envío en curso por conexión, para conservar el orden de los eventos
+    private void programarEnvio(Suscripcion suscripcion) {
+        if (!suscripcion.enviando.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            emisores.execute(() -> enviarPendientes(suscripcion));
+        } catch (RejectedExecutionException e) {
+            suscripcion.enviando.set(false);
+        }
+    }
+
+    private void enviarPendientes(Suscripcion suscripcion) {
+        while (true) {
+            Supplier<SseEmitter.SseEventBuilder> evento = suscripcion.pendientes.poll();
+            if (evento == null) {
+                suscripcion.enviando.set(false);
+                // Un evento encolado justo antes de soltar el indicador no debe quedar sin enviar
+                if (suscripcion.pendientes.isEmpty() || !suscripcion.enviando.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                suscripcion.emisor.send(evento.get());
+            } catch (IOException | RuntimeException e) {
+                // El cliente se desconectó o el evento no pudo escribirse; el contenedor completa el emisor por su cuenta.
+                // Cerrar la conexión evita dejarla con un envío marcado en curso que ya no recibiría eventos
+                cerrar(suscripcion);
+                return;
+            }
+        }
+    }
+
+    private void cerrar(Suscripcion suscripcion) {
+        if (!suscripcion.cerrada.compareAndSet(false, true)) {
+            return;
+        }
+        suscripcion.pendientes.clear();
+        suscripciones.computeIfPresent(suscripcion.doctorId, (id, delDoctor) -> {
+            delDoctor.remove(suscripcion);
+            return delDoctor.isEmpty() ? null : delDoctor;
+        });
+        conexiones.decrementAndGet();
+    }
+
+    /**
+     * Conexión abierta al flujo de un doctor con su buffer de eventos pendientes.
+     */
+    private static final class Suscripcion {
+        private final UUID doctorId;
+        private final SseEmitter emisor;
+        private final ArrayBlockingQueue<Supplier<SseEmitter.SseEventBuilder>> pendientes;
+        private final AtomicBoolean enviando = new AtomicBoolean();
+        private final AtomicBoolean cerrada = new AtomicBoolean();
+
+        Suscripcion(UUID doctorId, SseEmitter emisor, int capacidadBuffer) {
+            this.doctorId = doctorId;
+            this.emisor = emisor;
+            this.pendientes = new ArrayBlockingQueue<>(capacidadBuffer);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.transaccion.TrasConfirmar;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Índice en memoria de los intervalos de disponibilidad de cada doctor.
+ * Guarda los bloques de un doctor en un mapa ordenado por hora de inicio, de modo que comprobar si un intervalo
+ * se solapa con un bloque existente cuesta O(log n) sin consultar la base de datos.
+ * El índice se mantiene con los cambios confirmados (creación, eliminación, reserva y liberación) de esta instancia.
+ * La agenda de un doctor se carga en segundo plano la primera vez que se consulta; mientras no está cargada,
+ * o si el intervalo es anterior a su ventana, quien consulta debe recurrir a la base de datos.
+ * Una verificación periódica compara el índice con la tabla disponibilidades y recarga los doctores divergentes,
+ * lo que también recoge los cambios hechos por otras instancias. Hasta entonces el índice puede no ver los bloques
+ * que otra instancia creó, así que solo sirve para rechazar solapamientos: su respuesta negativa debe confirmarse
+ * en la base de datos.
+ */
+@Component
+public class IndiceIntervalosDisponibilidad {
+
+    private static final Logger log = LoggerFactory.getLogger(IndiceIntervalosDisponibilidad.class);
+
+    private final DisponibilidadRepositorio disponibilidadRepositorio;
+    private final RegistroMetricas registroMetricas;
+    private final boolean habilitado;
+    private final Map<UUID, AgendaDoctor> agendas = new ConcurrentHashMap<>();
+    private final Map<UUID, UUID> doctorPorBloque = new ConcurrentHashMap<>();
+    private final ExecutorService cargador;
+
+    public IndiceIntervalosDisponibilidad(DisponibilidadRepositorio disponibilidadRepositorio, RegistroMetricas registroMetricas, AgendaPropiedades propiedades) {
+        this.disponibilidadRepositorio = disponibilidadRepositorio;
+        this.registroMetricas = registroMetricas;
+        this.habilitado = propiedades.isIndiceHabilitado();
+        this.cargador = Executors.newSingleThreadExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "agenda-indice-carga");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        registroMetricas.registrarIndicador("agenda.indice.doctores", agendas::size);
+        registroMetricas.registrarIndicador("agenda.indice.bloques", doctorPorBloque::size);
+    }
+
+    /**
+     * Indica si un intervalo se solapa con algún bloque del doctor.
+     * Si el índice no puede responder (agenda aún no cargada o intervalo anterior a la ventana cargada)
+     * devuelve un Optional vacío y programa la carga de la agenda del doctor.
+     * @param doctorId El UUID del doctor.
+     * @param inicio El inicio del intervalo.
+     * @param fin El fin del intervalo.
+     * @return true o false si el índice puede responder; vacío si hay que consultar la base de datos.
+     *         Un false refleja solo los cambios conocidos por esta instancia y debe confirmarse en la base de datos.
+     */
+    public Optional<Boolean> haySolapamiento(UUID doctorId, LocalDateTime inicio, LocalDateTime fin) {
+        if (!habilitado) {
+            return Optional.empty();
+        }
+        AgendaDoctor agenda = agendas.computeIfAbsent(doctorId, AgendaDoctor::new);
+        synchronized (agenda) {
+            if (agenda.cargada && !inicio.isBefore(agenda.ventanaDesde)) {
+                registroMetricas.incrementar("agenda.indice.aciertos");
+                return Optional.of(agenda.haySolapamiento(inicio, fin));
+            }
+        }
+        registroMetricas.incrementar("agenda.indice.consultas_bd");
+        programarCarga(agenda);
+        return Optional.empty();
+    }
+
+    /**
+     * Registra un bloque nuevo. Si hay una transacción activa, el cambio se aplica tras su confirmación.
+     * @param doctorId El UUID del doctor propietario.
+     * @param bloque El bloque creado.
+     */
+    public void registrarCreado(UUID doctorId, BloqueHorarioDTO bloque) {
+        TrasConfirmar.ejecutar(() -> {
+            AgendaDoctor agenda = agendas.get(doctorId);
+            if (agenda != null) {
+                synchronized (agenda) {
+                    if (agenda.cargada) {
+                        agenda.poner(bloque);
+                        doctorPorBloque.put(bloque.id(), doctorId);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Registra la eliminación de un bloque. Si hay una transacción activa, el cambio se aplica tras su confirmación.
+     * @param disponibilidadId El UUID del bloque eliminado.
+     */
+    public void registrarEliminado(UUID disponibilidadId) {
+        TrasConfirmar.ejecutar(() -> conAgendaDe(disponibilidadId, agenda -> {
+            agenda.quitar(disponibilidadId);
+            doctorPorBloque.remove(disponibilidadId);
+        }));
+    }
+
+    /**
+     * Registra la reserva o liberación de un bloque. Si hay una transacción activa, el cambio se aplica tras su confirmación.
+     * @param disponibilidadId El UUID del bloque.
+     * @param reservado El nuevo estado de reserva.
+     */
+    public void registrarReserva(UUID disponibilidadId, boolean reservado) {
+        TrasConfirmar.ejecutar(() -> conAgendaDe(disponibilidadId, agenda -> agenda.marcar(disponibilidadId, reservado)));
+    }
+
+    /**
+     * Compara cada agenda cargada con la tabla disponibilidades y recarga las que no coinciden.
+     * La agenda de un doctor se bloquea mientras se lee su estado en la base de datos, por lo que
+     * los cambios confirmados durante la verificación se aplican después sobre el estado recargado.
+     * @return El número de doctores cuya agenda divergía y se recargó.
+     */
+    @Scheduled(fixedDelayString = "${citas.agenda.indice.intervalo-verificacion:PT15M}",
+            initialDelayString = "${citas.agenda.indice.intervalo-verificacion:PT15M}")
+    public int verificarConsistencia() {
+        int divergentes = 0;
+        for (AgendaDoctor agenda : agendas.values()) {
+            try {
+                synchronized (agenda) {
+                    if (agenda.cargada && !agenda.coincideCon(disponibilidadRepositorio.buscarBloquesDesde(agenda.doctorId, agenda.ventanaDesde))) {
+                        cargar(agenda);
+                        divergentes++;
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.error("Error al verificar el índice de intervalos del doctor {}", agenda.doctorId, e);
+            }
+        }
+        if (divergentes > 0) {
+            registroMetricas.incrementar("agenda.indice.divergencias", divergentes);
+            log.warn("Índice de intervalos de disponibilidad: {} agendas divergentes recargadas", divergentes);
+        }
+        return divergentes;
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        cargador.shutdownNow();
+    }
+
+    private void programarCarga(AgendaDoctor agenda) {
+        if (!agenda.cargaProgramada.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            cargador.execute(() -> {
+                try {
+                    synchronized (agenda) {
+                        cargar(agenda);
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Error al cargar el índice de intervalos del doctor {}", agenda.doctorId, e);
+                } finally {
+                    agenda.cargaProgramada.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            agenda.cargaProgramada.set(false); // Apagado en curso: se sigue consultando la base de datos
+        }
+    }
+
+    // Debe invocarse con el monitor de la agenda; la ventana empieza el día anterior para cubrir los bloques en curso
+    private void cargar(AgendaDoctor agenda) {
+        LocalDateTime ventanaDesde = LocalDate.now(ZoneOffset.UTC).minusDays(1).atStartOfDay();
+        List<BloqueHorarioDTO> bloques = disponibilidadRepositorio.buscarBloquesDesde(agenda.doctorId, ventanaDesde);
+        agenda.bloques.values().forEach(bloque -> doctorPorBloque.remove(bloque.id()));
+        agenda.reemplazar(bloques, ventanaDesde);
+        bloques.forEach(bloque -> doctorPorBloque.put(bloque.id(), agenda.doctorId));
+    }
+
+    private void conAgendaDe(UUID disponibilidadId, Consumer<AgendaDoctor> cambio) {
+        UUID doctorId = doctorPorBloque.get(disponibilidadId);
+        AgendaDoctor agenda = doctorId != null ? agendas.get(doctorId) : null;
+        if (agenda != null) {
+            synchronized (agenda) {
+                if (agenda.cargada) {
+                    cambio.accept(agenda);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bloques de un doctor ordenados por hora de inicio. Los bloques de un doctor no se solapan entre sí,
+     * así que el bloque con el mayor inicio anterior al fin de un intervalo es el único candidato a solaparlo.
+     * Se accede siempre con el monitor de la instancia.
+     */
+    private static final class AgendaDoctor {
+        private final UUID doctorId;
+        private final TreeMap<LocalDateTime, BloqueHorarioDTO> bloques = new TreeMap<>();
+        private final Map<UUID, LocalDateTime> inicioPorId = new HashMap<>();
+        private final AtomicBoolean cargaProgramada = new AtomicBoolean();
+        private boolean cargada;
+        private LocalDateTime ventanaDesde;
+
+        AgendaDoctor(UUID doctorId) {
+            this.doctorId = doctorId;
+        }
+
+        boolean haySolapamiento(LocalDateTime inicio, LocalDateTime fin) {
+            Map.Entry<LocalDateTime, BloqueHorarioDTO> anterior = bloques.lowerEntry(fin);
+            return anterior != null && anterior.getValue().horaFin().isAfter(inicio);
+        }
+
+        void poner(BloqueHorarioDTO bloque) {
+            quitar(bloque.id());
+            bloques.put(bloque.horaInicio(), bloque);
+            inicioPorId.put(bloque.id(), bloque.horaInicio());
+        }
+
+        void quitar(UUID id) {
+            LocalDateTime inicio = inicioPorId.remove(id);
+            if (inicio != null) {
+                bloques.remove(inicio);
+            }
+        }
+
+        void marcar(UUID id, boolean reservado) {
+            LocalDateTime inicio = inicioPorId.get(id);
+            if (inicio != null) {
+                BloqueHorarioDTO actual = bloques.get(inicio);
+                bloques.put(inicio, new BloqueHorarioDTO(id, actual.horaInicio(), actual.horaFin(), reservado));
+            }
+        }
+
+        void reemplazar(List<BloqueHorarioDTO> nuevos, LocalDateTime desde) {
+            bloques.clear();
+            inicioPorId.clear();
+            nuevos.forEach(this::poner);
+            ventanaDesde = desde;
+            cargada = true;
+        }
+
+        // Los bloques de la base de datos llegan ordenados por hora de inicio, igual que el mapa
+        boolean coincideCon(List<BloqueHorarioDTO> enBaseDeDatos) {
+            return enBaseDeDatos.equals(List.copyOf(bloques.values()));
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
+import com.example.citasmedicas.dto.CrearPlantillaHorarioDTO;
+import com.example.citasmedicas.dto.FranjaSemanalDTO;
+import com.example.citasmedicas.dto.ResultadoExpansionDTO;
+import com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion;
+import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import com.example.citasmedicas.modelo.entidad.Doctor;
+import com.example.citasmedicas.modelo.entidad.PlantillaHorario;
+import com.example.citasmedicas.repositorio.DisponibilidadLoteRepositorio;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.repositorio.PlantillaHorarioRepositorio;
+import com.example.citasmedicas.servicio.DoctorServicio;
+import com.example.citasmedicas.servicio.transaccion.ReintentarTransaccion;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Servicio de plantillas de horario semanales.
+ * Una plantilla describe una franja recurrente (día de la semana, horas y duración de bloque) vigente entre dos fechas
+ * y se expande en bloques de Disponibilidad. La expansión comprueba los solapamientos con los bloques existentes
+ * en memoria, en una sola pasada sobre dos listas ordenadas, e inserta los bloques nuevos con lotes JDBC.
+ * Cada plantilla recuerda hasta qué día se expandió y esos días no se vuelven a generar.
+ */
+@Service
+public class PlantillaHorarioServicio {
+
+    // Orden de las franjas dentro de una semana: día y hora de inicio
+    private static final Comparator<PlantillaHorario> ORDEN_SEMANAL = Comparator
+            .comparing(PlantillaHorario::getDiaSemana)
+            .thenComparing(PlantillaHorario::getHoraInicio);
+
+    private final PlantillaHorarioRepositorio plantillaHorarioRepositorio;
+    private final DisponibilidadRepositorio disponibilidadRepositorio;
+    private final DisponibilidadLoteRepositorio disponibilidadLoteRepositorio;
+    private final DoctorServicio doctorServicio;
+    private final RegistroMetricas registroMetricas;
+    private final AgendaPropiedades propiedades;
+    private final IndiceIntervalosDisponibilidad indiceIntervalos;
+    private final CacheDisponibilidad cacheDisponibilidad;
+
+    public PlantillaHorarioServicio(PlantillaHorarioRepositorio plantillaHorarioRepositorio, DisponibilidadRepositorio disponibilidadRepositorio, DisponibilidadLoteRepositorio disponibilidadLoteRepositorio, DoctorServicio doctorServicio, RegistroMetricas registroMetricas, AgendaPropiedades propiedades, IndiceIntervalosDisponibilidad indiceIntervalos, CacheDisponibilidad cacheDisponibilidad) {
+        this.plantillaHorarioRepositorio = plantillaHorarioRepositorio;
+        this.disponibilidadRepositorio = disponibilidadRepositorio;
+        this.disponibilidadLoteRepositorio = disponibilidadLoteRepositorio;
+        this.doctorServicio = doctorServicio;
+        this.registroMetricas = registroMetricas;
+        this.propiedades = propiedades;
+        this.indiceIntervalos = indiceIntervalos;
+        this.cacheDisponibilidad = cacheDisponibilidad;
+    }
+
+    /**
+     * Crea las plantillas de horario de un doctor y las expande en bloques de disponibilidad.
+     * Si la vigencia no tiene fin, se expande hasta el horizonte de reservas configurado.
+     * Los bloques que se solapan con bloques existentes se omiten y se informan en el resultado.
+     * @param doctorId El UUID del doctor.
+     * @param dto El DTO con las franjas semanales y su vigencia.
+     * @return El DTO con las plantillas creadas y el número de bloques creados y omitidos.
+     * @throws RecursoNoEncontradoExcepcion Si el doctor no existe.
+     * @throws SolicitudInvalidaExcepcion Si alguna franja es inválida, se solapa con otra plantilla o la expansión es demasiado grande.
+     */
+    @ReintentarTransaccion
+    @Transactional
+    public ResultadoExpansionDTO crearYExpandir(UUID doctorId, CrearPlantillaHorarioDTO dto) {
+        if (dto.getHasta() != null && dto.getHasta().isBefore(dto.getDesde())) {
+            throw new SolicitudInvalidaExcepcion("La fecha de fin de vigencia no puede ser anterior a la de inicio.");
+        }
+        Doctor doctor = doctorServicio.obtenerEntidadDoctorPorId(doctorId);
+
+        List<PlantillaHorario> nuevas = new ArrayList<>(dto.getFranjas().size());
+        for (FranjaSemanalDTO franja : dto.getFranjas()) {
+            nuevas.add(aEntidad(doctor, franja, dto.getDesde(), dto.getHasta()));
+        }
+        validarSinSolapamientos(nuevas, plantillaHorarioRepositorio.findByDoctorId(doctorId));
+        List<PlantillaHorario> guardadas = plantillaHorarioRepositorio.saveAll(nuevas);
+
+        LocalDate hoy = LocalDate.now(ZoneOffset.UTC);
+        LocalDate inicio = dto.getDesde().isBefore(hoy) ? hoy : dto.getDesde();
+        LocalDate fin = dto.getHasta() != null ? dto.getHasta() : hoy.plusWeeks(propiedades.getHorizonteSemanas()).minusDays(1);
+        if (ChronoUnit.DAYS.between(inicio, fin) >= propiedades.getMaxDiasExpansion()) {
+            throw new SolicitudInvalidaExcepcion("La expansión no puede cubrir más de " + propiedades.getMaxDiasExpansion() + " días.");
+        }
+
+        ResultadoExpansion resultado = fin.isBefore(inicio) ? new ResultadoExpansion(0, 0) : expandir(doctorId, guardadas, inicio, fin);
+        return new ResultadoExpansionDTO(guardadas.stream().map(PlantillaHorario::getId).toList(), inicio, fin,
+                resultado.creados(), resultado.omitidos());
+    }
+
+    /**
+     * Expande plantillas en bloques de disponibilidad para un rango de fechas y las marca como expandidas hasta su fin.
+     * Los días que una plantilla ya tenía expandidos no se generan, y los bloques que ya comenzaron o que se solapan
+     * con bloques existentes se omiten, por lo que repetir la expansión de un mismo rango es seguro.
+     * Debe invocarse dentro de una transacción, con las plantillas gestionadas por ella.
+     * @param doctorId El UUID del doctor propietario de las plantillas.
+     * @param plantillas Las plantillas a expandir (sin solapamientos entre sí).
+     * @param desde El primer día a expandir.
+     * @param hasta El último día a expandir (inclusive).
+     * @return El número de bloques creados y omitidos.
+     * @throws SolicitudInvalidaExcepcion Si la expansión supera el máximo de bloques configurado.
+     */
+    @Transactional
+    public ResultadoExpansion expandir(UUID doctorId, List<PlantillaHorario> plantillas, LocalDate desde, LocalDate hasta) {
+        long inicio = System.nanoTime();
+        List<Disponibilidad> generados = generar(plantillas, desde, hasta);
+        if (generados.size() > propiedades.getMaxBloquesExpansion()) {
+            throw new SolicitudInvalidaExcepcion("La expansión generaría " + generados.size() + " bloques; el máximo es " + propiedades.getMaxBloquesExpansion() + ".");
+        }
+        plantillas.forEach(plantilla -> plantilla.marcarExpandidaHasta(hasta));
+        if (generados.isEmpty()) {
+            return new ResultadoExpansion(0, 0);
+        }
+
+        List<BloqueHorarioDTO> existentes = disponibilidadRepositorio.buscarBloquesEnRango(doctorId,
+                generados.get(0).getHoraInicio(), generados.get(generados.size() - 1).getHoraFin());
+        List<Disponibilidad> nuevos = descartarSolapados(generados, existentes);
+        int creados = disponibilidadLoteRepositorio.insertarLibres(doctorId, nuevos, propiedades.getTamanoLoteInsercion());
+        int omitidos = generados.size() - nuevos.size();
+        nuevos.forEach(bloque -> indiceIntervalos.registrarCreado(doctorId,
+                new BloqueHorarioDTO(bloque.getId(), bloque.getHoraInicio(), bloque.getHoraFin(), false)));
+        if (creados > 0) {
+            cacheDisponibilidad.invalidarDoctor(doctorId);
+        }
+
+        registroMetricas.incrementar("agenda.bloques.creados", creados);
+        registroMetricas.incrementar("agenda.bloques.omitidos", omitidos);
+        registroMetricas.registrarDuracion("agenda.expansion", System.nanoTime() - inicio);
+        return new ResultadoExpansion(creados, omitidos);
+    }
+
+    /**
+     * Extiende la agenda de un grupo de doctores hasta una fecha a partir de sus plantillas.
+     * Para cada doctor solo se generan los días posteriores a los que cada plantilla ya tenía expandidos (o desde hoy,
+     * si nunca se expandió), así que los bloques de plantilla que el doctor eliminó no reaparecen. Los días nuevos
+     * que se solapan con bloques existentes (por ejemplo, creados a mano) se omiten, y un bloque manual lejano no
+     * impide rellenar los días anteriores a él. Las plantillas se cargan con una consulta para todo el grupo, y
+     * volver a ejecutarla tras una interrupción es seguro.
+     * @param doctorIds Los UUID de los doctores del grupo.
+     * @param hasta El último día que debe quedar cubierto (inclusive).
+     * @return El número total de bloques creados y omitidos.
+     */
+    @ReintentarTransaccion
+    @Transactional
+    public ResultadoExpansion extenderHorizonte(List<UUID> doctorIds, LocalDate hasta) {
+        Map<UUID, List<PlantillaHorario>> plantillasPorDoctor = new HashMap<>();
+        for (PlantillaHorario plantilla : plantillaHorarioRepositorio.findByDoctorIdIn(doctorIds)) {
+            plantillasPorDoctor.computeIfAbsent(plantilla.getDoctor().getId(), id -> new ArrayList<>()).add(plantilla);
+        }
+
+        LocalDate hoy = LocalDate.now(ZoneOffset.UTC);
+        int creados = 0;
+        int omitidos = 0;
+        if (hoy.isAfter(hasta)) {
+            return new ResultadoExpansion(0, 0);
+        }
+        for (Map.Entry<UUID, List<PlantillaHorario>> entrada : plantillasPorDoctor.entrySet()) {
+            LocalDate desde = primerDiaSinExpandir(entrada.getValue(), hoy);
+            if (desde.isAfter(hasta)) {
+                continue;
+            }
+            ResultadoExpansion resultado = expandir(entrada.getKey(), entrada.getValue(), desde, hasta);
+            creados += resultado.creados();
+            omitidos += resultado.omitidos();
+        }
+        return new ResultadoExpansion(creados, omitidos);
+    }
+
+    // Primer día que alguna de las plantillas aún no tiene expandido, sin retroceder antes de hoy
+    private static LocalDate primerDiaSinExpandir(List<PlantillaHorario> plantillas, LocalDate hoy) {
+        LocalDate desde = LocalDate.MAX;
+        for (PlantillaHorario plantilla : plantillas) {
+            LocalDate siguiente = plantilla.getExpandidaHasta() == null ? hoy : plantilla.getExpandidaHasta().plusDays(1);
+            if (siguiente.isBefore(desde)) {
+                desde = siguiente;
+            }
+        }
+        return desde.isBefore(hoy) ? hoy : desde;
+    }
+
+    /**
+     * Genera los bloques de las plantillas para cada día del rango, ordenados por hora de inicio.
+     * Los bloques que no comienzan en el futuro y los días que cada plantilla ya tenía expandidos no se generan.
+     */
+    List<Disponibilidad> generar(List<PlantillaHorario> plantillas, LocalDate desde, LocalDate hasta) {
+        List<PlantillaHorario> ordenadas = new ArrayList<>(plantillas);
+        ordenadas.sort(Comparator.comparing(PlantillaHorario::getHoraInicio));
+        LocalDateTime ahora = LocalDateTime.now(ZoneOffset.UTC);
+        List<Disponibilidad> bloques = new ArrayList<>();
+        for (LocalDate fecha = desde; !fecha.isAfter(hasta); fecha = fecha.plusDays(1)) {
+            for (PlantillaHorario plantilla : ordenadas) {
+                if (!plantilla.aplicaA(fecha) || plantilla.estaExpandidaEn(fecha)) {
+                    continue;
+                }
+                Duration duracion = Duration.ofMinutes(plantilla.getDuracionBloqueMinutos());
+                LocalDateTime finFranja = fecha.atTime(plantilla.getHoraFin());
+                for (LocalDateTime horaInicio = fecha.atTime(plantilla.getHoraInicio());
+                     !horaInicio.plus(duracion).isAfter(finFranja);
+                     horaInicio = horaInicio.plus(duracion)) {
+                    if (horaInicio.isAfter(ahora)) {
+                        Disponibilidad bloque = new Disponibilidad();
+                        bloque.setHoraInicio(horaInicio);
+                        bloque.setHoraFin(horaInicio.plus(duracion));
+                        bloques.add(bloque);
+                    }
+                }
+            }
+        }
+        return bloques;
+    }
+
+    /**
+     * Descarta los bloques generados que se solapan con bloques existentes en una sola pasada.
+     * Ambas listas están ordenadas por hora de inicio y los bloques generados no se solapan entre sí,
+     * por lo que también están ordenados por hora de fin: basta con avanzar un puntero sobre los existentes
+     * acumulando la mayor hora de fin de los que comienzan antes de que termine el bloque generado.
+     */
+    static List<Disponibilidad> descartarSolapados(List<Disponibilidad> generados, List<BloqueHorarioDTO> existentes) {
+        List<Disponibilidad> libres = new ArrayList<>(generados.size());
+        int j = 0;
+        LocalDateTime mayorFin = LocalDateTime.MIN;
+        for (Disponibilidad bloque : generados) {
+            while (j < existentes.size() && existentes.get(j).horaInicio().isBefore(bloque.getHoraFin())) {
+                if (existentes.get(j).horaFin().isAfter(mayorFin)) {
+                    mayorFin = existentes.get(j).horaFin();
+                }
+                j++;
+            }
+            if (!mayorFin.isAfter(bloque.getHoraInicio())) {
+                libres.add(bloque);
+            }
+        }
+        return libres;
+    }
+
+    // Comprueba que las franjas nuevas no se solapan entre sí ni con plantillas existentes de vigencia coincidente
+    private static void validarSinSolapamientos(List<PlantillaHorario> nuevas, List<PlantillaHorario> existentes) {
+        List<PlantillaHorario> todas = new ArrayList<>(nuevas);
+        for (PlantillaHorario existente : existentes) {
+            if (nuevas.stream().anyMatch(nueva -> vigenciasCoinciden(nueva, existente))) {
+                todas.add(existente);
+            }
+        }
+        todas.sort(ORDEN_SEMANAL);
+        for (int i = 1; i < todas.size(); i++) {
+            PlantillaHorario anterior = todas.get(i - 1);
+            PlantillaHorario actual = todas.get(i);
+            if (anterior.getDiaSemana() == actual.getDiaSemana()
+                    && actual.getHoraInicio().isBefore(anterior.getHoraFin())
+                    && vigenciasCoinciden(anterior, actual)) {
+                throw new SolicitudInvalidaExcepcion("La franja del " + actual.getDiaSemana() + " de " + actual.getHoraInicio()
+                        + " se solapa con otra franja de " + anterior.getHoraInicio() + " a " + anterior.getHoraFin() + ".");
+            }
+        }
+    }
+
+    private static boolean vigenciasCoinciden(PlantillaHorario a, PlantillaHorario b) {
+        boolean aEmpiezaAntesDelFinDeB = b.getVigenteHasta() == null || !a.getVigenteDesde().isAfter(b.getVigenteHasta());
+        boolean bEmpiezaAntesDelFinDeA = a.getVigenteHasta() == null || !b.getVigenteDesde().isAfter(a.getVigenteHasta());
+        return aEmpiezaAntesDelFinDeB && bEmpiezaAntesDelFinDeA;
+    }
+
+    private static PlantillaHorario aEntidad(Doctor doctor, FranjaSemanalDTO franja, LocalDate desde, LocalDate hasta) {
+        LocalTime horaInicio = franja.getHoraInicio();
+        LocalTime horaFin = franja.getHoraFin();
+        if (!horaInicio.isBefore(horaFin)) {
+            throw new SolicitudInvalidaExcepcion("La hora de inicio de la franja del " + franja.getDiaSemana() + " debe ser anterior a su hora de fin.");
+        }
+        if (Duration.between(horaInicio, horaFin).toMinutes() < franja.getDuracionBloqueMinutos()) {
+            throw new SolicitudInvalidaExcepcion("La franja del " + franja.getDiaSemana() + " es más corta que la duración de un bloque.");
+        }
+        PlantillaHorario plantilla = new PlantillaHorario();
+        plantilla.setDoctor(doctor);
+        plantilla.setDiaSemana(franja.getDiaSemana());
+        plantilla.setHoraInicio(horaInicio);
+        plantilla.setHoraFin(horaFin);
+        plantilla.setDuracionBloqueMinutos(franja.getDuracionBloqueMinutos());
+        plantilla.setVigenteDesde(desde);
+        plantilla.setVigenteHasta(hasta);
+        return plantilla;
+    }
+
+    /**
+     * Resultado de una expansión.
+     * @param creados Bloques insertados.
+     * @param omitidos Bloques de días nuevos no insertados por solaparse con bloques existentes.
+     */
+    public record ResultadoExpansion(int creados, int omitidos) {
+    }
+}
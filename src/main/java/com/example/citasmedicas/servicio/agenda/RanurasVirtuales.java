@@ -0,0 +1,126 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Cálculo de las ranuras virtuales de las sesiones de disponibilidad.
+ * Una sesión se divide en ranuras consecutivas de su duración, desde su inicio y sin superar su fin.
+ * El ID de cada ranura se deriva del ID de la sesión y de su número de orden dentro de ella, así que es estable
+ * entre consultas e instancias; al reservarse, la ranura se escribe como bloque propio con ese mismo ID, por lo que
+ * dos reservas simultáneas de la misma ranura chocan en la clave primaria.
+ * El ID de la ranura solo difiere del de su sesión en los 16 bits más bajos, de modo que la sesión de una ranura
+ * se encuentra con una búsqueda por rango de clave primaria, sin recorrer las sesiones del doctor.
+ */
+public final class RanurasVirtuales {
+
+    private static final long MASCARA_ORDEN = 0xFFFFL;
+
+    private RanurasVirtuales() {
+    }
+
+    /**
+     * Calcula el ID de una ranura de una sesión: los 16 bits más bajos del ID de la sesión se combinan
+     * con el número de orden más uno, por lo que nunca coincide con el de la sesión.
+     * Una sesión dura como mucho un día con ranuras de al menos 5 minutos, muy por debajo de 2^16 ranuras.
+     * @param sesionId El UUID de la sesión.
+     * @param orden El número de orden de la ranura dentro de la sesión, desde 0.
+     * @return El UUID de la ranura.
+     */
+    public static UUID idRanura(UUID sesionId, int orden) {
+        return new UUID(sesionId.getMostSignificantBits(), sesionId.getLeastSignificantBits() ^ (orden + 1));
+    }
+
+    /**
+     * Menor ID que puede tener la sesión de una ranura.
+     */
+    public static UUID idSesionDesde(UUID ranuraId) {
+        return new UUID(ranuraId.getMostSignificantBits(), ranuraId.getLeastSignificantBits() & ~MASCARA_ORDEN);
+    }
+
+    /**
+     * Mayor ID que puede tener la sesión de una ranura.
+     */
+    public static UUID idSesionHasta(UUID ranuraId) {
+        return new UUID(ranuraId.getMostSignificantBits(), ranuraId.getLeastSignificantBits() | MASCARA_ORDEN);
+    }
+
+    /**
+     * Número de orden de una ranura dentro de una sesión.
+     * @return El número de orden, o -1 si el ID no corresponde a ninguna ranura de la sesión.
+     */
+    public static int orden(UUID sesionId, UUID ranuraId) {
+        if (!idSesionDesde(ranuraId).equals(idSesionDesde(sesionId))) {
+            return -1;
+        }
+        return (int) ((ranuraId.getLeastSignificantBits() ^ sesionId.getLeastSignificantBits()) & MASCARA_ORDEN) - 1;
+    }
+
+    /**
+     * Recorre las ranuras de una sesión en orden.
+     * @param inicio El inicio de la sesión.
+     * @param fin El fin de la sesión.
+     * @param minutosRanura La duración de cada ranura.
+     * @param accion Recibe el número de orden, el inicio y el fin de cada ranura.
+     */
+    public static void recorrer(LocalDateTime inicio, LocalDateTime fin, int minutosRanura, AccionRanura accion) {
+        int orden = 0;
+        for (LocalDateTime ranura = inicio; !ranura.plusMinutes(minutosRanura).isAfter(fin); ranura = ranura.plusMinutes(minutosRanura)) {
+            accion.aceptar(orden++, ranura, ranura.plusMinutes(minutosRanura));
+        }
+    }
+
+    /**
+     * Número de ranuras de una sesión.
+     */
+    public static int contar(LocalDateTime inicio, LocalDateTime fin, int minutosRanura) {
+        int[] total = new int[1];
+        recorrer(inicio, fin, minutosRanura, (orden, desde, hasta) -> total[0]++);
+        return total[0];
+    }
+
+    /**
+     * Sustituye cada sesión de la lista por sus ranuras virtuales libres. Las ranuras ya materializadas
+     * aparecen en la lista como bloques propios y no se duplican. La lista debe incluir, junto a cada sesión,
+     * los bloques materializados a partir de ella.
+     * @param bloques Los bloques leídos, en cualquier orden.
+     * @return Los bloques reservables ordenados por hora de inicio.
+     */
+    public static List<BloqueHorarioDTO> expandir(List<BloqueHorarioDTO> bloques) {
+        if (bloques.stream().noneMatch(BloqueHorarioDTO::esSesion)) {
+            return bloques;
+        }
+        Set<UUID> materializadas = new HashSet<>();
+        bloques.stream().filter(bloque -> bloque.bloquePadreId() != null).forEach(bloque -> materializadas.add(bloque.id()));
+        List<BloqueHorarioDTO> resultado = new ArrayList<>(bloques.size());
+        for (BloqueHorarioDTO bloque : bloques) {
+            if (!bloque.esSesion()) {
+                resultado.add(bloque);
+                continue;
+            }
+            recorrer(bloque.horaInicio(), bloque.horaFin(), bloque.minutosRanura(), (orden, inicio, fin) -> {
+                UUID id = idRanura(bloque.id(), orden);
+                if (!materializadas.contains(id)) {
+                    resultado.add(new BloqueHorarioDTO(id, inicio, fin, false, null, bloque.id()));
+                }
+            });
+        }
+        resultado.sort(Comparator.comparing(BloqueHorarioDTO::horaInicio));
+        return resultado;
+    }
+
+    /**
+     * Acción aplicada a cada ranura de una sesión.
+     */
+    @FunctionalInterface
+    public interface AccionRanura {
+        void aceptar(int orden, LocalDateTime inicio, LocalDateTime fin);
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
+import com.example.citasmedicas.dto.IntervaloHorarioDTO;
+import com.example.citasmedicas.dto.ResultadoSincronizacionDTO;
+import com.example.citasmedicas.dto.ResultadoSincronizacionDTO.Conflicto;
+import com.example.citasmedicas.dto.ResultadoSincronizacionDTO.Motivo;
+import com.example.citasmedicas.dto.SincronizarDisponibilidadDTO;
+import com.example.citasmedicas.excepciones.ConflictoHorarioExcepcion;
+import com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion;
+import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import com.example.citasmedicas.repositorio.CitaRepositorio;
+import com.example.citasmedicas.repositorio.DisponibilidadLoteRepositorio;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.DoctorServicio;
+import com.example.citasmedicas.servicio.evento.CambioDisponibilidadEvento;
+import com.example.citasmedicas.servicio.evento.TipoCambioDisponibilidad;
+import com.example.citasmedicas.servicio.reserva.RetencionServicio;
+import com.example.citasmedicas.servicio.transaccion.ReintentarTransaccion;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Servicio de sincronización de la agenda de un doctor con el conjunto de bloques deseado por un cliente.
+ * Calcula la diferencia mínima con los bloques existentes del rango mediante una fusión ordenada de ambas listas:
+ * los bloques con el mismo intervalo se conservan, los existentes sobrantes se eliminan con una única sentencia
+ * y los deseados que faltan se insertan en lotes JDBC, todo en una transacción.
+ * Los bloques que no pueden eliminarse (reservados, retenidos, con citas) y los nuevos que se solaparían
+ * con ellos se devuelven como conflictos sin hacer fallar el resto de la sincronización.
+ */
+@Service
+public class SincronizacionAgendaServicio {
+
+    private static final Comparator<BloqueHorarioDTO> ORDEN_BLOQUES = Comparator
+            .comparing(BloqueHorarioDTO::horaInicio)
+            .thenComparing(BloqueHorarioDTO::horaFin);
+
+    private final DisponibilidadRepositorio disponibilidadRepositorio;
+    private final DisponibilidadLoteRepositorio disponibilidadLoteRepositorio;
+    private final CitaRepositorio citaRepositorio;
+    private final DoctorServicio doctorServicio;
+    private final RetencionServicio retencionServicio;
+    private final IndiceIntervalosDisponibilidad indiceIntervalos;
+    private final CacheDisponibilidad cacheDisponibilidad;
+    private final ApplicationEventPublisher publicadorEventos;
+    private final RegistroMetricas registroMetricas;
+    private final AgendaPropiedades propiedades;
+
+    public SincronizacionAgendaServicio(DisponibilidadRepositorio disponibilidadRepositorio, DisponibilidadLoteRepositorio disponibilidadLoteRepositorio, CitaRepositorio citaRepositorio, DoctorServicio doctorServicio, RetencionServicio retencionServicio, IndiceIntervalosDisponibilidad indiceIntervalos, CacheDisponibilidad cacheDisponibilidad, ApplicationEventPublisher publicadorEventos, RegistroMetricas registroMetricas, AgendaPropiedades propiedades) {
+        this.disponibilidadRepositorio = disponibilidadRepositorio;
+        this.disponibilidadLoteRepositorio = disponibilidadLoteRepositorio;
+        this.citaRepositorio = citaRepositorio;
+        this.doctorServicio = doctorServicio;
+        this.retencionServicio = retencionServicio;
+        this.indiceIntervalos = indiceIntervalos;
+        this.cacheDisponibilidad = cacheDisponibilidad;
+        this.publicadorEventos = publicadorEventos;
+        this.registroMetricas = registroMetricas;
+        this.propiedades = propiedades;
+    }
+
+    /**
+     * Sincroniza los bloques de un doctor que comienzan en [desde, hasta) con los bloques deseados.
+     * @param doctorId El UUID del doctor.
+     * @param dto El rango y los bloques deseados.
+     * @return El número de bloques creados, eliminados y sin cambios, y los conflictos.
+     * @throws RecursoNoEncontradoExcepcion Si el doctor no existe.
+     * @throws SolicitudInvalidaExcepcion Si el rango o los bloques deseados son inválidos o se solapan entre sí.
+     * @throws ConflictoHorarioExcepcion Si un bloque a eliminar se reservó mientras se aplicaban los cambios.
+     */
+    @ReintentarTransaccion
+    @Transactional
+    public ResultadoSincronizacionDTO sincronizar(UUID doctorId, SincronizarDisponibilidadDTO dto) {
+        long inicio = System.nanoTime();
+        List<BloqueHorarioDTO> deseados = validarDeseados(dto);
+        doctorServicio.obtenerEntidadDoctorPorId(doctorId);
+
+        // Se leen también los bloques que empiezan antes del rango o terminan después, porque limitan lo que puede crearse
+        LocalDateTime finLectura = deseados.isEmpty() ? dto.getHasta() : max(dto.getHasta(), deseados.get(deseados.size() - 1).horaFin());
+        List<BloqueHorarioDTO> candidatos = new ArrayList<>();
+        List<BloqueHorarioDTO> conservados = new ArrayList<>();
+        for (BloqueHorarioDTO bloque : disponibilidadRepositorio.buscarBloquesEnRango(doctorId, dto.getDesde(), finLectura)) {
+            boolean enRango = !bloque.horaInicio().isBefore(dto.getDesde()) && bloque.horaInicio().isBefore(dto.getHasta());
+            // Las ranuras materializadas pertenecen a su sesión y no forman parte del conjunto sincronizado
+            (enRango && bloque.bloquePadreId() == null ? candidatos : conservados).add(bloque);
+        }
+        candidatos.sort(ORDEN_BLOQUES);
+
+        // Fusión ordenada: mismo intervalo = sin cambios; solo en existentes = eliminar; solo en deseados = crear
+        List<BloqueHorarioDTO> aEliminar = new ArrayList<>();
+        List<BloqueHorarioDTO> aCrear = new ArrayList<>();
+        int sinCambios = 0;
+        int i = 0;
+        int j = 0;
+        while (i < candidatos.size() || j < deseados.size()) {
+            int comparacion = i == candidatos.size() ? 1 : j == deseados.size() ? -1 : ORDEN_BLOQUES.compare(candidatos.get(i), deseados.get(j));
+            if (comparacion == 0) {
+                conservados.add(candidatos.get(i++));
+                j++;
+                sinCambios++;
+            } else if (comparacion < 0) {
+                aEliminar.add(candidatos.get(i++));
+            } else {
+                aCrear.add(deseados.get(j++));
+            }
+        }
+
+        List<Conflicto> conflictos = new ArrayList<>();
+        List<BloqueHorarioDTO> eliminables = descartarNoEliminables(aEliminar, conservados, conflictos);
+        conservados.sort(ORDEN_BLOQUES);
+        List<Disponibilidad> nuevos = descartarSolapados(aCrear, conservados, conflictos);
+
+        List<UUID> idsEliminados = eliminables.stream().map(BloqueHorarioDTO::id).toList();
+        // La eliminación vuelve a exigir que los bloques sigan libres y sin citas: si no coincide, una reserva se adelantó
+        if (!idsEliminados.isEmpty() && disponibilidadRepositorio.eliminarLibresPorIds(idsEliminados) != idsEliminados.size()) {
+            throw new ConflictoHorarioExcepcion("La agenda del doctor cambió durante la sincronización. Intente de nuevo.");
+        }
+        int creados = nuevos.isEmpty() ? 0 : disponibilidadLoteRepositorio.insertarLibres(doctorId, nuevos, propiedades.getTamanoLoteInsercion());
+
+        for (BloqueHorarioDTO eliminado : eliminables) {
+            indiceIntervalos.registrarEliminado(eliminado.id());
+            publicar(doctorId, eliminado.id(), TipoCambioDisponibilidad.ELIMINADO, eliminado.horaInicio(), eliminado.horaFin());
+        }
+        for (Disponibilidad nuevo : nuevos) {
+            indiceIntervalos.registrarCreado(doctorId, new BloqueHorarioDTO(nuevo.getId(), nuevo.getHoraInicio(), nuevo.getHoraFin(), false));
+            publicar(doctorId, nuevo.getId(), TipoCambioDisponibilidad.CREADO, nuevo.getHoraInicio(), nuevo.getHoraFin());
+        }
+        if (creados > 0 || !eliminables.isEmpty()) {
+            cacheDisponibilidad.invalidarDoctor(doctorId);
+        }
+
+        registroMetricas.incrementar("agenda.sincronizacion.creados", creados);
+        registroMetricas.incrementar("agenda.sincronizacion.eliminados", eliminables.size());
+        registroMetricas.incrementar("agenda.sincronizacion.conflictos", conflictos.size());
+        registroMetricas.registrarDuracion("agenda.sincronizacion", System.nanoTime() - inicio);
+        return new ResultadoSincronizacionDTO(doctorId, creados, eliminables.size(), sinCambios, conflictos);
+    }
+
+    // Valida el rango y devuelve los bloques deseados ordenados, comprobando que no se solapan entre sí
+    private List<BloqueHorarioDTO> validarDeseados(SincronizarDisponibilidadDTO dto) {
+        if (!dto.getDesde().isBefore(dto.getHasta())) {
+            throw new SolicitudInvalidaExcepcion("El inicio del rango debe ser anterior a su fin.");
+        }
+        if (Duration.between(dto.getDesde(), dto.getHasta()).compareTo(Duration.ofDays(propiedades.getMaxDiasSincronizacion())) > 0) {
+            throw new SolicitudInvalidaExcepcion("La sincronización no puede cubrir más de " + propiedades.getMaxDiasSincronizacion() + " días.");
+        }
+        if (dto.getBloques().size() > propiedades.getMaxBloquesSincronizacion()) {
+            throw new SolicitudInvalidaExcepcion("La sincronización no puede incluir más de " + propiedades.getMaxBloquesSincronizacion() + " bloques.");
+        }
+        List<BloqueHorarioDTO> deseados = new ArrayList<>(dto.getBloques().size());
+        for (IntervaloHorarioDTO intervalo : dto.getBloques()) {
+            if (!intervalo.getHoraInicio().isBefore(intervalo.getHoraFin())) {
+                throw new SolicitudInvalidaExcepcion("El bloque que comienza a las " + intervalo.getHoraInicio() + " debe terminar después de comenzar.");
+            }
+            if (intervalo.getHoraInicio().isBefore(dto.getDesde()) || !intervalo.getHoraInicio().isBefore(dto.getHasta())) {
+                throw new SolicitudInvalidaExcepcion("El bloque que comienza a las " + intervalo.getHoraInicio() + " está fuera del rango sincronizado.");
+            }
+            deseados.add(new BloqueHorarioDTO(null, intervalo.getHoraInicio(), intervalo.getHoraFin(), false));
+        }
+        deseados.sort(ORDEN_BLOQUES);
+        for (int k = 1; k < deseados.size(); k++) {
+            if (deseados.get(k).horaInicio().isBefore(deseados.get(k - 1).horaFin())) {
+                throw new SolicitudInvalidaExcepcion("Los bloques que comienzan a las " + deseados.get(k - 1).horaInicio()
+                        + " y a las " + deseados.get(k).horaInicio() + " se solapan.");
+            }
+        }
+        return deseados;
+    }
+
+    // Separa los bloques sobrantes que no pueden eliminarse; esos se conservan y se informan como conflicto
+    private List<BloqueHorarioDTO> descartarNoEliminables(List<BloqueHorarioDTO> aEliminar, List<BloqueHorarioDTO> conservados, List<Conflicto> conflictos) {
+        if (aEliminar.isEmpty()) {
+            return aEliminar;
+        }
+        Set<UUID> conCitas = new HashSet<>(citaRepositorio.buscarDisponibilidadesConCitas(aEliminar.stream().map(BloqueHorarioDTO::id).toList()));
+        List<UUID> sesiones = aEliminar.stream().filter(BloqueHorarioDTO::esSesion).map(BloqueHorarioDTO::id).toList();
+        Set<UUID> sesionesConRanuras = new HashSet<>();
+        if (!sesiones.isEmpty()) {
+            disponibilidadRepositorio.buscarMaterializadas(sesiones).forEach(ranura -> sesionesConRanuras.add(ranura.bloquePadreId()));
+        }
+
+        List<BloqueHorarioDTO> eliminables = new ArrayList<>(aEliminar.size());
+        for (BloqueHorarioDTO bloque : aEliminar) {
+            Motivo motivo = bloque.estaReservado() ? Motivo.RESERVADO
+                    : conCitas.contains(bloque.id()) ? Motivo.CON_CITAS
+                    : sesionesConRanuras.contains(bloque.id()) ? Motivo.SESION_CON_RANURAS
+                    : retencionServicio.estaRetenido(bloque.id()) ? Motivo.RETENIDO
+                    : null;
+            if (motivo == null) {
+                eliminables.add(bloque);
+            } else {
+                conservados.add(bloque);
+                conflictos.add(new Conflicto(bloque.id(), bloque.horaInicio(), bloque.horaFin(), motivo));
+            }
+        }
+        return eliminables;
+    }
+
+    /**
+     * Descarta, en una sola pasada, los bloques a crear que se solapan con los conservados.
+     * Ambas listas están ordenadas por hora de inicio; como las ranuras materializadas quedan dentro de su sesión,
+     * se acumula la mayor hora de fin de los conservados que comienzan antes de que termine cada bloque.
+     */
+    private static List<Disponibilidad> descartarSolapados(List<BloqueHorarioDTO> aCrear, List<BloqueHorarioDTO> conservados, List<Conflicto> conflictos) {
+        List<Disponibilidad> nuevos = new ArrayList<>(aCrear.size());
+        int j = 0;
+        LocalDateTime mayorFin = LocalDateTime.MIN;
+        for (BloqueHorarioDTO bloque : aCrear) {
+            while (j < conservados.size() && conservados.get(j).horaInicio().isBefore(bloque.horaFin())) {
+                mayorFin = max(mayorFin, conservados.get(j).horaFin());
+                j++;
+            }
+            if (mayorFin.isAfter(bloque.horaInicio())) {
+                conflictos.add(new Conflicto(null, bloque.horaInicio(), bloque.horaFin(), Motivo.SOLAPAMIENTO));
+            } else {
+                Disponibilidad nuevo = new Disponibilidad();
+                nuevo.setHoraInicio(bloque.horaInicio());
+                nuevo.setHoraFin(bloque.horaFin());
+                nuevos.add(nuevo);
+            }
+        }
+        return nuevos;
+    }
+
+    private void publicar(UUID doctorId, UUID disponibilidadId, TipoCambioDisponibilidad tipo, LocalDateTime horaInicio, LocalDateTime horaFin) {
+        publicadorEventos.publishEvent(new CambioDisponibilidadEvento(doctorId, disponibilidadId, tipo, horaInicio, horaFin));
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
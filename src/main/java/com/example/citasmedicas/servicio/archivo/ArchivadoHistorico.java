@@ -0,0 +1,117 @@
+package com.example.citasmedicas.servicio.archivo;
+
+import com.example.citasmedicas.config.ArchivoPropiedades;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+
+/**
+ * Archivado nocturno de citas y bloques de disponibilidad pasados.
+ * Mueve primero las citas finalizadas o canceladas y después los bloques que ya no referencia ninguna cita,
+ * lote a lote y cada uno en su propia transacción corta; por último purga los bloques archivados más antiguos.
+ * Así las tablas activas solo contienen la agenda vigente y reciente.
+ */
+@Component
+public class ArchivadoHistorico {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchivadoHistorico.class);
+
+    private final ArchivoServicio archivoServicio;
+    private final RegistroMetricas registroMetricas;
+    private final ArchivoPropiedades propiedades;
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+    private volatile boolean detenido;
+
+    public ArchivadoHistorico(ArchivoServicio archivoServicio, RegistroMetricas registroMetricas, ArchivoPropiedades propiedades) {
+        this.archivoServicio = archivoServicio;
+        this.registroMetricas = registroMetricas;
+        this.propiedades = propiedades;
+    }
+
+    @Scheduled(cron = "${citas.archivo.cron:0 30 3 * * *}")
+    public void archivarProgramado() {
+        archivar();
+    }
+
+    /**
+     * Archiva las citas y bloques anteriores a citas.archivo.dias-gracia y purga los bloques archivados vencidos.
+     * Un lote fallido detiene su fase; las filas pendientes se archivan en la siguiente ejecución.
+     * @return El resumen de la ejecución, o un resumen vacío si ya había otra en curso.
+     */
+    public ResumenArchivado archivar() {
+        if (!enCurso.compareAndSet(false, true)) {
+            log.warn("Archivado omitido: ya hay una ejecución en curso");
+            return new ResumenArchivado(0, 0, 0, 0);
+        }
+        long inicio = System.nanoTime();
+        try {
+            LocalDateTime corte = LocalDateTime.now(ZoneOffset.UTC).minusDays(propiedades.getDiasGracia());
+            Instant limitePurga = Instant.now().minus(Duration.ofDays(propiedades.getDiasRetencionDisponibilidades()));
+            int tamano = propiedades.getTamanoLote();
+            int[] fallidos = new int[1];
+
+            int citas = procesarPorLotes("citas", () -> archivoServicio.archivarLoteCitas(corte, tamano), fallidos);
+            int bloques = procesarPorLotes("disponibilidades", () -> archivoServicio.archivarLoteDisponibilidades(corte, tamano), fallidos);
+            int purgados = procesarPorLotes("purga", () -> archivoServicio.purgarLoteDisponibilidadesArchivadas(limitePurga, tamano), fallidos);
+
+            long duracion = System.nanoTime() - inicio;
+            registroMetricas.registrarDuracion("archivo", duracion);
+            log.info("Archivado terminado en {} ms: {} citas y {} bloques archivados, {} bloques purgados, {} lotes fallidos",
+                    duracion / 1_000_000, citas, bloques, purgados, fallidos[0]);
+            return new ResumenArchivado(citas, bloques, purgados, fallidos[0]);
+        } finally {
+            enCurso.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        detenido = true;
+    }
+
+    // Repite el lote hasta que devuelve menos filas que su tamaño; cada llamada es una transacción independiente
+    private int procesarPorLotes(String fase, IntSupplier lote, int[] fallidos) {
+        int total = 0;
+        int lotes = 0;
+        while (!detenido) {
+            int movidas;
+            try {
+                movidas = lote.getAsInt();
+            } catch (RuntimeException e) {
+                fallidos[0]++;
+                registroMetricas.incrementar("archivo.lotes.fallidos");
+                log.error("Error en un lote de archivado ({}); se retomará en la siguiente ejecución", fase, e);
+                break;
+            }
+            total += movidas;
+            registroMetricas.incrementar("archivo." + fase, movidas);
+            if (++lotes % 10 == 0) {
+                log.info("Archivado ({}): {} filas en {} lotes", fase, total, lotes);
+            }
+            if (movidas < propiedades.getTamanoLote()) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Resumen de una ejecución del archivado.
+     * @param citas Citas movidas a citas_archivadas.
+     * @param disponibilidades Bloques movidos a disponibilidades_archivadas.
+     * @param purgadas Bloques archivados eliminados definitivamente.
+     * @param lotesFallidos Lotes cuya transacción falló y se reintentarán en la siguiente ejecución.
+     */
+    public record ResumenArchivado(int citas, int disponibilidades, int purgadas, int lotesFallidos) {
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.citasmedicas.servicio.archivo;
+
+import com.example.citasmedicas.modelo.entidad.EstadoCita;
+import com.example.citasmedicas.repositorio.CitaArchivadaRepositorio;
+import com.example.citasmedicas.repositorio.CitaRepositorio;
+import com.example.citasmedicas.repositorio.DisponibilidadArchivadaRepositorio;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.agenda.CacheDisponibilidad;
+import com.example.citasmedicas.servicio.agenda.IndiceIntervalosDisponibilidad;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Servicio que mueve citas y bloques de disponibilidad pasados a sus tablas de archivo.
+ * Cada lote se copia con un INSERT ... SELECT y se elimina de la tabla activa en la misma transacción,
+ * de modo que un lote se archiva entero o no se archiva; el progreso es el propio contenido de las tablas
+ * y una ejecución interrumpida se retoma sin más que volver a lanzarla.
+ */
+@Service
+public class ArchivoServicio {
+
+    private static final Set<EstadoCita> ESTADOS_ARCHIVABLES = EnumSet.of(EstadoCita.FINALIZADA, EstadoCita.CANCELADA);
+
+    private final CitaRepositorio citaRepositorio;
+    private final CitaArchivadaRepositorio citaArchivadaRepositorio;
+    private final DisponibilidadRepositorio disponibilidadRepositorio;
+    private final DisponibilidadArchivadaRepositorio disponibilidadArchivadaRepositorio;
+    private final IndiceIntervalosDisponibilidad indiceIntervalos;
+    private final CacheDisponibilidad cacheDisponibilidad;
+
+    public ArchivoServicio(CitaRepositorio citaRepositorio, CitaArchivadaRepositorio citaArchivadaRepositorio, DisponibilidadRepositorio disponibilidadRepositorio, DisponibilidadArchivadaRepositorio disponibilidadArchivadaRepositorio, IndiceIntervalosDisponibilidad indiceIntervalos, CacheDisponibilidad cacheDisponibilidad) {
+        this.citaRepositorio = citaRepositorio;
+        this.citaArchivadaRepositorio = citaArchivadaRepositorio;
+        this.disponibilidadRepositorio = disponibilidadRepositorio;
+        this.disponibilidadArchivadaRepositorio = disponibilidadArchivadaRepositorio;
+        this.indiceIntervalos = indiceIntervalos;
+        this.cacheDisponibilidad = cacheDisponibilidad;
+    }
+
+    /**
+     * Archiva un lote de citas finalizadas o canceladas cuyo bloque terminó antes del corte.
+     * @param corte Las citas cuyo bloque terminó antes de este momento son archivables.
+     * @param tamano Número máximo de citas del lote.
+     * @return Número de citas archivadas; menor que el tamaño si no quedan más.
+     */
+    @Transactional
+    public int archivarLoteCitas(LocalDateTime corte, int tamano) {
+        List<UUID> ids = citaRepositorio.buscarIdsArchivables(ESTADOS_ARCHIVABLES, corte, Limit.of(tamano));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        citaArchivadaRepositorio.copiarDesdeCitas(ids, Instant.now());
+        return citaRepositorio.eliminarPorIds(ids);
+    }
+
+    /**
+     * Archiva un lote de bloques terminados antes del corte a los que no hace referencia ninguna cita.
+     * Incluye los bloques reservados cuya cita ya se archivó.
+     * @param corte Los bloques que terminaron antes de este momento son archivables.
+     * @param tamano Número máximo de bloques del lote.
+     * @return Número de bloques archivados; menor que el tamaño si no quedan más.
+     */
+    @Transactional
+    public int archivarLoteDisponibilidades(LocalDateTime corte, int tamano) {
+        List<UUID> ids = disponibilidadRepositorio.buscarIdsArchivables(corte, Limit.of(tamano));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        disponibilidadArchivadaRepositorio.copiarDesdeDisponibilidades(ids, Instant.now());
+        int archivados = disponibilidadRepositorio.eliminarPorIds(ids);
+        ids.forEach(id -> {
+            indiceIntervalos.registrarEliminado(id);
+            cacheDisponibilidad.invalidarBloque(id);
+        });
+        return archivados;
+    }
+
+    /**
+     * Purga un lote de bloques archivados antes de un instante.
+     * @param antesDe Los bloques archivados antes de este instante se eliminan.
+     * @param tamano Número máximo de bloques del lote.
+     * @return Número de bloques purgados; menor que el tamaño si no quedan más.
+     */
+    @Transactional
+    public int purgarLoteDisponibilidadesArchivadas(Instant antesDe, int tamano) {
+        List<UUID> ids = disponibilidadArchivadaRepositorio.buscarIdsArchivadasAntesDe(antesDe, Limit.of(tamano));
+        return ids.isEmpty() ? 0 : disponibilidadArchivadaRepositorio.eliminarPorIds(ids);
+    }
+}
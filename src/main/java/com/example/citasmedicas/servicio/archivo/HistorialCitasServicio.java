@@ -0,0 +1,82 @@
+package com.example.citasmedicas.servicio.archivo;
+
+import com.example.citasmedicas.dto.CitaDTO;
+import com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion;
+import com.example.citasmedicas.mapeador.CitaMapeador;
+import com.example.citasmedicas.modelo.entidad.Cita;
+import com.example.citasmedicas.modelo.entidad.CitaArchivada;
+import com.example.citasmedicas.repositorio.CitaArchivadaRepositorio;
+import com.example.citasmedicas.repositorio.CitaRepositorio;
+import com.example.citasmedicas.servicio.PacienteServicio;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Servicio del historial de citas de un paciente, que lee de la tabla activa y de la de archivo.
+ * Solo se archivan las citas finalizadas o canceladas, así que una cita pasada en otro estado sigue en la tabla activa
+ * y puede ser anterior a citas ya archivadas: el historial se obtiene mezclando ambas tablas por hora de inicio.
+ */
+@Service
+public class HistorialCitasServicio {
+
+    private final CitaRepositorio citaRepositorio;
+    private final CitaArchivadaRepositorio citaArchivadaRepositorio;
+    private final PacienteServicio pacienteServicio;
+    private final CitaMapeador citaMapeador;
+
+    public HistorialCitasServicio(CitaRepositorio citaRepositorio, CitaArchivadaRepositorio citaArchivadaRepositorio, PacienteServicio pacienteServicio, CitaMapeador citaMapeador) {
+        this.citaRepositorio = citaRepositorio;
+        this.citaArchivadaRepositorio = citaArchivadaRepositorio;
+        this.pacienteServicio = pacienteServicio;
+        this.citaMapeador = citaMapeador;
+    }
+
+    /**
+     * Consulta el historial completo de citas de un paciente con paginación.
+     * Para una página se leen de cada tabla las citas más recientes hasta el final de esa página y se mezclan
+     * por hora de inicio; a igual hora, la cita activa va primero.
+     * @param pacienteId El UUID del paciente.
+     * @param pagina El número de página (base 0).
+     * @param tamano El tamaño de la página.
+     * @return Una Page de DTOs de citas, activas y archivadas, de la más reciente a la más antigua.
+     * @throws RecursoNoEncontradoExcepcion Si el paciente no existe.
+     */
+    @Transactional(readOnly = true)
+    public Page<CitaDTO> obtenerHistorialPaciente(UUID pacienteId, int pagina, int tamano) {
+        pacienteServicio.obtenerEntidadPacientePorId(pacienteId);
+        PageRequest paginacion = PageRequest.of(pagina, tamano);
+        // Las citas de la página están entre las offset + tamano más recientes de cada tabla
+        PageRequest ventana = PageRequest.of(0, (int) Math.min(Integer.MAX_VALUE, paginacion.getOffset() + tamano));
+        Page<Cita> activas = citaRepositorio.buscarHistorialPaciente(pacienteId, ventana);
+        Slice<CitaArchivada> archivadas = citaArchivadaRepositorio.findByPacienteIdOrderByHoraInicioDesc(pacienteId, ventana);
+
+        List<CitaDTO> contenido = new ArrayList<>(tamano);
+        int i = 0;
+        int j = 0;
+        for (long posicion = 0; contenido.size() < tamano && (i < activas.getNumberOfElements() || j < archivadas.getNumberOfElements()); posicion++) {
+            boolean activa = j >= archivadas.getNumberOfElements()
+                    || (i < activas.getNumberOfElements() && !activas.getContent().get(i).getDisponibilidad().getHoraInicio()
+                            .isBefore(archivadas.getContent().get(j).getHoraInicio()));
+            if (activa) {
+                Cita cita = activas.getContent().get(i++);
+                if (posicion >= paginacion.getOffset()) {
+                    contenido.add(citaMapeador.aDTO(cita));
+                }
+            } else {
+                CitaArchivada cita = archivadas.getContent().get(j++);
+                if (posicion >= paginacion.getOffset()) {
+                    contenido.add(citaMapeador.aDTO(cita));
+                }
+            }
+        }
+        return new PageImpl<>(contenido, paginacion, activas.getTotalElements() + citaArchivadaRepositorio.countByPacienteId(pacienteId));
+    }
+}
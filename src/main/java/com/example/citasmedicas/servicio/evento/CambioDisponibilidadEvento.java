@@ -0,0 +1,23 @@
+package com.example.citasmedicas.servicio.evento;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Evento publicado cuando se crea, elimina o reserva un bloque de disponibilidad.
+ * Se difunde a los clientes suscritos al flujo del doctor una vez confirmada la transacción.
+ * @param doctorId El UUID del doctor propietario del bloque.
+ * @param disponibilidadId El UUID del bloque.
+ * @param tipo El tipo de cambio.
+ * @param horaInicio La hora de inicio del bloque.
+ * @param horaFin La hora de fin del bloque.
+ */
+public record CambioDisponibilidadEvento(
+        UUID doctorId,
+        UUID disponibilidadId,
+        TipoCambioDisponibilidad tipo,
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'") LocalDateTime horaInicio,
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss'Z'") LocalDateTime horaFin) {
+}
@@ -0,0 +1,11 @@
+package com.example.citasmedicas.servicio.evento;
+
+import java.util.UUID;
+
+/**
+ * Evento publicado cuando un bloque de disponibilidad vuelve a quedar libre:
+ * al cancelarse la cita que lo ocupaba o al vencer o liberarse una retención sobre él.
+ * @param disponibilidadId El UUID del bloque liberado.
+ */
+public record DisponibilidadLiberadaEvento(UUID disponibilidadId) {
+}
@@ -0,0 +1,12 @@
+package com.example.citasmedicas.servicio.evento;
+
+/**
+ * Tipos de cambio de un bloque de disponibilidad difundidos a los clientes suscritos.
+ */
+public enum TipoCambioDisponibilidad {
+    CREADO,
+    ELIMINADO,
+    RESERVADO,
+    LIBERADO,
+    MODIFICADO
+}
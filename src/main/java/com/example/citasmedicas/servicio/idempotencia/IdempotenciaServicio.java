@@ -0,0 +1,315 @@
+package com.example.citasmedicas.servicio.idempotencia;
+
+import com.example.citasmedicas.config.IdempotenciaPropiedades;
+import com.example.citasmedicas.excepciones.ContencionTransaccionalExcepcion;
+import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.ClaveIdempotencia;
+import com.example.citasmedicas.repositorio.ClaveIdempotenciaRepositorio;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Servicio de soporte para la cabecera Idempotency-Key en las operaciones de escritura.
+ * Antes de ejecutar la operación, la primera solicitud con una clave la reserva insertando una fila en curso
+ * en la tabla claves_idempotencia, bajo su restricción única; al terminar la completa con la respuesta,
+ * que también se guarda en una caché acotada en memoria. Los reenvíos con la misma clave reciben la respuesta
+ * almacenada sin volver a ejecutar la operación. Los duplicados concurrentes esperan a la ejecución en curso
+ * en lugar de competir con ella: en memoria si está en esta instancia y consultando la fila si está en otra.
+ * Si la operación falla, la fila se elimina y el cliente puede reintentar con la misma clave. Si el proceso
+ * se detiene durante la ejecución, la fila queda en curso y la clave no vuelve a ejecutarse: los reenvíos
+ * reciben un error de contención hasta que la clave vence, y el cliente debe comprobar el resultado o usar otra.
+ */
+@Service
+public class IdempotenciaServicio {
+
+    public static final String CABECERA_CLAVE = "Idempotency-Key";
+    public static final String CABECERA_REPETICION = "Idempotency-Replayed";
+    private static final int LONGITUD_MAXIMA_CLAVE = 255;
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotenciaServicio.class);
+
+    private final ClaveIdempotenciaRepositorio claveIdempotenciaRepositorio;
+    private final ObjectMapper objectMapper;
+    private final RegistroMetricas registroMetricas;
+    private final IdempotenciaPropiedades propiedades;
+    private final Map<String, RespuestaAlmacenada> cache;
+    private final Map<String, CompletableFuture<RespuestaAlmacenada>> enCurso = new ConcurrentHashMap<>();
+
+    public IdempotenciaServicio(ClaveIdempotenciaRepositorio claveIdempotenciaRepositorio, ObjectMapper objectMapper, RegistroMetricas registroMetricas, IdempotenciaPropiedades propiedades) {
+        this.claveIdempotenciaRepositorio = claveIdempotenciaRepositorio;
+        this.objectMapper = objectMapper;
+        this.registroMetricas = registroMetricas;
+        this.propiedades = propiedades;
+        int capacidad = propiedades.getCapacidadCache();
+        // LRU por orden de acceso: al superar la capacidad se descartan las respuestas menos usadas
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RespuestaAlmacenada> mayor) {
+                return size() > capacidad;
+            }
+        });
+        registroMetricas.registrarIndicador("idempotencia.cache.tamano", cache::size);
+        registroMetricas.registrarIndicador("idempotencia.en_curso", enCurso::size);
+    }
+
+    /**
+     * Ejecuta una operación de escritura de forma idempotente respecto a la clave indicada.
+     * @param clave El valor de la cabecera Idempotency-Key, o null si el cliente no la envió.
+     * @param operacion Identificador estable de la operación (ej. "citas.agendar").
+     * @param solicitud Los datos de la solicitud, usados para detectar reutilizaciones de la clave.
+     * @param tipoRespuesta El tipo del cuerpo de la respuesta, para reconstruir las respuestas almacenadas.
+     * @param accion La operación a ejecutar si la clave no se ha visto antes.
+     * @return La respuesta de la operación, original o almacenada.
+     * @throws SolicitudInvalidaExcepcion Si la clave no es válida o ya se usó con una solicitud diferente.
+     * @throws ContencionTransaccionalExcepcion Si la ejecución original sigue en curso tras la espera máxima.
+     */
+    public <T> ResponseEntity<T> ejecutar(String clave, String operacion, Object solicitud, Class<T> tipoRespuesta, Supplier<ResponseEntity<T>> accion) {
+        return ejecutar(clave, operacion, solicitud, objectMapper.constructType(tipoRespuesta), accion);
+    }
+
+    /**
+     * Variante de {@link #ejecutar(String, String, Object, Class, Supplier)} para cuerpos genéricos (ej. listas).
+     */
+    public <T> ResponseEntity<T> ejecutar(String clave, String operacion, Object solicitud, TypeReference<T> tipoRespuesta, Supplier<ResponseEntity<T>> accion) {
+        return ejecutar(clave, operacion, solicitud, objectMapper.constructType(tipoRespuesta), accion);
+    }
+
+    private <T> ResponseEntity<T> ejecutar(String clave, String operacion, Object solicitud, JavaType tipoRespuesta, Supplier<ResponseEntity<T>> accion) {
+        if (clave == null) {
+            return accion.get();
+        }
+        if (clave.isBlank() || clave.length() > LONGITUD_MAXIMA_CLAVE) {
+            throw new SolicitudInvalidaExcepcion("La cabecera " + CABECERA_CLAVE + " debe tener entre 1 y " + LONGITUD_MAXIMA_CLAVE + " caracteres.");
+        }
+
+        String usuario = usuarioActual();
+        String id = usuario + '\n' + operacion + '\n' + clave;
+        String huella = calcularHuella(operacion, solicitud);
+
+        RespuestaAlmacenada almacenada = cache.get(id);
+        if (almacenada != null && almacenada.estaVigente()) {
+            registroMetricas.incrementar("idempotencia.aciertos_cache");
+            return repetir(almacenada, huella, tipoRespuesta);
+        }
+
+        CompletableFuture<RespuestaAlmacenada> propia = new CompletableFuture<>();
+        CompletableFuture<RespuestaAlmacenada> existente = enCurso.putIfAbsent(id, propia);
+        if (existente != null) {
+            // Duplicado concurrente: espera el resultado de la ejecución en curso
+            registroMetricas.incrementar("idempotencia.esperas");
+            return repetir(esperar(existente), huella, tipoRespuesta);
+        }
+
+        boolean reservada = false;
+        try {
+            almacenada = reservarOEsperar(usuario, operacion, clave, huella);
+            if (almacenada != null) {
+                cache.put(id, almacenada);
+                propia.complete(almacenada);
+                return repetir(almacenada, huella, tipoRespuesta);
+            }
+            reservada = true;
+
+            ResponseEntity<T> respuesta = accion.get();
+            almacenada = new RespuestaAlmacenada(huella, respuesta.getStatusCode().value(),
+                    serializar(respuesta.getBody()), Instant.now().plus(propiedades.getVigencia()));
+            if (respuesta.getStatusCode().is2xxSuccessful()) {
+                claveIdempotenciaRepositorio.completar(usuario, operacion, clave, almacenada.estadoHttp(),
+                        almacenada.cuerpoRespuesta(), almacenada.expiraEn(), Instant.now());
+                cache.put(id, almacenada);
+            } else {
+                claveIdempotenciaRepositorio.eliminarEnCurso(usuario, operacion, clave);
+            }
+            propia.complete(almacenada);
+            return respuesta;
+        } catch (RuntimeException e) {
+            // Los errores no se almacenan: los duplicados en espera reciben el mismo error y el cliente puede reintentar
+            if (reservada) {
+                liberar(usuario, operacion, clave);
+            }
+            propia.completeExceptionally(e);
+            throw e;
+        } finally {
+            enCurso.remove(id, propia);
+        }
+    }
+
+    /**
+     * Purga periódicamente las claves vencidas de la base de datos.
+     */
+    @Scheduled(cron = "${citas.idempotencia.purga-cron:0 15 * * * *}")
+    @Transactional
+    public void purgarVencidas() {
+        int eliminadas = claveIdempotenciaRepositorio.eliminarVencidas(Instant.now());
+        cache.values().removeIf(respuesta -> !respuesta.estaVigente());
+        registroMetricas.incrementar("idempotencia.purgadas", eliminadas);
+    }
+
+    private <T> ResponseEntity<T> repetir(RespuestaAlmacenada almacenada, String huella, JavaType tipoRespuesta) {
+        if (!almacenada.huellaSolicitud().equals(huella)) {
+            throw new SolicitudInvalidaExcepcion("La cabecera " + CABECERA_CLAVE + " ya se utilizó con una solicitud diferente.");
+        }
+        registroMetricas.incrementar("idempotencia.repeticiones");
+        T cuerpo = deserializar(almacenada.cuerpoRespuesta(), tipoRespuesta);
+        return ResponseEntity.status(HttpStatusCode.valueOf(almacenada.estadoHttp()))
+                .header(CABECERA_REPETICION, "true")
+                .body(cuerpo);
+    }
+
+    private RespuestaAlmacenada esperar(CompletableFuture<RespuestaAlmacenada> enEjecucion) {
+        try {
+            return enEjecucion.get(propiedades.getEsperaMaxima().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ContencionTransaccionalExcepcion("La solicitud original con la misma " + CABECERA_CLAVE + " sigue en curso. Inténtelo de nuevo en unos instantes.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ContencionTransaccionalExcepcion("Se interrumpió la espera de la solicitud original.", e);
+        }
+    }
+
+    // Devuelve la respuesta almacenada para la clave, o null si esta solicitud la reservó y debe ejecutar la operación
+    private RespuestaAlmacenada reservarOEsperar(String usuario, String operacion, String clave, String huella) {
+        long limite = System.nanoTime() + propiedades.getEsperaMaxima().toNanos();
+        while (true) {
+            Optional<ClaveIdempotencia> existente = claveIdempotenciaRepositorio.findByUsuarioAndOperacionAndClave(usuario, operacion, clave);
+            if (existente.isPresent()) {
+                ClaveIdempotencia entidad = existente.get();
+                if (!entidad.getExpiraEn().isAfter(Instant.now())) {
+                    // Vencida pero aún sin purgar: deja de ocupar la restricción única
+                    claveIdempotenciaRepositorio.deleteById(entidad.getId());
+                } else if (entidad.getEstadoHttp() != null) {
+                    registroMetricas.incrementar("idempotencia.aciertos_bd");
+                    return RespuestaAlmacenada.desde(entidad);
+                } else if (!entidad.getHuellaSolicitud().equals(huella)) {
+                    throw new SolicitudInvalidaExcepcion("La cabecera " + CABECERA_CLAVE + " ya se utilizó con una solicitud diferente.");
+                } else {
+                    // En curso en otra instancia: se espera a que la complete o la elimine
+                    registroMetricas.incrementar("idempotencia.esperas_bd");
+                    esperarSondeo(limite);
+                    continue;
+                }
+            }
+            if (reservar(usuario, operacion, clave, huella)) {
+                return null;
+            }
+            // Otra instancia la reservó entre la lectura y la inserción: se vuelve a leer
+        }
+    }
+
+    private boolean reservar(String usuario, String operacion, String clave, String huella) {
+        ClaveIdempotencia entidad = new ClaveIdempotencia();
+        entidad.setUsuario(usuario);
+        entidad.setOperacion(operacion);
+        entidad.setClave(clave);
+        entidad.setHuellaSolicitud(huella);
+        entidad.setExpiraEn(Instant.now().plus(propiedades.getVigencia()));
+        try {
+            claveIdempotenciaRepositorio.saveAndFlush(entidad);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            log.debug("La clave de idempotencia {} ya estaba reservada", clave);
+            return false;
+        }
+    }
+
+    // Si no se puede eliminar, la clave queda en curso hasta vencer: nunca se vuelve a ejecutar la operación
+    private void liberar(String usuario, String operacion, String clave) {
+        try {
+            claveIdempotenciaRepositorio.eliminarEnCurso(usuario, operacion, clave);
+        } catch (RuntimeException e) {
+            log.warn("No se pudo liberar la clave de idempotencia {} tras un fallo de la operación", clave, e);
+        }
+    }
+
+    private void esperarSondeo(long limite) {
+        if (System.nanoTime() >= limite) {
+            throw new ContencionTransaccionalExcepcion("La solicitud original con la misma " + CABECERA_CLAVE + " sigue en curso. Inténtelo de nuevo en unos instantes.");
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(propiedades.getIntervaloSondeo().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ContencionTransaccionalExcepcion("Se interrumpió la espera de la solicitud original.", e);
+        }
+    }
+
+    private String usuarioActual() {
+        Authentication autenticacion = SecurityContextHolder.getContext().getAuthentication();
+        return autenticacion != null ? autenticacion.getName() : "anonimo";
+    }
+
+    String calcularHuella(String operacion, Object solicitud) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operacion.getBytes(StandardCharsets.UTF_8));
+            digest.update(objectMapper.writeValueAsBytes(solicitud));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo calcular la huella de la solicitud", e);
+        }
+    }
+
+    private String serializar(Object cuerpo) {
+        try {
+            return cuerpo == null ? null : objectMapper.writeValueAsString(cuerpo);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar la respuesta para la clave de idempotencia", e);
+        }
+    }
+
+    private <T> T deserializar(String cuerpo, JavaType tipo) {
+        try {
+            return cuerpo == null ? null : objectMapper.readValue(cuerpo, tipo);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo reconstruir la respuesta almacenada", e);
+        }
+    }
+
+    /**
+     * Respuesta almacenada para una clave.
+     */
+    private record RespuestaAlmacenada(String huellaSolicitud, int estadoHttp, String cuerpoRespuesta, Instant expiraEn) {
+
+        static RespuestaAlmacenada desde(ClaveIdempotencia entidad) {
+            return new RespuestaAlmacenada(entidad.getHuellaSolicitud(), entidad.getEstadoHttp(), entidad.getCuerpoRespuesta(), entidad.getExpiraEn());
+        }
+
+        boolean estaVigente() {
+            return expiraEn.isAfter(Instant.now());
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.citasmedicas.servicio.importacion;
+
+import com.example.citasmedicas.config.ImportacionPropiedades;
+import com.example.citasmedicas.dto.TrabajoImportacionDTO;
+import com.example.citasmedicas.excepciones.CapacidadExcedidaExcepcion;
+import com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion;
+import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.DoctorServicio;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Importación asíncrona de la agenda de un doctor desde un archivo iCalendar.
+ * El archivo recibido se copia a un archivo temporal sin cargarlo en memoria y un grupo pequeño de hilos lo procesa:
+ * los eventos se leen uno a uno, los solapamientos se comprueban en memoria contra la agenda futura del doctor
+ * y contra los eventos ya aceptados, y los bloques se insertan en lotes, cada uno en su propia transacción.
+ * El estado de cada importación (progreso y contadores) se conserva en memoria durante un tiempo configurable
+ * para que el cliente pueda consultarlo.
+ */
+@Service
+public class ImportacionIcsServicio {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportacionIcsServicio.class);
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    private final ImportacionLoteServicio importacionLoteServicio;
+    private final DisponibilidadRepositorio disponibilidadRepositorio;
+    private final DoctorServicio doctorServicio;
+    private final RegistroMetricas registroMetricas;
+    private final ImportacionPropiedades propiedades;
+    private final Executor trabajadores;
+    private final Map<UUID, Trabajo> trabajos = new ConcurrentHashMap<>();
+    private final AtomicInteger pendientes = new AtomicInteger();
+
+    @Autowired
+    public ImportacionIcsServicio(ImportacionLoteServicio importacionLoteServicio, DisponibilidadRepositorio disponibilidadRepositorio, DoctorServicio doctorServicio, RegistroMetricas registroMetricas, ImportacionPropiedades propiedades) {
+        this(importacionLoteServicio, disponibilidadRepositorio, doctorServicio, registroMetricas, propiedades, Executors.newFixedThreadPool(propiedades.getHilos(), tarea -> {
+            Thread hilo = new Thread(tarea, "importacion-ics");
+            hilo.setDaemon(true);
+            return hilo;
+        }));
+    }
+
+    ImportacionIcsServicio(ImportacionLoteServicio importacionLoteServicio, DisponibilidadRepositorio disponibilidadRepositorio, DoctorServicio doctorServicio, RegistroMetricas registroMetricas, ImportacionPropiedades propiedades, Executor trabajadores) {
+        this.importacionLoteServicio = importacionLoteServicio;
+        this.disponibilidadRepositorio = disponibilidadRepositorio;
+        this.doctorServicio = doctorServicio;
+        this.registroMetricas = registroMetricas;
+        this.propiedades = propiedades;
+        this.trabajadores = trabajadores;
+        registroMetricas.registrarIndicador("importacion.pendientes", pendientes::get);
+    }
+
+    /**
+     * Recibe un archivo iCalendar y encola su importación.
+     * @param doctorId El UUID del doctor cuya agenda se importa.
+     * @param contenido El contenido del archivo; se lee hasta el final pero no se cierra.
+     * @param zona La zona horaria de las horas sin zona (flotantes o con un TZID desconocido).
+     * @return El DTO del trabajo creado.
+     * @throws RecursoNoEncontradoExcepcion Si el doctor no es encontrado.
+     * @throws CapacidadExcedidaExcepcion Si ya hay demasiadas importaciones en cola o en curso.
+     * @throws SolicitudInvalidaExcepcion Si el archivo supera el tamaño máximo.
+     * @throws IOException Si falla la lectura del contenido o la escritura del archivo temporal.
+     */
+    public TrabajoImportacionDTO iniciar(UUID doctorId, InputStream contenido, ZoneId zona) throws IOException {
+        doctorServicio.obtenerEntidadDoctorPorId(doctorId);
+        descartarVencidos();
+        if (pendientes.incrementAndGet() > propiedades.getMaxTrabajosPendientes()) {
+            pendientes.decrementAndGet();
+            registroMetricas.incrementar("importacion.rechazadas");
+            throw new CapacidadExcedidaExcepcion("Hay demasiadas importaciones de agenda en curso. Intente más tarde.");
+        }
+
+        Path archivo = null;
+        try {
+            archivo = Files.createTempFile("importacion-", ".ics");
+            long bytes = copiar(contenido, archivo);
+            Trabajo trabajo = new Trabajo(UUID.randomUUID(), doctorId, bytes, Instant.now());
+            Path recibido = archivo;
+            trabajadores.execute(() -> procesar(trabajo, recibido, zona));
+            trabajos.put(trabajo.id, trabajo);
+            registroMetricas.incrementar("importacion.trabajos");
+            return trabajo.aDTO();
+        } catch (RejectedExecutionException e) {
+            eliminar(archivo);
+            pendientes.decrementAndGet();
+            throw new CapacidadExcedidaExcepcion("Las importaciones de agenda no están disponibles en este momento. Intente más tarde.");
+        } catch (IOException | RuntimeException e) {
+            eliminar(archivo);
+            pendientes.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Obtiene el estado de una importación.
+     * @param doctorId El UUID del doctor.
+     * @param trabajoId El UUID del trabajo.
+     * @return El DTO del trabajo.
+     * @throws RecursoNoEncontradoExcepcion Si el trabajo no existe, ya se descartó o es de otro doctor.
+     */
+    public TrabajoImportacionDTO obtener(UUID doctorId, UUID trabajoId) {
+        Trabajo trabajo = trabajos.get(trabajoId);
+        if (trabajo == null || !trabajo.doctorId.equals(doctorId)) {
+            throw new RecursoNoEncontradoExcepcion("Importación no encontrada con ID: " + trabajoId);
+        }
+        return trabajo.aDTO();
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (trabajadores instanceof ExecutorService servicio) {
+            servicio.shutdownNow();
+        }
+    }
+
+    private void procesar(Trabajo trabajo, Path archivo, ZoneId zona) {
+        long inicio = System.nanoTime();
+        trabajo.estado = EstadoTrabajo.EN_CURSO;
+        try (LectorIcs lector = new LectorIcs(new InputStreamReader(
+                new ContadorBytes(Files.newInputStream(archivo), trabajo.bytesLeidos), StandardCharsets.UTF_8), zona)) {
+            LocalDateTime ahora = LocalDateTime.now(ZoneOffset.UTC);
+            NavigableMap<LocalDateTime, LocalDateTime> ocupados = new TreeMap<>();
+            disponibilidadRepositorio.buscarBloquesDesde(trabajo.doctorId, ahora)
+                    .forEach(bloque -> ocupados.put(bloque.horaInicio(), bloque.horaFin()));
+
+            List<Disponibilidad> lote = new ArrayList<>();
+            LectorIcs.EventoIcs evento;
+            while ((evento = lector.siguiente()) != null) {
+                if (trabajo.eventosLeidos.incrementAndGet() > propiedades.getMaxEventos()) {
+                    throw new SolicitudInvalidaExcepcion("El archivo supera el máximo de " + propiedades.getMaxEventos() + " eventos.");
+                }
+                if (!esImportable(evento, ahora)) {
+                    trabajo.eventosDescartados.incrementAndGet();
+                    continue;
+                }
+                if (ImportacionLoteServicio.solapa(ocupados, evento.horaInicio(), evento.horaFin())) {
+                    trabajo.eventosSolapados.incrementAndGet();
+                    continue;
+                }
+                ocupados.put(evento.horaInicio(), evento.horaFin());
+                lote.add(Disponibilidad.builder().horaInicio(evento.horaInicio()).horaFin(evento.horaFin()).build());
+                if (lote.size() >= propiedades.getTamanoLote()) {
+                    escribir(trabajo, lote);
+                    lote = new ArrayList<>();
+                }
+            }
+            escribir(trabajo, lote);
+            trabajo.terminar(EstadoTrabajo.COMPLETADO, null);
+            log.info("Importación {} del doctor {} terminada: {} eventos, {} bloques creados, {} descartados, {} solapados",
+                    trabajo.id, trabajo.doctorId, trabajo.eventosLeidos.get(), trabajo.bloquesCreados.get(),
+                    trabajo.eventosDescartados.get(), trabajo.eventosSolapados.get());
+        } catch (IOException | RuntimeException e) {
+            // Los lotes ya confirmados se conservan; el estado indica cuántos bloques llegaron a crearse
+            log.warn("Importación {} del doctor {} fallida tras {} bloques creados", trabajo.id, trabajo.doctorId, trabajo.bloquesCreados.get(), e);
+            registroMetricas.incrementar("importacion.fallidas");
+            trabajo.terminar(EstadoTrabajo.FALLIDO, e instanceof SolicitudInvalidaExcepcion ? e.getMessage() : "No se pudo procesar el archivo.");
+        } finally {
+            eliminar(archivo);
+            pendientes.decrementAndGet();
+            registroMetricas.registrarDuracion("importacion.duracion", System.nanoTime() - inicio);
+        }
+    }
+
+    private void escribir(Trabajo trabajo, List<Disponibilidad> lote) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        int creados = importacionLoteServicio.insertar(trabajo.doctorId, lote).size();
+        trabajo.bloquesCreados.addAndGet(creados);
+        trabajo.eventosSolapados.addAndGet(lote.size() - creados);
+        registroMetricas.incrementar("importacion.bloques.creados", creados);
+    }
+
+    // Solo se importan eventos puntuales, confirmados, futuros y con horas válidas
+    private static boolean esImportable(LectorIcs.EventoIcs evento, LocalDateTime ahora) {
+        return evento.horaInicio() != null && evento.horaFin() != null
+                && !evento.recurrente() && !evento.cancelado()
+                && evento.horaInicio().isBefore(evento.horaFin())
+                && evento.horaInicio().isAfter(ahora);
+    }
+
+    private long copiar(InputStream contenido, Path archivo) throws IOException {
+        long total = 0;
+        byte[] buffer = new byte[TAMANO_BUFFER];
+        try (OutputStream salida = Files.newOutputStream(archivo)) {
+            int leidos;
+            while ((leidos = contenido.read(buffer)) != -1) {
+                total += leidos;
+                if (total > propiedades.getMaxBytes()) {
+                    throw new SolicitudInvalidaExcepcion("El archivo supera el tamaño máximo de " + propiedades.getMaxBytes() + " bytes.");
+                }
+                salida.write(buffer, 0, leidos);
+            }
+        }
+        return total;
+    }
+
+    private void descartarVencidos() {
+        Instant limite = Instant.now().minus(propiedades.getRetencionTrabajos());
+        trabajos.values().removeIf(trabajo -> trabajo.terminadoEn != null && trabajo.terminadoEn.isBefore(limite));
+    }
+
+    private static void eliminar(Path archivo) {
+        if (archivo == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            log.warn("No se pudo eliminar el archivo temporal {}", archivo, e);
+        }
+    }
+
+    private enum EstadoTrabajo { EN_COLA, EN_CURSO, COMPLETADO, FALLIDO }
+
+    /**
+     * Estado en memoria de una importación; los hilos de trabajo lo actualizan y las consultas lo leen.
+     */
+    private static final class Trabajo {
+        private final UUID id;
+        private final UUID doctorId;
+        private final long bytesTotales;
+        private final Instant creadoEn;
+        private final AtomicLong bytesLeidos = new AtomicLong();
+        private final AtomicInteger eventosLeidos = new AtomicInteger();
+        private final AtomicInteger bloquesCreados = new AtomicInteger();
+        private final AtomicInteger eventosDescartados = new AtomicInteger();
+        private final AtomicInteger eventosSolapados = new AtomicInteger();
+        private volatile EstadoTrabajo estado = EstadoTrabajo.EN_COLA;
+        private volatile String error;
+        private volatile Instant terminadoEn;
+
+        Trabajo(UUID id, UUID doctorId, long bytesTotales, Instant creadoEn) {
+            this.id = id;
+            this.doctorId = doctorId;
+            this.bytesTotales = bytesTotales;
+            this.creadoEn = creadoEn;
+        }
+
+        void terminar(EstadoTrabajo estadoFinal, String motivo) {
+            error = motivo;
+            terminadoEn = Instant.now();
+            estado = estadoFinal;
+        }
+
+        TrabajoImportacionDTO aDTO() {
+            return new TrabajoImportacionDTO(id, doctorId, estado.name(), bytesLeidos.get(), bytesTotales,
+                    eventosLeidos.get(), bloquesCreados.get(), eventosDescartados.get(), eventosSolapados.get(),
+                    error, creadoEn, terminadoEn);
+        }
+    }
+
+    /**
+     * Flujo de entrada que acumula los bytes leídos para informar del progreso.
+     */
+    private static final class ContadorBytes extends FilterInputStream {
+        private final AtomicLong contador;
+
+        ContadorBytes(InputStream entrada, AtomicLong contador) {
+            super(entrada);
+            this.contador = contador;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int leido = super.read();
+            if (leido != -1) {
+                contador.incrementAndGet();
+            }
+            return leido;
+        }
+
+        @Override
+        public int read(byte[] buffer, int desde, int longitud) throws IOException {
+            int leidos = super.read(buffer, desde, longitud);
+            if (leidos > 0) {
+                contador.addAndGet(leidos);
+            }
+            return leidos;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.citasmedicas.servicio.importacion;
+
+import com.example.citasmedicas.config.ImportacionPropiedades;
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import com.example.citasmedicas.repositorio.DisponibilidadLoteRepositorio;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.agenda.CacheDisponibilidad;
+import com.example.citasmedicas.servicio.agenda.IndiceIntervalosDisponibilidad;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Escritura de los lotes de una importación de agenda, cada uno en su propia transacción.
+ * Separado de ImportacionIcsServicio para que la transacción se aplique a través del proxy.
+ */
+@Service
+public class ImportacionLoteServicio {
+
+    private final DisponibilidadRepositorio disponibilidadRepositorio;
+    private final DisponibilidadLoteRepositorio disponibilidadLoteRepositorio;
+    private final IndiceIntervalosDisponibilidad indiceIntervalos;
+    private final CacheDisponibilidad cacheDisponibilidad;
+    private final ImportacionPropiedades propiedades;
+
+    public ImportacionLoteServicio(DisponibilidadRepositorio disponibilidadRepositorio, DisponibilidadLoteRepositorio disponibilidadLoteRepositorio, IndiceIntervalosDisponibilidad indiceIntervalos, CacheDisponibilidad cacheDisponibilidad, ImportacionPropiedades propiedades) {
+        this.disponibilidadRepositorio = disponibilidadRepositorio;
+        this.disponibilidadLoteRepositorio = disponibilidadLoteRepositorio;
+        this.indiceIntervalos = indiceIntervalos;
+        this.cacheDisponibilidad = cacheDisponibilidad;
+        this.propiedades = propiedades;
+    }
+
+    /**
+     * Inserta un lote de bloques libres de un doctor.
+     * Los bloques ya se validaron en memoria contra la agenda leída al empezar la importación; aquí solo se vuelve
+     * a comprobar el rango del lote, para omitir los bloques que otra operación haya creado entre tanto.
+     * @param doctorId El UUID del doctor.
+     * @param lote Los bloques a insertar, sin solapamientos entre sí.
+     * @return Los bloques insertados.
+     */
+    @Transactional
+    public List<Disponibilidad> insertar(UUID doctorId, List<Disponibilidad> lote) {
+        if (lote.isEmpty()) {
+            return List.of();
+        }
+        List<Disponibilidad> ordenado = new ArrayList<>(lote);
+        ordenado.sort(Comparator.comparing(Disponibilidad::getHoraInicio));
+        LocalDateTime mayorFin = ordenado.stream().map(Disponibilidad::getHoraFin).max(Comparator.naturalOrder()).orElseThrow();
+
+        NavigableMap<LocalDateTime, LocalDateTime> ocupados = new TreeMap<>();
+        disponibilidadRepositorio.buscarBloquesEnRango(doctorId, ordenado.get(0).getHoraInicio(), mayorFin)
+                .stream()
+                .filter(bloque -> bloque.bloquePadreId() == null)
+                .forEach(bloque -> ocupados.put(bloque.horaInicio(), bloque.horaFin()));
+        List<Disponibilidad> nuevos = ordenado.stream()
+                .filter(bloque -> !solapa(ocupados, bloque.getHoraInicio(), bloque.getHoraFin()))
+                .toList();
+
+        disponibilidadLoteRepositorio.insertarLibres(doctorId, nuevos, propiedades.getTamanoLote());
+        nuevos.forEach(bloque -> indiceIntervalos.registrarCreado(doctorId,
+                new BloqueHorarioDTO(bloque.getId(), bloque.getHoraInicio(), bloque.getHoraFin(), false)));
+        if (!nuevos.isEmpty()) {
+            cacheDisponibilidad.invalidarDoctor(doctorId);
+        }
+        return nuevos;
+    }
+
+    /**
+     * Indica si un intervalo se solapa con alguno de los intervalos ocupados (inicio -> fin).
+     * Los intervalos ocupados no se solapan entre sí (las ranuras materializadas, contenidas en su sesión, no se incluyen),
+     * así que basta con comparar con el que empieza justo antes y con el que empieza justo después.
+     */
+    static boolean solapa(NavigableMap<LocalDateTime, LocalDateTime> ocupados, LocalDateTime inicio, LocalDateTime fin) {
+        Map.Entry<LocalDateTime, LocalDateTime> anterior = ocupados.floorEntry(inicio);
+        if (anterior != null && anterior.getValue().isAfter(inicio)) {
+            return true;
+        }
+        LocalDateTime siguiente = ocupados.higherKey(inicio);
+        return siguiente != null && siguiente.isBefore(fin);
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.citasmedicas.servicio.importacion;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Lector secuencial de los eventos (VEVENT) de un archivo iCalendar (RFC 5545).
+ * Lee línea a línea y deshace el plegado de líneas, así que solo mantiene en memoria el evento en curso.
+ * Solo interpreta las propiedades necesarias para crear bloques de disponibilidad: DTSTART, DTEND, DURATION,
+ * RRULE y STATUS; las de los componentes anidados (VALARM) se ignoran.
+ * Las horas se convierten a UTC: las que indican TZID se interpretan en esa zona y las flotantes en la zona por defecto.
+ */
+class LectorIcs implements Closeable {
+
+    private static final int MAX_LINEA = 8_192; // Las líneas lógicas más largas se truncan
+    private static final DateTimeFormatter FECHA_HORA = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+    private final BufferedReader lector;
+    private final ZoneId zonaPorDefecto;
+    private String siguienteLinea;
+
+    LectorIcs(Reader lector, ZoneId zonaPorDefecto) {
+        this.lector = lector instanceof BufferedReader buffered ? buffered : new BufferedReader(lector);
+        this.zonaPorDefecto = zonaPorDefecto;
+    }
+
+    /**
+     * Lee el siguiente evento del archivo.
+     * @return El evento, o null si no quedan más.
+     * @throws IOException Si falla la lectura.
+     */
+    EventoIcs siguiente() throws IOException {
+        String linea;
+        while ((linea = leerLineaLogica()) != null) {
+            if (linea.equalsIgnoreCase("BEGIN:VEVENT")) {
+                return leerEvento();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lector.close();
+    }
+
+    private EventoIcs leerEvento() throws IOException {
+        String inicio = null;
+        String fin = null;
+        String duracion = null;
+        boolean recurrente = false;
+        boolean cancelado = false;
+        int anidamiento = 0;
+        String linea;
+        while ((linea = leerLineaLogica()) != null) {
+            String nombre = nombrePropiedad(linea);
+            if (nombre.equals("END") && anidamiento == 0) {
+                break;
+            } else if (nombre.equals("BEGIN")) {
+                anidamiento++;
+            } else if (nombre.equals("END")) {
+                anidamiento--;
+            } else if (anidamiento == 0) {
+                switch (nombre) {
+                    case "DTSTART" -> inicio = linea;
+                    case "DTEND" -> fin = linea;
+                    case "DURATION" -> duracion = valor(linea);
+                    case "RRULE", "RDATE" -> recurrente = true;
+                    case "STATUS" -> cancelado = "CANCELLED".equalsIgnoreCase(valor(linea));
+                    default -> { }
+                }
+            }
+        }
+        LocalDateTime horaInicio = inicio == null ? null : fechaHora(inicio);
+        LocalDateTime horaFin = fin != null ? fechaHora(fin) : horaInicio != null && duracion != null ? sumar(horaInicio, duracion) : null;
+        return new EventoIcs(horaInicio, horaFin, recurrente, cancelado);
+    }
+
+    // Une las líneas de continuación (que empiezan por espacio o tabulador) a la línea anterior
+    private String leerLineaLogica() throws IOException {
+        String linea = siguienteLinea != null ? siguienteLinea : lector.readLine();
+        siguienteLinea = null;
+        while (linea != null && linea.isEmpty()) {
+            linea = lector.readLine();
+        }
+        if (linea == null) {
+            return null;
+        }
+        StringBuilder logica = new StringBuilder(linea.length() > MAX_LINEA ? linea.substring(0, MAX_LINEA) : linea);
+        String continuacion;
+        while ((continuacion = lector.readLine()) != null && !continuacion.isEmpty()
+                && (continuacion.charAt(0) == ' ' || continuacion.charAt(0) == '\t')) {
+            if (logica.length() < MAX_LINEA) {
+                logica.append(continuacion, 1, Math.min(continuacion.length(), 1 + MAX_LINEA - logica.length()));
+            }
+        }
+        siguienteLinea = continuacion;
+        return logica.toString();
+    }
+
+    // Nombre de la propiedad, sin parámetros: "DTSTART;TZID=Europe/Madrid:2025..." -> "DTSTART"
+    private static String nombrePropiedad(String linea) {
+        int fin = 0;
+        while (fin < linea.length() && linea.charAt(fin) != ';' && linea.charAt(fin) != ':') {
+            fin++;
+        }
+        return linea.substring(0, fin).trim().toUpperCase(Locale.ROOT);
+    }
+
+    // El valor empieza tras el primer ':' que no está entre comillas (los parámetros pueden contener ':' entrecomillados)
+    private static int separadorValor(String linea) {
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (c == '"') {
+                entreComillas = !entreComillas;
+            } else if (c == ':' && !entreComillas) {
+                return i;
+            }
+        }
+        return linea.length();
+    }
+
+    private static String valor(String linea) {
+        int separador = separadorValor(linea);
+        return separador < linea.length() ? linea.substring(separador + 1).trim() : "";
+    }
+
+    private static String parametro(String linea, String nombre) {
+        for (String parametro : linea.substring(0, separadorValor(linea)).split(";")) {
+            int igual = parametro.indexOf('=');
+            if (igual > 0 && parametro.substring(0, igual).trim().equalsIgnoreCase(nombre)) {
+                return parametro.substring(igual + 1).replace("\"", "").trim();
+            }
+        }
+        return null;
+    }
+
+    // Devuelve null para los valores de día completo (VALUE=DATE) y los que no pueden interpretarse
+    private LocalDateTime fechaHora(String linea) {
+        String valor = valor(linea);
+        if ("DATE".equalsIgnoreCase(parametro(linea, "VALUE")) || valor.length() < 15) {
+            return null;
+        }
+        try {
+            if (valor.endsWith("Z") || valor.endsWith("z")) {
+                return LocalDateTime.parse(valor.substring(0, valor.length() - 1), FECHA_HORA);
+            }
+            LocalDateTime local = LocalDateTime.parse(valor, FECHA_HORA);
+            return local.atZone(zona(parametro(linea, "TZID"))).withZoneSameInstant(ZoneOffset.UTC).toLocalDateTime();
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    // Los TZID no reconocidos (nombres de Windows, zonas definidas solo en VTIMEZONE) usan la zona por defecto
+    private ZoneId zona(String tzid) {
+        if (tzid == null) {
+            return zonaPorDefecto;
+        }
+        try {
+            return ZoneId.of(tzid);
+        } catch (DateTimeException e) {
+            return zonaPorDefecto;
+        }
+    }
+
+    private static LocalDateTime sumar(LocalDateTime inicio, String duracion) {
+        try {
+            return inicio.plus(Duration.parse(duracion));
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Evento leído del archivo. Las horas son null si faltaban o no eran válidas.
+     * @param horaInicio La hora de inicio en UTC.
+     * @param horaFin La hora de fin en UTC.
+     * @param recurrente Si el evento tiene una regla de repetición.
+     * @param cancelado Si el evento está cancelado.
+     */
+    record EventoIcs(LocalDateTime horaInicio, LocalDateTime horaFin, boolean recurrente, boolean cancelado) {
+    }
+}
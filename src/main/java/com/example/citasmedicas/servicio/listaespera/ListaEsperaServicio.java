@@ -0,0 +1,286 @@
+package com.example.citasmedicas.servicio.listaespera;
+
+import com.example.citasmedicas.dto.EntradaListaEsperaDTO;
+import com.example.citasmedicas.dto.RetencionDTO;
+import com.example.citasmedicas.excepciones.ConflictoHorarioExcepcion;
+import com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion;
+import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import com.example.citasmedicas.modelo.entidad.Doctor;
+import com.example.citasmedicas.modelo.entidad.EntradaListaEspera;
+import com.example.citasmedicas.modelo.entidad.EstadoListaEspera;
+import com.example.citasmedicas.modelo.entidad.Paciente;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.repositorio.EntradaListaEsperaRepositorio;
+import com.example.citasmedicas.servicio.DoctorServicio;
+import com.example.citasmedicas.servicio.PacienteServicio;
+import com.example.citasmedicas.servicio.evento.DisponibilidadLiberadaEvento;
+import com.example.citasmedicas.servicio.notificacion.BandejaSalidaNotificaciones;
+import com.example.citasmedicas.servicio.reserva.RetencionServicio;
+import com.example.citasmedicas.servicio.transaccion.TrasConfirmar;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Servicio de listas de espera por doctor.
+ * Las inscripciones se persisten y, además, se mantienen en memoria en una cola ordenada por llegada para cada doctor.
+ * Cuando un bloque se libera (cancelación de una cita, retención vencida o liberada), el bloque se retiene
+ * para el primer paciente en espera cuya franja lo admite y se le notifica, en lugar de esperar
+ * a que los pacientes lo descubran consultando el listado de disponibilidades.
+ * Si el paciente no reserva antes de que venza la retención, el bloque se ofrece al siguiente.
+ */
+@Service
+public class ListaEsperaServicio {
+
+    private static final Logger log = LoggerFactory.getLogger(ListaEsperaServicio.class);
+
+    // Prioridad: orden de llegada; el ID desempata inscripciones simultáneas
+    private static final Comparator<Espera> PRIORIDAD = Comparator
+            .comparing((Espera e) -> e.inscritaEn)
+            .thenComparing(e -> e.entradaId);
+
+    private final EntradaListaEsperaRepositorio entradaListaEsperaRepositorio;
+    private final DisponibilidadRepositorio disponibilidadRepositorio;
+    private final PacienteServicio pacienteServicio;
+    private final DoctorServicio doctorServicio;
+    private final RetencionServicio retencionServicio;
+    private final BandejaSalidaNotificaciones bandejaSalidaNotificaciones;
+    private final RegistroMetricas registroMetricas;
+    private final Map<UUID, NavigableSet<Espera>> colas = new ConcurrentHashMap<>();
+
+    public ListaEsperaServicio(EntradaListaEsperaRepositorio entradaListaEsperaRepositorio, DisponibilidadRepositorio disponibilidadRepositorio, PacienteServicio pacienteServicio, DoctorServicio doctorServicio, RetencionServicio retencionServicio, BandejaSalidaNotificaciones bandejaSalidaNotificaciones, RegistroMetricas registroMetricas) {
+        this.entradaListaEsperaRepositorio = entradaListaEsperaRepositorio;
+        this.disponibilidadRepositorio = disponibilidadRepositorio;
+        this.pacienteServicio = pacienteServicio;
+        this.doctorServicio = doctorServicio;
+        this.retencionServicio = retencionServicio;
+        this.bandejaSalidaNotificaciones = bandejaSalidaNotificaciones;
+        this.registroMetricas = registroMetricas;
+        registroMetricas.registrarIndicador("lista_espera.esperando", () -> colas.values().stream().mapToInt(NavigableSet::size).sum());
+    }
+
+    /**
+     * Reconstruye las colas en memoria a partir de las inscripciones persistidas que siguen esperando.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void cargarColas() {
+        entradaListaEsperaRepositorio.findByEstado(EstadoListaEspera.ESPERANDO)
+                .forEach(entrada -> colaDe(entrada.getDoctor().getId()).add(Espera.de(entrada)));
+    }
+
+    /**
+     * Inscribe a un paciente en la lista de espera de un doctor.
+     * @param pacienteId El UUID del paciente.
+     * @param doctorId El UUID del doctor.
+     * @param desde Inicio opcional de la franja aceptada.
+     * @param hasta Fin opcional de la franja aceptada.
+     * @return El DTO de la inscripción con su posición en la cola.
+     * @throws RecursoNoEncontradoExcepcion Si el paciente o el doctor no existen.
+     * @throws SolicitudInvalidaExcepcion Si la franja es inválida o el paciente ya está esperando a ese doctor.
+     */
+    @Transactional
+    public EntradaListaEsperaDTO inscribir(UUID pacienteId, UUID doctorId, LocalDateTime desde, LocalDateTime hasta) {
+        if (desde != null && hasta != null && !desde.isBefore(hasta)) {
+            throw new SolicitudInvalidaExcepcion("El inicio de la franja debe ser anterior a su fin.");
+        }
+        Paciente paciente = pacienteServicio.obtenerEntidadPacientePorId(pacienteId);
+        Doctor doctor = doctorServicio.obtenerEntidadDoctorPorId(doctorId);
+        if (entradaListaEsperaRepositorio.existsByPacienteIdAndDoctorIdAndEstado(pacienteId, doctorId, EstadoListaEspera.ESPERANDO)) {
+            throw new SolicitudInvalidaExcepcion("El paciente ya está en la lista de espera de este doctor.");
+        }
+
+        EntradaListaEspera entrada = new EntradaListaEspera();
+        entrada.setPaciente(paciente);
+        entrada.setDoctor(doctor);
+        entrada.setDesde(desde);
+        entrada.setHasta(hasta);
+        EntradaListaEspera guardada = entradaListaEsperaRepositorio.save(entrada);
+
+        Espera espera = Espera.de(guardada);
+        TrasConfirmar.ejecutar(() -> colaDe(doctorId).add(espera));
+        registroMetricas.incrementar("lista_espera.inscripciones");
+        return aDTO(guardada, posicionDe(espera) + 1);
+    }
+
+    /**
+     * Retira a un paciente de la lista de espera.
+     * @param entradaId El UUID de la inscripción.
+     * @param pacienteId El UUID del paciente propietario de la inscripción.
+     * @throws RecursoNoEncontradoExcepcion Si la inscripción no existe o no pertenece al paciente.
+     * @throws SolicitudInvalidaExcepcion Si la inscripción ya no está esperando.
+     */
+    @Transactional
+    public void cancelar(UUID entradaId, UUID pacienteId) {
+        EntradaListaEspera entrada = entradaListaEsperaRepositorio.findById(entradaId)
+                .filter(e -> e.getPaciente().getId().equals(pacienteId))
+                .orElseThrow(() -> new RecursoNoEncontradoExcepcion("Inscripción en lista de espera no encontrada con ID: " + entradaId));
+        if (entrada.getEstado() != EstadoListaEspera.ESPERANDO) {
+            throw new SolicitudInvalidaExcepcion("La inscripción ya está " + entrada.getEstado().name().toLowerCase() + ".");
+        }
+        entrada.setEstado(EstadoListaEspera.CANCELADA);
+        UUID doctorId = entrada.getDoctor().getId();
+        TrasConfirmar.ejecutar(() -> colaDe(doctorId).removeIf(e -> e.entradaId.equals(entradaId)));
+    }
+
+    /**
+     * Ofrece un bloque liberado al siguiente paciente en espera, una vez confirmada la liberación.
+     * Se ejecuta de forma asíncrona para no alargar la respuesta de la operación que liberó el bloque.
+     * También se invoca sin transacción de origen, cuando vence o se libera una retención.
+     */
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void alLiberarseDisponibilidad(DisponibilidadLiberadaEvento evento) {
+        ofrecerSiguiente(evento.disponibilidadId());
+    }
+
+    /**
+     * Retiene un bloque libre para el primer paciente en espera cuya franja lo admite y le notifica.
+     * La selección se serializa por doctor; la actualización condicional de la inscripción garantiza
+     * que cada inscripción recibe como mucho una oferta aunque haya varias instancias.
+     * @param disponibilidadId El UUID del bloque liberado.
+     * @return El UUID de la inscripción a la que se ofreció el bloque, si hubo alguna.
+     */
+    @Transactional
+    public Optional<UUID> ofrecerSiguiente(UUID disponibilidadId) {
+        Disponibilidad disponibilidad = disponibilidadRepositorio.findById(disponibilidadId).orElse(null);
+        if (disponibilidad == null || disponibilidad.getEstaReservado() || retencionServicio.estaRetenido(disponibilidadId)
+                || !disponibilidad.getHoraInicio().isAfter(LocalDateTime.now(ZoneOffset.UTC))) {
+            return Optional.empty();
+        }
+        UUID doctorId = disponibilidad.getDoctor().getId();
+        NavigableSet<Espera> cola = colas.get(doctorId);
+        if (cola == null || cola.isEmpty()) {
+            return Optional.empty();
+        }
+
+        synchronized (cola) {
+            Iterator<Espera> iterador = cola.iterator();
+            while (iterador.hasNext()) {
+                Espera espera = iterador.next();
+                if (!espera.admite(disponibilidad.getHoraInicio())) {
+                    continue;
+                }
+                RetencionDTO retencion;
+                try {
+                    retencion = retencionServicio.retener(disponibilidadId, espera.pacienteId);
+                } catch (ConflictoHorarioExcepcion e) {
+                    return Optional.empty(); // Otro paciente lo retuvo o reservó entre tanto
+                }
+                iterador.remove();
+                if (entradaListaEsperaRepositorio.ofrecerSiEspera(espera.entradaId, disponibilidadId, Instant.now()) == 0) {
+                    // La inscripción se canceló u ofreció en otra instancia: se descarta y se prueba la siguiente
+                    retencionServicio.liberar(disponibilidadId, espera.pacienteId);
+                    continue;
+                }
+                alRevertir(() -> {
+                    colaDe(doctorId).add(espera);
+                    retencionServicio.liberar(disponibilidadId, espera.pacienteId);
+                });
+                notificarOferta(espera.pacienteId, disponibilidad, retencion);
+                registroMetricas.incrementar("lista_espera.ofertas");
+                return Optional.of(espera.entradaId);
+            }
+        }
+        registroMetricas.incrementar("lista_espera.sin_candidatos");
+        return Optional.empty();
+    }
+
+    private void notificarOferta(UUID pacienteId, Disponibilidad disponibilidad, RetencionDTO retencion) {
+        Paciente paciente = pacienteServicio.obtenerEntidadPacientePorId(pacienteId);
+        Doctor doctor = disponibilidad.getDoctor();
+        bandejaSalidaNotificaciones.encolar(
+                paciente.getEmail(),
+                "Horario Disponible",
+                "Se liberó un horario con el Dr./Dra. " + doctor.getPrimerNombre() + " " + doctor.getApellido() +
+                        " para el " + disponibilidad.getHoraInicio() + ". Lo hemos reservado temporalmente a su nombre hasta " +
+                        retencion.getExpiraEn() + "; agende la cita antes de ese momento para confirmarla."
+        );
+    }
+
+    private int posicionDe(Espera espera) {
+        NavigableSet<Espera> cola = colas.get(espera.doctorId);
+        return cola == null ? 0 : cola.headSet(espera, false).size();
+    }
+
+    private NavigableSet<Espera> colaDe(UUID doctorId) {
+        return colas.computeIfAbsent(doctorId, id -> new ConcurrentSkipListSet<>(PRIORIDAD));
+    }
+
+    private static void alRevertir(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int estado) {
+                    if (estado == STATUS_ROLLED_BACK) {
+                        try {
+                            accion.run();
+                        } catch (RuntimeException e) {
+                            log.warn("No se pudo restaurar la lista de espera tras revertir una oferta", e);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private static EntradaListaEsperaDTO aDTO(EntradaListaEspera entrada, Integer posicion) {
+        return new EntradaListaEsperaDTO(entrada.getId(), entrada.getPaciente().getId(), entrada.getDoctor().getId(),
+                entrada.getDesde(), entrada.getHasta(), entrada.getEstado(), posicion);
+    }
+
+    /**
+     * Inscripción en espera dentro de la cola en memoria de un doctor.
+     */
+    private static final class Espera {
+        private final UUID entradaId;
+        private final UUID pacienteId;
+        private final UUID doctorId;
+        private final Instant inscritaEn;
+        private final LocalDateTime desde;
+        private final LocalDateTime hasta;
+
+        private Espera(UUID entradaId, UUID pacienteId, UUID doctorId, Instant inscritaEn, LocalDateTime desde, LocalDateTime hasta) {
+            this.entradaId = entradaId;
+            this.pacienteId = pacienteId;
+            this.doctorId = doctorId;
+            this.inscritaEn = inscritaEn;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        static Espera de(EntradaListaEspera entrada) {
+            Instant inscritaEn = entrada.getFechaCreacion() != null ? entrada.getFechaCreacion() : Instant.now();
+            return new Espera(entrada.getId(), entrada.getPaciente().getId(), entrada.getDoctor().getId(),
+                    inscritaEn, entrada.getDesde(), entrada.getHasta());
+        }
+
+        boolean admite(LocalDateTime horaInicio) {
+            return (desde == null || !horaInicio.isBefore(desde)) && (hasta == null || !horaInicio.isAfter(hasta));
+        }
+    }
+}
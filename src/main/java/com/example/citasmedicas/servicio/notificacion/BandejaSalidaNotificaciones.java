@@ -0,0 +1,148 @@
+package com.example.citasmedicas.servicio.notificacion;
+
+import com.example.citasmedicas.config.NotificacionPropiedades;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.EstadoNotificacion;
+import com.example.citasmedicas.modelo.entidad.NotificacionPendiente;
+import com.example.citasmedicas.repositorio.NotificacionPendienteRepositorio;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bandeja de salida (transactional outbox) de notificaciones.
+ * Los servicios de negocio registran la notificación en la misma transacción que la operación que la origina,
+ * de modo que la confirmación de una cita y su notificación se guardan o se pierden juntas.
+ * El envío real lo realiza RelayNotificaciones después de la confirmación, fuera de la transacción de negocio,
+ * a través del despachador asíncrono; una notificación solo se marca ENVIADA cuando el proveedor confirma su lote.
+ * Reclamar un lote y registrar su resultado son transacciones cortas y separadas: ninguna conexión ni bloqueo
+ * de fila se mantiene mientras se espera la confirmación del proveedor.
+ */
+@Service
+public class BandejaSalidaNotificaciones {
+
+    private static final Logger log = LoggerFactory.getLogger(BandejaSalidaNotificaciones.class);
+    private static final int LONGITUD_MAXIMA_ERROR = 500;
+
+    private final NotificacionPendienteRepositorio notificacionPendienteRepositorio;
+    private final RegistroMetricas registroMetricas;
+    private final NotificacionPropiedades propiedades;
+
+    public BandejaSalidaNotificaciones(NotificacionPendienteRepositorio notificacionPendienteRepositorio, RegistroMetricas registroMetricas, NotificacionPropiedades propiedades) {
+        this.notificacionPendienteRepositorio = notificacionPendienteRepositorio;
+        this.registroMetricas = registroMetricas;
+        this.propiedades = propiedades;
+    }
+
+    /**
+     * Registra una notificación para su envío tras la confirmación de la transacción actual.
+     * Debe invocarse dentro de la transacción de la operación de negocio.
+     * @param destinatario El destinatario de la notificación (ej. email, número de teléfono).
+     * @param asunto El asunto de la notificación.
+     * @param mensaje El cuerpo del mensaje.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void encolar(String destinatario, String asunto, String mensaje) {
+        NotificacionPendiente notificacion = new NotificacionPendiente();
+        notificacion.setDestinatario(destinatario);
+        notificacion.setAsunto(asunto);
+        notificacion.setMensaje(mensaje);
+        notificacion.setProximoIntento(Instant.now());
+        notificacionPendienteRepositorio.save(notificacion);
+        registroMetricas.incrementar("notificaciones.bandeja.encoladas");
+    }
+
+    /**
+     * Reclama un lote de notificaciones vencidas para entregarlas fuera de cualquier transacción.
+     * Las filas se toman con SKIP LOCKED, así que otra instancia del relé no reclama las mismas, y su próximo intento
+     * se aplaza citas.notificaciones.plazo-entrega: ese plazo es la concesión del relé que las reclamó.
+     * Si el relé cae antes de registrar el resultado, las notificaciones vuelven a estar vencidas al terminar el plazo
+     * y se reenvían (entrega al menos una vez).
+     * @return Las notificaciones reclamadas, ordenadas por próximo intento.
+     */
+    @Transactional
+    public List<NotificacionPendiente> reclamarLote() {
+        Instant ahora = Instant.now();
+        List<NotificacionPendiente> lote = notificacionPendienteRepositorio
+                .findByEstadoAndProximoIntentoLessThanEqualOrderByProximoIntentoAsc(EstadoNotificacion.PENDIENTE, ahora, PageRequest.of(0, propiedades.getTamanoLote()));
+        Instant finConcesion = ahora.plus(propiedades.getPlazoEntrega());
+        lote.forEach(notificacion -> notificacion.setProximoIntento(finConcesion));
+        return lote;
+    }
+
+    /**
+     * Registra el resultado de la entrega de un lote reclamado con {@link #reclamarLote()}.
+     * Las notificaciones que ya no están pendientes (otro relé las entregó tras vencer la concesión) no se modifican.
+     * @param enviadas Los UUID de las notificaciones cuya entrega confirmó el proveedor.
+     * @param fallos La causa del fallo de cada notificación no entregada, por UUID.
+     */
+    @Transactional
+    public void registrarResultados(Collection<UUID> enviadas, Map<UUID, Throwable> fallos) {
+        Instant ahora = Instant.now();
+        List<UUID> ids = new ArrayList<>(enviadas);
+        ids.addAll(fallos.keySet());
+        for (NotificacionPendiente notificacion : notificacionPendienteRepositorio.findAllById(ids)) {
+            if (notificacion.getEstado() != EstadoNotificacion.PENDIENTE) {
+                continue;
+            }
+            Throwable error = fallos.get(notificacion.getId());
+            if (error == null) {
+                marcarEnviada(notificacion, ahora);
+            } else {
+                registrarFallo(notificacion, error, ahora);
+            }
+        }
+    }
+
+    /**
+     * @return El número de notificaciones pendientes de entrega.
+     */
+    @Transactional(readOnly = true)
+    public long contarPendientes() {
+        return notificacionPendienteRepositorio.countByEstado(EstadoNotificacion.PENDIENTE);
+    }
+
+    void marcarEnviada(NotificacionPendiente notificacion, Instant ahora) {
+        notificacion.setEstado(EstadoNotificacion.ENVIADA);
+        notificacion.setEnviadaEn(ahora);
+        notificacion.setUltimoError(null);
+        registroMetricas.incrementar("notificaciones.bandeja.enviadas");
+    }
+
+    void registrarFallo(NotificacionPendiente notificacion, Throwable error, Instant ahora) {
+        int intentos = notificacion.getIntentos() + 1;
+        notificacion.setIntentos(intentos);
+        notificacion.setUltimoError(recortar(String.valueOf(error.getMessage())));
+        if (intentos >= propiedades.getMaxIntentos()) {
+            notificacion.setEstado(EstadoNotificacion.FALLIDA);
+            registroMetricas.incrementar("notificaciones.bandeja.fallidas");
+            log.error("Notificación {} descartada tras {} intentos: {}", notificacion.getId(), intentos, error.getMessage());
+            return;
+        }
+        notificacion.setProximoIntento(ahora.plus(esperaReintento(intentos)));
+        registroMetricas.incrementar("notificaciones.bandeja.reintentos");
+        log.warn("Fallo al entregar la notificación {} (intento {}): {}", notificacion.getId(), intentos, error.getMessage());
+    }
+
+    // Retroceso exponencial: esperaInicial * 2^(intentos - 1), acotado por esperaMaxima
+    private Duration esperaReintento(int intentos) {
+        Duration maxima = propiedades.getEsperaReintentoMaxima();
+        Duration espera = propiedades.getEsperaReintentoInicial().multipliedBy(1L << Math.min(intentos - 1, 30));
+        return espera.compareTo(maxima) > 0 ? maxima : espera;
+    }
+
+    private static String recortar(String texto) {
+        return texto.length() <= LONGITUD_MAXIMA_ERROR ? texto : texto.substring(0, LONGITUD_MAXIMA_ERROR);
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.citasmedicas.servicio.notificacion;
+
+import com.example.citasmedicas.config.NotificacionPropiedades;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Despachador asíncrono de notificaciones.
+ * Los mensajes se encolan en una cola acotada y un número fijo de hilos la drena en lotes,
+ * de modo que cada llamada al proveedor (una sesión SMTP, una llamada masiva) entrega varios mensajes
+ * y quien notifica no espera al proveedor. Con la cola llena se aplica la política de desborde configurada.
+ * Al apagar la aplicación deja de aceptar mensajes y drena los pendientes durante un tiempo acotado.
+ */
+@Primary // Implementación por defecto de EstrategiaNotificacion: las estrategias concretas actúan como proveedores
+@Component
+public class DespachadorNotificaciones implements EstrategiaNotificacion {
+
+    private static final Logger log = LoggerFactory.getLogger(DespachadorNotificaciones.class);
+    private static final long ESPERA_SONDEO_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ProveedorNotificaciones proveedor;
+    private final RegistroMetricas registroMetricas;
+    private final NotificacionPropiedades.Despachador propiedades;
+    private final BlockingQueue<Pendiente> cola;
+    private final ExecutorService trabajadores;
+    private volatile boolean aceptando = true;
+
+    public DespachadorNotificaciones(ProveedorNotificaciones proveedor, RegistroMetricas registroMetricas, NotificacionPropiedades propiedades) {
+        this.proveedor = proveedor;
+        this.registroMetricas = registroMetricas;
+        this.propiedades = propiedades.getDespachador();
+        this.cola = new ArrayBlockingQueue<>(this.propiedades.getCapacidadCola());
+        AtomicInteger secuencia = new AtomicInteger();
+        this.trabajadores = Executors.newFixedThreadPool(this.propiedades.getHilos(), tarea -> {
+            Thread hilo = new Thread(tarea, "notificaciones-despachador-" + secuencia.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        for (int i = 0; i < this.propiedades.getHilos(); i++) {
+            trabajadores.execute(this::drenar);
+        }
+        registroMetricas.registrarIndicador("notificaciones.despachador.cola.profundidad", cola::size);
+        registroMetricas.registrarIndicador("notificaciones.despachador.lote.promedio", this::tamanoLotePromedio);
+    }
+
+    /**
+     * Encola una notificación sin esperar a su entrega.
+     * @throws RejectedExecutionException Si la cola está llena y la política es BLOQUEAR o RECHAZAR, o el despachador está cerrado.
+     */
+    @Override
+    public void enviarNotificacion(String destinatario, String asunto, String mensaje) {
+        CompletableFuture<Void> resultado = despachar(destinatario, asunto, mensaje);
+        if (resultado.isCompletedExceptionally() && propiedades.getPoliticaDesborde() != PoliticaDesborde.DESCARTAR) {
+            throw new RejectedExecutionException("La cola de notificaciones no admite más mensajes.");
+        }
+    }
+
+    /**
+     * Encola una notificación y devuelve un futuro que se completa cuando el proveedor la entrega.
+     * Si el mensaje se rechaza o descarta, o el envío de su lote falla, el futuro se completa con error.
+     * @param destinatario El destinatario de la notificación.
+     * @param asunto El asunto de la notificación.
+     * @param mensaje El cuerpo del mensaje.
+     * @return El futuro de la entrega.
+     */
+    public CompletableFuture<Void> despachar(String destinatario, String asunto, String mensaje) {
+        Pendiente pendiente = new Pendiente(new MensajeNotificacion(destinatario, asunto, mensaje), System.nanoTime());
+        if (!aceptando) {
+            return rechazar(pendiente, "notificaciones.despachador.rechazados", "El despachador de notificaciones está cerrado.");
+        }
+        if (cola.offer(pendiente)) {
+            return pendiente.resultado;
+        }
+        switch (propiedades.getPoliticaDesborde()) {
+            case BLOQUEAR -> {
+                try {
+                    if (cola.offer(pendiente, propiedades.getEsperaEncolar().toNanos(), TimeUnit.NANOSECONDS)) {
+                        return pendiente.resultado;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return rechazar(pendiente, "notificaciones.despachador.rechazados", "La cola de notificaciones sigue llena tras la espera máxima.");
+            }
+            case DESCARTAR -> {
+                return rechazar(pendiente, "notificaciones.despachador.descartados", "Notificación descartada por cola llena.");
+            }
+            case EJECUTAR_EN_LLAMADOR -> {
+                registroMetricas.incrementar("notificaciones.despachador.ejecutados_en_llamador");
+                enviar(List.of(pendiente));
+                return pendiente.resultado;
+            }
+            default -> {
+                return rechazar(pendiente, "notificaciones.despachador.rechazados", "La cola de notificaciones está llena.");
+            }
+        }
+    }
+
+    /**
+     * Deja de aceptar mensajes y espera a que los hilos drenen la cola durante citas.notificaciones.despachador.espera-cierre.
+     * Los mensajes que no se llegan a enviar se completan con error (la bandeja de salida los reintentará).
+     */
+    @PreDestroy
+    public void cerrar() {
+        aceptando = false;
+        trabajadores.shutdown();
+        try {
+            if (!trabajadores.awaitTermination(propiedades.getEsperaCierre().toMillis(), TimeUnit.MILLISECONDS)) {
+                trabajadores.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            trabajadores.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        List<Pendiente> restantes = new ArrayList<>();
+        cola.drainTo(restantes);
+        restantes.forEach(p -> rechazar(p, "notificaciones.despachador.rechazados", "El despachador se cerró antes de enviar la notificación."));
+        if (!restantes.isEmpty()) {
+            log.warn("{} notificaciones sin enviar al cerrar el despachador", restantes.size());
+        }
+    }
+
+    // Bucle de cada hilo: espera el primer mensaje, completa el lote durante esperaLote y lo envía
+    private void drenar() {
+        int tamanoLote = propiedades.getTamanoLote();
+        long esperaLote = propiedades.getEsperaLote().toNanos();
+        List<Pendiente> lote = new ArrayList<>(tamanoLote);
+        try {
+            while (true) {
+                Pendiente primero = cola.poll(ESPERA_SONDEO_NANOS, TimeUnit.NANOSECONDS);
+                if (primero == null) {
+                    if (!aceptando) {
+                        return;
+                    }
+                    continue;
+                }
+                lote.add(primero);
+                cola.drainTo(lote, tamanoLote - 1);
+                long limite = System.nanoTime() + esperaLote;
+                while (lote.size() < tamanoLote && aceptando) {
+                    Pendiente siguiente = cola.poll(limite - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (siguiente == null) {
+                        break;
+                    }
+                    lote.add(siguiente);
+                    cola.drainTo(lote, tamanoLote - lote.size());
+                }
+                enviar(lote);
+                lote.clear();
+            }
+        } catch (InterruptedException e) {
+            lote.forEach(p -> rechazar(p, "notificaciones.despachador.rechazados", "El despachador se interrumpió antes de enviar la notificación."));
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enviar(List<Pendiente> lote) {
+        List<MensajeNotificacion> mensajes = new ArrayList<>(lote.size());
+        lote.forEach(p -> mensajes.add(p.mensaje));
+        long inicio = System.nanoTime();
+        try {
+            proveedor.enviarLote(mensajes);
+        } catch (RuntimeException e) {
+            log.error("Fallo al enviar un lote de {} notificaciones", lote.size(), e);
+            registroMetricas.incrementar("notificaciones.despachador.fallidos", lote.size());
+            lote.forEach(p -> p.resultado.completeExceptionally(e));
+            return;
+        } finally {
+            registroMetricas.registrarDuracion("notificaciones.despachador.envio", System.nanoTime() - inicio);
+        }
+        long fin = System.nanoTime();
+        registroMetricas.incrementar("notificaciones.despachador.lotes");
+        registroMetricas.incrementar("notificaciones.despachador.enviados", lote.size());
+        for (Pendiente pendiente : lote) {
+            registroMetricas.registrarDuracion("notificaciones.despachador.latencia", fin - pendiente.encoladoEn);
+            pendiente.resultado.complete(null);
+        }
+    }
+
+    private CompletableFuture<Void> rechazar(Pendiente pendiente, String metrica, String motivo) {
+        registroMetricas.incrementar(metrica);
+        pendiente.resultado.completeExceptionally(new RejectedExecutionException(motivo));
+        return pendiente.resultado;
+    }
+
+    private double tamanoLotePromedio() {
+        long lotes = registroMetricas.valorContador("notificaciones.despachador.lotes");
+        return lotes == 0 ? 0.0 : registroMetricas.valorContador("notificaciones.despachador.enviados") / (double) lotes;
+    }
+
+    /**
+     * Mensaje en la cola junto con su instante de encolado y el futuro de su entrega.
+     */
+    private static final class Pendiente {
+        private final MensajeNotificacion mensaje;
+        private final long encoladoEn;
+        private final CompletableFuture<Void> resultado = new CompletableFuture<>();
+
+        Pendiente(MensajeNotificacion mensaje, long encoladoEn) {
+            this.mensaje = mensaje;
+            this.encoladoEn = encoladoEn;
+        }
+    }
+}
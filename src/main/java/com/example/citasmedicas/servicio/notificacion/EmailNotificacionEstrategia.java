@@ -1,15 +1,18 @@
 package com.example.citasmedicas.servicio.notificacion;
 
-import org.springframework.context.annotation.Primary;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 /**
  * Implementación de EstrategiaNotificacion para envío de correos electrónicos.
+ * También actúa como proveedor por lotes del despachador: cada lote se envía en una única sesión SMTP.
  * (Funcionalidad simulada para el propósito del proyecto).
  */
-@Primary // Indica a Spring que esta es la implementación por defecto de EstrategiaNotificacion
 @Component
-public class EmailNotificacionEstrategia implements EstrategiaNotificacion {
+@ConditionalOnProperty(name = "citas.notificaciones.despachador.proveedor", havingValue = "email", matchIfMissing = true)
+public class EmailNotificacionEstrategia implements EstrategiaNotificacion, ProveedorNotificaciones {
     @Override
     public void enviarNotificacion(String destinatario, String asunto, String mensaje) {
         // Lógica real de envío de email aquí (e.g., con JavaMailSender)
@@ -18,4 +21,14 @@ public class EmailNotificacionEstrategia implements EstrategiaNotificacion {
         System.out.println("Mensaje: " + mensaje);
         System.out.println("--- EMAIL ENVIADO ---");
     }
+
+    @Override
+    public void enviarLote(List<MensajeNotificacion> lote) {
+        // Con JavaMailSender: una sola conexión SMTP y send(MimeMessage...) para todo el lote
+        System.out.println("--- SESIÓN SMTP ABIERTA (" + lote.size() + " mensajes) ---");
+        for (MensajeNotificacion mensaje : lote) {
+            enviarNotificacion(mensaje.destinatario(), mensaje.asunto(), mensaje.mensaje());
+        }
+        System.out.println("--- SESIÓN SMTP CERRADA ---");
+    }
 }
@@ -0,0 +1,10 @@
+package com.example.citasmedicas.servicio.notificacion;
+
+/**
+ * Mensaje de notificación listo para entregarse a un proveedor.
+ * @param destinatario El destinatario de la notificación (ej. email, número de teléfono).
+ * @param asunto El asunto de la notificación.
+ * @param mensaje El cuerpo del mensaje.
+ */
+public record MensajeNotificacion(String destinatario, String asunto, String mensaje) {
+}
@@ -0,0 +1,11 @@
+package com.example.citasmedicas.servicio.notificacion;
+
+/**
+ * Política del despachador de notificaciones cuando su cola está llena.
+ */
+public enum PoliticaDesborde {
+    BLOQUEAR, // Espera hasta citas.notificaciones.despachador.espera-encolar y después rechaza
+    RECHAZAR, // Rechaza el mensaje de inmediato
+    DESCARTAR, // Descarta el mensaje en silencio, contabilizándolo
+    EJECUTAR_EN_LLAMADOR // Envía el mensaje en el hilo que lo encola (contrapresión natural)
+}
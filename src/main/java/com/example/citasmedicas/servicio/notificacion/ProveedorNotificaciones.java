@@ -0,0 +1,15 @@
+package com.example.citasmedicas.servicio.notificacion;
+
+import java.util.List;
+
+/**
+ * Proveedor de envío de notificaciones por lotes (una sesión SMTP o una llamada masiva a una API por lote).
+ * El despachador de notificaciones invoca al proveedor desde sus propios hilos.
+ */
+public interface ProveedorNotificaciones {
+    /**
+     * Envía un lote de mensajes. Si lanza una excepción, el lote completo se considera no entregado.
+     * @param lote Los mensajes a enviar.
+     */
+    void enviarLote(List<MensajeNotificacion> lote);
+}
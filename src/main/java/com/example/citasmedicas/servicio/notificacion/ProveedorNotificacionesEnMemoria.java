@@ -0,0 +1,49 @@
+package com.example.citasmedicas.servicio.notificacion;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Proveedor de notificaciones en memoria para medir el rendimiento del despachador sin un servicio externo.
+ * Solo cuenta los mensajes y lotes recibidos; opcionalmente simula la latencia de cada llamada al proveedor.
+ * Se activa con citas.notificaciones.despachador.proveedor=memoria.
+ */
+@Component
+@ConditionalOnProperty(name = "citas.notificaciones.despachador.proveedor", havingValue = "memoria")
+public class ProveedorNotificacionesEnMemoria implements ProveedorNotificaciones {
+
+    private final AtomicLong mensajesEnviados = new AtomicLong();
+    private final AtomicLong lotesEnviados = new AtomicLong();
+    private volatile Duration latenciaPorLlamada = Duration.ZERO;
+
+    @Override
+    public void enviarLote(List<MensajeNotificacion> lote) {
+        long latencia = latenciaPorLlamada.toNanos();
+        if (latencia > 0) {
+            LockSupport.parkNanos(latencia);
+        }
+        lotesEnviados.incrementAndGet();
+        mensajesEnviados.addAndGet(lote.size());
+    }
+
+    /**
+     * Configura la latencia simulada de cada llamada al proveedor (por lote, no por mensaje).
+     * @param latencia La latencia a simular.
+     */
+    public void setLatenciaPorLlamada(Duration latencia) {
+        this.latenciaPorLlamada = latencia;
+    }
+
+    public long getMensajesEnviados() {
+        return mensajesEnviados.get();
+    }
+
+    public long getLotesEnviados() {
+        return lotesEnviados.get();
+    }
+}
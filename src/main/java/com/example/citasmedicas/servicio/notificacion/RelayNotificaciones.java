@@ -0,0 +1,105 @@
+package com.example.citasmedicas.servicio.notificacion;
+
+import com.example.citasmedicas.config.NotificacionPropiedades;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.NotificacionPendiente;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Relé de la bandeja de salida de notificaciones.
+ * Periódicamente drena la bandeja en lotes hasta que no quedan notificaciones vencidas. Cada lote se reclama
+ * en una transacción corta, se entrega al despachador y se espera su confirmación fuera de cualquier transacción,
+ * y su resultado se registra en otra transacción corta.
+ */
+@Component
+public class RelayNotificaciones {
+
+    private static final Logger log = LoggerFactory.getLogger(RelayNotificaciones.class);
+
+    private final BandejaSalidaNotificaciones bandejaSalidaNotificaciones;
+    private final DespachadorNotificaciones despachadorNotificaciones;
+    private final RegistroMetricas registroMetricas;
+    private final NotificacionPropiedades propiedades;
+
+    public RelayNotificaciones(BandejaSalidaNotificaciones bandejaSalidaNotificaciones, DespachadorNotificaciones despachadorNotificaciones, RegistroMetricas registroMetricas, NotificacionPropiedades propiedades) {
+        this.bandejaSalidaNotificaciones = bandejaSalidaNotificaciones;
+        this.despachadorNotificaciones = despachadorNotificaciones;
+        this.registroMetricas = registroMetricas;
+        this.propiedades = propiedades;
+    }
+
+    /**
+     * Drena la bandeja de salida. Un lote incompleto indica que no quedan notificaciones vencidas.
+     */
+    @Scheduled(fixedDelayString = "${citas.notificaciones.intervalo-relay:PT2S}")
+    public void drenar() {
+        try {
+            int procesadas;
+            do {
+                procesadas = procesarLote();
+            } while (procesadas == propiedades.getTamanoLote());
+        } catch (RuntimeException e) {
+            // El siguiente ciclo vuelve a intentarlo; las filas reclamadas vuelven a estar vencidas al terminar su concesión
+            log.error("Error al drenar la bandeja de salida de notificaciones", e);
+        }
+    }
+
+    /**
+     * Reclama, entrega y registra un lote de notificaciones vencidas.
+     * @return El número de notificaciones procesadas en el lote.
+     */
+    public int procesarLote() {
+        List<NotificacionPendiente> lote = bandejaSalidaNotificaciones.reclamarLote();
+        if (lote.isEmpty()) {
+            return 0;
+        }
+        long inicio = System.nanoTime();
+        // Todo el lote se entrega al despachador de una vez para que lo agrupe en pocas llamadas al proveedor
+        List<CompletableFuture<Void>> entregas = new ArrayList<>(lote.size());
+        for (NotificacionPendiente notificacion : lote) {
+            entregas.add(despachadorNotificaciones.despachar(notificacion.getDestinatario(), notificacion.getAsunto(), notificacion.getMensaje()));
+        }
+        long limite = inicio + propiedades.getDespachador().getEsperaConfirmacion().toNanos();
+        List<UUID> enviadas = new ArrayList<>(lote.size());
+        Map<UUID, Throwable> fallos = new HashMap<>();
+        for (int i = 0; i < lote.size(); i++) {
+            Throwable error = esperarEntrega(entregas.get(i), limite);
+            if (error == null) {
+                enviadas.add(lote.get(i).getId());
+            } else {
+                fallos.put(lote.get(i).getId(), error);
+            }
+        }
+        bandejaSalidaNotificaciones.registrarResultados(enviadas, fallos);
+        registroMetricas.registrarDuracion("notificaciones.relay.lote", System.nanoTime() - inicio);
+        return lote.size();
+    }
+
+    // Devuelve null si la entrega se confirmó antes del límite, o la causa del fallo
+    private static Throwable esperarEntrega(CompletableFuture<Void> entrega, long limiteNanos) {
+        try {
+            entrega.get(Math.max(0, limiteNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (TimeoutException e) {
+            return new TimeoutException("Tiempo de espera agotado confirmando la entrega.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return e;
+        }
+    }
+}
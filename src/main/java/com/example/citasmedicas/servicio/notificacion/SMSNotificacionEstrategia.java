@@ -1,13 +1,18 @@
 package com.example.citasmedicas.servicio.notificacion;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 /**
  * Implementación de EstrategiaNotificacion para envío de SMS.
+ * También actúa como proveedor por lotes del despachador: cada lote se envía con una única llamada masiva a la API.
  * (Funcionalidad simulada para el propósito del proyecto).
  */
 @Component
-public class SMSNotificacionEstrategia implements EstrategiaNotificacion {
+@ConditionalOnProperty(name = "citas.notificaciones.despachador.proveedor", havingValue = "sms")
+public class SMSNotificacionEstrategia implements EstrategiaNotificacion, ProveedorNotificaciones {
     @Override
     public void enviarNotificacion(String destinatario, String asunto, String mensaje) {
         // Lógica real de envío de SMS aquí (e.g., con Twilio API)
@@ -16,5 +21,14 @@ public class SMSNotificacionEstrategia implements EstrategiaNotificacion {
         System.out.println("Mensaje: " + mensaje);
         System.out.println("--- SMS ENVIADO ---");
     }
-}
 
+    @Override
+    public void enviarLote(List<MensajeNotificacion> lote) {
+        // Con la API del proveedor: una sola petición de envío masivo con todos los destinatarios del lote
+        System.out.println("--- ENVÍO MASIVO DE SMS (" + lote.size() + " mensajes) ---");
+        for (MensajeNotificacion mensaje : lote) {
+            enviarNotificacion(mensaje.destinatario(), mensaje.asunto(), mensaje.mensaje());
+        }
+        System.out.println("--- ENVÍO MASIVO DE SMS TERMINADO ---");
+    }
+}
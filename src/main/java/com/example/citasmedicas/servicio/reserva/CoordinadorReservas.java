@@ -0,0 +1,191 @@
+package com.example.citasmedicas.servicio.reserva;
+
+import com.example.citasmedicas.config.ReservaPropiedades;
+import com.example.citasmedicas.excepciones.ConflictoHorarioExcepcion;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import com.example.citasmedicas.servicio.DisponibilidadServicio;
+import com.example.citasmedicas.servicio.evento.DisponibilidadLiberadaEvento;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coordinador en proceso de las reservas de bloques de disponibilidad.
+ * Asigna cada doctor a uno de un número fijo de carriles de escritura única mediante el hash de su ID:
+ * las reservas de un mismo doctor se encolan en el mismo carril y se rechazan de forma temprana
+ * a partir de una vista en memoria de los bloques ya reclamados, mientras que las de otros doctores
+ * avanzan en paralelo por otros carriles.
+ * El cerrojo del carril solo cubre la sentencia de reclamo, no la confirmación de la transacción externa:
+ * la serialización entre reservas la garantiza la actualización condicional en la base de datos.
+ * La vista es solo una pista con vigencia acotada: un bloque se rechaza en memoria durante
+ * citas.reservas.vigencia-reclamo desde que se reclamó y, pasado ese tiempo, se vuelve a consultar la base de datos.
+ * Las liberaciones confirmadas en esta instancia lo borran de la vista de inmediato (DisponibilidadLiberadaEvento);
+ * las hechas en otra instancia se ven como mucho al vencer la vigencia.
+ */
+@Service
+public class CoordinadorReservas {
+
+    private final DisponibilidadServicio disponibilidadServicio;
+    private final RegistroMetricas registroMetricas;
+    private final Carril[] carriles;
+    private final long vigenciaReclamoNanos;
+
+    public CoordinadorReservas(DisponibilidadServicio disponibilidadServicio, RegistroMetricas registroMetricas, ReservaPropiedades propiedades) {
+        this.disponibilidadServicio = disponibilidadServicio;
+        this.registroMetricas = registroMetricas;
+        this.vigenciaReclamoNanos = propiedades.getVigenciaReclamo().toNanos();
+        this.carriles = new Carril[propiedades.getCarriles()];
+        for (int i = 0; i < carriles.length; i++) {
+            Carril carril = new Carril(i, propiedades.getMaxReclamadosPorCarril());
+            carriles[i] = carril;
+            registroMetricas.registrarIndicador("reservas.carril." + i + ".cola", carril.enEspera::get);
+        }
+    }
+
+    /**
+     * Reserva un bloque de disponibilidad serializando la operación en el carril del doctor.
+     * Envuelve a DisponibilidadServicio#reclamarDisponibilidad y debe invocarse dentro de la transacción de la reserva.
+     * @param disponibilidadId El UUID del bloque a reservar.
+     * @param doctorId El UUID del doctor propietario del bloque.
+     * @return La entidad Disponibilidad reservada.
+     * @throws ConflictoHorarioExcepcion Si el bloque ya fue reclamado (en memoria, dentro de la vigencia, o en la base de datos).
+     */
+    public Disponibilidad reservarDisponibilidad(UUID disponibilidadId, UUID doctorId) {
+        Carril carril = carrilDe(doctorId);
+        long inicioEspera = System.nanoTime();
+        carril.enEspera.incrementAndGet();
+        carril.cerrojo.lock();
+        try {
+            carril.enEspera.decrementAndGet();
+            registroMetricas.registrarDuracion("reservas.carril." + carril.indice + ".espera", System.nanoTime() - inicioEspera);
+
+            if (carril.estaReclamado(disponibilidadId, vigenciaReclamoNanos)) {
+                registroMetricas.incrementar("reservas.rechazos_tempranos");
+                throw new ConflictoHorarioExcepcion("El horario seleccionado ya no se encuentra disponible para el doctor especificado.");
+            }
+
+            Disponibilidad disponibilidad = disponibilidadServicio.reclamarDisponibilidad(disponibilidadId, doctorId);
+            carril.marcar(disponibilidadId);
+            olvidarSiSeRevierte(carril, disponibilidadId);
+            return disponibilidad;
+        } finally {
+            carril.cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Reserva todos los bloques de una serie de un mismo doctor en una única pasada por su carril.
+     * Envuelve a DisponibilidadServicio#reclamarDisponibilidades y debe invocarse dentro de la transacción de la reserva.
+     * @param disponibilidadIds Los UUID de los bloques a reservar.
+     * @param doctorId El UUID del doctor propietario de los bloques.
+     * @return Las entidades Disponibilidad reservadas, ordenadas por hora de inicio.
+     * @throws ConflictoHorarioExcepcion Si alguno de los bloques ya fue reclamado (en memoria, dentro de la vigencia, o en la base de datos).
+     */
+    public List<Disponibilidad> reservarSerie(List<UUID> disponibilidadIds, UUID doctorId) {
+        Carril carril = carrilDe(doctorId);
+        long inicioEspera = System.nanoTime();
+        carril.enEspera.incrementAndGet();
+        carril.cerrojo.lock();
+        try {
+            carril.enEspera.decrementAndGet();
+            registroMetricas.registrarDuracion("reservas.carril." + carril.indice + ".espera", System.nanoTime() - inicioEspera);
+
+            if (disponibilidadIds.stream().anyMatch(id -> carril.estaReclamado(id, vigenciaReclamoNanos))) {
+                registroMetricas.incrementar("reservas.rechazos_tempranos");
+                throw new ConflictoHorarioExcepcion("Uno o más horarios de la serie ya no se encuentran disponibles para el doctor especificado.");
+            }
+
+            List<Disponibilidad> disponibilidades = disponibilidadServicio.reclamarDisponibilidades(disponibilidadIds, doctorId);
+            for (UUID disponibilidadId : disponibilidadIds) {
+                carril.marcar(disponibilidadId);
+                olvidarSiSeRevierte(carril, disponibilidadId);
+            }
+            return disponibilidades;
+        } finally {
+            carril.cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Elimina un bloque de la vista en memoria tras confirmarse su liberación, sea cual sea su origen
+     * (cita cancelada, retención vencida o liberada). El evento no lleva el doctor, así que se borra de todos los carriles.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void alLiberarseDisponibilidad(DisponibilidadLiberadaEvento evento) {
+        for (Carril carril : carriles) {
+            carril.olvidar(evento.disponibilidadId());
+        }
+    }
+
+    private Carril carrilDe(UUID doctorId) {
+        return carriles[Math.floorMod(doctorId.hashCode(), carriles.length)];
+    }
+
+    // Si la transacción de la reserva no llega a confirmarse, el bloque vuelve a estar disponible
+    private void olvidarSiSeRevierte(Carril carril, UUID disponibilidadId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int estado) {
+                if (estado != STATUS_COMMITTED) {
+                    carril.olvidar(disponibilidadId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Carril de escritura única: un cerrojo justo y la vista acotada de bloques reclamados con el instante del reclamo.
+     */
+    private static final class Carril {
+        private final int indice;
+        private final ReentrantLock cerrojo = new ReentrantLock(true);
+        private final AtomicInteger enEspera = new AtomicInteger();
+        private final Map<UUID, Long> reclamados;
+
+        Carril(int indice, int capacidad) {
+            this.indice = indice;
+            // Orden de inserción: al superar la capacidad se descartan los reclamos más antiguos
+            this.reclamados = new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<UUID, Long> mayor) {
+                    return size() > capacidad;
+                }
+            };
+        }
+
+        synchronized boolean estaReclamado(UUID disponibilidadId, long vigenciaNanos) {
+            Long reclamadoEn = reclamados.get(disponibilidadId);
+            if (reclamadoEn == null) {
+                return false;
+            }
+            if (System.nanoTime() - reclamadoEn >= vigenciaNanos) {
+                reclamados.remove(disponibilidadId);
+                return false;
+            }
+            return true;
+        }
+
+        synchronized void marcar(UUID disponibilidadId) {
+            // Se reinserta para que el orden de inserción siga siendo el del reclamo más reciente
+            reclamados.remove(disponibilidadId);
+            reclamados.put(disponibilidadId, System.nanoTime());
+        }
+
+        synchronized void olvidar(UUID disponibilidadId) {
+            reclamados.remove(disponibilidadId);
+        }
+    }
+}
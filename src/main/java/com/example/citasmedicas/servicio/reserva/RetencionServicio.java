@@ -0,0 +1,199 @@
+package com.example.citasmedicas.servicio.reserva;
+
+import com.example.citasmedicas.config.ReservaPropiedades;
+import com.example.citasmedicas.dto.RetencionDTO;
+import com.example.citasmedicas.excepciones.ConflictoHorarioExcepcion;
+import com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion;
+import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.PacienteServicio;
+import com.example.citasmedicas.servicio.evento.DisponibilidadLiberadaEvento;
+import com.example.citasmedicas.servicio.transaccion.TrasConfirmar;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Servicio de retenciones temporales (leases) de bloques de disponibilidad.
+ * Mientras un paciente completa el agendamiento, el bloque queda retenido a su nombre durante un tiempo
+ * configurable: otros pacientes no pueden reservarlo y el listado público lo muestra como retenido.
+ * Las retenciones viven solo en memoria y expiran mediante una rueda temporizadora,
+ * por lo que crearlas, liberarlas o dejarlas vencer no escribe en la base de datos.
+ * Cuando una retención vence o se libera se publica DisponibilidadLiberadaEvento para que el bloque pueda ofrecerse de nuevo.
+ */
+@Service
+public class RetencionServicio {
+
+    private final DisponibilidadRepositorio disponibilidadRepositorio;
+    private final PacienteServicio pacienteServicio;
+    private final RegistroMetricas registroMetricas;
+    private final ApplicationEventPublisher publicadorEventos;
+    private final Duration duracionRetencion;
+    private final Clock reloj;
+    private final Map<UUID, Retencion> retenciones = new ConcurrentHashMap<>();
+    private final RuedaTemporizadora<Retencion> rueda;
+
+    @Autowired
+    public RetencionServicio(DisponibilidadRepositorio disponibilidadRepositorio, PacienteServicio pacienteServicio, RegistroMetricas registroMetricas, ApplicationEventPublisher publicadorEventos, ReservaPropiedades propiedades) {
+        this(disponibilidadRepositorio, pacienteServicio, registroMetricas, publicadorEventos, propiedades, Clock.systemUTC());
+    }
+
+    RetencionServicio(DisponibilidadRepositorio disponibilidadRepositorio, PacienteServicio pacienteServicio, RegistroMetricas registroMetricas, ApplicationEventPublisher publicadorEventos, ReservaPropiedades propiedades, Clock reloj) {
+        this.disponibilidadRepositorio = disponibilidadRepositorio;
+        this.pacienteServicio = pacienteServicio;
+        this.registroMetricas = registroMetricas;
+        this.publicadorEventos = publicadorEventos;
+        this.duracionRetencion = propiedades.getDuracionRetencion();
+        this.reloj = reloj;
+        this.rueda = new RuedaTemporizadora<>("retenciones-rueda", propiedades.getResolucionRetenciones(), propiedades.getRanurasRetenciones(), this::expirar);
+        this.rueda.iniciar();
+        registroMetricas.registrarIndicador("retenciones.activas", retenciones::size);
+    }
+
+    /**
+     * Retiene un bloque de disponibilidad libre para un paciente.
+     * Si el mismo paciente ya lo tenía retenido, la retención se renueva.
+     * @param disponibilidadId El UUID del bloque a retener.
+     * @param pacienteId El UUID del paciente.
+     * @return El DTO de la retención con su vencimiento.
+     * @throws RecursoNoEncontradoExcepcion Si el paciente o el bloque no existen.
+     * @throws ConflictoHorarioExcepcion Si el bloque ya está reservado o retenido por otro paciente.
+     * @throws SolicitudInvalidaExcepcion Si el bloque es una sesión dividida en ranuras.
+     */
+    @Transactional(readOnly = true)
+    public RetencionDTO retener(UUID disponibilidadId, UUID pacienteId) {
+        pacienteServicio.obtenerEntidadPacientePorId(pacienteId);
+        Disponibilidad disponibilidad = disponibilidadRepositorio.findById(disponibilidadId)
+                .orElseThrow(() -> new RecursoNoEncontradoExcepcion("Bloque de disponibilidad no encontrado con ID: " + disponibilidadId));
+        if (disponibilidad.getEstaReservado()) {
+            throw new ConflictoHorarioExcepcion("El horario seleccionado ya no se encuentra disponible para el doctor especificado.");
+        }
+        if (disponibilidad.getMinutosRanura() != null) {
+            throw new SolicitudInvalidaExcepcion("Una sesión no puede retenerse completa; reserve directamente una de sus ranuras.");
+        }
+
+        Instant ahora = reloj.instant();
+        Retencion nueva = new Retencion(disponibilidadId, disponibilidad.getDoctor().getId(), pacienteId, ahora.plus(duracionRetencion));
+        retenciones.compute(disponibilidadId, (id, actual) -> {
+            if (actual != null && actual.estaVigente(ahora) && !actual.pacienteId.equals(pacienteId)) {
+                registroMetricas.incrementar("retenciones.conflictos");
+                throw new ConflictoHorarioExcepcion("El horario seleccionado está retenido temporalmente por otro paciente.");
+            }
+            if (actual != null) {
+                rueda.cancelar(actual.entrada);
+            }
+            nueva.entrada = rueda.programar(nueva, duracionRetencion);
+            return nueva;
+        });
+        registroMetricas.incrementar("retenciones.creadas");
+        return nueva.aDTO();
+    }
+
+    /**
+     * Libera de forma anticipada la retención de un paciente sobre un bloque.
+     * @param disponibilidadId El UUID del bloque retenido.
+     * @param pacienteId El UUID del paciente propietario de la retención.
+     * @throws RecursoNoEncontradoExcepcion Si el paciente no tiene una retención vigente sobre el bloque.
+     */
+    public void liberar(UUID disponibilidadId, UUID pacienteId) {
+        Retencion retencion = retenciones.get(disponibilidadId);
+        if (retencion == null || !retencion.pacienteId.equals(pacienteId) || !retenciones.remove(disponibilidadId, retencion)) {
+            throw new RecursoNoEncontradoExcepcion("No existe una retención vigente del paciente sobre el bloque con ID: " + disponibilidadId);
+        }
+        rueda.cancelar(retencion.entrada);
+        registroMetricas.incrementar("retenciones.liberadas");
+        publicadorEventos.publishEvent(new DisponibilidadLiberadaEvento(disponibilidadId));
+    }
+
+    /**
+     * Comprueba que un bloque no esté retenido por un paciente distinto al indicado.
+     * @param disponibilidadId El UUID del bloque.
+     * @param pacienteId El UUID del paciente que quiere reservarlo.
+     * @throws ConflictoHorarioExcepcion Si otro paciente tiene una retención vigente sobre el bloque.
+     */
+    public void verificarDisponibleParaPaciente(UUID disponibilidadId, UUID pacienteId) {
+        Retencion retencion = retenciones.get(disponibilidadId);
+        if (retencion != null && retencion.estaVigente(reloj.instant()) && !retencion.pacienteId.equals(pacienteId)) {
+            registroMetricas.incrementar("retenciones.conflictos");
+            throw new ConflictoHorarioExcepcion("El horario seleccionado está retenido temporalmente por otro paciente.");
+        }
+    }
+
+    /**
+     * Indica si un bloque tiene una retención vigente.
+     * @param disponibilidadId El UUID del bloque.
+     * @return true si el bloque está retenido.
+     */
+    public boolean estaRetenido(UUID disponibilidadId) {
+        Retencion retencion = retenciones.get(disponibilidadId);
+        return retencion != null && retencion.estaVigente(reloj.instant());
+    }
+
+    /**
+     * Descarta la retención de un paciente una vez que su reserva se confirma.
+     * Si hay una transacción activa, la retención se descarta solo tras su confirmación.
+     * @param disponibilidadId El UUID del bloque reservado.
+     * @param pacienteId El UUID del paciente que lo reservó.
+     */
+    public void consumir(UUID disponibilidadId, UUID pacienteId) {
+        TrasConfirmar.ejecutar(() -> descartar(disponibilidadId, pacienteId));
+    }
+
+    @PreDestroy
+    public void detener() {
+        rueda.close();
+    }
+
+    private void descartar(UUID disponibilidadId, UUID pacienteId) {
+        Retencion retencion = retenciones.get(disponibilidadId);
+        if (retencion != null && retencion.pacienteId.equals(pacienteId) && retenciones.remove(disponibilidadId, retencion)) {
+            rueda.cancelar(retencion.entrada);
+        }
+    }
+
+    // Invocado por la rueda: solo elimina la retención si no fue renovada o sustituida entre tanto
+    private void expirar(Retencion retencion) {
+        if (retenciones.remove(retencion.disponibilidadId, retencion)) {
+            registroMetricas.incrementar("retenciones.expiradas");
+            publicadorEventos.publishEvent(new DisponibilidadLiberadaEvento(retencion.disponibilidadId));
+        }
+    }
+
+    /**
+     * Retención en memoria de un bloque para un paciente.
+     */
+    private static final class Retencion {
+        private final UUID disponibilidadId;
+        private final UUID doctorId;
+        private final UUID pacienteId;
+        private final Instant expiraEn;
+        private volatile RuedaTemporizadora.Entrada<Retencion> entrada;
+
+        Retencion(UUID disponibilidadId, UUID doctorId, UUID pacienteId, Instant expiraEn) {
+            this.disponibilidadId = disponibilidadId;
+            this.doctorId = doctorId;
+            this.pacienteId = pacienteId;
+            this.expiraEn = expiraEn;
+        }
+
+        // La rueda expira con la precisión de un tick; el vencimiento exacto se comprueba aquí
+        boolean estaVigente(Instant ahora) {
+            return ahora.isBefore(expiraEn);
+        }
+
+        RetencionDTO aDTO() {
+            return new RetencionDTO(disponibilidadId, doctorId, pacienteId, expiraEn);
+        }
+    }
+}
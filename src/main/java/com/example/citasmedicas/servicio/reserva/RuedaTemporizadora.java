@@ -0,0 +1,148 @@
+package com.example.citasmedicas.servicio.reserva;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Rueda temporizadora con hash (hashed timing wheel) para expirar elementos en memoria.
+ * Cada vencimiento se guarda en la ranura (tick destino mod número de ranuras), de modo que programar
+ * y cancelar cuestan O(1) y cada tick solo recorre una ranura, independientemente del total de elementos.
+ * Los vencimientos que superan una vuelta completa permanecen en su ranura hasta que llega su tick.
+ * La precisión es la resolución de la rueda: un elemento expira como mucho un tick después de su vencimiento.
+ * @param <T> El tipo de elemento que expira.
+ */
+public class RuedaTemporizadora<T> implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RuedaTemporizadora.class);
+
+    private final long resolucionNanos;
+    private final List<Set<Entrada<T>>> ranuras;
+    private final int mascara;
+    private final Consumer<T> alExpirar;
+    private final ScheduledExecutorService reloj;
+    private long tickActual; // Protegido por el monitor de la rueda
+
+    /**
+     * @param nombre Nombre del hilo que hace avanzar la rueda.
+     * @param resolucion Duración de cada tick.
+     * @param numeroRanuras Número de ranuras; se redondea a la siguiente potencia de dos.
+     * @param alExpirar Acción a ejecutar (fuera del cerrojo de la rueda) con cada elemento expirado.
+     */
+    public RuedaTemporizadora(String nombre, Duration resolucion, int numeroRanuras, Consumer<T> alExpirar) {
+        if (resolucion.isZero() || resolucion.isNegative() || numeroRanuras < 1) {
+            throw new IllegalArgumentException("La resolución y el número de ranuras de la rueda deben ser positivos.");
+        }
+        int tamano = Integer.highestOneBit(Math.max(1, numeroRanuras - 1)) << 1;
+        this.resolucionNanos = resolucion.toNanos();
+        this.ranuras = new ArrayList<>(tamano);
+        for (int i = 0; i < tamano; i++) {
+            ranuras.add(new HashSet<>());
+        }
+        this.mascara = tamano - 1;
+        this.alExpirar = alExpirar;
+        this.reloj = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, nombre);
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /**
+     * Arranca el hilo que hace avanzar la rueda un tick por cada resolución.
+     */
+    public void iniciar() {
+        reloj.scheduleAtFixedRate(this::avanzar, resolucionNanos, resolucionNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Programa la expiración de un elemento.
+     * @param elemento El elemento a expirar.
+     * @param retraso El tiempo hasta la expiración.
+     * @return La entrada programada, necesaria para cancelarla.
+     */
+    public synchronized Entrada<T> programar(T elemento, Duration retraso) {
+        long ticks = Math.max(1, (retraso.toNanos() + resolucionNanos - 1) / resolucionNanos);
+        Entrada<T> entrada = new Entrada<>(elemento, tickActual + ticks);
+        ranuras.get((int) (entrada.tickDestino & mascara)).add(entrada);
+        return entrada;
+    }
+
+    /**
+     * Cancela una expiración programada.
+     * @param entrada La entrada devuelta por {@link #programar}.
+     * @return true si la entrada seguía pendiente.
+     */
+    public synchronized boolean cancelar(Entrada<T> entrada) {
+        return ranuras.get((int) (entrada.tickDestino & mascara)).remove(entrada);
+    }
+
+    /**
+     * @return El número de expiraciones pendientes.
+     */
+    public synchronized int pendientes() {
+        int total = 0;
+        for (Set<Entrada<T>> ranura : ranuras) {
+            total += ranura.size();
+        }
+        return total;
+    }
+
+    /**
+     * Avanza la rueda un tick y ejecuta la acción de expiración sobre los elementos vencidos.
+     */
+    void avanzar() {
+        List<T> expirados = new ArrayList<>();
+        synchronized (this) {
+            tickActual++;
+            Iterator<Entrada<T>> iterador = ranuras.get((int) (tickActual & mascara)).iterator();
+            while (iterador.hasNext()) {
+                Entrada<T> entrada = iterador.next();
+                if (entrada.tickDestino <= tickActual) {
+                    iterador.remove();
+                    expirados.add(entrada.elemento);
+                }
+            }
+        }
+        for (T elemento : expirados) {
+            try {
+                alExpirar.accept(elemento);
+            } catch (RuntimeException e) {
+                // Un fallo en la acción no debe detener la rueda para el resto de elementos
+                log.error("Error al procesar un elemento expirado de la rueda temporizadora", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        reloj.shutdownNow();
+    }
+
+    /**
+     * Expiración programada en la rueda. Se compara por identidad.
+     */
+    public static final class Entrada<T> {
+        private final T elemento;
+        private final long tickDestino;
+
+        private Entrada(T elemento, long tickDestino) {
+            this.elemento = elemento;
+            this.tickDestino = tickDestino;
+        }
+
+        public T getElemento() {
+            return elemento;
+        }
+    }
+}
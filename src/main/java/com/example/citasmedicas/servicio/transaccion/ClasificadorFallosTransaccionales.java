@@ -0,0 +1,35 @@
+package com.example.citasmedicas.servicio.transaccion;
+
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.Set;
+
+/**
+ * Clasifica las excepciones de acceso a datos según si la transacción puede repetirse con seguridad.
+ * Se basa en el SQLState de la SQLException original, que se conserva en la cadena de causas
+ * tras la traducción de excepciones de Hibernate y Spring.
+ */
+@Component
+public class ClasificadorFallosTransaccionales {
+
+    // 40001: serialization_failure, 40P01: deadlock_detected (PostgreSQL)
+    private static final Set<String> ESTADOS_REINTENTABLES = Set.of("40001", "40P01");
+
+    /**
+     * Indica si la excepción se debe a un fallo de serialización o a un interbloqueo.
+     * @param error La excepción lanzada por la transacción.
+     * @return true si la transacción completa puede repetirse.
+     */
+    public boolean esReintentable(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa instanceof SQLException sqlException && ESTADOS_REINTENTABLES.contains(sqlException.getSQLState())) {
+                return true;
+            }
+            if (causa.getCause() == causa) {
+                break;
+            }
+        }
+        return false;
+    }
+}
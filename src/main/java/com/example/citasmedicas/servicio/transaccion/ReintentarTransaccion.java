@@ -0,0 +1,19 @@
+package com.example.citasmedicas.servicio.transaccion;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca un método transaccional de escritura cuya transacción completa puede repetirse
+ * cuando la base de datos la aborta por un fallo de serialización o un interbloqueo.
+ * Solo tiene efecto cuando el método abre su propia transacción; si ya participa en una,
+ * la decisión de reintentar corresponde a la transacción externa.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReintentarTransaccion {
+}
@@ -0,0 +1,83 @@
+package com.example.citasmedicas.servicio.transaccion;
+
+import com.example.citasmedicas.config.ReintentoPropiedades;
+import com.example.citasmedicas.excepciones.ContencionTransaccionalExcepcion;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aspecto que repite la transacción completa de los métodos anotados con {@link ReintentarTransaccion}
+ * cuando la base de datos la aborta por un fallo de serialización (40001) o un interbloqueo (40P01).
+ * Se ejecuta por fuera del interceptor de @Transactional, de modo que cada intento abre y confirma
+ * su propia transacción. Entre intentos espera un retroceso exponencial con jitter completo,
+ * acotado por un número máximo de intentos y un presupuesto de tiempo total.
+ */
+@Aspect
+@Component
+@Order(0) // Precede al interceptor transaccional (Ordered.LOWEST_PRECEDENCE)
+public class ReintentoTransaccionalAspecto {
+
+    private final ClasificadorFallosTransaccionales clasificador;
+    private final RegistroMetricas registroMetricas;
+    private final ReintentoPropiedades propiedades;
+
+    public ReintentoTransaccionalAspecto(ClasificadorFallosTransaccionales clasificador, RegistroMetricas registroMetricas, ReintentoPropiedades propiedades) {
+        this.clasificador = clasificador;
+        this.registroMetricas = registroMetricas;
+        this.propiedades = propiedades;
+    }
+
+    @Around("@annotation(com.example.citasmedicas.servicio.transaccion.ReintentarTransaccion)")
+    public Object reintentar(ProceedingJoinPoint puntoUnion) throws Throwable {
+        // Dentro de una transacción ya abierta solo la transacción externa puede repetirse
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return puntoUnion.proceed();
+        }
+
+        String operacion = puntoUnion.getSignature().getDeclaringType().getSimpleName() + "." + puntoUnion.getSignature().getName();
+        long limite = System.nanoTime() + propiedades.getPresupuesto().toNanos();
+
+        for (int intento = 1; ; intento++) {
+            try {
+                Object resultado = puntoUnion.proceed();
+                if (intento > 1) {
+                    registroMetricas.incrementar("transacciones.reintentos.exitos");
+                }
+                return resultado;
+            } catch (Throwable error) {
+                if (!clasificador.esReintentable(error)) {
+                    throw error;
+                }
+                registroMetricas.incrementar("transacciones.contencion." + operacion);
+
+                long espera = calcularEspera(intento);
+                if (intento >= propiedades.getMaxIntentos() || System.nanoTime() + espera > limite) {
+                    registroMetricas.incrementar("transacciones.reintentos.agotados");
+                    throw new ContencionTransaccionalExcepcion(
+                            "La operación no pudo completarse por alta concurrencia. Inténtelo de nuevo en unos instantes.", error);
+                }
+
+                registroMetricas.incrementar("transacciones.reintentos");
+                TimeUnit.NANOSECONDS.sleep(espera);
+            }
+        }
+    }
+
+    // Jitter completo: espera aleatoria entre 0 y min(esperaMaxima, esperaInicial * 2^(intento - 1))
+    long calcularEspera(int intento) {
+        long base = propiedades.getEsperaInicial().toNanos();
+        long maxima = propiedades.getEsperaMaxima().toNanos();
+        // El desplazamiento se limita para no desbordar el long en intentos muy altos
+        int desplazamiento = Math.min(intento - 1, Math.max(0, Long.numberOfLeadingZeros(base) - 2));
+        long techo = Math.min(maxima, base << desplazamiento);
+        return techo <= 0 ? 0 : ThreadLocalRandom.current().nextLong(techo + 1);
+    }
+}
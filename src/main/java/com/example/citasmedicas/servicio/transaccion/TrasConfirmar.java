@@ -0,0 +1,31 @@
+package com.example.citasmedicas.servicio.transaccion;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Aplaza acciones sobre estado en memoria (índices, cachés, colas) hasta que la transacción en curso se confirma,
+ * de modo que una transacción revertida no deja cambios que la base de datos no tiene.
+ */
+public final class TrasConfirmar {
+
+    private TrasConfirmar() {
+    }
+
+    /**
+     * Ejecuta una acción tras confirmarse la transacción activa, o de inmediato si no hay ninguna.
+     * @param accion La acción a ejecutar.
+     */
+    public static void ejecutar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+}
@@ -6,10 +6,13 @@ import com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion;
 import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
 import com.example.citasmedicas.dto.CitaDTO;
 import com.example.citasmedicas.dto.CrearCitaDTO;
+import com.example.citasmedicas.dto.CrearSerieCitasDTO;
 import com.example.citasmedicas.modelo.entidad.*;
 import com.example.citasmedicas.mapeador.CitaMapeador;
 import com.example.citasmedicas.repositorio.CitaRepositorio;
-import com.example.citasmedicas.servicio.notificacion.EstrategiaNotificacion;
+import com.example.citasmedicas.servicio.notificacion.BandejaSalidaNotificaciones;
+import com.example.citasmedicas.servicio.reserva.CoordinadorReservas;
+import com.example.citasmedicas.servicio.reserva.RetencionServicio;
 import com.example.citasmedicas.util.TestDataBuilder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -32,7 +35,9 @@ import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*; // Importa todas las aserciones estáticas
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*; // Importa todas las utilidades de Mockito
 
 /**
@@ -53,7 +58,11 @@ class CitaServicioTest {
     @Mock
     private CitaMapeador citaMapeador;
     @Mock
-    private EstrategiaNotificacion estrategiaNotificacion; // Mock para la estrategia de notificación
+    private BandejaSalidaNotificaciones bandejaSalidaNotificaciones; // Mock para la bandeja de salida de notificaciones
+    @Mock
+    private CoordinadorReservas coordinadorReservas;
+    @Mock
+    private RetencionServicio retencionServicio;
 
     @InjectMocks // Inyecta los mocks en la instancia de CitaServicio
     private CitaServicio citaServicio;
@@ -129,12 +138,11 @@ class CitaServicioTest {
         // Configurar mocks para agendar cita exitosamente
         when(doctorServicio.obtenerEntidadDoctorPorId(doctorId)).thenReturn(doctor);
         when(pacienteServicio.obtenerEntidadPacientePorId(pacienteId)).thenReturn(paciente);
-        when(disponibilidadServicio.obtenerEntidadDisponibilidadDisponiblePorId(disponibilidadId)).thenReturn(disponibilidad);
+        when(coordinadorReservas.reservarDisponibilidad(disponibilidadId, doctorId)).thenReturn(disponibilidad);
         when(citaMapeador.aEntidad(crearCitaDTO)).thenReturn(cita);
         when(citaRepositorio.save(any(Cita.class))).thenReturn(cita);
         when(citaMapeador.aDTO(cita)).thenReturn(citaDTO);
-        doNothing().when(disponibilidadServicio).reservarDisponibilidad(any(Disponibilidad.class));
-        doNothing().when(estrategiaNotificacion).enviarNotificacion(anyString(), anyString(), anyString());
+        doNothing().when(bandejaSalidaNotificaciones).encolar(anyString(), anyString(), anyString());
 
         // Ejecutar el método a probar
         CitaDTO resultado = citaServicio.agendarCita(crearCitaDTO);
@@ -150,16 +158,46 @@ class CitaServicioTest {
         // Verificar interacciones de mocks
         verify(doctorServicio, times(1)).obtenerEntidadDoctorPorId(doctorId);
         verify(pacienteServicio, times(1)).obtenerEntidadPacientePorId(pacienteId);
-        verify(disponibilidadServicio, times(1)).obtenerEntidadDisponibilidadDisponiblePorId(disponibilidadId);
-        verify(disponibilidadServicio, times(1)).reservarDisponibilidad(disponibilidad);
+        verify(coordinadorReservas, times(1)).reservarDisponibilidad(disponibilidadId, doctorId);
         verify(citaRepositorio, times(1)).save(citaArgumentCaptor.capture());
-        verify(estrategiaNotificacion, times(1)).enviarNotificacion(anyString(), anyString(), anyString());
+        verify(bandejaSalidaNotificaciones, times(1)).encolar(anyString(), anyString(), anyString());
 
         // Verificar el estado de la cita capturada
         assertEquals(EstadoCita.CONFIRMADA, citaArgumentCaptor.getValue().getEstado());
         assertEquals(doctor, citaArgumentCaptor.getValue().getDoctor());
     }
 
+    @Test
+    @DisplayName("Debería agendar una serie de citas con un único guardado por lotes y una única notificación")
+    void agendarSerieCitas_deberiaGuardarEnLoteYNotificarUnaVez() {
+        Disponibilidad segundaDisponibilidad = TestDataBuilder.unaDisponibilidad()
+                .id(UUID.randomUUID())
+                .doctor(doctor)
+                .horaInicio(disponibilidad.getHoraInicio().plusWeeks(1))
+                .horaFin(disponibilidad.getHoraFin().plusWeeks(1))
+                .build();
+        List<UUID> ids = List.of(disponibilidadId, segundaDisponibilidad.getId());
+        CrearSerieCitasDTO serieDTO = new CrearSerieCitasDTO(doctorId, pacienteId, ids, "Terapia semanal");
+
+        when(doctorServicio.obtenerEntidadDoctorPorId(doctorId)).thenReturn(doctor);
+        when(pacienteServicio.obtenerEntidadPacientePorId(pacienteId)).thenReturn(paciente);
+        when(coordinadorReservas.reservarSerie(ids, doctorId)).thenReturn(List.of(disponibilidad, segundaDisponibilidad));
+        when(citaRepositorio.saveAll(anyList())).thenAnswer(invocacion -> invocacion.getArgument(0));
+        when(citaMapeador.aListaDTO(anyList())).thenReturn(List.of(citaDTO, citaDTO));
+
+        List<CitaDTO> resultado = citaServicio.agendarSerieCitas(serieDTO);
+
+        assertEquals(2, resultado.size());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Cita>> citasCaptor = ArgumentCaptor.forClass(List.class);
+        verify(citaRepositorio, times(1)).saveAll(citasCaptor.capture());
+        verify(citaRepositorio, never()).save(any(Cita.class));
+        assertEquals(2, citasCaptor.getValue().size());
+        assertEquals(EstadoCita.CONFIRMADA, citasCaptor.getValue().get(0).getEstado());
+        assertEquals(segundaDisponibilidad, citasCaptor.getValue().get(1).getDisponibilidad());
+        verify(bandejaSalidaNotificaciones, times(1)).encolar(eq("maria@example.com"), anyString(), anyString());
+    }
+
     @Test
     @DisplayName("No debería agendar una cita cuando el doctor no está disponible") //
     void test_shouldNotBookAppointment_whenDoctorIsNotAvailable() {
@@ -175,7 +213,7 @@ class CitaServicioTest {
         assertEquals("Doctor no encontrado", excepcion.getMessage());
         // Verificar que no se llamaron métodos posteriores
         verify(pacienteServicio, never()).obtenerEntidadPacientePorId(any(UUID.class));
-        verify(disponibilidadServicio, never()).obtenerEntidadDisponibilidadDisponiblePorId(any(UUID.class));
+        verify(coordinadorReservas, never()).reservarDisponibilidad(any(UUID.class), any(UUID.class));
         verify(citaRepositorio, never()).save(any(Cita.class));
     }
 
@@ -185,8 +223,9 @@ class CitaServicioTest {
         // Configurar la disponibilidad como ya reservada
         when(doctorServicio.obtenerEntidadDoctorPorId(doctorId)).thenReturn(doctor);
         when(pacienteServicio.obtenerEntidadPacientePorId(pacienteId)).thenReturn(paciente);
-        // Simular que la disponibilidad no se encuentra porque ya está reservada
-        when(disponibilidadServicio.obtenerEntidadDisponibilidadDisponiblePorId(disponibilidadId)).thenThrow(new RecursoNoEncontradoExcepcion("Bloque de disponibilidad no encontrado o ya reservado"));
+        // Simular que la actualización condicional no afecta filas porque el bloque ya está reservado
+        when(coordinadorReservas.reservarDisponibilidad(disponibilidadId, doctorId))
+                .thenThrow(new ConflictoHorarioExcepcion("El horario seleccionado ya no se encuentra disponible para el doctor especificado."));
 
         // Ejecutar y esperar excepción de conflicto de horario
         ConflictoHorarioExcepcion excepcion = assertThrows(ConflictoHorarioExcepcion.class, () ->
@@ -194,10 +233,24 @@ class CitaServicioTest {
         );
 
         // Aserciones
-        // La excepción ahora viene de la validación interna de la disponibilidad
+        // La excepción ahora viene del reclamo atómico del bloque
         assertEquals("El horario seleccionado ya no se encuentra disponible para el doctor especificado.", excepcion.getMessage()); // Ajustar si el mensaje cambia
-        verify(disponibilidadServicio, never()).reservarDisponibilidad(any(Disponibilidad.class)); // No debería intentar reservar
         verify(citaRepositorio, never()).save(any(Cita.class)); // No debería intentar guardar la cita
+        verify(bandejaSalidaNotificaciones, never()).encolar(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("No debería agendar una cita cuando otro paciente retiene el horario")
+    void agendarCita_deberiaLanzarConflicto_cuandoOtroPacienteRetieneElHorario() {
+        when(doctorServicio.obtenerEntidadDoctorPorId(doctorId)).thenReturn(doctor);
+        when(pacienteServicio.obtenerEntidadPacientePorId(pacienteId)).thenReturn(paciente);
+        doThrow(new ConflictoHorarioExcepcion("El horario seleccionado está retenido temporalmente por otro paciente."))
+                .when(retencionServicio).verificarDisponibleParaPaciente(disponibilidadId, pacienteId);
+
+        assertThrows(ConflictoHorarioExcepcion.class, () -> citaServicio.agendarCita(crearCitaDTO));
+
+        verify(coordinadorReservas, never()).reservarDisponibilidad(any(UUID.class), any(UUID.class));
+        verify(citaRepositorio, never()).save(any(Cita.class));
     }
 
     @Test
@@ -206,7 +259,7 @@ class CitaServicioTest {
         // Configurar mocks
         when(doctorServicio.obtenerEntidadDoctorPorId(doctorId)).thenReturn(doctor);
         when(pacienteServicio.obtenerEntidadPacientePorId(pacienteId)).thenReturn(paciente);
-        when(disponibilidadServicio.obtenerEntidadDisponibilidadDisponiblePorId(disponibilidadId))
+        when(coordinadorReservas.reservarDisponibilidad(disponibilidadId, doctorId))
                 .thenThrow(new RecursoNoEncontradoExcepcion("Bloque de disponibilidad no encontrado"));
 
         // Ejecutar y esperar la excepción
@@ -222,14 +275,11 @@ class CitaServicioTest {
     @Test
     @DisplayName("No debería agendar una cita cuando la disponibilidad no pertenece al doctor")
     void test_shouldNotBookAppointment_whenAvailabilityDoesNotBelongToDoctor() {
-        // Simular que la disponibilidad pertenece a otro doctor
-        Doctor otroDoctor = TestDataBuilder.unDoctor().build(); // Usando el builder
-        disponibilidad.setDoctor(otroDoctor);
-
         when(doctorServicio.obtenerEntidadDoctorPorId(doctorId)).thenReturn(doctor); // Se pide el doctor original
         when(pacienteServicio.obtenerEntidadPacientePorId(pacienteId)).thenReturn(paciente);
-        // El servicio de disponibilidad devuelve la entidad, la validación está en CitaServicio
-        when(disponibilidadServicio.obtenerEntidadDisponibilidadDisponiblePorId(disponibilidadId)).thenReturn(disponibilidad);
+        // El reclamo condicional filtra por doctor, así que un bloque de otro doctor no se actualiza
+        when(coordinadorReservas.reservarDisponibilidad(disponibilidadId, doctorId))
+                .thenThrow(new ConflictoHorarioExcepcion("El horario seleccionado ya no se encuentra disponible para el doctor especificado."));
 
         // Ejecutar y esperar excepción de conflicto
         ConflictoHorarioExcepcion excepcion = assertThrows(ConflictoHorarioExcepcion.class, () ->
@@ -238,7 +288,6 @@ class CitaServicioTest {
 
         // Aserciones
         assertEquals("El horario seleccionado ya no se encuentra disponible para el doctor especificado.", excepcion.getMessage());
-        verify(disponibilidadServicio, never()).reservarDisponibilidad(any(Disponibilidad.class));
         verify(citaRepositorio, never()).save(any(Cita.class));
     }
 
@@ -251,11 +300,11 @@ class CitaServicioTest {
         cita.setEstado(EstadoCita.CONFIRMADA); // Asegurar que el estado inicial es CONFIRMADA
         disponibilidad.setEstaReservado(true); // Asegurar que la disponibilidad está reservada
 
-        when(citaRepositorio.findById(citaId)).thenReturn(Optional.of(cita));
+        when(citaRepositorio.buscarParaCancelacion(citaId)).thenReturn(Optional.of(cita));
         when(citaRepositorio.save(any(Cita.class))).thenReturn(cita);
-        doNothing().when(disponibilidadServicio).liberarDisponibilidad(any(Disponibilidad.class));
+        when(disponibilidadServicio.liberarDisponibilidad(disponibilidad.getId())).thenReturn(true);
         when(citaMapeador.aDTO(cita)).thenReturn(citaDTO); // Mockear el mapeo de retorno
-        doNothing().when(estrategiaNotificacion).enviarNotificacion(anyString(), anyString(), anyString());
+        doNothing().when(bandejaSalidaNotificaciones).encolar(anyString(), anyString(), anyString());
 
         // Ejecutar
         CitaDTO resultado = citaServicio.cancelarCita(citaId);
@@ -263,10 +312,10 @@ class CitaServicioTest {
         // Aserciones
         assertNotNull(resultado);
         assertEquals(EstadoCita.CANCELADA, cita.getEstado()); // Verificar que el estado cambió a CANCELADA
-        assertFalse(disponibilidad.getEstaReservado()); // Verificar que la disponibilidad se liberó
         verify(citaRepositorio, times(1)).save(cita);
-        verify(disponibilidadServicio, times(1)).liberarDisponibilidad(disponibilidad);
-        verify(estrategiaNotificacion, times(1)).enviarNotificacion(anyString(), anyString(), anyString());
+        verify(disponibilidadServicio, times(1)).liberarDisponibilidad(disponibilidad.getId()); // Liberación por actualización directa
+        verify(citaRepositorio, never()).findById(any(UUID.class)); // La cita se carga con su plan de carga
+        verify(bandejaSalidaNotificaciones, times(1)).encolar(anyString(), anyString(), anyString());
     }
 
     @Test
@@ -278,7 +327,7 @@ class CitaServicioTest {
         cita.setEstado(EstadoCita.CONFIRMADA); // Asegurar que el estado inicial es CONFIRMADA
         disponibilidad.setEstaReservado(true);
 
-        when(citaRepositorio.findById(citaId)).thenReturn(Optional.of(cita));
+        when(citaRepositorio.buscarParaCancelacion(citaId)).thenReturn(Optional.of(cita));
 
         // Ejecutar y esperar excepción de acceso denegado
         AccesoDenegadoExcepcion excepcion = assertThrows(AccesoDenegadoExcepcion.class, () ->
@@ -292,15 +341,15 @@ class CitaServicioTest {
         assertTrue(disponibilidad.getEstaReservado()); // La disponibilidad no debería haberse liberado
 
         verify(citaRepositorio, never()).save(any(Cita.class)); // No debería intentar guardar la cita
-        verify(disponibilidadServicio, never()).liberarDisponibilidad(any(Disponibilidad.class)); // Ni la disponibilidad
-        verify(estrategiaNotificacion, never()).enviarNotificacion(anyString(), anyString(), anyString());
+        verify(disponibilidadServicio, never()).liberarDisponibilidad(any(UUID.class)); // Ni la disponibilidad
+        verify(bandejaSalidaNotificaciones, never()).encolar(anyString(), anyString(), anyString());
     }
 
     @Test
     @DisplayName("No debería cancelar una cita que ya está cancelada")
     void test_shouldNotCancelAppointment_whenAlreadyCancelled() {
         cita.setEstado(EstadoCita.CANCELADA); // Cita ya está cancelada
-        when(citaRepositorio.findById(citaId)).thenReturn(Optional.of(cita));
+        when(citaRepositorio.buscarParaCancelacion(citaId)).thenReturn(Optional.of(cita));
 
         // Ejecutar y esperar excepción de solicitud inválida
         SolicitudInvalidaExcepcion excepcion = assertThrows(SolicitudInvalidaExcepcion.class, () ->
@@ -310,8 +359,8 @@ class CitaServicioTest {
         // Aserciones
         assertEquals("La cita ya está cancelada.", excepcion.getMessage());
         verify(citaRepositorio, never()).save(any(Cita.class));
-        verify(disponibilidadServicio, never()).liberarDisponibilidad(any(Disponibilidad.class));
-        verify(estrategiaNotificacion, never()).enviarNotificacion(anyString(), anyString(), anyString());
+        verify(disponibilidadServicio, never()).liberarDisponibilidad(any(UUID.class));
+        verify(bandejaSalidaNotificaciones, never()).encolar(anyString(), anyString(), anyString());
     }
 
     @Test
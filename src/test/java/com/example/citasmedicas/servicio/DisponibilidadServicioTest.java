@@ -0,0 +1,231 @@
+package com.example.citasmedicas.servicio;
+
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
+import com.example.citasmedicas.dto.CrearDisponibilidadDTO;
+import com.example.citasmedicas.dto.DisponibilidadDTO;
+import com.example.citasmedicas.excepciones.ConflictoHorarioExcepcion;
+import com.example.citasmedicas.excepciones.RecursoNoEncontradoExcepcion;
+import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
+import com.example.citasmedicas.mapeador.DisponibilidadMapeador;
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import com.example.citasmedicas.modelo.entidad.Doctor;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.agenda.CacheDisponibilidad;
+import com.example.citasmedicas.servicio.agenda.IndiceIntervalosDisponibilidad;
+import com.example.citasmedicas.servicio.agenda.RanurasVirtuales;
+import com.example.citasmedicas.servicio.evento.DisponibilidadLiberadaEvento;
+import com.example.citasmedicas.servicio.reserva.RetencionServicio;
+import com.example.citasmedicas.util.TestDataBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Clase de pruebas unitarias para DisponibilidadServicio.
+ * Verifica el reclamo atómico de bloques de disponibilidad, individuales, en serie y de ranuras virtuales.
+ */
+@ExtendWith(MockitoExtension.class)
+class DisponibilidadServicioTest {
+
+    @Mock
+    private DisponibilidadRepositorio disponibilidadRepositorio;
+    @Mock
+    private DisponibilidadMapeador disponibilidadMapeador;
+    @Mock
+    private DoctorServicio doctorServicio;
+    @Mock
+    private RetencionServicio retencionServicio;
+    @Mock
+    private ApplicationEventPublisher publicadorEventos;
+    @Mock
+    private IndiceIntervalosDisponibilidad indiceIntervalos;
+    @Mock
+    private CacheDisponibilidad cacheDisponibilidad;
+
+    @InjectMocks
+    private DisponibilidadServicio disponibilidadServicio;
+
+    private UUID doctorId;
+    private UUID disponibilidadId;
+    private Disponibilidad disponibilidad;
+
+    @BeforeEach
+    void setUp() {
+        doctorId = UUID.randomUUID();
+        disponibilidadId = UUID.randomUUID();
+        Doctor doctor = TestDataBuilder.unDoctor().id(doctorId).build();
+        disponibilidad = TestDataBuilder.unaDisponibilidad()
+                .id(disponibilidadId)
+                .doctor(doctor)
+                .estaReservado(false)
+                .build();
+    }
+
+    @Test
+    @DisplayName("Debería reclamar el bloque cuando la actualización condicional afecta una fila")
+    void reclamarDisponibilidad_deberiaReservar_cuandoGanaLaActualizacion() {
+        when(disponibilidadRepositorio.reclamarSiDisponible(eq(disponibilidadId), eq(doctorId), any(Instant.class))).thenReturn(1);
+        when(disponibilidadRepositorio.findById(disponibilidadId)).thenReturn(Optional.of(disponibilidad));
+
+        Disponibilidad resultado = disponibilidadServicio.reclamarDisponibilidad(disponibilidadId, doctorId);
+
+        assertSame(disponibilidad, resultado);
+        assertTrue(resultado.getEstaReservado());
+        verify(disponibilidadRepositorio, never()).existsById(any(UUID.class));
+    }
+
+    @Test
+    @DisplayName("Debería lanzar ConflictoHorarioExcepcion cuando otra transacción ganó el bloque")
+    void reclamarDisponibilidad_deberiaLanzarConflicto_cuandoNoAfectaFilas() {
+        when(disponibilidadRepositorio.reclamarSiDisponible(eq(disponibilidadId), eq(doctorId), any(Instant.class))).thenReturn(0);
+        when(disponibilidadRepositorio.existsById(disponibilidadId)).thenReturn(true);
+
+        assertThrows(ConflictoHorarioExcepcion.class, () ->
+                disponibilidadServicio.reclamarDisponibilidad(disponibilidadId, doctorId));
+        verify(disponibilidadRepositorio, never()).findById(any(UUID.class));
+    }
+
+    @Test
+    @DisplayName("Debería lanzar RecursoNoEncontradoExcepcion cuando el bloque no existe")
+    void reclamarDisponibilidad_deberiaLanzarNoEncontrado_cuandoNoExiste() {
+        when(disponibilidadRepositorio.reclamarSiDisponible(eq(disponibilidadId), eq(doctorId), any(Instant.class))).thenReturn(0);
+        when(disponibilidadRepositorio.existsById(disponibilidadId)).thenReturn(false);
+
+        assertThrows(RecursoNoEncontradoExcepcion.class, () ->
+                disponibilidadServicio.reclamarDisponibilidad(disponibilidadId, doctorId));
+    }
+
+    @Test
+    @DisplayName("Debería materializar como bloque reservado la ranura virtual de una sesión")
+    void reclamarDisponibilidad_deberiaMaterializarRanura_cuandoEsVirtual() {
+        UUID sesionId = UUID.randomUUID();
+        LocalDateTime inicioSesion = LocalDate.now().plusDays(1).atTime(9, 0);
+        UUID ranuraId = RanurasVirtuales.idRanura(sesionId, 1);
+        when(disponibilidadRepositorio.reclamarSiDisponible(eq(ranuraId), eq(doctorId), any(Instant.class))).thenReturn(0);
+        when(disponibilidadRepositorio.existsById(ranuraId)).thenReturn(false);
+        when(disponibilidadRepositorio.buscarSesionesEnRango(eq(doctorId), eq(RanurasVirtuales.idSesionDesde(ranuraId)),
+                eq(RanurasVirtuales.idSesionHasta(ranuraId)), any(LocalDateTime.class)))
+                .thenReturn(List.of(new BloqueHorarioDTO(sesionId, inicioSesion, inicioSesion.plusHours(2), false, 30, null)));
+        when(doctorServicio.obtenerEntidadDoctorPorId(doctorId)).thenReturn(disponibilidad.getDoctor());
+        when(disponibilidadRepositorio.insertar(any(Disponibilidad.class))).thenAnswer(invocacion -> invocacion.getArgument(0));
+
+        Disponibilidad resultado = disponibilidadServicio.reclamarDisponibilidad(ranuraId, doctorId);
+
+        assertEquals(ranuraId, resultado.getId());
+        assertEquals(sesionId, resultado.getBloquePadreId());
+        assertEquals(inicioSesion.plusMinutes(30), resultado.getHoraInicio());
+        assertEquals(inicioSesion.plusMinutes(60), resultado.getHoraFin());
+        assertTrue(resultado.getEstaReservado());
+    }
+
+    @Test
+    @DisplayName("Debería lanzar ConflictoHorarioExcepcion cuando otra reserva materializó antes la ranura")
+    void reclamarDisponibilidad_deberiaLanzarConflicto_cuandoLaRanuraYaSeMaterializo() {
+        UUID sesionId = UUID.randomUUID();
+        LocalDateTime inicioSesion = LocalDate.now().plusDays(1).atTime(9, 0);
+        UUID ranuraId = RanurasVirtuales.idRanura(sesionId, 0);
+        when(disponibilidadRepositorio.reclamarSiDisponible(eq(ranuraId), eq(doctorId), any(Instant.class))).thenReturn(0);
+        when(disponibilidadRepositorio.existsById(ranuraId)).thenReturn(false);
+        when(disponibilidadRepositorio.buscarSesionesEnRango(eq(doctorId), any(UUID.class), any(UUID.class), any(LocalDateTime.class)))
+                .thenReturn(List.of(new BloqueHorarioDTO(sesionId, inicioSesion, inicioSesion.plusHours(1), false, 30, null)));
+        when(doctorServicio.obtenerEntidadDoctorPorId(doctorId)).thenReturn(disponibilidad.getDoctor());
+        // El INSERT de la ranura choca con la clave primaria de la ya materializada
+        when(disponibilidadRepositorio.insertar(any(Disponibilidad.class))).thenThrow(new DataIntegrityViolationException("clave duplicada"));
+
+        assertThrows(ConflictoHorarioExcepcion.class, () ->
+                disponibilidadServicio.reclamarDisponibilidad(ranuraId, doctorId));
+        verify(publicadorEventos, never()).publishEvent(any());
+    }
+
+    @Test
+    @DisplayName("Debería bloquear la serie en orden de ID y reservarla con una única actualización")
+    void reclamarDisponibilidades_deberiaReservarTodos_cuandoEstanLibres() {
+        Disponibilidad posterior = TestDataBuilder.unaDisponibilidad()
+                .id(UUID.randomUUID())
+                .doctor(disponibilidad.getDoctor())
+                .horaInicio(disponibilidad.getHoraInicio().plusWeeks(1))
+                .horaFin(disponibilidad.getHoraFin().plusWeeks(1))
+                .estaReservado(false)
+                .build();
+        List<UUID> ids = List.of(posterior.getId(), disponibilidadId);
+        when(disponibilidadRepositorio.bloquearPorIdsOrdenados(new TreeSet<>(ids))).thenReturn(List.of(posterior, disponibilidad));
+
+        List<Disponibilidad> resultado = disponibilidadServicio.reclamarDisponibilidades(ids, doctorId);
+
+        assertEquals(List.of(disponibilidad, posterior), resultado);
+        assertTrue(resultado.stream().allMatch(Disponibilidad::getEstaReservado));
+        verify(disponibilidadRepositorio, times(1)).reservarTodos(eq(new TreeSet<>(ids)), any(Instant.class));
+    }
+
+    @Test
+    @DisplayName("No debería reservar ningún bloque de la serie si uno ya está reservado")
+    void reclamarDisponibilidades_deberiaLanzarConflicto_cuandoUnBloqueEstaReservado() {
+        disponibilidad.setEstaReservado(true);
+        when(disponibilidadRepositorio.bloquearPorIdsOrdenados(anyCollection())).thenReturn(List.of(disponibilidad));
+
+        assertThrows(ConflictoHorarioExcepcion.class, () ->
+                disponibilidadServicio.reclamarDisponibilidades(List.of(disponibilidadId), doctorId));
+        verify(disponibilidadRepositorio, never()).reservarTodos(anyCollection(), any(Instant.class));
+    }
+
+    @Test
+    @DisplayName("Debería rechazar el bloque cuando el índice no ve un solapamiento que sí existe en la base de datos")
+    void crearDisponibilidad_deberiaConfirmarEnBaseDeDatos_cuandoElIndiceNoVeSolapamiento() {
+        Doctor doctor = disponibilidad.getDoctor();
+        CrearDisponibilidadDTO dto = new CrearDisponibilidadDTO(doctorId, disponibilidad.getHoraInicio(), disponibilidad.getHoraFin(), null);
+        when(doctorServicio.obtenerEntidadDoctorPorId(doctorId)).thenReturn(doctor);
+        // Otra instancia creó un bloque en ese horario que el índice de esta aún no conoce
+        when(indiceIntervalos.haySolapamiento(doctorId, dto.getHoraInicio(), dto.getHoraFin())).thenReturn(Optional.of(false));
+        when(disponibilidadRepositorio.existsByDoctorIdAndHoraFinAfterAndHoraInicioBefore(doctorId, dto.getHoraInicio(), dto.getHoraFin())).thenReturn(true);
+
+        assertThrows(SolicitudInvalidaExcepcion.class, () -> disponibilidadServicio.crearDisponibilidad(dto));
+        verify(disponibilidadRepositorio, never()).save(any(Disponibilidad.class));
+    }
+
+    @Test
+    @DisplayName("Debería liberar el bloque con una actualización directa sin cargar la entidad")
+    void liberarDisponibilidad_deberiaUsarActualizacionDirecta() {
+        when(disponibilidadRepositorio.liberarSiReservado(eq(disponibilidadId), any(Instant.class))).thenReturn(1);
+
+        assertTrue(disponibilidadServicio.liberarDisponibilidad(disponibilidadId));
+        verify(publicadorEventos, times(1)).publishEvent(new DisponibilidadLiberadaEvento(disponibilidadId));
+        verify(disponibilidadRepositorio, never()).findById(any(UUID.class));
+        verify(disponibilidadRepositorio, never()).save(any(Disponibilidad.class));
+    }
+
+    @Test
+    @DisplayName("Debería responder desde la caché sin consultar al doctor ni la base de datos cuando todos los días están cacheados")
+    void obtenerDisponibilidadesDoctor_deberiaUsarLaCache_cuandoLosDiasEstanCacheados() {
+        LocalDate dia = disponibilidad.getHoraInicio().toLocalDate();
+        BloqueHorarioDTO bloque = new BloqueHorarioDTO(disponibilidadId, disponibilidad.getHoraInicio(), disponibilidad.getHoraFin(), false);
+        when(cacheDisponibilidad.admite(1L)).thenReturn(true);
+        when(cacheDisponibilidad.obtener(doctorId, dia)).thenReturn(List.of(bloque));
+
+        List<DisponibilidadDTO> resultado = disponibilidadServicio.obtenerDisponibilidadesDoctor(doctorId, dia.atStartOfDay(), dia.atTime(23, 59, 59));
+
+        assertEquals(1, resultado.size());
+        assertEquals(disponibilidadId, resultado.get(0).getId());
+        assertEquals(doctorId, resultado.get(0).getDoctorId());
+        verifyNoInteractions(disponibilidadRepositorio, doctorServicio);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.dto.HorarioLibreDTO;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.EspecialidadServicio;
+import com.example.citasmedicas.servicio.reserva.RetencionServicio;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Clase de pruebas unitarias para BusquedaHorariosServicio.
+ * Verifica la fusión de k vías de los bloques por doctor y los filtros de día y franja horaria.
+ */
+@ExtendWith(MockitoExtension.class)
+class BusquedaHorariosServicioTest {
+
+    @Mock
+    private DisponibilidadRepositorio disponibilidadRepositorio;
+    @Mock
+    private EspecialidadServicio especialidadServicio;
+    @Mock
+    private RetencionServicio retencionServicio;
+
+    private BusquedaHorariosServicio busquedaHorariosServicio;
+    private final UUID doctorA = UUID.randomUUID();
+    private final UUID doctorB = UUID.randomUUID();
+    private LocalDate proximoLunes;
+
+    @BeforeEach
+    void setUp() {
+        busquedaHorariosServicio = new BusquedaHorariosServicio(disponibilidadRepositorio, especialidadServicio, retencionServicio, new AgendaPropiedades());
+        proximoLunes = LocalDate.now(ZoneOffset.UTC).with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+    }
+
+    @Test
+    @DisplayName("Fusionar: intercala los bloques de cada doctor por hora de inicio y se detiene en el límite")
+    void fusionar_variosDoctores_devuelveLosMasProximos() {
+        List<HorarioLibreDTO> ventana = List.of(
+                unHorario(doctorA, proximoLunes.atTime(9, 0)),
+                unHorario(doctorA, proximoLunes.atTime(11, 0)),
+                unHorario(doctorA, proximoLunes.atTime(15, 0)),
+                unHorario(doctorB, proximoLunes.atTime(8, 0)),
+                unHorario(doctorB, proximoLunes.atTime(10, 0)));
+        List<HorarioLibreDTO> resultados = new ArrayList<>();
+
+        BusquedaHorariosServicio.fusionar(ventana, 4, resultados, horario -> true);
+
+        assertEquals(List.of(proximoLunes.atTime(8, 0), proximoLunes.atTime(9, 0), proximoLunes.atTime(10, 0), proximoLunes.atTime(11, 0)),
+                resultados.stream().map(HorarioLibreDTO::horaInicio).toList());
+    }
+
+    @Test
+    @DisplayName("Buscar próximos: aplica los filtros de día y franja y descarta los bloques retenidos")
+    void buscarProximos_conFiltros_devuelveSoloLosQueCumplen() {
+        UUID especialidadId = UUID.randomUUID();
+        HorarioLibreDTO lunesManana = unHorario(doctorA, proximoLunes.atTime(9, 0));
+        HorarioLibreDTO martesManana = unHorario(doctorB, proximoLunes.plusDays(1).atTime(9, 0));
+        HorarioLibreDTO martesRetenido = unHorario(doctorA, proximoLunes.plusDays(1).atTime(10, 0));
+        HorarioLibreDTO martesTarde = unHorario(doctorA, proximoLunes.plusDays(1).atTime(16, 0));
+        when(disponibilidadRepositorio.buscarLibresPorEspecialidad(eq(especialidadId), any(), any()))
+                .thenReturn(List.of(lunesManana, martesRetenido, martesTarde, martesManana));
+        when(retencionServicio.estaRetenido(any())).thenAnswer(invocacion -> martesRetenido.disponibilidadId().equals(invocacion.getArgument(0)));
+
+        List<HorarioLibreDTO> resultados = busquedaHorariosServicio.buscarProximos(especialidadId, 5,
+                Set.of(DayOfWeek.TUESDAY), LocalTime.of(8, 0), LocalTime.of(13, 0));
+
+        assertTrue(resultados.contains(martesManana));
+        assertFalse(resultados.contains(lunesManana));
+        assertFalse(resultados.contains(martesRetenido));
+        assertFalse(resultados.contains(martesTarde));
+        verify(especialidadServicio).obtenerEntidadEspecialidadPorId(especialidadId);
+    }
+
+    private static HorarioLibreDTO unHorario(UUID doctorId, LocalDateTime inicio) {
+        return new HorarioLibreDTO(UUID.randomUUID(), doctorId, "Doctor", inicio, inicio.plusMinutes(30));
+    }
+}
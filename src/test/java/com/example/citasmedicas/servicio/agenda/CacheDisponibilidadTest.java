@@ -0,0 +1,125 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Clase de pruebas unitarias para CacheDisponibilidad.
+ * Verifica la capacidad medida en bloques, la invalidación por día, el descarte de lecturas obsoletas
+ * y la caducidad de las entradas.
+ */
+class CacheDisponibilidadTest {
+
+    private RegistroMetricas registroMetricas;
+    private RelojAjustable reloj;
+    private CacheDisponibilidad cache;
+    private final UUID doctorId = UUID.randomUUID();
+    private final LocalDate lunes = LocalDate.of(2030, 1, 7);
+
+    @BeforeEach
+    void setUp() {
+        AgendaPropiedades propiedades = new AgendaPropiedades();
+        propiedades.setCapacidadCacheBloques(6);
+        propiedades.setVigenciaCache(Duration.ofSeconds(30));
+        registroMetricas = new RegistroMetricas();
+        reloj = new RelojAjustable(Instant.parse("2030-01-06T10:00:00Z"));
+        cache = new CacheDisponibilidad(registroMetricas, propiedades, reloj);
+    }
+
+    @Test
+    @DisplayName("Guardar: al superar la capacidad en bloques se descarta el día menos usado")
+    void guardar_superaCapacidad_desalojaElMenosUsado() {
+        cache.guardar(doctorId, lunes, bloques(lunes, 2), 0);
+        cache.guardar(doctorId, lunes.plusDays(1), bloques(lunes.plusDays(1), 2), 0);
+        cache.obtener(doctorId, lunes); // El lunes pasa a ser el más reciente
+
+        cache.guardar(doctorId, lunes.plusDays(2), bloques(lunes.plusDays(2), 1), 0);
+
+        assertNotNull(cache.obtener(doctorId, lunes));
+        assertNull(cache.obtener(doctorId, lunes.plusDays(1)));
+        assertNotNull(cache.obtener(doctorId, lunes.plusDays(2)));
+        assertEquals(1, registroMetricas.valorContador("agenda.cache.desalojos"));
+        assertEquals(3, registroMetricas.valorContador("agenda.cache.aciertos"));
+        assertEquals(1, registroMetricas.valorContador("agenda.cache.fallos"));
+    }
+
+    @Test
+    @DisplayName("Invalidar: elimina el día del bloque e impide guardar lecturas anteriores a la invalidación")
+    void invalidar_lecturaEnCurso_noGuardaEstadoObsoleto() {
+        long version = cache.version(doctorId);
+        cache.guardar(doctorId, lunes, bloques(lunes, 1), version);
+
+        cache.invalidar(doctorId, lunes.atTime(9, 0));
+        cache.guardar(doctorId, lunes.plusDays(1), bloques(lunes.plusDays(1), 1), version);
+
+        assertNull(cache.obtener(doctorId, lunes));
+        assertNull(cache.obtener(doctorId, lunes.plusDays(1)));
+        cache.guardar(doctorId, lunes, List.of(), cache.version(doctorId));
+        assertEquals(List.of(), cache.obtener(doctorId, lunes));
+    }
+
+    @Test
+    @DisplayName("Obtener: un día guardado deja de servirse al cumplirse su vigencia, aunque nadie lo invalide")
+    void obtener_vigenciaCumplida_trataComoFallo() {
+        cache.guardar(doctorId, lunes, bloques(lunes, 2), cache.version(doctorId));
+
+        reloj.avanzar(Duration.ofSeconds(29));
+        assertNotNull(cache.obtener(doctorId, lunes));
+        reloj.avanzar(Duration.ofSeconds(1));
+        assertNull(cache.obtener(doctorId, lunes));
+
+        assertEquals(1, registroMetricas.valorContador("agenda.cache.caducadas"));
+        // La entrada caducada libera su peso: caben de nuevo seis bloques sin desalojar nada
+        cache.guardar(doctorId, lunes.plusDays(1), bloques(lunes.plusDays(1), 5), cache.version(doctorId));
+        assertEquals(0, registroMetricas.valorContador("agenda.cache.desalojos"));
+    }
+
+    private static List<BloqueHorarioDTO> bloques(LocalDate dia, int cantidad) {
+        return IntStream.range(0, cantidad)
+                .mapToObj(i -> new BloqueHorarioDTO(UUID.randomUUID(), dia.atTime(9 + i, 0), dia.atTime(10 + i, 0), false))
+                .toList();
+    }
+
+    private static final class RelojAjustable extends Clock {
+        private Instant ahora;
+
+        RelojAjustable(Instant ahora) {
+            this.ahora = ahora;
+        }
+
+        void avanzar(Duration duracion) {
+            ahora = ahora.plus(duracion);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zona) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return ahora;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Clase de pruebas unitarias para CalendarioBits.
+ * Verifica el marcado de ranuras, la búsqueda de ranuras libres y la codificación densa.
+ */
+class CalendarioBitsTest {
+
+    private final LocalDate lunes = LocalDate.of(2030, 1, 7);
+
+    @Test
+    @DisplayName("Marcar libre: solo se marcan las ranuras cubiertas por completo")
+    void marcarLibre_bloqueParcial_marcaSoloRanurasCompletas() {
+        CalendarioBits calendario = new CalendarioBits(lunes, 2, 15);
+
+        calendario.marcarLibre(lunes.atTime(9, 10), lunes.atTime(10, 0));
+
+        assertFalse(calendario.estaLibre(0, 36)); // 9:00-9:15 no está cubierta por completo
+        assertTrue(calendario.estaLibre(0, 37));
+        assertTrue(calendario.estaLibre(0, 39));
+        assertFalse(calendario.estaLibre(0, 40));
+        assertEquals(3, calendario.contarLibres(0));
+        assertEquals(0, calendario.contarLibres(1));
+    }
+
+    @Test
+    @DisplayName("Siguiente libre: recorre palabras y días hasta la primera ranura libre")
+    void siguienteLibre_variosDias_encuentraLaPrimera() {
+        CalendarioBits calendario = new CalendarioBits(lunes, 3, 15);
+        calendario.marcarLibre(lunes.plusDays(2).atTime(23, 30), lunes.plusDays(3).atTime(2, 0)); // Se recorta al final del calendario
+
+        int primera = calendario.siguienteLibre(0);
+
+        assertEquals(lunes.plusDays(2).atTime(23, 30), calendario.inicioDe(primera));
+        assertEquals(primera + 1, calendario.siguienteLibre(primera + 1));
+        assertEquals(-1, calendario.siguienteLibre(primera + 2));
+    }
+
+    @Test
+    @DisplayName("Codificación densa: los días se empaquetan sin relleno con el bit menos significativo primero")
+    void aBytes_calendarioDeUnDia_empaquetaLosBits() {
+        CalendarioBits calendario = new CalendarioBits(lunes, 1, 60);
+        calendario.marcarLibre(lunes.atTime(0, 0), lunes.atTime(2, 0));
+        calendario.marcarLibre(lunes.atTime(23, 0), lunes.plusDays(1).atStartOfDay());
+
+        byte[] bytes = calendario.aBytes();
+
+        assertEquals(3, bytes.length);
+        assertEquals(0b0000_0011, bytes[0]);
+        assertEquals(0, bytes[1]);
+        assertEquals((byte) 0b1000_0000, bytes[2]);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.dto.BloqueHorarioDoctorDTO;
+import com.example.citasmedicas.dto.DisponibilidadDTO;
+import com.example.citasmedicas.dto.DisponibilidadesDoctorDTO;
+import com.example.citasmedicas.dto.ResumenDiaDisponibilidadDTO;
+import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.DoctorServicio;
+import com.example.citasmedicas.servicio.reserva.RetencionServicio;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Clase de pruebas unitarias para CalendarioDisponibilidadServicio.
+ * Verifica los límites del resumen por día y que tanto el resumen como la consulta de varios doctores se resuelven con una única consulta.
+ */
+@ExtendWith(MockitoExtension.class)
+class CalendarioDisponibilidadServicioTest {
+
+    @Mock
+    private DisponibilidadRepositorio disponibilidadRepositorio;
+    @Mock
+    private DoctorServicio doctorServicio;
+    @Mock
+    private RetencionServicio retencionServicio;
+
+    private CalendarioDisponibilidadServicio servicio;
+    private final LocalDate desde = LocalDate.of(2030, 1, 1);
+
+    @BeforeEach
+    void setUp() {
+        AgendaPropiedades propiedades = new AgendaPropiedades();
+        propiedades.setMaxDoctoresResumen(2);
+        servicio = new CalendarioDisponibilidadServicio(disponibilidadRepositorio, doctorServicio, retencionServicio, propiedades);
+    }
+
+    @Test
+    @DisplayName("Resumen por día: varios doctores se resuelven con una sola consulta sin IDs repetidos")
+    void obtenerResumenPorDia_variosDoctores_unaConsulta() {
+        UUID doctorA = UUID.randomUUID();
+        UUID doctorB = UUID.randomUUID();
+        List<ResumenDiaDisponibilidadDTO> filas = List.of(new ResumenDiaDisponibilidadDTO(doctorA, desde, 3, 8));
+        when(disponibilidadRepositorio.resumirPorDoctorYDia(Set.of(doctorA, doctorB), desde.atStartOfDay(), desde.plusDays(31).atStartOfDay()))
+                .thenReturn(filas);
+
+        List<ResumenDiaDisponibilidadDTO> resultado = servicio.obtenerResumenPorDia(List.of(doctorA, doctorB, doctorA), desde, 31);
+
+        assertEquals(filas, resultado);
+        verify(disponibilidadRepositorio, times(1)).resumirPorDoctorYDia(any(), any(), any());
+        verifyNoInteractions(doctorServicio);
+    }
+
+    @Test
+    @DisplayName("Resumen por día: rechaza más doctores o días de los permitidos")
+    void obtenerResumenPorDia_fueraDeLimites_lanzaSolicitudInvalida() {
+        List<UUID> tresDoctores = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+
+        assertThrows(SolicitudInvalidaExcepcion.class, () -> servicio.obtenerResumenPorDia(tresDoctores, desde, 31));
+        assertThrows(SolicitudInvalidaExcepcion.class, () -> servicio.obtenerResumenPorDia(List.of(UUID.randomUUID()), desde, 63));
+        verifyNoInteractions(disponibilidadRepositorio);
+    }
+
+    @Test
+    @DisplayName("Varios doctores: agrupa las filas de una sola consulta, expande las sesiones y conserva los doctores sin bloques")
+    void obtenerDisponibilidadesDoctores_agrupaEnUnaPasada() {
+        UUID doctorA = UUID.randomUUID();
+        UUID doctorB = UUID.randomUUID();
+        UUID doctorSinBloques = UUID.randomUUID();
+        LocalDateTime nueve = desde.atTime(9, 0);
+        BloqueHorarioDoctorDTO bloqueA = new BloqueHorarioDoctorDTO(doctorA, UUID.randomUUID(), nueve, nueve.plusMinutes(30), false, null, null);
+        BloqueHorarioDoctorDTO sesionB = new BloqueHorarioDoctorDTO(doctorB, UUID.randomUUID(), nueve, nueve.plusHours(1), false, 20, null);
+        when(disponibilidadRepositorio.buscarBloquesDeDoctores(Set.of(doctorA, doctorB, doctorSinBloques), desde.atStartOfDay(), desde.plusDays(7).atStartOfDay()))
+                .thenReturn(List.of(bloqueA, sesionB));
+        when(retencionServicio.estaRetenido(any(UUID.class))).thenAnswer(invocacion -> bloqueA.id().equals(invocacion.getArgument(0)));
+
+        List<DisponibilidadesDoctorDTO> resultado = servicio.obtenerDisponibilidadesDoctores(List.of(doctorB, doctorSinBloques, doctorA), desde, 7);
+
+        assertEquals(List.of(doctorB, doctorSinBloques, doctorA), resultado.stream().map(DisponibilidadesDoctorDTO::doctorId).toList());
+        assertEquals(3, resultado.get(0).disponibilidades().size());
+        assertTrue(resultado.get(1).disponibilidades().isEmpty());
+        DisponibilidadDTO retenido = resultado.get(2).disponibilidades().get(0);
+        assertEquals(bloqueA.id(), retenido.getId());
+        assertTrue(retenido.getEstaRetenido());
+        verify(disponibilidadRepositorio, times(1)).buscarBloquesDeDoctores(any(), any(), any());
+        verifyNoInteractions(doctorServicio);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
+import com.example.citasmedicas.dto.ResultadoCompactacionDTO;
+import com.example.citasmedicas.excepciones.ConflictoHorarioExcepcion;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.DoctorServicio;
+import com.example.citasmedicas.servicio.reserva.RetencionServicio;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Clase de pruebas unitarias para CompactacionAgendaServicio.
+ * Verifica qué tramos de bloques libres se fusionan en sesiones y que una reserva concurrente deshaga la compactación.
+ */
+@ExtendWith(MockitoExtension.class)
+class CompactacionAgendaServicioTest {
+
+    @Mock
+    private DisponibilidadRepositorio disponibilidadRepositorio;
+    @Mock
+    private DoctorServicio doctorServicio;
+    @Mock
+    private RetencionServicio retencionServicio;
+    @Mock
+    private IndiceIntervalosDisponibilidad indiceIntervalos;
+    @Mock
+    private CacheDisponibilidad cacheDisponibilidad;
+    @Mock
+    private ApplicationEventPublisher publicadorEventos;
+
+    @InjectMocks
+    private CompactacionAgendaServicio compactacionAgendaServicio;
+
+    private final UUID doctorId = UUID.randomUUID();
+    private final LocalDateTime manana = LocalDate.now().plusDays(1).atTime(9, 0);
+
+    @Test
+    @DisplayName("Debería convertir los tramos contiguos de igual duración en sesiones sin cruzar la medianoche ni absorber bloques retenidos")
+    void compactar_deberiaFusionarTramosContiguos() {
+        BloqueHorarioDTO a = bloque(manana, 30);
+        BloqueHorarioDTO b = bloque(manana.plusMinutes(30), 30);
+        BloqueHorarioDTO c = bloque(manana.plusMinutes(60), 30);
+        BloqueHorarioDTO largo = bloque(manana.plusMinutes(90), 60); // Otra duración: su franja no se puede repartir en ranuras de 30
+        BloqueHorarioDTO retenido = bloque(manana.plusMinutes(150), 30);
+        BloqueHorarioDTO d = bloque(manana.plusMinutes(180), 30);
+        BloqueHorarioDTO noche = bloque(manana.toLocalDate().atTime(23, 30), 30);
+        BloqueHorarioDTO siguienteDia = bloque(manana.toLocalDate().plusDays(1).atStartOfDay(), 30);
+        when(disponibilidadRepositorio.buscarLibresCompactables(eq(doctorId), any(LocalDateTime.class)))
+                .thenReturn(List.of(a, b, c, largo, retenido, d, noche, siguienteDia));
+        when(retencionServicio.estaRetenido(any(UUID.class))).thenAnswer(invocacion -> retenido.id().equals(invocacion.getArgument(0)));
+        when(disponibilidadRepositorio.eliminarLibresPorIds(List.of(b.id(), c.id()))).thenReturn(2);
+        when(disponibilidadRepositorio.convertirEnSesionSiLibre(eq(a.id()), eq(c.horaFin()), eq(30), any(Instant.class))).thenReturn(1);
+
+        ResultadoCompactacionDTO resultado = compactacionAgendaServicio.compactar(doctorId);
+
+        assertEquals(1, resultado.bloquesFusionados());
+        assertEquals(2, resultado.bloquesEliminados());
+        verify(disponibilidadRepositorio, times(1)).convertirEnSesionSiLibre(any(), any(), any(), any());
+        verify(indiceIntervalos).registrarCreado(doctorId, new BloqueHorarioDTO(a.id(), a.horaInicio(), c.horaFin(), false, 30, null));
+        verify(cacheDisponibilidad).invalidar(doctorId, a.horaInicio());
+    }
+
+    @Test
+    @DisplayName("Debería lanzar ConflictoHorarioExcepcion si un bloque se reservó durante la compactación")
+    void compactar_deberiaLanzarConflicto_cuandoUnBloqueSeReservo() {
+        BloqueHorarioDTO a = bloque(manana, 30);
+        BloqueHorarioDTO b = bloque(manana.plusMinutes(30), 30);
+        when(disponibilidadRepositorio.buscarLibresCompactables(eq(doctorId), any(LocalDateTime.class))).thenReturn(List.of(a, b));
+        when(disponibilidadRepositorio.eliminarLibresPorIds(List.of(b.id()))).thenReturn(0);
+
+        assertThrows(ConflictoHorarioExcepcion.class, () -> compactacionAgendaServicio.compactar(doctorId));
+        verify(disponibilidadRepositorio, never()).convertirEnSesionSiLibre(any(), any(), any(), any());
+        verifyNoInteractions(publicadorEventos, cacheDisponibilidad);
+    }
+
+    private static BloqueHorarioDTO bloque(LocalDateTime inicio, int minutos) {
+        return new BloqueHorarioDTO(UUID.randomUUID(), inicio, inicio.plusMinutes(minutos), false);
+    }
+}
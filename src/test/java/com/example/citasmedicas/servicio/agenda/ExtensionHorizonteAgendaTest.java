@@ -0,0 +1,88 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.repositorio.PlantillaHorarioRepositorio;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Clase de pruebas unitarias para ExtensionHorizonteAgenda.
+ * Verifica el reparto de doctores en lotes y que un lote fallido no detenga a los demás.
+ */
+@ExtendWith(MockitoExtension.class)
+class ExtensionHorizonteAgendaTest {
+
+    @Mock
+    private PlantillaHorarioRepositorio plantillaHorarioRepositorio;
+    @Mock
+    private PlantillaHorarioServicio plantillaHorarioServicio;
+
+    private RegistroMetricas registroMetricas;
+    private ExtensionHorizonteAgenda extensionHorizonteAgenda;
+
+    @BeforeEach
+    void setUp() {
+        AgendaPropiedades propiedades = new AgendaPropiedades();
+        propiedades.setDoctoresPorLote(2);
+        propiedades.setHilosExtension(2);
+        registroMetricas = new RegistroMetricas();
+        extensionHorizonteAgenda = new ExtensionHorizonteAgenda(plantillaHorarioRepositorio, plantillaHorarioServicio, registroMetricas, propiedades);
+    }
+
+    @AfterEach
+    void tearDown() {
+        extensionHorizonteAgenda.cerrar();
+    }
+
+    @Test
+    @DisplayName("Extender: reparte a los doctores en lotes y suma los bloques creados")
+    void extender_variosDoctores_procesaCadaLote() {
+        List<UUID> doctorIds = Stream.generate(UUID::randomUUID).limit(5).toList();
+        when(plantillaHorarioRepositorio.buscarDoctoresConPlantillasVigentes(any())).thenReturn(doctorIds);
+        when(plantillaHorarioServicio.extenderHorizonte(anyList(), any(LocalDate.class)))
+                .thenAnswer(invocacion -> new PlantillaHorarioServicio.ResultadoExpansion(invocacion.getArgument(0, List.class).size() * 10, 1));
+
+        ExtensionHorizonteAgenda.ResumenExtension resumen = extensionHorizonteAgenda.extender();
+
+        verify(plantillaHorarioServicio, times(3)).extenderHorizonte(anyList(), any(LocalDate.class));
+        assertEquals(5, resumen.doctores());
+        assertEquals(50, resumen.creados());
+        assertEquals(3, resumen.omitidos());
+        assertEquals(0, resumen.lotesFallidos());
+        assertEquals(5, registroMetricas.valorContador("agenda.extension.doctores"));
+    }
+
+    @Test
+    @DisplayName("Extender: un lote fallido se informa y los demás se completan")
+    void extender_loteFallido_continuaConLosDemas() {
+        List<UUID> doctorIds = Stream.generate(UUID::randomUUID).limit(4).toList();
+        when(plantillaHorarioRepositorio.buscarDoctoresConPlantillasVigentes(any())).thenReturn(doctorIds);
+        when(plantillaHorarioServicio.extenderHorizonte(eq(doctorIds.subList(0, 2)), any(LocalDate.class)))
+                .thenThrow(new IllegalStateException("fallo simulado"));
+        when(plantillaHorarioServicio.extenderHorizonte(eq(doctorIds.subList(2, 4)), any(LocalDate.class)))
+                .thenReturn(new PlantillaHorarioServicio.ResultadoExpansion(7, 0));
+
+        ExtensionHorizonteAgenda.ResumenExtension resumen = extensionHorizonteAgenda.extender();
+
+        assertEquals(7, resumen.creados());
+        assertEquals(1, resumen.lotesFallidos());
+        assertEquals(1, registroMetricas.valorContador("agenda.extension.lotes.fallidos"));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.dto.BloqueAgendaDTO;
+import com.example.citasmedicas.dto.CitaAgendaDTO;
+import com.example.citasmedicas.dto.VersionAgendaDTO;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.Doctor;
+import com.example.citasmedicas.modelo.entidad.EstadoCita;
+import com.example.citasmedicas.repositorio.CitaRepositorio;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.DoctorServicio;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static com.example.citasmedicas.util.TestDataBuilder.unDoctor;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Clase de pruebas unitarias para FeedAgendaServicio.
+ * Verifica el formato de los eventos del feed, que la ETag cambie cuando se elimina un bloque
+ * y que el token del feed se guarde solo como hash y pueda sustituirse o revocarse.
+ */
+@ExtendWith(MockitoExtension.class)
+class FeedAgendaServicioTest {
+
+    @Mock
+    private DisponibilidadRepositorio disponibilidadRepositorio;
+    @Mock
+    private CitaRepositorio citaRepositorio;
+    @Mock
+    private DoctorServicio doctorServicio;
+
+    private FeedAgendaServicio feedAgendaServicio;
+    private final UUID doctorId = UUID.randomUUID();
+    private final Instant modificado = Instant.parse("2030-01-10T12:00:00Z");
+
+    @BeforeEach
+    void setUp() {
+        feedAgendaServicio = new FeedAgendaServicio(disponibilidadRepositorio, citaRepositorio, doctorServicio, new RegistroMetricas(), new AgendaPropiedades());
+        when(doctorServicio.obtenerEntidadDoctorPorId(doctorId)).thenReturn(unDoctor().id(doctorId).build());
+    }
+
+    @Test
+    @DisplayName("Debería escribir las citas y los bloques libres como eventos, escapando y plegando los textos")
+    void escribirFeed_deberiaEscribirEventos() throws IOException {
+        LocalDateTime inicio = LocalDateTime.of(2030, 1, 15, 9, 0);
+        CitaAgendaDTO cita = new CitaAgendaDTO(UUID.randomUUID(), inicio, inicio.plusMinutes(30), EstadoCita.CONFIRMADA,
+                "Maria Gomez", "Control; revisión, análisis\n" + "x".repeat(80), modificado);
+        BloqueAgendaDTO sesion = new BloqueAgendaDTO(UUID.randomUUID(), inicio.plusHours(1), inicio.plusHours(3), 20, modificado);
+        when(citaRepositorio.recorrerParaAgenda(eq(doctorId), any(LocalDateTime.class), eq(EstadoCita.CANCELADA))).thenReturn(Stream.of(cita));
+        when(disponibilidadRepositorio.recorrerLibresParaAgenda(eq(doctorId), any(LocalDateTime.class))).thenReturn(Stream.of(sesion));
+        StringWriter salida = new StringWriter();
+
+        feedAgendaServicio.escribirFeed(doctorId, salida);
+
+        String feed = salida.toString();
+        assertTrue(feed.startsWith("BEGIN:VCALENDAR\r\n"));
+        assertTrue(feed.endsWith("END:VCALENDAR\r\n"));
+        assertEquals(2, feed.split("BEGIN:VEVENT", -1).length - 1);
+        assertTrue(feed.contains("UID:cita-" + cita.id() + "@citasmedicas\r\n"));
+        assertTrue(feed.contains("DTSTART:20300115T090000Z\r\nDTEND:20300115T093000Z\r\n"));
+        assertTrue(feed.contains("DESCRIPTION:Control\\; revisión\\, análisis\\n"));
+        assertTrue(feed.contains("SUMMARY:Sesión disponible (ranuras de 20 min)\r\n"));
+        assertTrue(feed.contains("TRANSP:TRANSPARENT"));
+        for (String linea : feed.split("\r\n")) {
+            assertTrue(linea.getBytes(StandardCharsets.UTF_8).length <= 75, linea);
+        }
+    }
+
+    @Test
+    @DisplayName("Debería cambiar la ETag al eliminarse un bloque aunque no cambie la última modificación")
+    void calcularEtag_deberiaCambiar_cuandoSeEliminaUnBloque() {
+        when(citaRepositorio.obtenerVersionAgenda(eq(doctorId), any(LocalDateTime.class))).thenReturn(new VersionAgendaDTO(modificado, 3));
+        when(disponibilidadRepositorio.obtenerVersionAgenda(eq(doctorId), any(LocalDateTime.class)))
+                .thenReturn(new VersionAgendaDTO(modificado, 10), new VersionAgendaDTO(modificado, 10), new VersionAgendaDTO(modificado, 9));
+
+        String primera = feedAgendaServicio.calcularEtag(doctorId);
+        String repetida = feedAgendaServicio.calcularEtag(doctorId);
+        String trasEliminar = feedAgendaServicio.calcularEtag(doctorId);
+
+        assertEquals(primera, repetida);
+        assertNotEquals(primera, trasEliminar);
+    }
+
+    @Test
+    @DisplayName("Token: se guarda solo su hash, uno nuevo sustituye al anterior y revocarlo lo elimina")
+    void generarToken_deberiaGuardarHashYSustituirAlAnterior() {
+        Doctor doctor = unDoctor().id(doctorId).build();
+        when(doctorServicio.obtenerEntidadDoctorPorId(doctorId)).thenReturn(doctor);
+
+        String primero = feedAgendaServicio.generarToken(doctorId);
+        assertEquals(FeedAgendaServicio.hashToken(primero), doctor.getHashTokenFeed());
+        assertNotEquals(primero, doctor.getHashTokenFeed());
+
+        String segundo = feedAgendaServicio.generarToken(doctorId);
+        assertNotEquals(primero, segundo);
+        assertEquals(FeedAgendaServicio.hashToken(segundo), doctor.getHashTokenFeed());
+
+        feedAgendaServicio.revocarToken(doctorId);
+        assertNull(doctor.getHashTokenFeed());
+    }
+}
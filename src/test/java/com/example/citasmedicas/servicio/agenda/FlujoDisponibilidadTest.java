@@ -0,0 +1,134 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.excepciones.CapacidadExcedidaExcepcion;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.DoctorServicio;
+import com.example.citasmedicas.servicio.evento.CambioDisponibilidadEvento;
+import com.example.citasmedicas.servicio.evento.DisponibilidadLiberadaEvento;
+import com.example.citasmedicas.servicio.evento.TipoCambioDisponibilidad;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Clase de pruebas unitarias para FlujoDisponibilidad.
+ * Verifica el límite de conexiones simultáneas, el buffer acotado por conexión
+ * y que cada conexión reciba exactamente las mismas tramas de un evento.
+ */
+@ExtendWith(MockitoExtension.class)
+class FlujoDisponibilidadTest {
+
+    @Mock
+    private DisponibilidadRepositorio disponibilidadRepositorio;
+    @Mock
+    private DoctorServicio doctorServicio;
+
+    private RegistroMetricas registroMetricas;
+    private final List<Runnable> envios = new ArrayList<>();
+    private FlujoDisponibilidad flujo;
+    private final UUID doctorId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        AgendaPropiedades propiedades = new AgendaPropiedades();
+        propiedades.setMaxConexionesFlujo(2);
+        propiedades.setCapacidadBufferFlujo(3);
+        registroMetricas = new RegistroMetricas();
+        // Los envíos se acumulan sin ejecutarse, como con un cliente que no consume
+        flujo = new FlujoDisponibilidad(disponibilidadRepositorio, doctorServicio, registroMetricas, propiedades, envios::add);
+    }
+
+    @Test
+    @DisplayName("Suscribir: al superar el máximo de conexiones se rechaza la nueva sin contarla")
+    void suscribir_superaMaximo_lanzaCapacidadExcedida() {
+        flujo.suscribir(doctorId);
+        flujo.suscribir(UUID.randomUUID());
+
+        assertThrows(CapacidadExcedidaExcepcion.class, () -> flujo.suscribir(doctorId));
+        assertEquals(2, flujo.conexionesAbiertas());
+        assertEquals(1, registroMetricas.valorContador("agenda.flujo.rechazadas"));
+    }
+
+    @Test
+    @DisplayName("Cambio: un cliente que no consume desborda su buffer sin bloquear a quien publica")
+    void alCambiarDisponibilidad_bufferLleno_descartaYPideResincronizar() {
+        flujo.suscribir(doctorId);
+
+        for (int i = 0; i < 5; i++) {
+            flujo.alCambiarDisponibilidad(new CambioDisponibilidadEvento(doctorId, UUID.randomUUID(), TipoCambioDisponibilidad.CREADO,
+                    LocalDateTime.of(2030, 1, 7, 9, 0).plusHours(i), LocalDateTime.of(2030, 1, 7, 10, 0).plusHours(i)));
+        }
+
+        assertEquals(5, registroMetricas.valorContador("agenda.flujo.eventos"));
+        assertEquals(1, registroMetricas.valorContador("agenda.flujo.desbordes"));
+        assertEquals(1, envios.size()); // Un único envío programado por conexión
+    }
+
+    @Test
+    @DisplayName("Cambio: dos conexiones al mismo doctor reciben las mismas tramas, sin las añadidas por otra conexión")
+    void alCambiarDisponibilidad_dosConexiones_recibenLasMismasTramas() {
+        List<EmisorCapturador> emisores = new CopyOnWriteArrayList<>();
+        flujo = new FlujoDisponibilidad(disponibilidadRepositorio, doctorServicio, registroMetricas, new AgendaPropiedades(), Runnable::run) {
+            @Override
+            SseEmitter crearEmisor(long duracionMaximaMs) {
+                EmisorCapturador emisor = new EmisorCapturador();
+                emisores.add(emisor);
+                return emisor;
+            }
+        };
+        flujo.suscribir(doctorId);
+        flujo.suscribir(doctorId);
+
+        flujo.alCambiarDisponibilidad(new CambioDisponibilidadEvento(doctorId, UUID.randomUUID(), TipoCambioDisponibilidad.RESERVADO,
+                LocalDateTime.of(2030, 1, 7, 9, 0), LocalDateTime.of(2030, 1, 7, 9, 30)));
+        flujo.latir();
+
+        assertEquals(2, emisores.size());
+        List<String> primera = emisores.get(0).tramas;
+        assertEquals(3, primera.size()); // conectado, reservado y latido
+        assertTrue(primera.get(1).startsWith("id:1\nevent:reservado\ndata:"));
+        assertEquals(primera, emisores.get(1).tramas);
+    }
+
+    @Test
+    @DisplayName("Liberación: sin conexiones abiertas no se consulta la base de datos")
+    void alLiberarseDisponibilidad_sinConexiones_noConsulta() {
+        flujo.alLiberarseDisponibilidad(new DisponibilidadLiberadaEvento(UUID.randomUUID()));
+
+        verify(disponibilidadRepositorio, never()).findById(any());
+    }
+
+    /**
+     * Emisor que guarda el texto de cada evento enviado en lugar de escribirlo en una respuesta.
+     */
+    private static final class EmisorCapturador extends SseEmitter {
+        private final List<String> tramas = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            StringBuilder trama = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType parte : builder.build()) {
+                trama.append(parte.getData());
+            }
+            tramas.add(trama.toString());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Clase de pruebas unitarias para IndiceIntervalosDisponibilidad.
+ * Verifica la carga en segundo plano, las consultas de solapamiento y la verificación de consistencia.
+ */
+@ExtendWith(MockitoExtension.class)
+class IndiceIntervalosDisponibilidadTest {
+
+    @Mock
+    private DisponibilidadRepositorio disponibilidadRepositorio;
+
+    private IndiceIntervalosDisponibilidad indice;
+    private UUID doctorId;
+    private LocalDateTime manana;
+
+    @BeforeEach
+    void setUp() {
+        indice = new IndiceIntervalosDisponibilidad(disponibilidadRepositorio, new RegistroMetricas(), new AgendaPropiedades());
+        doctorId = UUID.randomUUID();
+        manana = LocalDate.now(ZoneOffset.UTC).plusDays(1).atStartOfDay();
+    }
+
+    @AfterEach
+    void tearDown() {
+        indice.cerrar();
+    }
+
+    @Test
+    @DisplayName("Solapamiento: con la agenda fría recurre a la base de datos y después responde desde memoria")
+    void haySolapamiento_agendaFria_cargaYRespondeDesdeMemoria() throws InterruptedException {
+        when(disponibilidadRepositorio.buscarBloquesDesde(eq(doctorId), any()))
+                .thenReturn(List.of(unBloque(manana.plusHours(9), manana.plusHours(10))));
+
+        assertEquals(Optional.empty(), indice.haySolapamiento(doctorId, manana.plusHours(9), manana.plusHours(10)));
+        Optional<Boolean> respuesta = esperarCarga(manana.plusHours(9).plusMinutes(30), manana.plusHours(11));
+
+        assertEquals(Optional.of(true), respuesta);
+        assertEquals(Optional.of(false), indice.haySolapamiento(doctorId, manana.plusHours(10), manana.plusHours(11)));
+        assertEquals(Optional.of(false), indice.haySolapamiento(doctorId, manana.plusHours(8), manana.plusHours(9)));
+        verify(disponibilidadRepositorio, times(1)).buscarBloquesDesde(eq(doctorId), any());
+    }
+
+    @Test
+    @DisplayName("Registrar cambios: las creaciones y eliminaciones confirmadas se reflejan en el índice")
+    void registrarCambios_agendaCargada_actualizaElIndice() throws InterruptedException {
+        when(disponibilidadRepositorio.buscarBloquesDesde(eq(doctorId), any())).thenReturn(List.of());
+        indice.haySolapamiento(doctorId, manana, manana.plusHours(1));
+        esperarCarga(manana, manana.plusHours(1));
+        BloqueHorarioDTO nuevo = unBloque(manana.plusHours(14), manana.plusHours(15));
+
+        indice.registrarCreado(doctorId, nuevo);
+        assertEquals(Optional.of(true), indice.haySolapamiento(doctorId, manana.plusHours(14).plusMinutes(30), manana.plusHours(16)));
+
+        indice.registrarEliminado(nuevo.id());
+        assertEquals(Optional.of(false), indice.haySolapamiento(doctorId, manana.plusHours(14).plusMinutes(30), manana.plusHours(16)));
+    }
+
+    @Test
+    @DisplayName("Verificar consistencia: recarga la agenda que no coincide con la base de datos")
+    void verificarConsistencia_agendaDivergente_laRecarga() throws InterruptedException {
+        BloqueHorarioDTO externo = unBloque(manana.plusHours(9), manana.plusHours(10));
+        when(disponibilidadRepositorio.buscarBloquesDesde(eq(doctorId), any()))
+                .thenReturn(List.of(), List.of(externo), List.of(externo), List.of(externo));
+        indice.haySolapamiento(doctorId, manana, manana.plusHours(1));
+        esperarCarga(manana, manana.plusHours(1));
+
+        assertEquals(1, indice.verificarConsistencia());
+        assertEquals(Optional.of(true), indice.haySolapamiento(doctorId, manana.plusHours(9), manana.plusHours(10)));
+        assertEquals(0, indice.verificarConsistencia());
+    }
+
+    private Optional<Boolean> esperarCarga(LocalDateTime inicio, LocalDateTime fin) throws InterruptedException {
+        for (int intento = 0; intento < 100; intento++) {
+            Optional<Boolean> respuesta = indice.haySolapamiento(doctorId, inicio, fin);
+            if (respuesta.isPresent()) {
+                return respuesta;
+            }
+            Thread.sleep(20);
+        }
+        fail("La agenda del doctor no se cargó a tiempo");
+        return Optional.empty();
+    }
+
+    private static BloqueHorarioDTO unBloque(LocalDateTime inicio, LocalDateTime fin) {
+        return new BloqueHorarioDTO(UUID.randomUUID(), inicio, fin, false);
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
+import com.example.citasmedicas.dto.CrearPlantillaHorarioDTO;
+import com.example.citasmedicas.dto.FranjaSemanalDTO;
+import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import com.example.citasmedicas.modelo.entidad.Doctor;
+import com.example.citasmedicas.modelo.entidad.PlantillaHorario;
+import com.example.citasmedicas.repositorio.DisponibilidadLoteRepositorio;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.repositorio.PlantillaHorarioRepositorio;
+import com.example.citasmedicas.servicio.DoctorServicio;
+import com.example.citasmedicas.util.TestDataBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Clase de pruebas unitarias para PlantillaHorarioServicio.
+ * Verifica la generación de bloques, el descarte de solapamientos en una pasada y la validación de franjas.
+ */
+@ExtendWith(MockitoExtension.class)
+class PlantillaHorarioServicioTest {
+
+    @Mock
+    private PlantillaHorarioRepositorio plantillaHorarioRepositorio;
+    @Mock
+    private DisponibilidadRepositorio disponibilidadRepositorio;
+    @Mock
+    private DisponibilidadLoteRepositorio disponibilidadLoteRepositorio;
+    @Mock
+    private DoctorServicio doctorServicio;
+    @Mock
+    private IndiceIntervalosDisponibilidad indiceIntervalos;
+    @Mock
+    private CacheDisponibilidad cacheDisponibilidad;
+
+    private PlantillaHorarioServicio plantillaHorarioServicio;
+    private LocalDate proximoLunes;
+
+    @BeforeEach
+    void setUp() {
+        plantillaHorarioServicio = new PlantillaHorarioServicio(plantillaHorarioRepositorio, disponibilidadRepositorio,
+                disponibilidadLoteRepositorio, doctorServicio, new RegistroMetricas(), new AgendaPropiedades(), indiceIntervalos, cacheDisponibilidad);
+        proximoLunes = LocalDate.now(ZoneOffset.UTC).with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+    }
+
+    @Test
+    @DisplayName("Generar bloques: una franja semanal produce bloques consecutivos solo en su día")
+    void generar_franjaSemanal_produceBloquesDelDia() {
+        PlantillaHorario plantilla = unaPlantilla(DayOfWeek.MONDAY, LocalTime.of(9, 0), LocalTime.of(11, 0), 30);
+
+        List<Disponibilidad> bloques = plantillaHorarioServicio.generar(List.of(plantilla), proximoLunes, proximoLunes.plusDays(6));
+
+        assertEquals(4, bloques.size());
+        assertEquals(proximoLunes.atTime(9, 0), bloques.get(0).getHoraInicio());
+        assertEquals(proximoLunes.atTime(11, 0), bloques.get(3).getHoraFin());
+    }
+
+    @Test
+    @DisplayName("Descartar solapados: omite los bloques generados que coinciden con bloques existentes")
+    void descartarSolapados_conExistentes_omiteSoloLosSolapados() {
+        PlantillaHorario plantilla = unaPlantilla(DayOfWeek.MONDAY, LocalTime.of(9, 0), LocalTime.of(12, 0), 60);
+        List<Disponibilidad> generados = plantillaHorarioServicio.generar(List.of(plantilla), proximoLunes, proximoLunes);
+        // Un bloque largo que cubre 9:30-10:30 y otro contenido en 11:00-12:00
+        List<BloqueHorarioDTO> existentes = List.of(
+                new BloqueHorarioDTO(UUID.randomUUID(), proximoLunes.atTime(9, 30), proximoLunes.atTime(10, 30), false),
+                new BloqueHorarioDTO(UUID.randomUUID(), proximoLunes.atTime(11, 15), proximoLunes.atTime(11, 45), true));
+
+        List<Disponibilidad> libres = PlantillaHorarioServicio.descartarSolapados(generados, existentes);
+
+        assertTrue(libres.isEmpty());
+
+        List<BloqueHorarioDTO> adyacentes = List.of(
+                new BloqueHorarioDTO(UUID.randomUUID(), proximoLunes.atTime(8, 0), proximoLunes.atTime(9, 0), false),
+                new BloqueHorarioDTO(UUID.randomUUID(), proximoLunes.atTime(10, 0), proximoLunes.atTime(11, 0), false));
+        List<LocalDateTime> inicios = PlantillaHorarioServicio.descartarSolapados(generados, adyacentes).stream()
+                .map(Disponibilidad::getHoraInicio).toList();
+
+        assertEquals(List.of(proximoLunes.atTime(9, 0), proximoLunes.atTime(11, 0)), inicios);
+    }
+
+    @Test
+    @DisplayName("Crear plantillas: rechaza franjas del mismo día que se solapan sin guardar nada")
+    void crearYExpandir_franjasSolapadas_lanzaExcepcion() {
+        Doctor doctor = TestDataBuilder.unDoctor().build();
+        UUID doctorId = doctor.getId();
+        when(doctorServicio.obtenerEntidadDoctorPorId(doctorId)).thenReturn(doctor);
+        when(plantillaHorarioRepositorio.findByDoctorId(doctorId)).thenReturn(List.of());
+        CrearPlantillaHorarioDTO dto = new CrearPlantillaHorarioDTO(List.of(
+                new FranjaSemanalDTO(DayOfWeek.TUESDAY, LocalTime.of(9, 0), LocalTime.of(12, 0), 30),
+                new FranjaSemanalDTO(DayOfWeek.TUESDAY, LocalTime.of(11, 0), LocalTime.of(13, 0), 30)),
+                proximoLunes, null);
+
+        assertThrows(SolicitudInvalidaExcepcion.class, () -> plantillaHorarioServicio.crearYExpandir(doctorId, dto));
+        verify(plantillaHorarioRepositorio, never()).saveAll(any());
+        verifyNoInteractions(disponibilidadLoteRepositorio);
+    }
+
+    @Test
+    @DisplayName("Extender horizonte: rellena los días que faltan aunque haya un bloque manual más adelante")
+    @SuppressWarnings("unchecked")
+    void extenderHorizonte_conBloqueManualLejano_rellenaLosDiasAnteriores() {
+        Doctor doctor = TestDataBuilder.unDoctor().build();
+        UUID doctorId = doctor.getId();
+        PlantillaHorario plantilla = unaPlantilla(DayOfWeek.MONDAY, LocalTime.of(9, 0), LocalTime.of(11, 0), 30);
+        plantilla.setDoctor(doctor);
+        when(plantillaHorarioRepositorio.findByDoctorIdIn(List.of(doctorId))).thenReturn(List.of(plantilla));
+        // Dos bloques creados a mano dentro de la franja y otro tres semanas más adelante, fuera de ella
+        when(disponibilidadRepositorio.buscarBloquesEnRango(eq(doctorId), any(), any())).thenReturn(List.of(
+                new BloqueHorarioDTO(UUID.randomUUID(), proximoLunes.atTime(9, 0), proximoLunes.atTime(9, 30), false),
+                new BloqueHorarioDTO(UUID.randomUUID(), proximoLunes.atTime(9, 30), proximoLunes.atTime(10, 0), false),
+                new BloqueHorarioDTO(UUID.randomUUID(), proximoLunes.plusDays(21).atTime(15, 0), proximoLunes.plusDays(21).atTime(16, 0), false)));
+        when(disponibilidadLoteRepositorio.insertarLibres(eq(doctorId), any(), anyInt()))
+                .thenAnswer(invocacion -> invocacion.getArgument(1, List.class).size());
+
+        PlantillaHorarioServicio.ResultadoExpansion resultado =
+                plantillaHorarioServicio.extenderHorizonte(List.of(doctorId), proximoLunes.plusDays(7));
+
+        ArgumentCaptor<List<Disponibilidad>> insertados = ArgumentCaptor.forClass(List.class);
+        verify(disponibilidadLoteRepositorio).insertarLibres(eq(doctorId), insertados.capture(), anyInt());
+        assertEquals(6, resultado.creados());
+        assertEquals(2, resultado.omitidos());
+        assertEquals(proximoLunes.atTime(10, 0), insertados.getValue().get(0).getHoraInicio());
+        assertEquals(proximoLunes.plusDays(7).atTime(9, 0), insertados.getValue().get(2).getHoraInicio());
+        assertEquals(proximoLunes.plusDays(7), plantilla.getExpandidaHasta());
+    }
+
+    @Test
+    @DisplayName("Extender horizonte: no vuelve a generar los días ya expandidos aunque el doctor borrara sus bloques")
+    @SuppressWarnings("unchecked")
+    void extenderHorizonte_diasYaExpandidos_noRecreaBloquesEliminados() {
+        Doctor doctor = TestDataBuilder.unDoctor().build();
+        UUID doctorId = doctor.getId();
+        PlantillaHorario plantilla = unaPlantilla(DayOfWeek.MONDAY, LocalTime.of(9, 0), LocalTime.of(11, 0), 30);
+        plantilla.setDoctor(doctor);
+        plantilla.setExpandidaHasta(proximoLunes);
+        when(plantillaHorarioRepositorio.findByDoctorIdIn(List.of(doctorId))).thenReturn(List.of(plantilla));
+        // El doctor eliminó los bloques del próximo lunes: la agenda no tiene ninguno
+        when(disponibilidadRepositorio.buscarBloquesEnRango(eq(doctorId), any(), any())).thenReturn(List.of());
+        when(disponibilidadLoteRepositorio.insertarLibres(eq(doctorId), any(), anyInt()))
+                .thenAnswer(invocacion -> invocacion.getArgument(1, List.class).size());
+
+        PlantillaHorarioServicio.ResultadoExpansion resultado =
+                plantillaHorarioServicio.extenderHorizonte(List.of(doctorId), proximoLunes.plusDays(7));
+
+        ArgumentCaptor<List<Disponibilidad>> insertados = ArgumentCaptor.forClass(List.class);
+        verify(disponibilidadLoteRepositorio).insertarLibres(eq(doctorId), insertados.capture(), anyInt());
+        assertEquals(4, resultado.creados());
+        assertEquals(proximoLunes.plusDays(7).atTime(9, 0), insertados.getValue().get(0).getHoraInicio());
+        assertEquals(proximoLunes.plusDays(7), plantilla.getExpandidaHasta());
+
+        // Una segunda ejecución con el horizonte ya cubierto no genera nada
+        clearInvocations(disponibilidadLoteRepositorio);
+        assertEquals(0, plantillaHorarioServicio.extenderHorizonte(List.of(doctorId), proximoLunes.plusDays(7)).creados());
+        verifyNoInteractions(disponibilidadLoteRepositorio);
+    }
+
+    private PlantillaHorario unaPlantilla(DayOfWeek dia, LocalTime horaInicio, LocalTime horaFin, int duracion) {
+        PlantillaHorario plantilla = new PlantillaHorario();
+        plantilla.setDiaSemana(dia);
+        plantilla.setHoraInicio(horaInicio);
+        plantilla.setHoraFin(horaFin);
+        plantilla.setDuracionBloqueMinutos(duracion);
+        plantilla.setVigenteDesde(proximoLunes);
+        return plantilla;
+    }
+}
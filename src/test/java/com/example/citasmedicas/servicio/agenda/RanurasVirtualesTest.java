@@ -0,0 +1,69 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Clase de pruebas unitarias para RanurasVirtuales.
+ * Verifica la división de sesiones en ranuras, que las ranuras materializadas no se dupliquen
+ * y que el ID de una ranura permita localizar su sesión.
+ */
+class RanurasVirtualesTest {
+
+    private final LocalDateTime inicio = LocalDateTime.of(2030, 3, 4, 9, 0);
+
+    @Test
+    @DisplayName("Debería descartar la ranura final incompleta de una sesión")
+    void contar_deberiaIgnorarRanuraIncompleta() {
+        assertEquals(3, RanurasVirtuales.contar(inicio, inicio.plusMinutes(100), 30));
+        assertEquals(0, RanurasVirtuales.contar(inicio, inicio.plusMinutes(20), 30));
+    }
+
+    @Test
+    @DisplayName("Debería sustituir la sesión por sus ranuras libres y conservar las materializadas")
+    void expandir_deberiaOmitirRanurasMaterializadas() {
+        UUID sesionId = UUID.randomUUID();
+        UUID otroBloque = UUID.randomUUID();
+        UUID materializada = RanurasVirtuales.idRanura(sesionId, 1);
+        List<BloqueHorarioDTO> bloques = List.of(
+                new BloqueHorarioDTO(sesionId, inicio, inicio.plusHours(1).plusMinutes(30), false, 30, null),
+                new BloqueHorarioDTO(materializada, inicio.plusMinutes(30), inicio.plusMinutes(60), true, null, sesionId),
+                new BloqueHorarioDTO(otroBloque, inicio.minusHours(1), inicio, false));
+
+        List<BloqueHorarioDTO> resultado = RanurasVirtuales.expandir(bloques);
+
+        assertEquals(List.of(otroBloque, RanurasVirtuales.idRanura(sesionId, 0), materializada, RanurasVirtuales.idRanura(sesionId, 2)),
+                resultado.stream().map(BloqueHorarioDTO::id).toList());
+        assertTrue(resultado.get(2).estaReservado());
+        assertEquals(sesionId, resultado.get(1).bloquePadreId());
+        assertFalse(resultado.stream().anyMatch(BloqueHorarioDTO::esSesion));
+    }
+
+    @Test
+    @DisplayName("Debería derivar el mismo ID para la misma ranura, distinto del de la sesión")
+    void idRanura_deberiaSerEstable() {
+        UUID sesionId = UUID.randomUUID();
+        assertEquals(RanurasVirtuales.idRanura(sesionId, 0), RanurasVirtuales.idRanura(sesionId, 0));
+        assertNotEquals(RanurasVirtuales.idRanura(sesionId, 0), RanurasVirtuales.idRanura(sesionId, 1));
+        assertNotEquals(sesionId, RanurasVirtuales.idRanura(sesionId, 0));
+    }
+
+    @Test
+    @DisplayName("Debería recuperar la sesión y el número de orden a partir del ID de la ranura")
+    void orden_deberiaInvertirIdRanura() {
+        UUID sesionId = UUID.randomUUID();
+        UUID ranuraId = RanurasVirtuales.idRanura(sesionId, 17);
+
+        assertEquals(RanurasVirtuales.idSesionDesde(sesionId), RanurasVirtuales.idSesionDesde(ranuraId));
+        assertEquals(RanurasVirtuales.idSesionHasta(sesionId), RanurasVirtuales.idSesionHasta(ranuraId));
+        assertEquals(17, RanurasVirtuales.orden(sesionId, ranuraId));
+        assertEquals(-1, RanurasVirtuales.orden(UUID.randomUUID(), ranuraId));
+    }
+}
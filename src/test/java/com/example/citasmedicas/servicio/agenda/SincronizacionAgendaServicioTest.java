@@ -0,0 +1,108 @@
+package com.example.citasmedicas.servicio.agenda;
+
+import com.example.citasmedicas.config.AgendaPropiedades;
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
+import com.example.citasmedicas.dto.IntervaloHorarioDTO;
+import com.example.citasmedicas.dto.ResultadoSincronizacionDTO;
+import com.example.citasmedicas.dto.SincronizarDisponibilidadDTO;
+import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import com.example.citasmedicas.repositorio.CitaRepositorio;
+import com.example.citasmedicas.repositorio.DisponibilidadLoteRepositorio;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.DoctorServicio;
+import com.example.citasmedicas.servicio.reserva.RetencionServicio;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Clase de pruebas unitarias para SincronizacionAgendaServicio.
+ * Verifica la diferencia calculada entre los bloques existentes y los deseados y los conflictos informados.
+ */
+@ExtendWith(MockitoExtension.class)
+class SincronizacionAgendaServicioTest {
+
+    @Mock
+    private DisponibilidadRepositorio disponibilidadRepositorio;
+    @Mock
+    private DisponibilidadLoteRepositorio disponibilidadLoteRepositorio;
+    @Mock
+    private CitaRepositorio citaRepositorio;
+    @Mock
+    private DoctorServicio doctorServicio;
+    @Mock
+    private RetencionServicio retencionServicio;
+    @Mock
+    private IndiceIntervalosDisponibilidad indiceIntervalos;
+    @Mock
+    private CacheDisponibilidad cacheDisponibilidad;
+    @Mock
+    private ApplicationEventPublisher publicadorEventos;
+
+    private SincronizacionAgendaServicio sincronizacionAgendaServicio;
+    private final UUID doctorId = UUID.randomUUID();
+    private final LocalDateTime dia = LocalDate.now().plusDays(3).atStartOfDay();
+
+    @BeforeEach
+    void setUp() {
+        sincronizacionAgendaServicio = new SincronizacionAgendaServicio(disponibilidadRepositorio, disponibilidadLoteRepositorio, citaRepositorio,
+                doctorServicio, retencionServicio, indiceIntervalos, cacheDisponibilidad, publicadorEventos, new RegistroMetricas(), new AgendaPropiedades());
+    }
+
+    @Test
+    @DisplayName("Debería conservar los iguales, eliminar los sobrantes, crear los que faltan e informar los conflictos")
+    void sincronizar_deberiaAplicarLaDiferenciaMinima() {
+        BloqueHorarioDTO igual = new BloqueHorarioDTO(UUID.randomUUID(), dia.plusHours(9), dia.plusHours(10), false);
+        BloqueHorarioDTO reservado = new BloqueHorarioDTO(UUID.randomUUID(), dia.plusHours(10), dia.plusHours(11), true);
+        BloqueHorarioDTO sobrante = new BloqueHorarioDTO(UUID.randomUUID(), dia.plusHours(11), dia.plusHours(12), false);
+        when(disponibilidadRepositorio.buscarBloquesEnRango(eq(doctorId), any(), any())).thenReturn(List.of(igual, reservado, sobrante));
+        when(citaRepositorio.buscarDisponibilidadesConCitas(any())).thenReturn(List.of());
+        when(disponibilidadRepositorio.eliminarLibresPorIds(List.of(sobrante.id()))).thenReturn(1);
+        when(disponibilidadLoteRepositorio.insertarLibres(eq(doctorId), any(), anyInt())).thenAnswer(invocacion -> ((List<?>) invocacion.getArgument(1)).size());
+
+        ResultadoSincronizacionDTO resultado = sincronizacionAgendaServicio.sincronizar(doctorId, new SincronizarDisponibilidadDTO(dia, dia.plusDays(1), List.of(
+                new IntervaloHorarioDTO(dia.plusHours(12), dia.plusHours(13)),
+                new IntervaloHorarioDTO(dia.plusHours(9), dia.plusHours(10)),
+                new IntervaloHorarioDTO(dia.plusHours(10).plusMinutes(30), dia.plusHours(11)))));
+
+        assertEquals(1, resultado.creados());
+        assertEquals(1, resultado.eliminados());
+        assertEquals(1, resultado.sinCambios());
+        assertEquals(List.of(ResultadoSincronizacionDTO.Motivo.RESERVADO, ResultadoSincronizacionDTO.Motivo.SOLAPAMIENTO),
+                resultado.conflictos().stream().map(ResultadoSincronizacionDTO.Conflicto::motivo).toList());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Disponibilidad>> insertados = ArgumentCaptor.forClass(List.class);
+        verify(disponibilidadLoteRepositorio).insertarLibres(eq(doctorId), insertados.capture(), anyInt());
+        assertEquals(dia.plusHours(12), insertados.getValue().get(0).getHoraInicio());
+        verify(cacheDisponibilidad).invalidarDoctor(doctorId);
+    }
+
+    @Test
+    @DisplayName("Debería lanzar SolicitudInvalidaExcepcion cuando los bloques deseados se solapan entre sí")
+    void sincronizar_deberiaRechazarBloquesDeseadosSolapados() {
+        SincronizarDisponibilidadDTO dto = new SincronizarDisponibilidadDTO(dia, dia.plusDays(1), List.of(
+                new IntervaloHorarioDTO(dia.plusHours(9), dia.plusHours(10)),
+                new IntervaloHorarioDTO(dia.plusHours(9).plusMinutes(30), dia.plusHours(11))));
+
+        assertThrows(SolicitudInvalidaExcepcion.class, () -> sincronizacionAgendaServicio.sincronizar(doctorId, dto));
+        verifyNoInteractions(disponibilidadRepositorio, disponibilidadLoteRepositorio);
+    }
+}
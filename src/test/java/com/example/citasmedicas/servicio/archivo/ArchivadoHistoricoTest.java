@@ -0,0 +1,65 @@
+package com.example.citasmedicas.servicio.archivo;
+
+import com.example.citasmedicas.config.ArchivoPropiedades;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Clase de pruebas unitarias para ArchivadoHistorico.
+ * Verifica que cada fase repite lotes hasta agotar las filas y que un lote fallido solo detiene su fase.
+ */
+@ExtendWith(MockitoExtension.class)
+class ArchivadoHistoricoTest {
+
+    @Mock
+    private ArchivoServicio archivoServicio;
+
+    private RegistroMetricas registroMetricas;
+    private ArchivadoHistorico archivado;
+
+    @BeforeEach
+    void setUp() {
+        ArchivoPropiedades propiedades = new ArchivoPropiedades();
+        propiedades.setTamanoLote(100);
+        registroMetricas = new RegistroMetricas();
+        archivado = new ArchivadoHistorico(archivoServicio, registroMetricas, propiedades);
+    }
+
+    @Test
+    @DisplayName("Archivar: repite lotes completos y se detiene con el primer lote incompleto")
+    void archivar_variosLotes_procesaHastaAgotar() {
+        when(archivoServicio.archivarLoteCitas(any(), eq(100))).thenReturn(100, 100, 40);
+        when(archivoServicio.archivarLoteDisponibilidades(any(), eq(100))).thenReturn(0);
+        when(archivoServicio.purgarLoteDisponibilidadesArchivadas(any(), eq(100))).thenReturn(7);
+
+        ArchivadoHistorico.ResumenArchivado resumen = archivado.archivar();
+
+        assertEquals(new ArchivadoHistorico.ResumenArchivado(240, 0, 7, 0), resumen);
+        verify(archivoServicio, times(3)).archivarLoteCitas(any(), eq(100));
+        assertEquals(240, registroMetricas.valorContador("archivo.citas"));
+    }
+
+    @Test
+    @DisplayName("Archivar: un lote fallido detiene su fase sin impedir las siguientes")
+    void archivar_loteFallido_continuaConLaSiguienteFase() {
+        when(archivoServicio.archivarLoteCitas(any(), eq(100))).thenReturn(100).thenThrow(new CannotAcquireLockException("bloqueo"));
+        when(archivoServicio.archivarLoteDisponibilidades(any(), eq(100))).thenReturn(30);
+        when(archivoServicio.purgarLoteDisponibilidadesArchivadas(any(), eq(100))).thenReturn(0);
+
+        ArchivadoHistorico.ResumenArchivado resumen = archivado.archivar();
+
+        assertEquals(new ArchivadoHistorico.ResumenArchivado(100, 30, 0, 1), resumen);
+        assertEquals(1, registroMetricas.valorContador("archivo.lotes.fallidos"));
+    }
+}
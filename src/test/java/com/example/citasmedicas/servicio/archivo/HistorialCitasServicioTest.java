@@ -0,0 +1,120 @@
+package com.example.citasmedicas.servicio.archivo;
+
+import com.example.citasmedicas.dto.CitaDTO;
+import com.example.citasmedicas.mapeador.CitaMapeador;
+import com.example.citasmedicas.modelo.entidad.Cita;
+import com.example.citasmedicas.modelo.entidad.CitaArchivada;
+import com.example.citasmedicas.repositorio.CitaArchivadaRepositorio;
+import com.example.citasmedicas.repositorio.CitaRepositorio;
+import com.example.citasmedicas.servicio.PacienteServicio;
+import com.example.citasmedicas.util.TestDataBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Clase de pruebas unitarias para HistorialCitasServicio.
+ * Verifica que el historial mezcle por hora de inicio las citas activas y las archivadas.
+ */
+@ExtendWith(MockitoExtension.class)
+class HistorialCitasServicioTest {
+
+    @Mock
+    private CitaRepositorio citaRepositorio;
+    @Mock
+    private CitaArchivadaRepositorio citaArchivadaRepositorio;
+    @Mock
+    private PacienteServicio pacienteServicio;
+    @Mock
+    private CitaMapeador citaMapeador;
+
+    @InjectMocks
+    private HistorialCitasServicio historialCitasServicio;
+
+    private final UUID pacienteId = UUID.randomUUID();
+    private final LocalDateTime base = LocalDateTime.of(2030, 1, 1, 9, 0);
+
+    @BeforeEach
+    void setUp() {
+        when(citaMapeador.aDTO(any(Cita.class))).thenAnswer(invocacion -> {
+            Cita cita = invocacion.getArgument(0);
+            CitaDTO dto = new CitaDTO();
+            dto.setId(cita.getId());
+            return dto;
+        });
+        when(citaMapeador.aDTO(any(CitaArchivada.class))).thenAnswer(invocacion -> {
+            CitaArchivada cita = invocacion.getArgument(0);
+            CitaDTO dto = new CitaDTO();
+            dto.setId(cita.getId());
+            return dto;
+        });
+    }
+
+    @Test
+    @DisplayName("Historial: una cita activa pasada aparece entre las archivadas según su hora de inicio")
+    void obtenerHistorialPaciente_citaActivaPasada_seMezclaConLasArchivadas() {
+        Cita futura = activa(base.plusDays(10));
+        Cita pendientePasada = activa(base.plusDays(2)); // Pasada pero no finalizada: sigue en la tabla activa
+        CitaArchivada archivadaReciente = archivada(base.plusDays(5));
+        CitaArchivada archivadaAntigua = archivada(base.plusDays(1));
+        when(citaRepositorio.buscarHistorialPaciente(pacienteId, PageRequest.of(0, 4)))
+                .thenReturn(new PageImpl<>(List.of(futura, pendientePasada), PageRequest.of(0, 4), 2));
+        when(citaArchivadaRepositorio.findByPacienteIdOrderByHoraInicioDesc(pacienteId, PageRequest.of(0, 4)))
+                .thenReturn(new SliceImpl<>(List.of(archivadaReciente, archivadaAntigua)));
+        when(citaArchivadaRepositorio.countByPacienteId(pacienteId)).thenReturn(2L);
+
+        Page<CitaDTO> segunda = historialCitasServicio.obtenerHistorialPaciente(pacienteId, 1, 2);
+
+        assertEquals(List.of(pendientePasada.getId(), archivadaAntigua.getId()), segunda.getContent().stream().map(CitaDTO::getId).toList());
+        assertEquals(4, segunda.getTotalElements());
+    }
+
+    @Test
+    @DisplayName("Historial: la primera página toma las más recientes de ambas tablas")
+    void obtenerHistorialPaciente_primeraPagina_tomaLasMasRecientes() {
+        Cita futura = activa(base.plusDays(10));
+        Cita pendientePasada = activa(base.plusDays(2));
+        CitaArchivada archivadaReciente = archivada(base.plusDays(5));
+        when(citaRepositorio.buscarHistorialPaciente(pacienteId, PageRequest.of(0, 2)))
+                .thenReturn(new PageImpl<>(List.of(futura, pendientePasada), PageRequest.of(0, 2), 2));
+        when(citaArchivadaRepositorio.findByPacienteIdOrderByHoraInicioDesc(pacienteId, PageRequest.of(0, 2)))
+                .thenReturn(new SliceImpl<>(List.of(archivadaReciente)));
+        when(citaArchivadaRepositorio.countByPacienteId(pacienteId)).thenReturn(1L);
+
+        Page<CitaDTO> primera = historialCitasServicio.obtenerHistorialPaciente(pacienteId, 0, 2);
+
+        assertEquals(List.of(futura.getId(), archivadaReciente.getId()), primera.getContent().stream().map(CitaDTO::getId).toList());
+        assertEquals(3, primera.getTotalElements());
+    }
+
+    private static Cita activa(LocalDateTime horaInicio) {
+        return Cita.builder()
+                .id(UUID.randomUUID())
+                .disponibilidad(TestDataBuilder.unaDisponibilidad().horaInicio(horaInicio).horaFin(horaInicio.plusMinutes(30)).build())
+                .build();
+    }
+
+    private static CitaArchivada archivada(LocalDateTime horaInicio) {
+        return CitaArchivada.builder()
+                .id(UUID.randomUUID())
+                .horaInicio(horaInicio)
+                .horaFin(horaInicio.plusMinutes(30))
+                .build();
+    }
+}
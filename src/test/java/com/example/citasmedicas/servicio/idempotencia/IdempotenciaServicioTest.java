@@ -0,0 +1,170 @@
+package com.example.citasmedicas.servicio.idempotencia;
+
+import com.example.citasmedicas.config.IdempotenciaPropiedades;
+import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.ClaveIdempotencia;
+import com.example.citasmedicas.repositorio.ClaveIdempotenciaRepositorio;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Clase de pruebas unitarias para IdempotenciaServicio.
+ * Verifica la repetición de respuestas, la espera de duplicados concurrentes (en esta y en otra instancia),
+ * la reserva de la clave antes de ejecutar la operación y la detección de claves reutilizadas.
+ */
+@ExtendWith(MockitoExtension.class)
+class IdempotenciaServicioTest {
+
+    @Mock
+    private ClaveIdempotenciaRepositorio claveIdempotenciaRepositorio;
+
+    private RegistroMetricas registroMetricas;
+    private IdempotenciaServicio idempotenciaServicio;
+    private AtomicInteger ejecuciones;
+
+    @BeforeEach
+    void setUp() {
+        registroMetricas = new RegistroMetricas();
+        IdempotenciaPropiedades propiedades = new IdempotenciaPropiedades();
+        propiedades.setIntervaloSondeo(Duration.ofMillis(1));
+        idempotenciaServicio = new IdempotenciaServicio(claveIdempotenciaRepositorio, new ObjectMapper(), registroMetricas, propiedades);
+        ejecuciones = new AtomicInteger();
+    }
+
+    @Test
+    @DisplayName("Debería devolver la respuesta almacenada sin volver a ejecutar la operación")
+    void ejecutar_deberiaRepetirRespuesta_cuandoLaClaveYaSeUso() {
+        when(claveIdempotenciaRepositorio.findByUsuarioAndOperacionAndClave(anyString(), anyString(), anyString())).thenReturn(Optional.empty());
+
+        ResponseEntity<Map> original = idempotenciaServicio.ejecutar("clave-1", "prueba", Map.of("a", 1), Map.class, this::operacion);
+        ResponseEntity<Map> repetida = idempotenciaServicio.ejecutar("clave-1", "prueba", Map.of("a", 1), Map.class, this::operacion);
+
+        assertEquals(1, ejecuciones.get());
+        assertEquals(HttpStatus.CREATED, repetida.getStatusCode());
+        assertEquals(original.getBody(), repetida.getBody());
+        assertEquals("true", repetida.getHeaders().getFirst(IdempotenciaServicio.CABECERA_REPETICION));
+        verify(claveIdempotenciaRepositorio, times(1)).saveAndFlush(any(ClaveIdempotencia.class));
+        verify(claveIdempotenciaRepositorio, times(1)).completar(anyString(), eq("prueba"), eq("clave-1"), eq(201), anyString(), any(Instant.class), any(Instant.class));
+    }
+
+    @Test
+    @DisplayName("Debería reservar la clave antes de ejecutar la operación y eliminarla si la operación falla")
+    void ejecutar_deberiaReservarAntesYLiberar_cuandoLaOperacionFalla() {
+        when(claveIdempotenciaRepositorio.findByUsuarioAndOperacionAndClave(anyString(), anyString(), anyString())).thenReturn(Optional.empty());
+        when(claveIdempotenciaRepositorio.saveAndFlush(any(ClaveIdempotencia.class))).thenAnswer(invocacion -> {
+            assertEquals(0, ejecuciones.get()); // La clave se reserva antes de ejecutar
+            ClaveIdempotencia enCurso = invocacion.getArgument(0);
+            assertNull(enCurso.getEstadoHttp());
+            return enCurso;
+        });
+
+        assertThrows(IllegalStateException.class, () ->
+                idempotenciaServicio.ejecutar("clave-1", "prueba", Map.of("a", 1), Map.class, () -> {
+                    ejecuciones.incrementAndGet();
+                    throw new IllegalStateException("fallo");
+                }));
+
+        verify(claveIdempotenciaRepositorio).eliminarEnCurso(anyString(), eq("prueba"), eq("clave-1"));
+        verify(claveIdempotenciaRepositorio, never()).completar(anyString(), anyString(), anyString(), any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Debería esperar a la ejecución en curso en otra instancia y repetir su respuesta sin ejecutar la operación")
+    void ejecutar_deberiaEsperarOtraInstancia_cuandoLaClaveEstaReservada() {
+        ClaveIdempotencia enCurso = claveAlmacenada(null, null);
+        ClaveIdempotencia completada = claveAlmacenada(201, "{\"ejecucion\":7}");
+        // La primera lectura no la ve; la inserción choca con la restricción única; después aparece en curso y por último completada
+        when(claveIdempotenciaRepositorio.findByUsuarioAndOperacionAndClave(anyString(), anyString(), anyString()))
+                .thenReturn(Optional.empty(), Optional.of(enCurso), Optional.of(completada));
+        when(claveIdempotenciaRepositorio.saveAndFlush(any(ClaveIdempotencia.class))).thenThrow(new DataIntegrityViolationException("uk_clave_idempotencia"));
+
+        ResponseEntity<Map> respuesta = idempotenciaServicio.ejecutar("clave-1", "prueba", Map.of("a", 1), Map.class, this::operacion);
+
+        assertEquals(0, ejecuciones.get());
+        assertEquals(HttpStatus.CREATED, respuesta.getStatusCode());
+        assertEquals(Map.of("ejecucion", 7), respuesta.getBody());
+        assertEquals(1, registroMetricas.valorContador("idempotencia.esperas_bd"));
+    }
+
+    @Test
+    @DisplayName("Debería rechazar la reutilización de una clave con una solicitud diferente")
+    void ejecutar_deberiaRechazar_cuandoLaSolicitudCambia() {
+        when(claveIdempotenciaRepositorio.findByUsuarioAndOperacionAndClave(anyString(), anyString(), anyString())).thenReturn(Optional.empty());
+        idempotenciaServicio.ejecutar("clave-1", "prueba", Map.of("a", 1), Map.class, this::operacion);
+
+        assertThrows(SolicitudInvalidaExcepcion.class, () ->
+                idempotenciaServicio.ejecutar("clave-1", "prueba", Map.of("a", 2), Map.class, this::operacion));
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    @DisplayName("Debería hacer esperar a un duplicado concurrente hasta que termine la ejecución original")
+    void ejecutar_deberiaEsperarLaEjecucionEnCurso_cuandoLlegaUnDuplicado() throws Exception {
+        when(claveIdempotenciaRepositorio.findByUsuarioAndOperacionAndClave(anyString(), anyString(), anyString())).thenReturn(Optional.empty());
+        CountDownLatch enEjecucion = new CountDownLatch(1);
+        CountDownLatch continuar = new CountDownLatch(1);
+
+        CompletableFuture<ResponseEntity<Map>> primera = CompletableFuture.supplyAsync(() ->
+                idempotenciaServicio.ejecutar("clave-1", "prueba", Map.of("a", 1), Map.class, () -> {
+                    enEjecucion.countDown();
+                    esperar(continuar);
+                    return operacion();
+                }));
+        assertTrue(enEjecucion.await(5, TimeUnit.SECONDS));
+        CompletableFuture<ResponseEntity<Map>> duplicada = CompletableFuture.supplyAsync(() ->
+                idempotenciaServicio.ejecutar("clave-1", "prueba", Map.of("a", 1), Map.class, this::operacion));
+
+        while (registroMetricas.valorContador("idempotencia.esperas") == 0) {
+            Thread.onSpinWait();
+        }
+        continuar.countDown();
+
+        assertEquals(primera.get(5, TimeUnit.SECONDS).getBody(), duplicada.get(5, TimeUnit.SECONDS).getBody());
+        assertEquals(1, ejecuciones.get());
+    }
+
+    private ClaveIdempotencia claveAlmacenada(Integer estadoHttp, String cuerpo) {
+        ClaveIdempotencia clave = new ClaveIdempotencia();
+        clave.setHuellaSolicitud(idempotenciaServicio.calcularHuella("prueba", Map.of("a", 1)));
+        clave.setEstadoHttp(estadoHttp);
+        clave.setCuerpoRespuesta(cuerpo);
+        clave.setExpiraEn(Instant.now().plus(Duration.ofHours(1)));
+        return clave;
+    }
+
+    private ResponseEntity<Map> operacion() {
+        return new ResponseEntity<>(Map.of("ejecucion", ejecuciones.incrementAndGet()), HttpStatus.CREATED);
+    }
+
+    private static void esperar(CountDownLatch senal) {
+        try {
+            senal.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
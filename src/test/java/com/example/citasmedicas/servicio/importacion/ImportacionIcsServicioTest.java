@@ -0,0 +1,127 @@
+package com.example.citasmedicas.servicio.importacion;
+
+import com.example.citasmedicas.config.ImportacionPropiedades;
+import com.example.citasmedicas.dto.BloqueHorarioDTO;
+import com.example.citasmedicas.dto.TrabajoImportacionDTO;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.DoctorServicio;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Clase de pruebas unitarias para ImportacionIcsServicio.
+ * Verifica la escritura por lotes, la detección de solapamientos en memoria y el fallo al superar el máximo de eventos.
+ */
+@ExtendWith(MockitoExtension.class)
+class ImportacionIcsServicioTest {
+
+    private static final DateTimeFormatter FORMATO = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    @Mock
+    private ImportacionLoteServicio importacionLoteServicio;
+    @Mock
+    private DisponibilidadRepositorio disponibilidadRepositorio;
+    @Mock
+    private DoctorServicio doctorServicio;
+
+    private final ImportacionPropiedades propiedades = new ImportacionPropiedades();
+    private final UUID doctorId = UUID.randomUUID();
+    private final LocalDateTime manana = LocalDate.now(ZoneOffset.UTC).plusDays(1).atTime(9, 0);
+    private ImportacionIcsServicio importacionIcsServicio;
+
+    @BeforeEach
+    void setUp() {
+        propiedades.setTamanoLote(2);
+        importacionIcsServicio = new ImportacionIcsServicio(importacionLoteServicio, disponibilidadRepositorio, doctorServicio,
+                new RegistroMetricas(), propiedades, Runnable::run);
+    }
+
+    @Test
+    @DisplayName("Debería insertar los eventos en lotes y omitir los solapados con la agenda o con el propio archivo")
+    void iniciar_deberiaInsertarEnLotesYOmitirSolapados() throws IOException {
+        when(disponibilidadRepositorio.buscarBloquesDesde(eq(doctorId), any(LocalDateTime.class)))
+                .thenReturn(List.of(new BloqueHorarioDTO(UUID.randomUUID(), manana, manana.plusMinutes(30), false)));
+        List<List<Disponibilidad>> lotes = new ArrayList<>();
+        when(importacionLoteServicio.insertar(eq(doctorId), anyList())).thenAnswer(invocacion -> {
+            List<Disponibilidad> lote = new ArrayList<>(invocacion.getArgument(1));
+            lotes.add(lote);
+            return lote;
+        });
+
+        String ics = calendario(
+                evento(manana.plusMinutes(15), manana.plusMinutes(45)),   // Solapa con el bloque existente
+                evento(manana.plusMinutes(30), manana.plusMinutes(60)),
+                evento(manana.plusMinutes(60), manana.plusMinutes(90)),
+                evento(manana.plusMinutes(75), manana.plusMinutes(105)),  // Solapa con el evento anterior
+                evento(manana.minusDays(3), manana.minusDays(3).plusMinutes(30)), // Pasado
+                evento(manana.plusMinutes(120), manana.plusMinutes(150)));
+
+        TrabajoImportacionDTO trabajo = importacionIcsServicio.iniciar(doctorId, flujo(ics), ZoneOffset.UTC);
+
+        assertEquals("COMPLETADO", trabajo.estado());
+        assertEquals(6, trabajo.eventosLeidos());
+        assertEquals(3, trabajo.bloquesCreados());
+        assertEquals(2, trabajo.eventosSolapados());
+        assertEquals(1, trabajo.eventosDescartados());
+        assertEquals(trabajo.bytesTotales(), trabajo.bytesLeidos());
+        assertEquals(List.of(2, 1), lotes.stream().map(List::size).toList());
+        assertEquals(trabajo, importacionIcsServicio.obtener(doctorId, trabajo.id()));
+    }
+
+    @Test
+    @DisplayName("Debería marcar el trabajo como fallido al superar el máximo de eventos, conservando los lotes ya escritos")
+    void iniciar_deberiaFallar_cuandoSeSuperaElMaximoDeEventos() throws IOException {
+        propiedades.setMaxEventos(3);
+        when(disponibilidadRepositorio.buscarBloquesDesde(eq(doctorId), any(LocalDateTime.class))).thenReturn(List.of());
+        when(importacionLoteServicio.insertar(eq(doctorId), anyList())).thenAnswer(invocacion -> invocacion.getArgument(1));
+
+        String ics = calendario(
+                evento(manana, manana.plusMinutes(30)),
+                evento(manana.plusMinutes(30), manana.plusMinutes(60)),
+                evento(manana.plusMinutes(60), manana.plusMinutes(90)),
+                evento(manana.plusMinutes(90), manana.plusMinutes(120)));
+
+        TrabajoImportacionDTO trabajo = importacionIcsServicio.iniciar(doctorId, flujo(ics), ZoneOffset.UTC);
+
+        assertEquals("FALLIDO", trabajo.estado());
+        assertEquals(2, trabajo.bloquesCreados());
+        assertNotNull(trabajo.error());
+        assertNotNull(trabajo.terminadoEn());
+        verify(importacionLoteServicio, times(1)).insertar(eq(doctorId), anyList());
+    }
+
+    private static String calendario(String... eventos) {
+        return "BEGIN:VCALENDAR\r\nVERSION:2.0\r\n" + String.join("", eventos) + "END:VCALENDAR\r\n";
+    }
+
+    private static String evento(LocalDateTime inicio, LocalDateTime fin) {
+        return "BEGIN:VEVENT\r\nDTSTART:" + FORMATO.format(inicio) + "\r\nDTEND:" + FORMATO.format(fin) + "\r\nEND:VEVENT\r\n";
+    }
+
+    private static ByteArrayInputStream flujo(String contenido) {
+        return new ByteArrayInputStream(contenido.getBytes(StandardCharsets.UTF_8));
+    }
+}
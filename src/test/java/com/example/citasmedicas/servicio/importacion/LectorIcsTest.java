@@ -0,0 +1,88 @@
+package com.example.citasmedicas.servicio.importacion;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Clase de pruebas unitarias para LectorIcs.
+ * Verifica el plegado de líneas, la conversión de zonas horarias y los eventos que no pueden importarse.
+ */
+class LectorIcsTest {
+
+    @Test
+    @DisplayName("Debería leer los eventos convirtiendo sus horas a UTC y deshaciendo el plegado de líneas")
+    void siguiente_deberiaConvertirHorasAUtc() throws IOException {
+        String ics = String.join("\r\n",
+                "BEGIN:VCALENDAR",
+                "BEGIN:VEVENT",
+                "DTSTART;TZID=Europe/Madrid:20300115T090000",
+                "DTEND;TZID=Europe/Madrid:2030011",
+                " 5T093000",
+                "END:VEVENT",
+                "BEGIN:VEVENT",
+                "DTSTART:20300115T100000Z",
+                "DURATION:PT45M",
+                "BEGIN:VALARM",
+                "DURATION:PT15M",
+                "END:VALARM",
+                "END:VEVENT",
+                "BEGIN:VEVENT",
+                "DTSTART:20300115T120000",
+                "DTEND:20300115T123000",
+                "END:VEVENT",
+                "END:VCALENDAR");
+
+        try (LectorIcs lector = new LectorIcs(new StringReader(ics), ZoneId.of("America/Bogota"))) {
+            LectorIcs.EventoIcs conZona = lector.siguiente();
+            assertEquals(LocalDateTime.of(2030, 1, 15, 8, 0), conZona.horaInicio());
+            assertEquals(LocalDateTime.of(2030, 1, 15, 8, 30), conZona.horaFin());
+
+            LectorIcs.EventoIcs conDuracion = lector.siguiente();
+            assertEquals(LocalDateTime.of(2030, 1, 15, 10, 0), conDuracion.horaInicio());
+            assertEquals(LocalDateTime.of(2030, 1, 15, 10, 45), conDuracion.horaFin());
+
+            LectorIcs.EventoIcs flotante = lector.siguiente();
+            assertEquals(LocalDateTime.of(2030, 1, 15, 17, 0), flotante.horaInicio());
+
+            assertNull(lector.siguiente());
+        }
+    }
+
+    @Test
+    @DisplayName("Debería marcar los eventos de día completo, recurrentes y cancelados")
+    void siguiente_deberiaMarcarEventosNoImportables() throws IOException {
+        String ics = String.join("\n",
+                "BEGIN:VCALENDAR",
+                "BEGIN:VEVENT",
+                "DTSTART;VALUE=DATE:20300115",
+                "DTEND;VALUE=DATE:20300116",
+                "END:VEVENT",
+                "BEGIN:VEVENT",
+                "DTSTART:20300115T100000Z",
+                "DTEND:20300115T110000Z",
+                "RRULE:FREQ=WEEKLY;COUNT=10",
+                "END:VEVENT",
+                "BEGIN:VEVENT",
+                "DTSTART:20300115T100000Z",
+                "DTEND:20300115T110000Z",
+                "STATUS:CANCELLED",
+                "END:VEVENT",
+                "END:VCALENDAR");
+
+        try (LectorIcs lector = new LectorIcs(new StringReader(ics), ZoneId.of("UTC"))) {
+            LectorIcs.EventoIcs diaCompleto = lector.siguiente();
+            assertNull(diaCompleto.horaInicio());
+            assertNull(diaCompleto.horaFin());
+            assertTrue(lector.siguiente().recurrente());
+            assertTrue(lector.siguiente().cancelado());
+            assertNull(lector.siguiente());
+        }
+    }
+}
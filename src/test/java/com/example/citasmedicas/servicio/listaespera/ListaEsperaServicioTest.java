@@ -0,0 +1,136 @@
+package com.example.citasmedicas.servicio.listaespera;
+
+import com.example.citasmedicas.dto.EntradaListaEsperaDTO;
+import com.example.citasmedicas.dto.RetencionDTO;
+import com.example.citasmedicas.excepciones.SolicitudInvalidaExcepcion;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import com.example.citasmedicas.modelo.entidad.Doctor;
+import com.example.citasmedicas.modelo.entidad.EntradaListaEspera;
+import com.example.citasmedicas.modelo.entidad.EstadoListaEspera;
+import com.example.citasmedicas.modelo.entidad.Paciente;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.repositorio.EntradaListaEsperaRepositorio;
+import com.example.citasmedicas.servicio.DoctorServicio;
+import com.example.citasmedicas.servicio.PacienteServicio;
+import com.example.citasmedicas.servicio.notificacion.BandejaSalidaNotificaciones;
+import com.example.citasmedicas.servicio.reserva.RetencionServicio;
+import com.example.citasmedicas.util.TestDataBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Clase de pruebas unitarias para ListaEsperaServicio.
+ * Verifica el orden de llegada, el filtrado por franja y la oferta de bloques liberados.
+ */
+@ExtendWith(MockitoExtension.class)
+class ListaEsperaServicioTest {
+
+    @Mock
+    private EntradaListaEsperaRepositorio entradaListaEsperaRepositorio;
+    @Mock
+    private DisponibilidadRepositorio disponibilidadRepositorio;
+    @Mock
+    private PacienteServicio pacienteServicio;
+    @Mock
+    private DoctorServicio doctorServicio;
+    @Mock
+    private RetencionServicio retencionServicio;
+    @Mock
+    private BandejaSalidaNotificaciones bandejaSalidaNotificaciones;
+
+    private ListaEsperaServicio listaEsperaServicio;
+    private Doctor doctor;
+    private Disponibilidad disponibilidad;
+
+    @BeforeEach
+    void setUp() {
+        listaEsperaServicio = new ListaEsperaServicio(entradaListaEsperaRepositorio, disponibilidadRepositorio, pacienteServicio,
+                doctorServicio, retencionServicio, bandejaSalidaNotificaciones, new RegistroMetricas());
+        doctor = TestDataBuilder.unDoctor().id(UUID.randomUUID()).build();
+        LocalDateTime horaInicio = LocalDateTime.now().plusDays(3).withHour(10).withMinute(0).withSecond(0).withNano(0);
+        disponibilidad = TestDataBuilder.unaDisponibilidad()
+                .doctor(doctor)
+                .horaInicio(horaInicio)
+                .horaFin(horaInicio.plusMinutes(30))
+                .estaReservado(false)
+                .build();
+    }
+
+    @Test
+    @DisplayName("Debería ofrecer el bloque al primer paciente en espera cuya franja lo admite")
+    void ofrecerSiguiente_deberiaRetenerYNotificar_alPrimerPacienteCompatible() {
+        when(doctorServicio.obtenerEntidadDoctorPorId(doctor.getId())).thenReturn(doctor);
+        when(entradaListaEsperaRepositorio.save(any(EntradaListaEspera.class))).thenAnswer(invocacion -> {
+            EntradaListaEspera entrada = invocacion.getArgument(0);
+            entrada.setId(UUID.randomUUID());
+            entrada.setFechaCreacion(Instant.now());
+            return entrada;
+        });
+        Paciente primero = inscribir(disponibilidad.getHoraInicio().plusDays(1), null); // Franja incompatible
+        Paciente segundo = inscribir(null, null);
+        Paciente tercero = inscribir(null, null);
+
+        when(disponibilidadRepositorio.findById(disponibilidad.getId())).thenReturn(Optional.of(disponibilidad));
+        when(retencionServicio.retener(disponibilidad.getId(), segundo.getId()))
+                .thenReturn(new RetencionDTO(disponibilidad.getId(), doctor.getId(), segundo.getId(), Instant.now().plusSeconds(300)));
+        when(entradaListaEsperaRepositorio.ofrecerSiEspera(any(UUID.class), eq(disponibilidad.getId()), any(Instant.class))).thenReturn(1);
+
+        Optional<UUID> ofrecida = listaEsperaServicio.ofrecerSiguiente(disponibilidad.getId());
+
+        assertTrue(ofrecida.isPresent());
+        verify(retencionServicio, never()).retener(disponibilidad.getId(), primero.getId());
+        verify(retencionServicio, never()).retener(disponibilidad.getId(), tercero.getId());
+        verify(bandejaSalidaNotificaciones, times(1)).encolar(eq(segundo.getEmail()), eq("Horario Disponible"), anyString());
+    }
+
+    @Test
+    @DisplayName("No debería ofrecer un bloque que sigue retenido")
+    void ofrecerSiguiente_noDeberiaOfrecer_cuandoElBloqueEstaRetenido() {
+        when(disponibilidadRepositorio.findById(disponibilidad.getId())).thenReturn(Optional.of(disponibilidad));
+        when(retencionServicio.estaRetenido(disponibilidad.getId())).thenReturn(true);
+
+        assertTrue(listaEsperaServicio.ofrecerSiguiente(disponibilidad.getId()).isEmpty());
+        verify(retencionServicio, never()).retener(any(UUID.class), any(UUID.class));
+        verify(entradaListaEsperaRepositorio, never()).ofrecerSiEspera(any(UUID.class), any(UUID.class), any(Instant.class));
+    }
+
+    @Test
+    @DisplayName("Debería rechazar una segunda inscripción del mismo paciente con el mismo doctor")
+    void inscribir_deberiaLanzarSolicitudInvalida_cuandoYaEspera() {
+        Paciente paciente = TestDataBuilder.unPaciente().id(UUID.randomUUID()).build();
+        when(pacienteServicio.obtenerEntidadPacientePorId(paciente.getId())).thenReturn(paciente);
+        when(doctorServicio.obtenerEntidadDoctorPorId(doctor.getId())).thenReturn(doctor);
+        when(entradaListaEsperaRepositorio.existsByPacienteIdAndDoctorIdAndEstado(paciente.getId(), doctor.getId(), EstadoListaEspera.ESPERANDO)).thenReturn(true);
+
+        assertThrows(SolicitudInvalidaExcepcion.class, () ->
+                listaEsperaServicio.inscribir(paciente.getId(), doctor.getId(), null, null));
+        verify(entradaListaEsperaRepositorio, never()).save(any(EntradaListaEspera.class));
+    }
+
+    private Paciente inscribir(LocalDateTime desde, LocalDateTime hasta) {
+        Paciente paciente = TestDataBuilder.unPaciente()
+                .id(UUID.randomUUID())
+                .email(UUID.randomUUID() + "@example.com")
+                .build();
+        lenient().when(pacienteServicio.obtenerEntidadPacientePorId(paciente.getId())).thenReturn(paciente);
+        EntradaListaEsperaDTO entrada = listaEsperaServicio.inscribir(paciente.getId(), doctor.getId(), desde, hasta);
+        assertEquals(EstadoListaEspera.ESPERANDO, entrada.getEstado());
+        return paciente;
+    }
+}
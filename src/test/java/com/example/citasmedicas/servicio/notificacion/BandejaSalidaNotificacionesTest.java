@@ -0,0 +1,106 @@
+package com.example.citasmedicas.servicio.notificacion;
+
+import com.example.citasmedicas.config.NotificacionPropiedades;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.EstadoNotificacion;
+import com.example.citasmedicas.modelo.entidad.NotificacionPendiente;
+import com.example.citasmedicas.repositorio.NotificacionPendienteRepositorio;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * Clase de pruebas unitarias para BandejaSalidaNotificaciones.
+ * Verifica la concesión de los lotes reclamados, el seguimiento del estado de entrega y el retroceso entre reintentos.
+ */
+@ExtendWith(MockitoExtension.class)
+class BandejaSalidaNotificacionesTest {
+
+    @Mock
+    private NotificacionPendienteRepositorio notificacionPendienteRepositorio;
+    private RegistroMetricas registroMetricas;
+    private BandejaSalidaNotificaciones bandeja;
+    private NotificacionPendiente notificacion;
+
+    @BeforeEach
+    void setUp() {
+        NotificacionPropiedades propiedades = new NotificacionPropiedades();
+        propiedades.setMaxIntentos(3);
+        propiedades.setEsperaReintentoInicial(Duration.ofSeconds(30));
+        propiedades.setEsperaReintentoMaxima(Duration.ofMinutes(1));
+        propiedades.setPlazoEntrega(Duration.ofMinutes(2));
+        registroMetricas = new RegistroMetricas();
+        bandeja = new BandejaSalidaNotificaciones(notificacionPendienteRepositorio, registroMetricas, propiedades);
+
+        notificacion = new NotificacionPendiente();
+        notificacion.setId(UUID.randomUUID());
+        notificacion.setDestinatario("juan@example.com");
+        notificacion.setAsunto("Cita Confirmada");
+        notificacion.setMensaje("Su cita ha sido confirmada");
+        notificacion.setEstado(EstadoNotificacion.PENDIENTE);
+        notificacion.setIntentos(0);
+        notificacion.setProximoIntento(Instant.now());
+    }
+
+    @Test
+    @DisplayName("Debería aplazar las notificaciones reclamadas durante la concesión del relé")
+    void reclamarLote_deberiaAplazarElProximoIntento() {
+        when(notificacionPendienteRepositorio.findByEstadoAndProximoIntentoLessThanEqualOrderByProximoIntentoAsc(eq(EstadoNotificacion.PENDIENTE), any(Instant.class), any()))
+                .thenReturn(List.of(notificacion));
+
+        Instant antes = Instant.now();
+        assertEquals(List.of(notificacion), bandeja.reclamarLote());
+
+        assertEquals(EstadoNotificacion.PENDIENTE, notificacion.getEstado());
+        assertFalse(notificacion.getProximoIntento().isBefore(antes.plus(Duration.ofMinutes(2))));
+    }
+
+    @Test
+    @DisplayName("Debería marcar como ENVIADA la notificación entregada")
+    void registrarResultados_deberiaMarcarEnviada_cuandoLaEntregaTieneExito() {
+        when(notificacionPendienteRepositorio.findAllById(List.of(notificacion.getId()))).thenReturn(List.of(notificacion));
+
+        bandeja.registrarResultados(List.of(notificacion.getId()), Map.of());
+
+        assertEquals(EstadoNotificacion.ENVIADA, notificacion.getEstado());
+        assertNotNull(notificacion.getEnviadaEn());
+        assertEquals(1, registroMetricas.valorContador("notificaciones.bandeja.enviadas"));
+    }
+
+    @Test
+    @DisplayName("Debería reprogramar con retroceso exponencial acotado y marcar FALLIDA al agotar los intentos")
+    void registrarResultados_deberiaReprogramarYDescartar_cuandoLaEntregaFalla() {
+        when(notificacionPendienteRepositorio.findAllById(List.of(notificacion.getId()))).thenReturn(List.of(notificacion));
+        Map<UUID, Throwable> fallos = Map.of(notificacion.getId(), new IllegalStateException("Servidor SMTP no disponible"));
+
+        Instant antes = Instant.now();
+        bandeja.registrarResultados(List.of(), fallos);
+        assertEquals(EstadoNotificacion.PENDIENTE, notificacion.getEstado());
+        assertEquals(1, notificacion.getIntentos());
+        assertEquals("Servidor SMTP no disponible", notificacion.getUltimoError());
+        assertFalse(notificacion.getProximoIntento().isBefore(antes.plusSeconds(30)));
+
+        bandeja.registrarResultados(List.of(), fallos);
+        assertEquals(2, notificacion.getIntentos());
+        assertFalse(notificacion.getProximoIntento().isAfter(Instant.now().plusSeconds(60)));
+
+        bandeja.registrarResultados(List.of(), fallos);
+        assertEquals(EstadoNotificacion.FALLIDA, notificacion.getEstado());
+        assertEquals(3, notificacion.getIntentos());
+        assertEquals(1, registroMetricas.valorContador("notificaciones.bandeja.fallidas"));
+    }
+}
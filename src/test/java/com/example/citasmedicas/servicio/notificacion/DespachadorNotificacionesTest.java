@@ -0,0 +1,112 @@
+package com.example.citasmedicas.servicio.notificacion;
+
+import com.example.citasmedicas.config.NotificacionPropiedades;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Clase de pruebas unitarias para DespachadorNotificaciones.
+ * Verifica el agrupamiento en lotes, la política de desborde y el drenado al cerrar.
+ */
+class DespachadorNotificacionesTest {
+
+    private NotificacionPropiedades propiedades;
+    private RegistroMetricas registroMetricas;
+    private DespachadorNotificaciones despachador;
+
+    @BeforeEach
+    void setUp() {
+        propiedades = new NotificacionPropiedades();
+        propiedades.getDespachador().setHilos(1);
+        registroMetricas = new RegistroMetricas();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (despachador != null) {
+            despachador.cerrar();
+        }
+    }
+
+    @Test
+    @DisplayName("Debería agrupar los mensajes encolados en pocas llamadas al proveedor")
+    void despachar_deberiaEnviarEnLotes() throws Exception {
+        propiedades.getDespachador().setTamanoLote(50);
+        propiedades.getDespachador().setEsperaLote(Duration.ofMillis(200));
+        ProveedorNotificacionesEnMemoria proveedor = new ProveedorNotificacionesEnMemoria();
+        despachador = new DespachadorNotificaciones(proveedor, registroMetricas, propiedades);
+
+        List<CompletableFuture<Void>> entregas = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            entregas.add(despachador.despachar("paciente" + i + "@example.com", "Cita Confirmada", "Mensaje " + i));
+        }
+        CompletableFuture.allOf(entregas.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(100, proveedor.getMensajesEnviados());
+        assertTrue(proveedor.getLotesEnviados() <= 4, "Lotes enviados: " + proveedor.getLotesEnviados());
+        assertEquals(100, registroMetricas.valorContador("notificaciones.despachador.enviados"));
+    }
+
+    @Test
+    @DisplayName("Debería rechazar mensajes con la cola llena cuando la política es RECHAZAR")
+    void despachar_deberiaRechazar_cuandoLaColaEstaLlena() throws Exception {
+        propiedades.getDespachador().setCapacidadCola(1);
+        propiedades.getDespachador().setTamanoLote(1);
+        propiedades.getDespachador().setPoliticaDesborde(PoliticaDesborde.RECHAZAR);
+        CountDownLatch enProveedor = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        despachador = new DespachadorNotificaciones(lote -> {
+            enProveedor.countDown();
+            try {
+                liberar.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, registroMetricas, propiedades);
+
+        CompletableFuture<Void> primera = despachador.despachar("a@example.com", "Asunto", "Mensaje");
+        assertTrue(enProveedor.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> segunda = despachador.despachar("b@example.com", "Asunto", "Mensaje");
+        CompletableFuture<Void> tercera = despachador.despachar("c@example.com", "Asunto", "Mensaje");
+
+        assertTrue(tercera.isCompletedExceptionally());
+        assertThrows(RejectedExecutionException.class, () -> despachador.enviarNotificacion("d@example.com", "Asunto", "Mensaje"));
+        assertEquals(2, registroMetricas.valorContador("notificaciones.despachador.rechazados"));
+
+        liberar.countDown();
+        primera.get(5, TimeUnit.SECONDS);
+        segunda.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("Debería drenar los mensajes pendientes al cerrar y rechazar los nuevos")
+    void cerrar_deberiaDrenarLaCola() {
+        ProveedorNotificacionesEnMemoria proveedor = new ProveedorNotificacionesEnMemoria();
+        proveedor.setLatenciaPorLlamada(Duration.ofMillis(5));
+        propiedades.getDespachador().setTamanoLote(3);
+        despachador = new DespachadorNotificaciones(proveedor, registroMetricas, propiedades);
+
+        List<CompletableFuture<Void>> entregas = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            entregas.add(despachador.despachar("paciente" + i + "@example.com", "Asunto", "Mensaje"));
+        }
+        despachador.cerrar();
+
+        assertTrue(entregas.stream().allMatch(e -> e.isDone() && !e.isCompletedExceptionally()));
+        assertEquals(30, proveedor.getMensajesEnviados());
+        assertTrue(despachador.despachar("tarde@example.com", "Asunto", "Mensaje").isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.citasmedicas.servicio.notificacion;
+
+import com.example.citasmedicas.config.NotificacionPropiedades;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.NotificacionPendiente;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Clase de pruebas unitarias para RelayNotificaciones.
+ * Verifica que cada lote se reclama, se entrega y se registra en pasos separados,
+ * y que una entrega sin confirmar a tiempo se registra como fallo.
+ */
+@ExtendWith(MockitoExtension.class)
+class RelayNotificacionesTest {
+
+    @Mock
+    private BandejaSalidaNotificaciones bandejaSalidaNotificaciones;
+    @Mock
+    private DespachadorNotificaciones despachadorNotificaciones;
+
+    private RelayNotificaciones relay;
+
+    @BeforeEach
+    void setUp() {
+        NotificacionPropiedades propiedades = new NotificacionPropiedades();
+        propiedades.getDespachador().setEsperaConfirmacion(Duration.ofMillis(50));
+        relay = new RelayNotificaciones(bandejaSalidaNotificaciones, despachadorNotificaciones, new RegistroMetricas(), propiedades);
+    }
+
+    @Test
+    @DisplayName("Debería registrar por separado las entregas confirmadas y las que no se confirmaron a tiempo")
+    @SuppressWarnings("unchecked")
+    void procesarLote_deberiaReclamarEntregarYRegistrar() {
+        NotificacionPendiente entregada = notificacion("ana@example.com");
+        NotificacionPendiente sinConfirmar = notificacion("luis@example.com");
+        when(bandejaSalidaNotificaciones.reclamarLote()).thenReturn(List.of(entregada, sinConfirmar));
+        when(despachadorNotificaciones.despachar("ana@example.com", "Asunto", "Mensaje")).thenReturn(CompletableFuture.completedFuture(null));
+        when(despachadorNotificaciones.despachar("luis@example.com", "Asunto", "Mensaje")).thenReturn(new CompletableFuture<>());
+
+        assertEquals(2, relay.procesarLote());
+
+        ArgumentCaptor<Collection<UUID>> enviadas = ArgumentCaptor.forClass(Collection.class);
+        ArgumentCaptor<Map<UUID, Throwable>> fallos = ArgumentCaptor.forClass(Map.class);
+        InOrder orden = inOrder(bandejaSalidaNotificaciones, despachadorNotificaciones);
+        orden.verify(bandejaSalidaNotificaciones).reclamarLote();
+        orden.verify(despachadorNotificaciones, times(2)).despachar(anyString(), anyString(), anyString());
+        orden.verify(bandejaSalidaNotificaciones).registrarResultados(enviadas.capture(), fallos.capture());
+        assertEquals(List.of(entregada.getId()), List.copyOf(enviadas.getValue()));
+        assertInstanceOf(TimeoutException.class, fallos.getValue().get(sinConfirmar.getId()));
+    }
+
+    @Test
+    @DisplayName("No debería registrar resultados cuando no hay notificaciones vencidas")
+    void procesarLote_sinNotificaciones_noRegistra() {
+        when(bandejaSalidaNotificaciones.reclamarLote()).thenReturn(List.of());
+
+        assertEquals(0, relay.procesarLote());
+
+        verify(bandejaSalidaNotificaciones, never()).registrarResultados(any(), any());
+        verifyNoInteractions(despachadorNotificaciones);
+    }
+
+    private static NotificacionPendiente notificacion(String destinatario) {
+        NotificacionPendiente notificacion = new NotificacionPendiente();
+        notificacion.setId(UUID.randomUUID());
+        notificacion.setDestinatario(destinatario);
+        notificacion.setAsunto("Asunto");
+        notificacion.setMensaje("Mensaje");
+        return notificacion;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.citasmedicas.servicio.reserva;
+
+import com.example.citasmedicas.config.ReservaPropiedades;
+import com.example.citasmedicas.excepciones.ConflictoHorarioExcepcion;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import com.example.citasmedicas.servicio.DisponibilidadServicio;
+import com.example.citasmedicas.servicio.evento.DisponibilidadLiberadaEvento;
+import com.example.citasmedicas.util.TestDataBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Clase de pruebas unitarias para CoordinadorReservas.
+ * Verifica el rechazo temprano desde la vista en memoria de cada carril y que esa vista no sobreviva
+ * a la liberación del bloque ni a la vigencia del reclamo.
+ */
+@ExtendWith(MockitoExtension.class)
+class CoordinadorReservasTest {
+
+    @Mock
+    private DisponibilidadServicio disponibilidadServicio;
+
+    private RegistroMetricas registroMetricas;
+    private ReservaPropiedades propiedades;
+    private CoordinadorReservas coordinadorReservas;
+
+    private UUID doctorId;
+    private UUID disponibilidadId;
+    private Disponibilidad disponibilidad;
+
+    @BeforeEach
+    void setUp() {
+        registroMetricas = new RegistroMetricas();
+        propiedades = new ReservaPropiedades();
+        propiedades.setCarriles(4);
+        coordinadorReservas = new CoordinadorReservas(disponibilidadServicio, registroMetricas, propiedades);
+
+        doctorId = UUID.randomUUID();
+        disponibilidadId = UUID.randomUUID();
+        disponibilidad = TestDataBuilder.unaDisponibilidad().id(disponibilidadId).build();
+    }
+
+    @Test
+    @DisplayName("Debería rechazar en memoria un bloque ya reclamado sin consultar la base de datos")
+    void reservarDisponibilidad_deberiaRechazarTemprano_cuandoElBloqueYaFueReclamado() {
+        when(disponibilidadServicio.reclamarDisponibilidad(disponibilidadId, doctorId)).thenReturn(disponibilidad);
+
+        assertSame(disponibilidad, coordinadorReservas.reservarDisponibilidad(disponibilidadId, doctorId));
+        assertThrows(ConflictoHorarioExcepcion.class, () ->
+                coordinadorReservas.reservarDisponibilidad(disponibilidadId, doctorId));
+
+        verify(disponibilidadServicio, times(1)).reclamarDisponibilidad(disponibilidadId, doctorId);
+        assertEquals(1, registroMetricas.valorContador("reservas.rechazos_tempranos"));
+    }
+
+    @Test
+    @DisplayName("Debería volver a consultar la base de datos tras confirmarse la liberación del bloque")
+    void reservarDisponibilidad_deberiaPermitirReclamar_trasLiberacion() {
+        when(disponibilidadServicio.reclamarDisponibilidad(disponibilidadId, doctorId)).thenReturn(disponibilidad);
+
+        coordinadorReservas.reservarDisponibilidad(disponibilidadId, doctorId);
+        coordinadorReservas.alLiberarseDisponibilidad(new DisponibilidadLiberadaEvento(disponibilidadId));
+        coordinadorReservas.reservarDisponibilidad(disponibilidadId, doctorId);
+
+        verify(disponibilidadServicio, times(2)).reclamarDisponibilidad(disponibilidadId, doctorId);
+    }
+
+    @Test
+    @DisplayName("Debería volver a consultar la base de datos cuando venció el reclamo en memoria (liberación en otra instancia)")
+    void reservarDisponibilidad_deberiaConsultarLaBaseDeDatos_cuandoVencioElReclamo() {
+        propiedades.setVigenciaReclamo(Duration.ZERO);
+        coordinadorReservas = new CoordinadorReservas(disponibilidadServicio, registroMetricas, propiedades);
+        when(disponibilidadServicio.reclamarDisponibilidad(disponibilidadId, doctorId)).thenReturn(disponibilidad);
+
+        coordinadorReservas.reservarDisponibilidad(disponibilidadId, doctorId);
+        coordinadorReservas.reservarDisponibilidad(disponibilidadId, doctorId);
+
+        verify(disponibilidadServicio, times(2)).reclamarDisponibilidad(disponibilidadId, doctorId);
+        assertEquals(0, registroMetricas.valorContador("reservas.rechazos_tempranos"));
+    }
+
+    @Test
+    @DisplayName("No debería recordar el bloque si la base de datos rechaza el reclamo")
+    void reservarDisponibilidad_noDeberiaMarcar_cuandoElReclamoFalla() {
+        when(disponibilidadServicio.reclamarDisponibilidad(disponibilidadId, doctorId))
+                .thenThrow(new ConflictoHorarioExcepcion("ocupado"))
+                .thenReturn(disponibilidad);
+
+        assertThrows(ConflictoHorarioExcepcion.class, () ->
+                coordinadorReservas.reservarDisponibilidad(disponibilidadId, doctorId));
+        assertSame(disponibilidad, coordinadorReservas.reservarDisponibilidad(disponibilidadId, doctorId));
+        assertEquals(0, registroMetricas.valorContador("reservas.rechazos_tempranos"));
+    }
+}
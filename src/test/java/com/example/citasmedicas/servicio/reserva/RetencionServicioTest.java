@@ -0,0 +1,128 @@
+package com.example.citasmedicas.servicio.reserva;
+
+import com.example.citasmedicas.config.ReservaPropiedades;
+import com.example.citasmedicas.dto.RetencionDTO;
+import com.example.citasmedicas.excepciones.ConflictoHorarioExcepcion;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import com.example.citasmedicas.modelo.entidad.Disponibilidad;
+import com.example.citasmedicas.modelo.entidad.Doctor;
+import com.example.citasmedicas.repositorio.DisponibilidadRepositorio;
+import com.example.citasmedicas.servicio.PacienteServicio;
+import com.example.citasmedicas.util.TestDataBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Clase de pruebas unitarias para RetencionServicio.
+ * Verifica la exclusividad, renovación y vencimiento de las retenciones en memoria.
+ */
+@ExtendWith(MockitoExtension.class)
+class RetencionServicioTest {
+
+    @Mock
+    private DisponibilidadRepositorio disponibilidadRepositorio;
+    @Mock
+    private PacienteServicio pacienteServicio;
+
+    private RelojAjustable reloj;
+    private RetencionServicio retencionServicio;
+
+    private UUID disponibilidadId;
+    private UUID pacienteId;
+
+    @BeforeEach
+    void setUp() {
+        reloj = new RelojAjustable(Instant.parse("2025-01-06T10:00:00Z"));
+        ReservaPropiedades propiedades = new ReservaPropiedades();
+        propiedades.setDuracionRetencion(Duration.ofMinutes(5));
+        retencionServicio = new RetencionServicio(disponibilidadRepositorio, pacienteServicio, new RegistroMetricas(), evento -> { }, propiedades, reloj);
+
+        disponibilidadId = UUID.randomUUID();
+        pacienteId = UUID.randomUUID();
+        Doctor doctor = TestDataBuilder.unDoctor().id(UUID.randomUUID()).build();
+        Disponibilidad disponibilidad = TestDataBuilder.unaDisponibilidad().id(disponibilidadId).doctor(doctor).estaReservado(false).build();
+        when(disponibilidadRepositorio.findById(disponibilidadId)).thenReturn(Optional.of(disponibilidad));
+    }
+
+    @AfterEach
+    void tearDown() {
+        retencionServicio.detener();
+    }
+
+    @Test
+    @DisplayName("Debería rechazar la retención o reserva de otro paciente mientras la retención está vigente")
+    void retener_deberiaLanzarConflicto_cuandoOtroPacienteTieneElBloque() {
+        UUID otroPaciente = UUID.randomUUID();
+        retencionServicio.retener(disponibilidadId, pacienteId);
+
+        assertThrows(ConflictoHorarioExcepcion.class, () -> retencionServicio.retener(disponibilidadId, otroPaciente));
+        assertThrows(ConflictoHorarioExcepcion.class, () -> retencionServicio.verificarDisponibleParaPaciente(disponibilidadId, otroPaciente));
+        assertDoesNotThrow(() -> retencionServicio.verificarDisponibleParaPaciente(disponibilidadId, pacienteId));
+        assertTrue(retencionServicio.estaRetenido(disponibilidadId));
+    }
+
+    @Test
+    @DisplayName("Debería renovar el vencimiento cuando el mismo paciente vuelve a retener el bloque")
+    void retener_deberiaRenovar_cuandoElMismoPacienteReintenta() {
+        RetencionDTO primera = retencionServicio.retener(disponibilidadId, pacienteId);
+        reloj.avanzar(Duration.ofMinutes(3));
+
+        RetencionDTO renovada = retencionServicio.retener(disponibilidadId, pacienteId);
+
+        assertEquals(primera.getExpiraEn().plus(Duration.ofMinutes(3)), renovada.getExpiraEn());
+    }
+
+    @Test
+    @DisplayName("Debería dejar libre el bloque para otros pacientes una vez vencida la retención")
+    void verificarDisponibleParaPaciente_noDeberiaBloquear_cuandoLaRetencionVencio() {
+        retencionServicio.retener(disponibilidadId, pacienteId);
+        reloj.avanzar(Duration.ofMinutes(5));
+
+        assertFalse(retencionServicio.estaRetenido(disponibilidadId));
+        assertDoesNotThrow(() -> retencionServicio.verificarDisponibleParaPaciente(disponibilidadId, UUID.randomUUID()));
+        verify(disponibilidadRepositorio, never()).save(any());
+    }
+
+    private static final class RelojAjustable extends Clock {
+        private Instant ahora;
+
+        RelojAjustable(Instant ahora) {
+            this.ahora = ahora;
+        }
+
+        void avanzar(Duration duracion) {
+            ahora = ahora.plus(duracion);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zona) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return ahora;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.citasmedicas.servicio.reserva;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Clase de pruebas unitarias para RuedaTemporizadora.
+ * Avanza la rueda manualmente, sin arrancar su hilo.
+ */
+class RuedaTemporizadoraTest {
+
+    private final List<String> expirados = new ArrayList<>();
+    private RuedaTemporizadora<String> rueda;
+
+    @BeforeEach
+    void setUp() {
+        rueda = new RuedaTemporizadora<>("rueda-prueba", Duration.ofSeconds(1), 4, expirados::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        rueda.close();
+    }
+
+    @Test
+    @DisplayName("Debería expirar cada elemento en su tick, incluso si su vencimiento supera una vuelta de la rueda")
+    void avanzar_deberiaExpirarEnSuTick_cuandoElRetrasoSuperaUnaVuelta() {
+        rueda.programar("corto", Duration.ofSeconds(2));
+        rueda.programar("largo", Duration.ofSeconds(6)); // Misma ranura que "corto" en una rueda de 4
+
+        avanzar(2);
+        assertEquals(List.of("corto"), expirados);
+
+        avanzar(3);
+        assertEquals(List.of("corto"), expirados);
+
+        avanzar(1);
+        assertEquals(List.of("corto", "largo"), expirados);
+        assertEquals(0, rueda.pendientes());
+    }
+
+    @Test
+    @DisplayName("No debería expirar un elemento cancelado")
+    void cancelar_deberiaEvitarLaExpiracion() {
+        RuedaTemporizadora.Entrada<String> entrada = rueda.programar("cancelado", Duration.ofSeconds(1));
+
+        assertTrue(rueda.cancelar(entrada));
+        avanzar(4);
+
+        assertTrue(expirados.isEmpty());
+        assertFalse(rueda.cancelar(entrada));
+    }
+
+    private void avanzar(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            rueda.avanzar();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.citasmedicas.servicio.transaccion;
+
+import com.example.citasmedicas.config.ReintentoPropiedades;
+import com.example.citasmedicas.excepciones.ContencionTransaccionalExcepcion;
+import com.example.citasmedicas.metricas.RegistroMetricas;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Clase de pruebas unitarias para ReintentoTransaccionalAspecto.
+ * Verifica la clasificación por SQLState y el respeto del límite de intentos.
+ */
+class ReintentoTransaccionalAspectoTest {
+
+    private RegistroMetricas registroMetricas;
+    private OperacionPrueba objetivo;
+    private OperacionPrueba operacion;
+
+    @BeforeEach
+    void setUp() {
+        registroMetricas = new RegistroMetricas();
+        ReintentoPropiedades propiedades = new ReintentoPropiedades();
+        propiedades.setMaxIntentos(3);
+        propiedades.setEsperaInicial(Duration.ofMillis(1));
+        propiedades.setEsperaMaxima(Duration.ofMillis(2));
+
+        objetivo = new OperacionPrueba();
+        AspectJProxyFactory fabrica = new AspectJProxyFactory(objetivo);
+        fabrica.addAspect(new ReintentoTransaccionalAspecto(new ClasificadorFallosTransaccionales(), registroMetricas, propiedades));
+        operacion = fabrica.getProxy();
+    }
+
+    @Test
+    @DisplayName("Debería repetir la operación tras un fallo de serialización y devolver su resultado")
+    void reintentar_deberiaRepetir_cuandoFallaPorSerializacion() {
+        objetivo.fallosPendientes.set(2);
+
+        assertEquals("ok", operacion.ejecutar("40001"));
+        assertEquals(3, objetivo.invocaciones.get());
+        assertEquals(2, registroMetricas.valorContador("transacciones.reintentos"));
+        assertEquals(1, registroMetricas.valorContador("transacciones.reintentos.exitos"));
+    }
+
+    @Test
+    @DisplayName("Debería lanzar ContencionTransaccionalExcepcion al agotar los intentos por interbloqueo")
+    void reintentar_deberiaAgotar_cuandoElInterbloqueoPersiste() {
+        objetivo.fallosPendientes.set(10);
+
+        ContencionTransaccionalExcepcion ex = assertThrows(ContencionTransaccionalExcepcion.class, () -> operacion.ejecutar("40P01"));
+        assertInstanceOf(CannotAcquireLockException.class, ex.getCause());
+        assertEquals(3, objetivo.invocaciones.get());
+        assertEquals(1, registroMetricas.valorContador("transacciones.reintentos.agotados"));
+    }
+
+    @Test
+    @DisplayName("No debería reintentar errores que no son de contención")
+    void reintentar_noDeberiaRepetir_cuandoElErrorNoEsReintentable() {
+        objetivo.fallosPendientes.set(1);
+
+        assertThrows(DataIntegrityViolationException.class, () -> operacion.ejecutar("23505"));
+        assertEquals(1, objetivo.invocaciones.get());
+        assertEquals(0, registroMetricas.valorContador("transacciones.reintentos"));
+    }
+
+    static class OperacionPrueba {
+        final AtomicInteger fallosPendientes = new AtomicInteger();
+        final AtomicInteger invocaciones = new AtomicInteger();
+
+        @ReintentarTransaccion
+        public String ejecutar(String estadoSql) {
+            invocaciones.incrementAndGet();
+            if (fallosPendientes.getAndDecrement() > 0) {
+                SQLException causa = new SQLException("fallo simulado", estadoSql);
+                if (estadoSql.startsWith("40")) {
+                    throw new CannotAcquireLockException("contención simulada", causa);
+                }
+                throw new DataIntegrityViolationException("violación simulada", causa);
+            }
+            return "ok";
+        }
+    }
+}